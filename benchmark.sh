@@ -0,0 +1,12 @@
+#! /bin/sh
+# Runs the JMH benchmarks with Gradle and compares the scores to the stored
+# baseline (benchmark_baseline.csv). Arguments are passed to Gradle, e.g.,
+# ./benchmark.sh -Pbenchmarks=Dijkstra -PnrofHosts=100,500 -PbufferSize=5M
+# Use "./benchmark.sh jmhBaseline" to store new baseline scores.
+task=jmhCheck
+case "$1" in
+	-*|"") ;;
+	*) task=$1; shift ;;
+esac
+
+gradle $task "$@"
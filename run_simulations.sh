@@ -6,6 +6,10 @@ CWD=`pwd`
 # How many simulations to run in parallel
 cpuCores=31
 
+# Run all simulations in one JVM (DTNSim -p) instead of one JVM per scenario
+singleJvm=false
+singleJvmHeap=48G
+
 # Select which simulations to execute
 traceanalysis=false
 scenarios_public_mesh=false
@@ -351,7 +355,7 @@ if $scenarios_hybrid ; then
             export ITERATION="${numOfHybrids}_0_${i}"
 
             # Generate messages and hybrid node connections
-            java -cp target social.HyccupsMsgCreator $numOfHybrids 0 ${i} "${hyccupsMsgSize[$SETTING]}" "${hyccupsNumOfDailyMsgsPerHost[$SETTING]}" false | sort -t$'\t' -k1 -n > scenarios/$SCENARIO/$DATASET/${SETTING}_${ROUTER}_${ITERATION}_messages.txt
+            java -cp target social.HyccupsMsgCreator $numOfHybrids 0 ${i} "${hyccupsMsgSize[$SETTING]}" "${hyccupsNumOfDailyMsgsPerHost[$SETTING]}" false scenarios/$SCENARIO/$DATASET/${SETTING}_${ROUTER}_${ITERATION}_messages.txt
 
             scenarioFile=scenarios/$SCENARIO/$DATASET/${SETTING}_${ROUTER}_${ITERATION}.txt
             envsubst < scenario_template.txt > $scenarioFile
@@ -403,7 +407,7 @@ if $scenarios_mailboxes ; then
             export DATASET_HOSTS=$((datasetHosts[$DATASET] + numOfMailboxes))
 
             # Generate messages and mailbox connections
-            java -cp target social.HyccupsMsgCreator 0 $numOfMailboxes ${i} "${hyccupsMsgSize[$SETTING]}" "${hyccupsNumOfDailyMsgsPerHost[$SETTING]}" false | sort -t$'\t' -k1 -n > scenarios/$SCENARIO/$DATASET/${SETTING}_${ROUTER}_${ITERATION}_messages.txt
+            java -cp target social.HyccupsMsgCreator 0 $numOfMailboxes ${i} "${hyccupsMsgSize[$SETTING]}" "${hyccupsNumOfDailyMsgsPerHost[$SETTING]}" false scenarios/$SCENARIO/$DATASET/${SETTING}_${ROUTER}_${ITERATION}_messages.txt
 
             scenarioFile=scenarios/$SCENARIO/$DATASET/${SETTING}_${ROUTER}_${ITERATION}.txt
             envsubst < scenario_template.txt > $scenarioFile
@@ -458,7 +462,7 @@ if $scenarios_briar ; then
               export DATASET_HOSTS=$((datasetHosts[$DATASET] + numOfMailboxes))
           
               # Generate messages and highly available nodes connections
-              java -cp target social.HyccupsMsgCreator ${numOfHybrids} ${numOfMailboxes} ${i} "${hyccupsMsgSize[$SETTING]}" "${hyccupsNumOfDailyMsgsPerHost[$SETTING]}" true | sort -t$'\t' -k1 -n > scenarios/$SCENARIO/$DATASET/${SETTING}_${ROUTER}_${ITERATION}_messages.txt
+              java -cp target social.HyccupsMsgCreator ${numOfHybrids} ${numOfMailboxes} ${i} "${hyccupsMsgSize[$SETTING]}" "${hyccupsNumOfDailyMsgsPerHost[$SETTING]}" true scenarios/$SCENARIO/$DATASET/${SETTING}_${ROUTER}_${ITERATION}_messages.txt
 
               scenarioFile=scenarios/$SCENARIO/$DATASET/${SETTING}_${ROUTER}_${ITERATION}.txt
               envsubst < scenario_template.txt > $scenarioFile
@@ -513,7 +517,7 @@ if $scenarios_private_mesh ; then
               export DATASET_HOSTS=$((datasetHosts[$DATASET] + numOfMailboxes))
           
               # Generate messages and highly available nodes connections
-              java -cp target social.HyccupsMsgCreator ${numOfHybrids} ${numOfMailboxes} ${i} "${hyccupsMsgSize[$SETTING]}" "${hyccupsNumOfDailyMsgsPerHost[$SETTING]}" false | sort -t$'\t' -k1 -n > scenarios/$SCENARIO/$DATASET/${SETTING}_${ROUTER}_${ITERATION}_messages.txt
+              java -cp target social.HyccupsMsgCreator ${numOfHybrids} ${numOfMailboxes} ${i} "${hyccupsMsgSize[$SETTING]}" "${hyccupsNumOfDailyMsgsPerHost[$SETTING]}" false scenarios/$SCENARIO/$DATASET/${SETTING}_${ROUTER}_${ITERATION}_messages.txt
 
               scenarioFile=scenarios/$SCENARIO/$DATASET/${SETTING}_${ROUTER}_${ITERATION}.txt
               envsubst < scenario_template.txt > $scenarioFile
@@ -568,7 +572,7 @@ if $scenarios_social ; then
               export DATASET_HOSTS=$((datasetHosts[$DATASET] + numOfMailboxes))
 
               # Generate messages and highly available nodes connections
-              java -cp target social.HyccupsMsgCreator ${numOfHybrids} ${numOfMailboxes} ${i} "${hyccupsMsgSize[$SETTING]}" "${hyccupsNumOfDailyMsgsPerHost[$SETTING]}" false | sort -t$'\t' -k1 -n > scenarios/$SCENARIO/$DATASET/${SETTING}_${ROUTER}_${ITERATION}_messages.txt
+              java -cp target social.HyccupsMsgCreator ${numOfHybrids} ${numOfMailboxes} ${i} "${hyccupsMsgSize[$SETTING]}" "${hyccupsNumOfDailyMsgsPerHost[$SETTING]}" false scenarios/$SCENARIO/$DATASET/${SETTING}_${ROUTER}_${ITERATION}_messages.txt
 
               scenarioFile=scenarios/$SCENARIO/$DATASET/${SETTING}_${ROUTER}_${ITERATION}.txt
               envsubst < scenario_template.txt > $scenarioFile
@@ -592,6 +596,15 @@ activeProcesses=0
 scenariosRemaining=$(wc -l < scenarios/scenarios.txt)
 send_notification "Starting simulation of $scenariosRemaining scenarios"
 
+if [ "$singleJvm" = true ]; then
+  java -Xmx$singleJvmHeap -cp target:lib/ECLA.jar:lib/DTNConsoleConnection.jar core.DTNSim -p $cpuCores scenarios/scenarios.txt
+  if [ $? -ne 0 ]; then
+    send_notification "$(date) Some scenarios failed, see the output for details"
+  fi
+  send_notification "$(date) All simulations have been completed"
+  exit 0
+fi
+
 while IFS= read -r command; do
 
   # Check if there are available CPUs
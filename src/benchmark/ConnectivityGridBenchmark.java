@@ -0,0 +1,56 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import interfaces.ConnectivityGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+import core.DTNHost;
+import core.NetworkInterface;
+
+/**
+ * Benchmark of finding the near interfaces of every interface of the
+ * synthetic scenario of {@link ScenarioBenchmark} with a
+ * {@link ConnectivityGrid}.
+ */
+public class ConnectivityGridBenchmark extends ScenarioBenchmark {
+	/** Key of the benchmark's grid (not used by any interface) */
+	private static final int GRID_KEY = Integer.MIN_VALUE;
+
+	private ConnectivityGrid grid;
+	private List<NetworkInterface> interfaces;
+
+	@Override
+	protected double getWarmupTime() {
+		return 60; // just let the hosts move away from their start points
+	}
+
+	@Override
+	protected void setUpBenchmark() {
+		interfaces = new ArrayList<NetworkInterface>();
+		for (DTNHost host : hosts) {
+			interfaces.addAll(host.getInterfaces());
+		}
+		grid = ConnectivityGrid.ConnectivityGridFactory(GRID_KEY,
+				TRANSMIT_RANGE);
+		grid.addInterfaces(interfaces);
+	}
+
+	/**
+	 * Measures ConnectivityGrid.getNearInterfaces for all interfaces
+	 * @param bh Consumes the near interfaces
+	 */
+	@Benchmark
+	public void getNearInterfaces(Blackhole bh) {
+		for (NetworkInterface ni : interfaces) {
+			bh.consume(grid.getNearInterfaces(ni));
+		}
+	}
+}
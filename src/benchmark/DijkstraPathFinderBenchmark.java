@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import input.WKTMapReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+import movement.map.DijkstraPathFinder;
+import movement.map.MapNode;
+
+/**
+ * Benchmark of finding shortest paths between random nodes of the bundled
+ * Helsinki map (the map files of the default scenario) with a
+ * {@link DijkstraPathFinder}. The benchmark has no parameters.
+ */
+public class DijkstraPathFinderBenchmark extends AbstractBenchmark {
+	/** The map files */
+	public static final String[] MAP_FILES = {"data/roads.wkt",
+		"data/main_roads.wkt", "data/pedestrian_paths.wkt", "data/shops.wkt"};
+	/** Number of node pairs whose paths are searched in turns */
+	public static final int NROF_PAIRS = 1000;
+	/** Seed of the random number generator */
+	public static final long SEED = 1;
+
+	private DijkstraPathFinder pathFinder;
+	private MapNode[] from;
+	private MapNode[] to;
+	private int next;
+
+	/**
+	 * Reads the map and selects the node pairs
+	 * @throws IOException If the map files can't be read
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		WKTMapReader reader = new WKTMapReader(true);
+		for (int i=0; i<MAP_FILES.length; i++) {
+			reader.addPaths(new File(MAP_FILES[i]), i + 1);
+		}
+		List<MapNode> nodes = reader.getMap().getNodes();
+
+		Random rng = new Random(SEED);
+		from = new MapNode[NROF_PAIRS];
+		to = new MapNode[NROF_PAIRS];
+		for (int i=0; i<NROF_PAIRS; i++) {
+			from[i] = nodes.get(rng.nextInt(nodes.size()));
+			to[i] = nodes.get(rng.nextInt(nodes.size()));
+		}
+		pathFinder = new DijkstraPathFinder(null);
+		next = 0;
+	}
+
+	/**
+	 * Measures DijkstraPathFinder.getShortestPath between the next pair of
+	 * nodes
+	 * @return The path
+	 */
+	@Benchmark
+	public List<MapNode> getShortestPath() {
+		List<MapNode> path = pathFinder.getShortestPath(from[next], to[next]);
+		next = (next + 1) % NROF_PAIRS;
+		return path;
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import input.ExternalEvent;
+import input.StandardEventsReader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of reading a bundled external events file (from the
+ * {@value #EVENTS_DIR} directory) with a {@link StandardEventsReader}. The
+ * file whose number of nodes is closest to the host count is read. The
+ * events are read in batches like {@link input.ExternalEventsQueue} does.
+ */
+public class EventsReaderBenchmark extends AbstractBenchmark {
+	/** Directory of the events files */
+	public static final String EVENTS_DIR = "ee";
+	/** Number of events read at once */
+	public static final int BATCH_SIZE = 500;
+	/** Pattern of the events file names; group 1 is the number of nodes */
+	private static final Pattern FILE_PATTERN =
+		Pattern.compile("\\d+_events_(\\d+)_nodes.*\\.txt");
+
+	/** Number of hosts the events file should have */
+	@Param({"100", "500"})
+	public int nrofHosts;
+
+	private File eventsFile;
+
+	/**
+	 * Selects the events file
+	 * @throws FileNotFoundException If there are no events files
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws FileNotFoundException {
+		File[] files = new File(EVENTS_DIR).listFiles();
+		int bestDiff = Integer.MAX_VALUE;
+		eventsFile = null;
+
+		for (File f : (files == null ? new File[0] : files)) {
+			Matcher m = FILE_PATTERN.matcher(f.getName());
+			if (!m.matches()) {
+				continue;
+			}
+			int diff = Math.abs(Integer.parseInt(m.group(1)) - nrofHosts);
+			if (diff < bestDiff) {
+				bestDiff = diff;
+				eventsFile = f;
+			}
+		}
+
+		if (eventsFile == null) {
+			throw new FileNotFoundException("No events files in " +
+					EVENTS_DIR);
+		}
+	}
+
+	/**
+	 * Measures reading all the events of the file
+	 * @param bh Consumes the events
+	 */
+	@Benchmark
+	public void readEvents(Blackhole bh) {
+		StandardEventsReader reader = new StandardEventsReader(eventsFile);
+		List<ExternalEvent> events;
+		do {
+			events = reader.readEvents(BATCH_SIZE);
+			bh.consume(events);
+		} while (!events.isEmpty());
+		reader.close();
+	}
+}
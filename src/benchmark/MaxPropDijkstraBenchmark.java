@@ -0,0 +1,80 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import routing.maxprop.MaxPropDijkstra;
+import routing.maxprop.MeetingProbabilitySet;
+
+/**
+ * Benchmark of calculating the MaxProp delivery costs from a host to all
+ * other hosts with {@link MaxPropDijkstra}. The meeting probabilities are
+ * synthetic: every host has met {@value #NROF_MET_HOSTS} random hosts a
+ * random number of times.
+ */
+public class MaxPropDijkstraBenchmark extends AbstractBenchmark {
+	/** Number of hosts every host has met */
+	public static final int NROF_MET_HOSTS = 20;
+	/** Maximum number of meetings with a met host */
+	public static final int MAX_MEETINGS = 10;
+	/** Seed of the random number generator */
+	public static final long SEED = 1;
+
+	/** Number of hosts */
+	@Param({"100", "500"})
+	public int nrofHosts;
+
+	private MaxPropDijkstra dijkstra;
+	private Set<Integer> allHosts;
+	private int next;
+
+	/**
+	 * Creates the meeting probabilities
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random rng = new Random(SEED);
+		Map<Integer, MeetingProbabilitySet> probs =
+			new HashMap<Integer, MeetingProbabilitySet>();
+		allHosts = new HashSet<Integer>();
+
+		for (int i=0; i<nrofHosts; i++) {
+			MeetingProbabilitySet set = new MeetingProbabilitySet();
+			for (int j=0; j<NROF_MET_HOSTS; j++) {
+				int other = rng.nextInt(nrofHosts);
+				int meetings = 1 + rng.nextInt(MAX_MEETINGS);
+				for (int k=0; k<meetings; k++) {
+					set.updateMeetingProbFor(other);
+				}
+			}
+			probs.put(i, set);
+			allHosts.add(i);
+		}
+
+		dijkstra = new MaxPropDijkstra(probs);
+		next = 0;
+	}
+
+	/**
+	 * Measures MaxPropDijkstra.getCosts from the next host to all hosts
+	 * @return The costs
+	 */
+	@Benchmark
+	public Map<Integer, Double> getCosts() {
+		Map<Integer, Double> costs = dijkstra.getCosts(next, allHosts);
+		next = (next + 1) % nrofHosts;
+		return costs;
+	}
+}
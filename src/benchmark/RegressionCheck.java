@@ -0,0 +1,185 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares JMH results to a stored baseline. Both files are JMH results in
+ * the CSV format (<code>-rf csv</code>). A benchmark (with a combination
+ * of parameters) whose score is more than the allowed slowdown worse than
+ * its baseline score is reported as a regression and the check fails.
+ * Benchmarks without a baseline score are only listed.
+ * <P>Usage: <code>RegressionCheck results.csv baseline.csv
+ * [maxSlowdown]</code>, where maxSlowdown is the allowed relative slowdown
+ * (default {@value #DEFAULT_MAX_SLOWDOWN}). The exit status is 1 if there
+ * were regressions.</P>
+ * <P>All benchmarks measure the average time of an operation, so a higher
+ * score is worse.</P>
+ */
+public class RegressionCheck {
+	/** Default allowed relative slowdown */
+	public static final double DEFAULT_MAX_SLOWDOWN = 0.2;
+
+	private static final String BENCHMARK_COL = "Benchmark";
+	private static final String SCORE_COL = "Score";
+	private static final String UNIT_COL = "Unit";
+	private static final String PARAM_COL_PREFIX = "Param: ";
+
+	/**
+	 * Runs the check
+	 * @param args Command line arguments (see the class description)
+	 * @throws IOException If a file can't be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2 || args.length > 3) {
+			System.err.println("Usage: RegressionCheck results.csv " +
+					"baseline.csv [maxSlowdown]");
+			System.exit(2);
+		}
+		double maxSlowdown = (args.length > 2 ?
+				Double.parseDouble(args[2]) : DEFAULT_MAX_SLOWDOWN);
+
+		Map<String, Score> results = readScores(args[0]);
+		Map<String, Score> baseline = readScores(args[1]);
+		int nrofRegressions = 0;
+
+		System.out.println(String.format("%-70s %14s %14s %8s",
+				"Benchmark", "baseline", "score", "change"));
+		for (Map.Entry<String, Score> e : results.entrySet()) {
+			Score score = e.getValue();
+			Score base = baseline.get(e.getKey());
+			if (base == null) {
+				System.out.println(String.format("%-70s %14s %14.1f %8s",
+						e.getKey(), "-", score.value, "new"));
+				continue;
+			}
+			if (!base.unit.equals(score.unit)) {
+				throw new IllegalArgumentException("Units of " + e.getKey() +
+						" differ: " + base.unit + " and " + score.unit);
+			}
+
+			double change = score.value / base.value - 1;
+			boolean regression = change > maxSlowdown;
+			if (regression) {
+				nrofRegressions++;
+			}
+			System.out.println(String.format("%-70s %14.1f %14.1f %+7.1f%%%s",
+					e.getKey(), base.value, score.value, change * 100,
+					(regression ? " REGRESSION" : "")));
+		}
+
+		if (nrofRegressions > 0) {
+			System.out.println(nrofRegressions + " benchmark(s) more than " +
+					(maxSlowdown * 100) + "% slower than the baseline");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Reads the scores of a JMH CSV result file
+	 * @param fileName Name of the file
+	 * @return The scores by benchmark name and parameter values
+	 * @throws IOException If the file can't be read
+	 */
+	private static Map<String, Score> readScores(String fileName)
+			throws IOException {
+		Map<String, Score> scores = new LinkedHashMap<String, Score>();
+		BufferedReader reader = new BufferedReader(new FileReader(fileName));
+		try {
+			String line = reader.readLine();
+			if (line == null) {
+				return scores;
+			}
+			List<String> header = split(line);
+			int benchmarkCol = column(header, BENCHMARK_COL, fileName);
+			int scoreCol = column(header, SCORE_COL, fileName);
+			int unitCol = column(header, UNIT_COL, fileName);
+
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().length() == 0) {
+					continue;
+				}
+				List<String> fields = split(line);
+				StringBuilder key = new StringBuilder(
+						fields.get(benchmarkCol));
+				for (int i=0; i<header.size() && i<fields.size(); i++) {
+					if (header.get(i).startsWith(PARAM_COL_PREFIX) &&
+							fields.get(i).length() > 0) {
+						key.append(" " + header.get(i).substring(
+								PARAM_COL_PREFIX.length()) + "=" +
+								fields.get(i));
+					}
+				}
+				scores.put(key.toString(), new Score(
+						Double.parseDouble(fields.get(scoreCol)),
+						fields.get(unitCol)));
+			}
+		} finally {
+			reader.close();
+		}
+		return scores;
+	}
+
+	/**
+	 * Returns the index of a column
+	 */
+	private static int column(List<String> header, String name,
+			String fileName) {
+		int index = header.indexOf(name);
+		if (index < 0) {
+			throw new IllegalArgumentException("No column " + name + " in " +
+					fileName);
+		}
+		return index;
+	}
+
+	/**
+	 * Splits a CSV line to fields and removes the quotes of quoted fields
+	 */
+	private static List<String> split(String line) {
+		List<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i=0; i<line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '"') {
+				if (quoted && i + 1 < line.length() &&
+						line.charAt(i + 1) == '"') {
+					field.append(c); // escaped quote
+					i++;
+				} else {
+					quoted = !quoted;
+				}
+			} else if (c == ',' && !quoted) {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+	/**
+	 * Score of a benchmark
+	 */
+	private static class Score {
+		private final double value;
+		private final String unit;
+
+		private Score(double value, String unit) {
+			this.value = value;
+			this.unit = unit;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.infra.Blackhole;
+
+import routing.SocialRouterHyccups;
+import core.DTNHost;
+import core.SimClock;
+
+/**
+ * Benchmark of the routers' update. After the warm up the hosts don't move
+ * anymore, so the connections stay the same and only the routers are
+ * updated: transfers finish and the routers try to send their messages to
+ * all their connections. Once the messages have spread in the connected
+ * groups of hosts, the updates mostly measure how fast a router finds out
+ * that it has nothing to send.
+ * <P>The update of {@link routing.EpidemicRouter} measures
+ * ActiveRouter.tryAllMessagesToAllConnections. Routers that use the social
+ * network of the Hyccups dataset ({@link SocialRouterHyccups}) are given a
+ * synthetic social network ({@link SyntheticSocialNetwork}) of the
+ * scenario's hosts.</P>
+ */
+public class RouterUpdateBenchmark extends ScenarioBenchmark {
+	/** Name of the router class (in the routing package) */
+	@Param({"EpidemicRouter", "SocialRouterHyccups"})
+	public String routerName;
+
+	/** Buffer size of the hosts */
+	@Param({"5M", "50M"})
+	public String bufferSize;
+
+	/** social network file of the current setup (or null) */
+	private File socialNetworkFile;
+
+	@Override
+	protected String getBufferSize() {
+		return bufferSize;
+	}
+
+	@Override
+	protected Properties getScenarioSettings() {
+		Properties p = super.getScenarioSettings();
+		p.setProperty("Group.router", routerName);
+		if (socialNetworkFile != null) {
+			p.setProperty(SocialRouterHyccups.SOCIAL_HYCCUPS_NS + "." +
+					SocialRouterHyccups.SOCIAL_NETWORK_S,
+					socialNetworkFile.getPath());
+		}
+		return p;
+	}
+
+	@Override
+	protected void setUpFiles() throws Exception {
+		if (routerName.equals("SocialRouterHyccups")) {
+			socialNetworkFile = File.createTempFile("social", ".txt");
+			new SyntheticSocialNetwork(nrofHosts).write(socialNetworkFile);
+		}
+	}
+
+	@Override
+	protected void tearDownFiles() {
+		if (socialNetworkFile != null) {
+			if (!socialNetworkFile.delete()) {
+				socialNetworkFile.deleteOnExit();
+			}
+			socialNetworkFile = null;
+		}
+	}
+
+	/**
+	 * Measures the update of all the routers
+	 * @param bh Consumes the buffer sizes of the hosts
+	 */
+	@Benchmark
+	public void update(Blackhole bh) {
+		SimClock.getInstance().advance(UPDATE_INTERVAL);
+		for (DTNHost host : hosts) {
+			host.getRouter().update();
+			bh.consume(host.getNrofMessages());
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Properties;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import core.DTNHost;
+import core.DTNSim;
+import core.Settings;
+import core.SimContext;
+import core.SimScenario;
+import core.World;
+
+/**
+ * Superclass for benchmarks that need a simulated world. Every setup
+ * creates a synthetic scenario in a new simulation context: the hosts
+ * move with the random waypoint model in an area whose size grows with
+ * the number of hosts (so the density of hosts stays the same) and
+ * messages are created by a message event generator. The scenario is
+ * simulated for {@link #getWarmupTime()} seconds before the measurements
+ * so that the hosts have connections and buffered messages. The settings
+ * not defined here are read from the default settings file.
+ * <P>The scenarios are parameterized by the number of hosts. Subclasses
+ * whose results depend on the buffer size add a buffer size parameter
+ * (see {@link #getBufferSize()}).</P>
+ */
+public abstract class ScenarioBenchmark extends AbstractBenchmark {
+	/** Update interval of the scenarios (seconds) */
+	public static final double UPDATE_INTERVAL = 1.0;
+	/** Transmit range of the hosts (meters) */
+	public static final int TRANSMIT_RANGE = 30;
+	/** Area per host (square meters) */
+	public static final int AREA_PER_HOST = 40 * 40;
+	/** Buffer size of the hosts if the benchmark has no such parameter */
+	public static final String DEFAULT_BUFFER_SIZE = "5M";
+
+	/** Number of hosts in the scenario */
+	@Param({"100", "500"})
+	public int nrofHosts;
+
+	/** the world of the scenario */
+	protected World world;
+	/** the hosts of the scenario */
+	protected List<DTNHost> hosts;
+	/** simulation context of the scenario */
+	private SimContext context;
+	private File settingsFile;
+
+	/**
+	 * Returns the buffer size of the hosts. Subclasses with a buffer size
+	 * parameter return its value.
+	 * @return The buffer size (e.g., "5M")
+	 */
+	protected String getBufferSize() {
+		return DEFAULT_BUFFER_SIZE;
+	}
+
+	/**
+	 * Returns the settings of the scenario. Subclasses can add their own
+	 * settings to these.
+	 * @return The settings
+	 */
+	protected Properties getScenarioSettings() {
+		int side = (int)Math.sqrt((double)AREA_PER_HOST * nrofHosts);
+		Properties p = new Properties();
+		p.setProperty("Scenario.name", "benchmark");
+		p.setProperty("Scenario.nrofHostGroups", "1");
+		p.setProperty("Scenario.updateInterval", "" + UPDATE_INTERVAL);
+		p.setProperty("Group.movementModel", "RandomWaypoint");
+		p.setProperty("Group.router", "EpidemicRouter");
+		p.setProperty("Group.nrofHosts", "" + nrofHosts);
+		p.setProperty("Group.bufferSize", getBufferSize());
+		p.setProperty("btInterface.transmitRange", "" + TRANSMIT_RANGE);
+		p.setProperty("MovementModel.worldSize", side + ", " + side);
+		p.setProperty("MovementModel.warmup", "0");
+		p.setProperty("Events1.interval", "1,5");
+		p.setProperty("Events1.hosts", "0," + nrofHosts);
+		p.setProperty("Report.nrofReports", "0");
+		return p;
+	}
+
+	/**
+	 * Returns how long the scenario is simulated before the measurements
+	 * @return The warm up time (simulated seconds)
+	 */
+	protected double getWarmupTime() {
+		return 600;
+	}
+
+	/**
+	 * Creates the scenario and simulates the warm up time. Called by JMH
+	 * once per fork and parameter combination.
+	 * @throws Exception If the scenario can't be created
+	 */
+	@Setup(Level.Trial)
+	public final void setUpScenario() throws Exception {
+		setUpFiles();
+		context = new SimContext();
+		SimContext.enter(context);
+
+		settingsFile = File.createTempFile("benchmark", ".txt");
+		OutputStream out = new FileOutputStream(settingsFile);
+		try {
+			getScenarioSettings().store(out, null);
+		} finally {
+			out.close();
+		}
+
+		Settings.init(settingsFile.getPath());
+		Settings.setRunIndex(0);
+		DTNSim.resetForNextRun();
+
+		SimScenario scenario = SimScenario.getInstance();
+		world = scenario.getWorld();
+		hosts = scenario.getHosts();
+
+		int updates = (int)(getWarmupTime() / UPDATE_INTERVAL);
+		for (int i=0; i<updates; i++) {
+			world.update();
+		}
+		setUpBenchmark();
+	}
+
+	/**
+	 * Prepares files that the scenario settings refer to. Called before
+	 * the settings are created. The default implementation does nothing.
+	 * @throws Exception If the files can't be created
+	 */
+	protected void setUpFiles() throws Exception {
+	}
+
+	/**
+	 * Prepares the measured operation after the warm up. The default
+	 * implementation does nothing.
+	 * @throws Exception If the setup fails
+	 */
+	protected void setUpBenchmark() throws Exception {
+	}
+
+	/**
+	 * Enters the scenario's simulation context in the thread that runs the
+	 * next iteration
+	 */
+	@Setup(Level.Iteration)
+	public final void enterContext() {
+		SimContext.enter(context);
+	}
+
+	/**
+	 * Releases the scenario
+	 */
+	@TearDown(Level.Trial)
+	public final void tearDownScenario() {
+		world = null;
+		hosts = null;
+		context = null;
+		SimContext.enter(null);
+		if (settingsFile != null && !settingsFile.delete()) {
+			settingsFile.deleteOnExit();
+		}
+		tearDownFiles();
+	}
+
+	/**
+	 * Deletes the files created by {@link #setUpFiles()}. The default
+	 * implementation does nothing.
+	 */
+	protected void tearDownFiles() {
+	}
+}
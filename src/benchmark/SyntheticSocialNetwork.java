@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Synthetic social network for the routers that use the social network
+ * of the Hyccups dataset. The users are randomly divided into communities
+ * whose members are each other's contacts and every user also has a few
+ * random contacts outside its community. All users (host addresses) are
+ * in the network.
+ */
+public class SyntheticSocialNetwork {
+	/** Size of the communities */
+	public static final int COMMUNITY_SIZE = 10;
+	/** Number of random contacts of every user */
+	public static final int NROF_RANDOM_CONTACTS = 2;
+	/** Seed of the random number generator */
+	public static final long SEED = 1;
+
+	/** contacts of every user */
+	private final BitSet[] rows;
+
+	/**
+	 * Creates a new synthetic social network
+	 * @param nrofUsers Number of users in the network
+	 */
+	public SyntheticSocialNetwork(int nrofUsers) {
+		Random rng = new Random(SEED);
+		rows = new BitSet[nrofUsers];
+		int[] order = new int[nrofUsers];
+		for (int u = 0; u < nrofUsers; u++) {
+			rows[u] = new BitSet(nrofUsers);
+			order[u] = u;
+		}
+		for (int i = nrofUsers - 1; i > 0; i--) { // shuffle the users
+			int j = rng.nextInt(i + 1);
+			int tmp = order[i];
+			order[i] = order[j];
+			order[j] = tmp;
+		}
+
+		for (int start = 0; start < nrofUsers; start += COMMUNITY_SIZE) {
+			int end = Math.min(start + COMMUNITY_SIZE, nrofUsers);
+			for (int i = start; i < end; i++) {
+				for (int j = start; j < end; j++) {
+					if (i != j) {
+						rows[order[i]].set(order[j]);
+					}
+				}
+			}
+		}
+		for (int u = 0; u < nrofUsers; u++) {
+			for (int i = 0; i < NROF_RANDOM_CONTACTS; i++) {
+				int v = rng.nextInt(nrofUsers);
+				if (v != u) {
+					rows[u].set(v);
+					rows[v].set(u);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the network to a file in the format of the Hyccups dataset's
+	 * social network file (see
+	 * {@link routing.SocialRouterHyccups#SOCIAL_NETWORK_S})
+	 * @param file The file
+	 * @throws IOException If the file can't be written
+	 */
+	public void write(File file) throws IOException {
+		PrintWriter out = new PrintWriter(file);
+		try {
+			for (int u = 0; u < rows.length; u++) {
+				out.print(u + 1);
+				for (int v = rows[u].nextSetBit(0); v >= 0;
+						v = rows[u].nextSetBit(v + 1)) {
+					out.print("," + (v + 1));
+				}
+				out.println();
+			}
+		} finally {
+			out.close();
+		}
+		if (out.checkError()) {
+			throw new IOException("Can't write " + file);
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Benchmark of one update of the world (host movement, connectivity
+ * detection and routing) in the synthetic scenario of
+ * {@link ScenarioBenchmark}.
+ */
+public class WorldUpdateBenchmark extends ScenarioBenchmark {
+	/** Buffer size of the hosts */
+	@Param({"5M", "50M"})
+	public String bufferSize;
+
+	@Override
+	protected String getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Measures World.update
+	 */
+	@Benchmark
+	public void update() {
+		world.update();
+	}
+}
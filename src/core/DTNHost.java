@@ -6,6 +6,7 @@ package core;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import movement.MovementModel;
@@ -19,7 +20,6 @@ import static core.Constants.DEBUG;
  * A DTN capable host.
  */
 public class DTNHost implements Comparable<DTNHost> {
-	private static int nextAddress = 0;
 	private int address;
 
 	private Coord location; 	// where is the host
@@ -35,6 +35,20 @@ public class DTNHost implements Comparable<DTNHost> {
 	private List<MovementListener> movListeners;
 	private List<NetworkInterface> net;
 	private ModuleCommunicationBus comBus;
+	/** connections of all the interfaces (read-only) or null */
+	private List<Connection> connections;
+	/** connections version the connections list was created for */
+	private long connectionsListVersion;
+	/** how many times the connections or message buffers have changed */
+	private long nrofChanges;
+	/** this host's changes when the changes were last marked seen */
+	private long seenOwnChanges;
+	/** changes of this host and its peers when last marked seen */
+	private long seenChanges;
+	/** profiler of the simulation run */
+	private SimProfiler profiler;
+	/** profiler slot of the router's class (or -1 if not known yet) */
+	private int routerSlot;
 
 	static {
 		DTNSim.registerForReset(DTNHost.class.getCanonicalName());
@@ -60,6 +74,8 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.address = getNextAddress();
 		this.name = groupId+address;
 		this.net = new ArrayList<NetworkInterface>();
+		this.profiler = SimProfiler.getInstance();
+		this.routerSlot = -1;
 
 		for (NetworkInterface i : interf) {
 			NetworkInterface ni = i.replicate();
@@ -97,14 +113,14 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @return The next address.
 	 */
 	private synchronized static int getNextAddress() {
-		return nextAddress++;
+		return SimContext.current().nextAddress++;
 	}
 
 	/**
 	 * Reset the host and its interfaces
 	 */
 	public static void reset() {
-		nextAddress = 0;
+		SimContext.current().nextAddress = 0;
 	}
 
 	/**
@@ -166,24 +182,90 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public void connectionUp(Connection con) {
 		this.router.changedConnection(con);
+		stateChanged();
 	}
 
 	public void connectionDown(Connection con) {
 		this.router.changedConnection(con);
+		stateChanged();
 	}
 
 	/**
-	 * Returns a copy of the list of connections this host has with other hosts
-	 * @return a copy of the list of connections this host has with other hosts
+	 * Marks the state of this host changed. Called when the connections or
+	 * the message buffers of the host change or when a transfer of the host
+	 * ends. Used by the World for finding the hosts that need an update
+	 * after events.
 	 */
-	public List<Connection> getConnections() {
-		List<Connection> lc = new ArrayList<Connection>();
+	public void stateChanged() {
+		this.nrofChanges++;
+	}
 
-		for (NetworkInterface i : net) {
-			lc.addAll(i.getConnections());
+	/**
+	 * Returns true if the state of this host, or of any host it is connected
+	 * to, has changed since {@link #markStateSeen()} was called.
+	 * @return true if the state has changed
+	 */
+	public boolean isStateChanged() {
+		/* connection changes are own changes, so with the same own changes
+		 * the peers are the same and their changes only add to the sum */
+		return this.nrofChanges != this.seenOwnChanges ||
+			getChangeSum() != this.seenChanges;
+	}
+
+	/**
+	 * Marks the current state of this host and the hosts it is connected to
+	 * seen (see {@link #isStateChanged()}).
+	 */
+	public void markStateSeen() {
+		this.seenOwnChanges = this.nrofChanges;
+		this.seenChanges = getChangeSum();
+	}
+
+	/**
+	 * Returns the sum of the changes of this host and the connected hosts
+	 */
+	private long getChangeSum() {
+		long sum = this.nrofChanges;
+		List<Connection> cons = getConnections();
+		for (int i=0, n = cons.size(); i < n; i++) {
+			sum += cons.get(i).getOtherNode(this).nrofChanges;
 		}
+		return sum;
+	}
 
-		return lc;
+	/**
+	 * Returns the connections this host has with other hosts. The returned
+	 * list is read-only and it is not updated when the connections change
+	 * (a new list is returned after a change).
+	 * @return a list of connections this host has with other hosts
+	 */
+	public List<Connection> getConnections() {
+		long version = getConnectionsVersion();
+		if (this.connections == null ||
+				version != this.connectionsListVersion) {
+			List<Connection> lc = new ArrayList<Connection>();
+			for (NetworkInterface i : net) {
+				lc.addAll(i.getConnections());
+			}
+			this.connections = Collections.unmodifiableList(lc);
+			this.connectionsListVersion = version;
+		}
+
+		return this.connections;
+	}
+
+	/**
+	 * Returns a counter that changes every time a connection of this host
+	 * goes up or down. Can be used for checking if something that depends
+	 * on the connections has to be recomputed.
+	 * @return The connections version
+	 */
+	public long getConnectionsVersion() {
+		long version = 0;
+		for (int i=0, n=net.size(); i<n; i++) {
+			version += net.get(i).getConnectionsVersion();
+		}
+		return version;
 	}
 
 	/**
@@ -248,6 +330,22 @@ public class DTNHost implements Comparable<DTNHost> {
 		return 100*((bSize-freeBuffer)/(bSize * 1.0));
 	}
 
+	/**
+	 * Returns the buffer occupancy percentage integrated over simulation
+	 * time. The average occupancy over a time period is the difference of
+	 * the integral values at the end and the start of the period divided
+	 * by the length of the period.
+	 * @return Buffer occupancy integral (percent-seconds)
+	 * @see #getBufferOccupancy()
+	 */
+	public double getBufferOccupancyIntegral() {
+		long bSize = router.getBufferSize();
+		if (bSize == Integer.MAX_VALUE) {
+			return 0; /* no occupancy for undefined buffer size */
+		}
+		return 100*(router.getOccupancyIntegral()/(bSize * 1.0));
+	}
+
 	/**
 	 * Returns routing info of this host's router.
 	 * @return The routing info.
@@ -338,12 +436,38 @@ public class DTNHost implements Comparable<DTNHost> {
 			return;
 		}
 
+		long start = profiler.start();
 		if (simulateConnections) {
 			for (NetworkInterface i : net) {
 				i.update();
 			}
+			profiler.end(SimProfiler.Phase.CONNECTIVITY, start);
+			start = profiler.start();
 		}
 		this.router.update();
+		if (profiler.isEnabled()) {
+			if (routerSlot < 0) {
+				routerSlot = profiler.getRouterSlot(router.getClass());
+			}
+			profiler.endRouter(routerSlot, start);
+		}
+	}
+
+	/**
+	 * Returns the earliest simulation time when this host needs to be updated
+	 * even if no external events happen before that. If the radio activeness
+	 * of the host depends on time, the current time is returned.
+	 * @return The next update time of the host
+	 * @see MessageRouter#getNextUpdateTime()
+	 */
+	public double getNextUpdateTime() {
+		for (NetworkInterface i : net) {
+			if (!i.isAlwaysActive()) {
+				return SimClock.getTime();
+			}
+		}
+
+		return this.router.getNextUpdateTime();
 	}
 
 	/**
@@ -373,13 +497,62 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @param timeIncrement How long time the node moves
 	 */
 	public void move(double timeIncrement) {
+		if (!isMovementActive() || SimClock.getTime() < this.nextTimeToMove) {
+			return;
+		}
+		moveActive(timeIncrement);
+	}
+
+	/**
+	 * Moves the node like {@link #move(double)} unless the node would only
+	 * move towards its current destination without reaching it. Such moves
+	 * don't use the movement model (or inform the movement listeners), so
+	 * they can be done later with {@link #moveTowardsDestination(double)}
+	 * independently of the other nodes' moves.
+	 * @param timeIncrement How long time the node moves
+	 * @return True if the move was deferred, false if the node was already
+	 * moved (or it didn't have to move)
+	 */
+	boolean moveOrDefer(double timeIncrement) {
+		if (!isMovementActive() || SimClock.getTime() < this.nextTimeToMove) {
+			return false;
+		}
+		if (this.destination != null && timeIncrement * this.speed <
+				this.location.distance(this.destination)) {
+			return true;
+		}
+		moveActive(timeIncrement);
+		return false;
+	}
+
+	/**
+	 * Moves the node towards its current destination. The destination must
+	 * be further away than the node can move in the given time.
+	 * @param timeIncrement How long time the node moves
+	 * @see #moveOrDefer(double)
+	 */
+	void moveTowardsDestination(double timeIncrement) {
+		double possibleMovement = timeIncrement * this.speed;
+		double distance = this.location.distance(this.destination);
+
+		assert possibleMovement < distance : "Node " + this + " would " +
+			"reach its destination";
+		this.location.translate(
+				(possibleMovement/distance) * (this.destination.getX() -
+						this.location.getX()),
+				(possibleMovement/distance) * (this.destination.getY() -
+						this.location.getY()));
+	}
+
+	/**
+	 * Moves a node whose movement is active and who doesn't have to wait
+	 * @param timeIncrement How long time the node moves
+	 */
+	private void moveActive(double timeIncrement) {
 		double possibleMovement;
 		double distance;
 		double dx, dy;
 
-		if (!isMovementActive() || SimClock.getTime() < this.nextTimeToMove) {
-			return;
-		}
 		if (this.destination == null) {
 			if (!setNextWaypoint()) {
 				return;
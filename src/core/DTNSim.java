@@ -5,9 +5,16 @@
 package core;
 import gui.DTNSimGUI;
 
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import ui.DTNSimTextUI;
 
@@ -18,6 +25,11 @@ public class DTNSim {
 	/** If this option ({@value}) is given to program, batch mode and
 	 * Text UI are used*/
 	public static final String BATCH_MODE_FLAG = "-b";
+	/** If this option ({@value}) is given to program, the scenarios listed
+	 * in a run list file are run concurrently in this JVM using the text UI.
+	 * The option must be followed by the number of threads and the path of
+	 * the run list file (see {@link #readRunList(String)}) */
+	public static final String PARALLEL_MODE_FLAG = "-p";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
 
@@ -37,6 +49,9 @@ public class DTNSim {
 	 * {@link Settings#setRunIndex(int)}). Following arguments are the settings
 	 * files for the simulation run (if any). For GUI mode, the number before
 	 * settings files (if given) is the run index to use for that run.
+	 * If first argument is {@link #PARALLEL_MODE_FLAG}, the scenarios of a
+	 * run list file are run concurrently (see
+	 * {@link #runParallel(int, String)}).
 	 * @param args Command line arguments
 	 */
 	public static void main(String[] args) {
@@ -49,6 +64,16 @@ public class DTNSim {
 		/* set US locale to parse decimals in consistent way */
 		java.util.Locale.setDefault(java.util.Locale.US);
 
+		if (args.length > 0 && args[0].equals(PARALLEL_MODE_FLAG)) {
+			if (args.length != 3) {
+				System.err.println("Usage: " + PARALLEL_MODE_FLAG +
+						" <nrof threads> <run list file>");
+				System.exit(-1);
+			}
+			runParallel(parseNrofThreads(args[1]), args[2]);
+			return;
+		}
+
 		if (args.length > 0) {
 			if (args[0].equals(BATCH_MODE_FLAG)) {
 				batchMode = true;
@@ -140,7 +165,7 @@ public class DTNSim {
 	 * @param className Full name (i.e., containing the packet path)
 	 * of the class to register. For example: <code>core.SimClock</code>
 	 */
-	public static void registerForReset(String className) {
+	public static synchronized void registerForReset(String className) {
 		Class<?> c = null;
 		try {
 			c = Class.forName(className);
@@ -160,10 +185,15 @@ public class DTNSim {
 	}
 
 	/**
-	 * Resets all registered classes.
+	 * Resets all registered classes. Also used to initialize the per-run
+	 * state of a new simulation context.
 	 */
-	private static void resetForNextRun() {
-		for (Class<?> c : resetList) {
+	public static void resetForNextRun() {
+		List<Class<?>> classes;
+		synchronized (DTNSim.class) { // classes may register concurrently
+			classes = new ArrayList<Class<?>>(resetList);
+		}
+		for (Class<?> c : classes) {
 			try {
 				Method m = c.getMethod(RESET_METHOD_NAME);
 				m.invoke(null);
@@ -216,6 +246,143 @@ public class DTNSim {
 		return val;
 	}
 
+	/**
+	 * Runs the scenarios of a run list file concurrently using a thread
+	 * pool. Every scenario is run (with run index 0) in its own simulation
+	 * context, so the runs don't share any state except the read-only data
+	 * modules cache in static fields (e.g., maps and social graphs).
+	 * @param nrofThreads Number of simulations to run concurrently
+	 * @param runListFile Path to the run list file
+	 */
+	private static void runParallel(int nrofThreads, String runListFile) {
+		List<String[]> runs = null;
+		try {
+			runs = readRunList(runListFile);
+		} catch (IOException e) {
+			System.err.println("Can't read run list file " + runListFile +
+					": " + e.getMessage());
+			System.exit(-1);
+		}
+
+		long startTime = System.currentTimeMillis();
+		ExecutorService pool = Executors.newFixedThreadPool(nrofThreads);
+		List<Future<?>> results = new ArrayList<Future<?>>();
+		for (final String[] confFiles : runs) {
+			results.add(pool.submit(new Runnable() {
+				public void run() {
+					runInNewContext(confFiles);
+				}
+			}));
+		}
+		pool.shutdown();
+
+		int nrofFailed = 0;
+		for (int i=0; i<results.size(); i++) {
+			try {
+				results.get(i).get();
+			} catch (ExecutionException e) {
+				nrofFailed++;
+				System.err.println("Run " + (i+1) + " (" + runs.get(i)[0] +
+						") failed:");
+				e.getCause().printStackTrace();
+			} catch (InterruptedException e) {
+				throw new SimError(e);
+			}
+		}
+
+		double duration = (System.currentTimeMillis() - startTime)/1000.0;
+		print("---\nAll done in " + String.format("%.2f", duration) + "s");
+		if (nrofFailed > 0) {
+			System.err.println(nrofFailed + "/" + runs.size() + " runs failed");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Runs one simulation in a new simulation context bound to the current
+	 * thread
+	 * @param confFiles The settings files of the simulation
+	 */
+	private static void runInNewContext(String[] confFiles) {
+		SimContext.enter(new SimContext());
+		try {
+			Settings.init(confFiles[0]);
+			for (int i=1; i<confFiles.length; i++) {
+				Settings.addSettings(confFiles[i]);
+			}
+			Settings.setRunIndex(0);
+			resetForNextRun();
+			new DTNSimTextUI().start();
+		} finally {
+			SimContext.enter(null);
+		}
+	}
+
+	/**
+	 * Reads a run list file. Each (non-empty) line of the file defines one
+	 * simulation run as a whitespace separated list of settings files.
+	 * Lines starting with '#' are ignored. Lines of the form
+	 * <code>./one.sh -b 1 settings.txt</code> (i.e., the format of the
+	 * scenario lists created by run_simulations.sh) are accepted too; then
+	 * the settings files are the arguments after the number of runs.
+	 * @param runListFile Path to the file
+	 * @return Settings file names of every run
+	 * @throws IOException If the file couldn't be read
+	 */
+	private static List<String[]> readRunList(String runListFile)
+		throws IOException {
+		List<String[]> runs = new ArrayList<String[]>();
+		BufferedReader reader = new BufferedReader(
+				new FileReader(runListFile));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) {
+					continue;
+				}
+				String[] args = line.split("\\s+");
+				int first = 0;
+				for (int i=0; i<args.length - 1; i++) {
+					if (args[i].equals(BATCH_MODE_FLAG)) {
+						first = i + 2; // skip the number of runs
+						break;
+					}
+				}
+				if (first >= args.length) {
+					throw new IOException("No settings files on line '" +
+							line + "'");
+				}
+				String[] confFiles = new String[args.length - first];
+				System.arraycopy(args, first, confFiles, 0, confFiles.length);
+				runs.add(confFiles);
+			}
+		} finally {
+			reader.close();
+		}
+		return runs;
+	}
+
+	/**
+	 * Parses the number of threads from a command line argument
+	 * @param arg The argument to parse
+	 * @return The number of threads
+	 */
+	private static int parseNrofThreads(String arg) {
+		int nrof = 0;
+		try {
+			nrof = Integer.parseInt(arg);
+		} catch (NumberFormatException e) {
+			nrof = 0;
+		}
+		if (nrof < 1) {
+			System.err.println("Invalid argument '" + arg + "' for number " +
+					"of threads");
+			System.exit(-1);
+		}
+		return nrof;
+	}
+
 	/**
 	 * Prints text to stdout
 	 * @param txt Text to print
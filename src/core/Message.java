@@ -4,50 +4,39 @@
  */
 package core;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * A message that is created at a node or passed between nodes.
+ * Replicates of a message share the data that they have in common (header
+ * fields, the common part of the path and the properties) until one of
+ * them modifies it, so a replicate costs only a few dozen bytes.
  */
 public class Message implements Comparable<Message> {
 	/** Value for infinite TTL of message */
 	public static final int INFINITE_TTL = -1;
-	private DTNHost from;
-	private DTNHost to;
-	/** Identifier of the message */
-	private String id;
-	/** Size of the message (bytes) */
-	private int size;
-	/** List of nodes this message has passed */
-	private List<DTNHost> path;
-	/** Next unique identifier to be given */
-	private static int nextUniqueId;
+	/** Header data; possibly shared with other replicates */
+	private Header header;
+	/** Last node on the path of this message */
+	private PathNode path;
 	/** Unique ID of this message */
 	private int uniqueId;
 	/** The time this message was received */
 	private double timeReceived;
-	/** The time when this message was created */
-	private double timeCreated;
-	/** Initial TTL of the message */
-	private int initTtl;
-
-	/** if a response to this message is required, this is the size of the
-	 * response message (or 0 if no response is requested) */
-	private int responseSize;
-	/** if this message is a response message, this is set to the request msg*/
-	private Message requestMsg;
 
 	/** Container for generic message properties. Note that all values
 	 * stored in the properties should be immutable because only a shallow
 	 * copy of the properties is made when replicating messages */
 	private Map<String, Object> properties;
 
-	/** Application ID of the application that created the message */
-	private String	appID;
+	/** is the header shared with other replicates (copy before writing) */
+	private boolean headerShared;
+	/** are the properties shared with other replicates */
+	private boolean propertiesShared;
 
 	static {
 		reset();
@@ -63,31 +52,38 @@ public class Message implements Comparable<Message> {
 	 * @param size Size of the message (in bytes)
 	 */
 	public Message(DTNHost from, DTNHost to, String id, int size) {
-		this.from = from;
-		this.to = to;
-		this.id = id;
-		this.size = size;
-		this.path = new ArrayList<DTNHost>();
-		this.uniqueId = nextUniqueId;
-
-		this.timeCreated = SimClock.getTime();
-		this.timeReceived = this.timeCreated;
-		this.initTtl = INFINITE_TTL;
-		this.responseSize = 0;
-		this.requestMsg = null;
+		this.header = new Header(from, to, id, size, internId(id));
+		this.path = null;
+		this.uniqueId = SimContext.current().nextMessageId++;
+
+		this.header.timeCreated = SimClock.getTime();
+		this.timeReceived = this.header.timeCreated;
+		this.header.initTtl = INFINITE_TTL;
+		this.header.responseSize = 0;
+		this.header.requestMsg = null;
 		this.properties = null;
-		this.appID = null;
+		this.header.appID = null;
 
-		Message.nextUniqueId++;
 		addNodeOnPath(from);
 	}
 
+	/**
+	 * Creates a replicate of a message. The replicate shares the data of
+	 * the original message.
+	 * @param m The original message
+	 */
+	private Message(Message m) {
+		this.uniqueId = SimContext.current().nextMessageId++;
+		this.timeReceived = SimClock.getTime();
+		copyFrom(m);
+	}
+
 	/**
 	 * Returns the node this message is originally from
 	 * @return the node this message is originally from
 	 */
 	public DTNHost getFrom() {
-		return this.from;
+		return this.header.from;
 	}
 
 	/**
@@ -95,7 +91,7 @@ public class Message implements Comparable<Message> {
 	 * @return the node this message is originally to
 	 */
 	public DTNHost getTo() {
-		return this.to;
+		return this.header.to;
 	}
 
 	/**
@@ -103,7 +99,46 @@ public class Message implements Comparable<Message> {
 	 * @return The message id
 	 */
 	public String getId() {
-		return this.id;
+		return this.header.id;
+	}
+
+	/**
+	 * Returns a number that identifies the ID of the message in the current
+	 * simulation run. The numbers are dense (0, 1, 2, ... in the order the
+	 * IDs were first used), so they can be used as keys of primitive maps
+	 * and indexes of arrays and bit sets. All replicates of a message (and
+	 * other messages with the same ID) have the same number.
+	 * @return The ID number
+	 */
+	public int getIdNumber() {
+		return this.header.idNumber;
+	}
+
+	/**
+	 * Returns the number of a message ID (see {@link #getIdNumber()})
+	 * @param id The message ID
+	 * @return The number or -1 if no message with the ID has been created
+	 * in this simulation run
+	 */
+	public static int lookupIdNumber(String id) {
+		Integer number = SimContext.current().messageIdNumbers.get(id);
+		return (number == null ? -1 : number);
+	}
+
+	/**
+	 * Returns the number of a message ID, giving it the next free number if
+	 * the ID doesn't have a number yet
+	 * @param id The message ID
+	 * @return The number
+	 */
+	private static int internId(String id) {
+		Map<String, Integer> numbers = SimContext.current().messageIdNumbers;
+		Integer number = numbers.get(id);
+		if (number == null) {
+			number = numbers.size();
+			numbers.put(id, number);
+		}
+		return number;
 	}
 
 	/**
@@ -120,7 +155,7 @@ public class Message implements Comparable<Message> {
 	 * @return the size of the message
 	 */
 	public int getSize() {
-		return this.size;
+		return this.header.size;
 	}
 
 	/**
@@ -128,15 +163,18 @@ public class Message implements Comparable<Message> {
 	 * @param node The node to add
 	 */
 	public void addNodeOnPath(DTNHost node) {
-		this.path.add(node);
+		this.path = new PathNode(node, this.path);
 	}
 
 	/**
 	 * Returns a list of nodes this message has passed so far
-	 * @return The list as vector
+	 * @return The list (unmodifiable)
 	 */
 	public List<DTNHost> getHops() {
-		return this.path;
+		if (this.path == null) {
+			return Collections.emptyList();
+		}
+		return this.path.getHops();
 	}
 
 	/**
@@ -144,7 +182,7 @@ public class Message implements Comparable<Message> {
 	 * @return the amount of hops this message has passed
 	 */
 	public int getHopCount() {
-		return this.path.size() -1;
+		return (this.path == null ? 0 : this.path.length) - 1;
 	}
 
 	/**
@@ -154,16 +192,27 @@ public class Message implements Comparable<Message> {
 	 * @return The TTL (minutes)
 	 */
 	public int getTtl() {
-		if (this.initTtl == INFINITE_TTL) {
+		if (this.header.initTtl == INFINITE_TTL) {
 			return Integer.MAX_VALUE;
 		}
 		else {
-			return (int)( ((this.initTtl * 60) -
-					(SimClock.getTime()-this.timeCreated)) /60.0 );
+			return (int)( ((this.header.initTtl * 60) -
+					(SimClock.getTime()-this.header.timeCreated)) /60.0 );
 		}
 	}
 
 
+	/**
+	 * Returns the simulation time when the TTL of this message expires.
+	 * @return The expiry time or Double.MAX_VALUE if the TTL is infinite
+	 */
+	public double getExpiryTime() {
+		if (this.header.initTtl == INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		return this.header.timeCreated + this.header.initTtl * 60.0;
+	}
+
 	/**
 	 * Sets the initial TTL (time-to-live) for this message. The initial
 	 * TTL is the TTL when the original message was created. The current TTL
@@ -171,7 +220,7 @@ public class Message implements Comparable<Message> {
 	 * @param ttl The time-to-live to set
 	 */
 	public void setTtl(int ttl) {
-		this.initTtl = ttl;
+		writableHeader().initTtl = ttl;
 	}
 
 	/**
@@ -195,7 +244,7 @@ public class Message implements Comparable<Message> {
 	 * @return the time when this message was created
 	 */
 	public double getCreationTime() {
-		return this.timeCreated;
+		return this.header.timeCreated;
 	}
 
 	/**
@@ -203,7 +252,7 @@ public class Message implements Comparable<Message> {
 	 * @param request The request message
 	 */
 	public void setRequest(Message request) {
-		this.requestMsg = request;
+		writableHeader().requestMsg = request;
 	}
 
 	/**
@@ -212,7 +261,7 @@ public class Message implements Comparable<Message> {
 	 * @return the message this message is response to
 	 */
 	public Message getRequest() {
-		return this.requestMsg;
+		return this.header.requestMsg;
 	}
 
 	/**
@@ -220,7 +269,7 @@ public class Message implements Comparable<Message> {
 	 * @return true if this message is a response message
 	 */
 	public boolean isResponse() {
-		return this.requestMsg != null;
+		return this.header.requestMsg != null;
 	}
 
 	/**
@@ -229,7 +278,7 @@ public class Message implements Comparable<Message> {
 	 * @param size Size of the response message
 	 */
 	public void setResponseSize(int size) {
-		this.responseSize = size;
+		writableHeader().responseSize = size;
 	}
 
 	/**
@@ -238,7 +287,7 @@ public class Message implements Comparable<Message> {
 	 * @return the size of the requested response message
 	 */
 	public int getResponseSize() {
-		return responseSize;
+		return this.header.responseSize;
 	}
 
 	/**
@@ -246,31 +295,43 @@ public class Message implements Comparable<Message> {
 	 * @return a string representation of the message
 	 */
 	public String toString () {
-		return id;
+		return this.header.id;
 	}
 
 	/**
-	 * Deep copies message data from other message. If new fields are
-	 * introduced to this class, most likely they should be copied here too
-	 * (unless done in constructor).
+	 * Copies message data from other message. The header, the path and the
+	 * properties are shared with the other message and copied only when
+	 * either of the messages modifies them. If new fields are introduced
+	 * to this class, most likely they should be copied here too (unless
+	 * done in constructor).
 	 * @param m The message where the data is copied
 	 */
 	protected void copyFrom(Message m) {
-		this.path = new ArrayList<DTNHost>(m.path);
-		this.timeCreated = m.timeCreated;
-		this.responseSize = m.responseSize;
-		this.requestMsg  = m.requestMsg;
-		this.initTtl = m.initTtl;
-		this.appID = m.appID;
+		this.header = m.header;
+		this.headerShared = true;
+		m.headerShared = true;
+		this.path = m.path;
 
+		this.properties = m.properties;
 		if (m.properties != null) {
-			Set<String> keys = m.properties.keySet();
-			for (String key : keys) {
-				updateProperty(key, m.getProperty(key));
-			}
+			this.propertiesShared = true;
+			m.propertiesShared = true;
 		}
 	}
 
+	/**
+	 * Returns the header of this message for modification. A shared header
+	 * is copied first.
+	 * @return The header
+	 */
+	private Header writableHeader() {
+		if (this.headerShared) {
+			this.header = this.header.copy();
+			this.headerShared = false;
+		}
+		return this.header;
+	}
+
 	/**
 	 * Adds a generic property for this message. The key can be any string but
 	 * it should be such that no other class accidently uses the same value.
@@ -316,6 +377,9 @@ public class Message implements Comparable<Message> {
 			/* lazy creation to prevent performance overhead for classes
 			   that don't use the property feature  */
 			this.properties = new HashMap<String, Object>();
+		} else if (this.propertiesShared) {
+			this.properties = new HashMap<String, Object>(this.properties);
+			this.propertiesShared = false;
 		}
 
 		this.properties.put(key, value);
@@ -326,9 +390,7 @@ public class Message implements Comparable<Message> {
 	 * @return A replicate of the message
 	 */
 	public Message replicate() {
-		Message m = new Message(from, to, id, size);
-		m.copyFrom(this);
-		return m;
+		return new Message(this);
 	}
 
 	/**
@@ -343,21 +405,95 @@ public class Message implements Comparable<Message> {
 	 * Resets all static fields to default values
 	 */
 	public static void reset() {
-		nextUniqueId = 0;
+		SimContext.current().nextMessageId = 0;
+		SimContext.current().messageIdNumbers.clear();
 	}
 
 	/**
 	 * @return the appID
 	 */
 	public String getAppID() {
-		return appID;
+		return this.header.appID;
 	}
 
 	/**
 	 * @param appID the appID to set
 	 */
 	public void setAppID(String appID) {
-		this.appID = appID;
+		writableHeader().appID = appID;
+	}
+
+	/**
+	 * Fields that are the same for all replicates of a message (unless a
+	 * replicate modifies them)
+	 */
+	private static class Header implements Cloneable {
+		private final DTNHost from;
+		private final DTNHost to;
+		/** Identifier of the message */
+		private final String id;
+		/** Size of the message (bytes) */
+		private final int size;
+		/** Number of the identifier */
+		private final int idNumber;
+		/** The time when this message was created */
+		private double timeCreated;
+		/** Initial TTL of the message */
+		private int initTtl;
+		/** if a response to this message is required, this is the size of
+		 * the response message (or 0 if no response is requested) */
+		private int responseSize;
+		/** if this message is a response message, this is set to the
+		 * request msg*/
+		private Message requestMsg;
+		/** Application ID of the application that created the message */
+		private String appID;
+
+		public Header(DTNHost from, DTNHost to, String id, int size,
+				int idNumber) {
+			this.from = from;
+			this.to = to;
+			this.id = id;
+			this.size = size;
+			this.idNumber = idNumber;
+		}
+
+		public Header copy() {
+			try {
+				return (Header)clone();
+			} catch (CloneNotSupportedException e) {
+				throw new SimError(e);
+			}
+		}
 	}
 
+	/**
+	 * Node of a message's path. Each node points to the previous one, so
+	 * replicates share the part of the path they have in common.
+	 */
+	private static class PathNode {
+		private final DTNHost host;
+		private final PathNode previous;
+		/** number of nodes on the path up to (and including) this node */
+		private final int length;
+		/** the path as a list; created when it is first requested */
+		private List<DTNHost> hops;
+
+		public PathNode(DTNHost host, PathNode previous) {
+			this.host = host;
+			this.previous = previous;
+			this.length = (previous == null ? 1 : previous.length + 1);
+		}
+
+		public List<DTNHost> getHops() {
+			if (this.hops == null) {
+				DTNHost[] nodes = new DTNHost[this.length];
+				for (PathNode n = this; n != null; n = n.previous) {
+					nodes[n.length - 1] = n.host;
+				}
+				this.hops = Collections.unmodifiableList(Arrays.asList(nodes));
+			}
+			return this.hops;
+		}
+	}
 }
@@ -8,6 +8,7 @@ import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Random;
 
@@ -49,17 +50,18 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	private static final int CON_UP = 1;
 	private static final int CON_DOWN = 2;
 
-	private static Random rng;
 	protected DTNHost host = null;
 
 	protected String interfacetype;
-	protected List<Connection> connections; // connected hosts
+	protected ConnectionList connections; // connected hosts
 	private List<ConnectionListener> cListeners = null; // list of listeners
 	private int address; // network interface address
 	protected double transmitRange;
 	protected double oldTransmitRange;
 	protected int transmitSpeed;
 	protected ConnectivityOptimizer optimizer = null;
+	/** near interfaces found by {@link #findNearInterfaces()} (or null) */
+	private List<NetworkInterface> nearInterfaces = null;
 	/** scanning interval, or 0.0 if n/a */
 	private double scanInterval;
 	private double lastScanTime;
@@ -80,7 +82,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * Resets the static fields of the class
 	 */
 	public static void reset() {
-		rng = new Random(0);
+		SimContext.current().interfaceRng = new Random(0);
 	}
 
 	/**
@@ -88,7 +90,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public NetworkInterface(Settings s) {
 		this.interfacetype = s.getNameSpace();
-		this.connections = new ArrayList<Connection>();
+		this.connections = new ConnectionList();
 
 		this.transmitRange = s.getDouble(TRANSMIT_RANGE_S);
 		this.transmitSpeed = s.getInt(TRANSMIT_SPEED_S);
@@ -101,14 +103,14 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public NetworkInterface() {
 		this.interfacetype = "Default";
-		this.connections = new ArrayList<Connection>();
+		this.connections = new ConnectionList();
 	}
 
 	/**
 	 * copy constructor
 	 */
 	public NetworkInterface(NetworkInterface ni) {
-		this.connections = new ArrayList<Connection>();
+		this.connections = new ConnectionList();
 		this.host = ni.host;
 		this.cListeners = ni.cListeners;
 		this.interfacetype = ni.interfacetype;
@@ -117,6 +119,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.scanInterval = ni.scanInterval;
 		this.ah = ni.ah;
 
+		Random rng = SimContext.current().interfaceRng;
 		if (ni.activenessJitterMax > 0) {
 			this.activenessJitterValue = rng.nextInt(ni.activenessJitterMax);
 		} else {
@@ -224,6 +227,15 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return this.connections;
 	}
 
+	/**
+	 * Returns a counter that changes every time a connection is added to
+	 * or removed from this interface
+	 * @return The connection list version
+	 */
+	public long getConnectionsVersion() {
+		return this.connections.getVersion();
+	}
+
 	/**
 	 * Returns true if the interface is on at the moment (false if not)
 	 * @return true if the interface is on at the moment (false if not)
@@ -256,6 +268,15 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return active;
 	}
 
+	/**
+	 * Returns true if the activeness of this interface does not depend on
+	 * the simulation time (i.e., no active times or periods are defined)
+	 * @return true if the interface is always active
+	 */
+	public boolean isAlwaysActive() {
+		return ah == null || ah.isAlwaysActive();
+	}
+
 	/**
 	 * Checks if this interface is currently in the scanning mode
 	 * @return True if the interface is scanning; false if not
@@ -392,6 +413,64 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		}
 	}
 
+	/**
+	 * Updates the location of this interface in the connectivity optimizer
+	 * (if the interface uses one)
+	 */
+	public void updateOptimizerLocation() {
+		if (optimizer != null) {
+			optimizer.updateLocation(this);
+		}
+	}
+
+	/**
+	 * Finds the interfaces that are near this interface and stores them for
+	 * the next {@link #update()} call. Interfaces that are out of range are
+	 * left out unless either interface's range may still change (i.e., it
+	 * is currently zero or the interface has activeness times). This method
+	 * only reads the state of the interfaces, so it can be called for
+	 * different interfaces in parallel as long as the optimizer locations
+	 * (see {@link #updateOptimizerLocation()}) are up to date and no hosts
+	 * move.
+	 */
+	public void findNearInterfaces() {
+		if (optimizer == null) {
+			return;
+		}
+
+		List<NetworkInterface> near = new ArrayList<NetworkInterface>();
+		for (NetworkInterface ni : optimizer.getNearInterfaces(this)) {
+			if (isWithinRange(ni) || !hasFixedRange() ||
+					!ni.hasFixedRange()) {
+				near.add(ni);
+			}
+		}
+		this.nearInterfaces = near;
+	}
+
+	/**
+	 * Returns true if the transmit range of this interface can't be
+	 * restored by the activeness checks during an update round
+	 */
+	private boolean hasFixedRange() {
+		return this.transmitRange > 0 && isAlwaysActive();
+	}
+
+	/**
+	 * Returns the interfaces this interface could connect to. If near
+	 * interfaces were found with {@link #findNearInterfaces()}, those are
+	 * returned (only once), otherwise the connectivity optimizer is asked.
+	 * @return The near interfaces
+	 */
+	protected Collection<NetworkInterface> getNearInterfaces() {
+		if (this.nearInterfaces != null) {
+			List<NetworkInterface> near = this.nearInterfaces;
+			this.nearInterfaces = null;
+			return near;
+		}
+		return optimizer.getNearInterfaces(this);
+	}
+
 	/**
 	 * Updates the state of current connections (ie tears down connections
 	 * that are out of range, recalculates transmission speeds etc.).
@@ -514,4 +593,20 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 			". Connections: " +	this.connections;
 	}
 
+
+	/**
+	 * List of connections that counts the changes made to it
+	 */
+	protected static class ConnectionList extends ArrayList<Connection> {
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Returns the number of structural changes (additions and removals)
+		 * made to this list
+		 * @return The number of changes
+		 */
+		public long getVersion() {
+			return this.modCount;
+		}
+	}
 }
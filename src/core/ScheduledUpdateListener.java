@@ -0,0 +1,23 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * Update listener that only needs to be informed about the update rounds
+ * at (or right after) certain simulation times. When event driven time
+ * advance is used (see {@link World#EVENT_DRIVEN_S}), the update rounds
+ * between those times can be skipped. Update listeners that don't implement
+ * this interface are always called on every update interval.
+ */
+public interface ScheduledUpdateListener extends UpdateListener {
+
+	/**
+	 * Returns the simulation time of the next update this listener must be
+	 * informed about, or Double.MAX_VALUE if no more updates are needed.
+	 * @return The next update time of the listener
+	 */
+	public double getNextUpdateTime();
+
+}
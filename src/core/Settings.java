@@ -8,7 +8,6 @@ import java.io.*;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Properties;
 import java.util.Scanner;
 import java.util.Set;
@@ -33,8 +32,6 @@ import util.Range;
  * </P>
  */
 public class Settings {
-	/** properties object where the setting files are read into */
-	protected static Properties props;
 	/** file name of the default settings file ({@value}) */
 	public static final String DEF_SETTINGS_FILE ="default_settings.txt";
 
@@ -49,12 +46,6 @@ public class Settings {
 	 * @see #valueFillString(String) */
 	public static final String FILL_DELIMITER = "%%";
 
-	/** Stream where all read settings are written to */
-	private static PrintStream out = null;
-	private static Set<String> writtenSettings = new HashSet<String>();
-
-	/** run index for run-specific settings */
-	private static int runIndex = 0;
 	private String namespace = null; // namespace to look the settings from
 	private String secondaryNamespace = null;
 	private Stack<String> oldNamespaces;
@@ -95,8 +86,27 @@ public class Settings {
 	 * -1 to disable run indexing
 	 */
 	public static void setRunIndex(int index) {
-		runIndex = index;
-		writtenSettings.clear();
+		SimContext context = SimContext.current();
+		context.runIndex = index;
+		context.writtenSettings.clear();
+	}
+
+	/**
+	 * Returns the properties object where the setting files are read into
+	 * (in the current simulation context)
+	 * @return the properties object or null if settings are not initialized
+	 */
+	protected static Properties getProperties() {
+		return SimContext.current().settings;
+	}
+
+	/**
+	 * Sets the properties object where the setting files are read into
+	 * (in the current simulation context)
+	 * @param props The properties object
+	 */
+	protected static void setProperties(Properties props) {
+		SimContext.current().settings = props;
 	}
 
 	/**
@@ -170,6 +180,7 @@ public class Settings {
 			return null;
 		}
 
+		Properties props = getProperties();
 		if (props.getProperty(getFullPropertyName(setting, false)) != null) {
 			return getFullPropertyName(setting, false);
 		}
@@ -244,7 +255,7 @@ public class Settings {
 	 * @throws SettingsError If loading the settings file(s) didn't succeed
 	 */
 	public static void init(String propFile) throws SettingsError {
-		String outFile;
+		Properties props;
 		try {
 			if (new File(DEF_SETTINGS_FILE).exists()) {
 				Properties defProperties = new Properties();
@@ -261,19 +272,8 @@ public class Settings {
 			throw new SettingsError(e);
 		}
 
-		outFile = props.getProperty(SETTING_OUTPUT_S);
-		if (outFile != null) {
-			if (outFile.trim().length() == 0) {
-				out = System.out;
-			} else {
-				try {
-					out = new PrintStream(new File(outFile));
-				} catch (FileNotFoundException e) {
-					throw new SettingsError("Can't open Settings output file:" +
-							e);
-				}
-			}
-		}
+		setProperties(props);
+		initOutput(props);
 	}
 
 	/**
@@ -288,15 +288,27 @@ public class Settings {
 	 */
 	public static void initFromStream(final InputStream settingsStream)
 	throws SettingsError {
-		props = new Properties();
+		Properties props = new Properties();
 		try {
 			props.load(settingsStream);
 		} catch (IOException e) {
 			throw new SettingsError(e);
 		}
 
+		setProperties(props);
+		initOutput(props);
+	}
+
+	/**
+	 * Opens the settings output stream if it is defined in the given
+	 * properties
+	 * @param props The properties to read the output setting from
+	 * @throws SettingsError If the output file can't be opened
+	 */
+	private static void initOutput(Properties props) throws SettingsError {
 		String outFile = props.getProperty(SETTING_OUTPUT_S);
 		if (outFile != null) {
+			PrintStream out;
 			if (outFile.trim().length() == 0) {
 				out = System.out;
 			} else {
@@ -307,6 +319,7 @@ public class Settings {
 							e);
 				}
 			}
+			SimContext.current().settingsOut = out;
 		}
 	}
 
@@ -319,7 +332,7 @@ public class Settings {
 	 */
 	public static void addSettings(String propFile) throws SettingsError {
 		try {
-			props.load(new FileInputStream(propFile));
+			getProperties().load(new FileInputStream(propFile));
 		} catch (IOException e) {
 			throw new SettingsError(e);
 		}
@@ -330,9 +343,12 @@ public class Settings {
 	 * @param setting The string to write
 	 */
 	private static void outputSetting(String setting) {
+		SimContext context = SimContext.current();
+		PrintStream out = context.settingsOut;
+		Set<String> writtenSettings = context.writtenSettings;
 		if (out != null && !writtenSettings.contains(setting)) {
 			if (writtenSettings.size() == 0) {
-				out.println("# Settings for run " + (runIndex + 1));
+				out.println("# Settings for run " + (context.runIndex + 1));
 			}
 			out.println(setting);
 			writtenSettings.add(setting);
@@ -389,9 +405,10 @@ public class Settings {
 	 */
 	public String getSetting(String name) {
 		String fullPropName;
-		if (props == null) {
+		if (getProperties() == null) {
 			init(null);
 		}
+		Properties props = getProperties();
 		fullPropName = getFullPropertyName(name, false);
 		String value = props.getProperty(fullPropName);
 
@@ -445,6 +462,7 @@ public class Settings {
 		final String RUN_ARRAY_END = "]";
 		final String RUN_ARRAY_DELIM = ";";
 		final int MIN_LENGTH = 3; // minimum run is one value. e.g. "[v]"
+		int runIndex = SimContext.current().runIndex;
 
 		if (!value.startsWith(RUN_ARRAY_START) ||
 			!value.endsWith(RUN_ARRAY_END) ||
@@ -971,7 +989,7 @@ public class Settings {
 	 * @return a String representation of the stored settings
 	 */
 	public String toString() {
-		return props.toString();
+		return getProperties().toString();
 	}
 
 }
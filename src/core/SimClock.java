@@ -8,25 +8,22 @@ package core;
  * Wall clock for checking the simulation time.
  */
 public class SimClock {
-	private static double clockTime = 0.0;
-	private static SimClock clock = null;
+	private double clockTime = 0.0;
 
-	private SimClock() {}
+	SimClock() {}
 
 	static {
+		/* new clocks start from zero; no initial reset needed */
 		DTNSim.registerForReset(SimClock.class.getCanonicalName());
-		reset();
 	}
 
 	/**
 	 * Get the instance of the class that can also change the time.
-	 * @return The instance of this clock
+	 * @return The instance of this clock (of the current simulation
+	 * context)
 	 */
 	public static SimClock getInstance() {
-		if (clock == null) {
-			clock = new SimClock();
-		}
-		return clock;
+		return SimContext.current().clock;
 	}
 
 	/**
@@ -34,7 +31,7 @@ public class SimClock {
 	 * @return Time as a double
 	 */
 	public static double getTime() {
-		return clockTime;
+		return SimContext.current().clock.clockTime;
 	}
 
 	/**
@@ -42,7 +39,7 @@ public class SimClock {
 	 * @return Time as integer
 	 */
 	public static int getIntTime() {
-		return (int)Math.round(clockTime);
+		return (int)Math.round(getTime());
 	}
 
 	/**
@@ -52,7 +49,7 @@ public class SimClock {
 	 * @return The sim time
 	 */
 	public static String getFormattedTime(int decimals) {
-		return String.format("%." + decimals + "f", clockTime);
+		return String.format("%." + decimals + "f", getTime());
 	}
 
 	/**
@@ -80,9 +77,9 @@ public class SimClock {
 	}
 
 	/**
-	 * Resets the static fields of the class
+	 * Resets the time of the clock (of the current simulation context)
 	 */
 	public static void reset() {
-		clockTime = 0;
+		getInstance().clockTime = 0;
 	}
 }
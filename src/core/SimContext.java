@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Container for the state of one simulation run that used to be stored in
+ * static fields (simulation time, settings, scenario, host address and
+ * message id counters, random number generators etc.). Every thread uses
+ * the context that has been bound to it with {@link #enter(SimContext)}, or
+ * the default context if no context has been bound. Normal (GUI and batch)
+ * runs use only the default context, so they work as before; parallel
+ * batch runs (see {@link DTNSim#PARALLEL_MODE_FLAG}) bind a new context to
+ * each worker thread so that simulations can run concurrently in the same
+ * JVM.
+ * <P>Core classes store their state in the fields of this class; other
+ * modules can store their per-run state using
+ * {@link #getState(Object)} and {@link #putState(Object, Object)}.
+ * Read-only data that is the same for all runs (e.g., maps and social
+ * graphs) can still be stored in static fields and shared between the
+ * runs.</P>
+ */
+public class SimContext {
+	/** the context used by threads that haven't entered any context */
+	private static final SimContext DEFAULT_CONTEXT = new SimContext();
+	/** context of the current thread (if entered) */
+	private static final ThreadLocal<SimContext> threadContext =
+		new ThreadLocal<SimContext>();
+	/** has any thread entered its own context */
+	private static volatile boolean threadContextsUsed = false;
+
+	/** simulation clock of the run */
+	final SimClock clock;
+	/** properties object where the setting files are read into */
+	Properties settings;
+	/** Stream where all read settings are written to */
+	PrintStream settingsOut;
+	/** Settings that have been written to the settings output */
+	final Set<String> writtenSettings;
+	/** run index for run-specific settings */
+	int runIndex;
+	/** the scenario of the run */
+	SimScenario scenario;
+	/** the (latest created) world of the run */
+	World world;
+	/** address of the next created host */
+	int nextAddress;
+	/** unique id of the next created message */
+	int nextMessageId;
+	/** numbers of the message IDs used in the run (see
+	 * {@link Message#getIdNumber()}) */
+	final Map<String, Integer> messageIdNumbers;
+	/** random number generator for network interfaces */
+	Random interfaceRng;
+
+	/** per-run state of other modules */
+	private final Map<Object, Object> moduleStates;
+
+	/**
+	 * Creates a new context with the initial state of a simulation run
+	 */
+	public SimContext() {
+		this.clock = new SimClock();
+		this.writtenSettings = new HashSet<String>();
+		this.runIndex = 0;
+		this.nextAddress = 0;
+		this.nextMessageId = 0;
+		this.messageIdNumbers = new HashMap<String, Integer>();
+		this.interfaceRng = new Random(0);
+		this.moduleStates = new HashMap<Object, Object>();
+	}
+
+	/**
+	 * Returns the context of the current thread
+	 * @return the context bound to the current thread or the default
+	 * context if no context has been bound
+	 */
+	public static SimContext current() {
+		if (threadContextsUsed) {
+			SimContext c = threadContext.get();
+			if (c != null) {
+				return c;
+			}
+		}
+		return DEFAULT_CONTEXT;
+	}
+
+	/**
+	 * Binds a context to the current thread. All the simulator calls made
+	 * by this thread after this use the given context.
+	 * @param context The context to bind or null to return to the default
+	 * context
+	 */
+	public static void enter(SimContext context) {
+		if (context == null) {
+			threadContext.remove();
+			return;
+		}
+		threadContextsUsed = true;
+		threadContext.set(context);
+	}
+
+	/**
+	 * Returns a module's per-run state object
+	 * @param key The key of the state (usually the module class)
+	 * @return The state object or null if no state has been stored for the
+	 * key in this context
+	 */
+	public Object getState(Object key) {
+		return this.moduleStates.get(key);
+	}
+
+	/**
+	 * Stores a module's per-run state object
+	 * @param key The key of the state (usually the module class)
+	 * @param state The state object
+	 */
+	public void putState(Object key, Object state) {
+		this.moduleStates.put(key, state);
+	}
+
+	/**
+	 * Returns the next value of a module's per-run id counter. Counters
+	 * start from zero and can be reset by storing null state for the key.
+	 * @param key The key of the counter (usually the module class)
+	 * @return The next id
+	 */
+	public int nextId(Object key) {
+		int[] counter = (int[])this.moduleStates.get(key);
+		if (counter == null) {
+			counter = new int[1];
+			this.moduleStates.put(key, counter);
+		}
+		return counter[0]++;
+	}
+}
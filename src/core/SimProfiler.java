@@ -0,0 +1,436 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Self-profiling of a simulation run. When enabled, the real (wall clock)
+ * time spent in the phases of the world update is accumulated, as well as
+ * the router update time of every router class, and the transfers and
+ * message evictions are counted. The allocation rate of the simulation
+ * thread and the depth of the event queues are sampled too. There is one
+ * profiler per simulation run (see {@link SimContext}), so concurrent runs
+ * are profiled separately.
+ * <P>The phases are measured where the world and the hosts do them:
+ * <UL>
+ * <LI>events: processing of the external events</LI>
+ * <LI>movement: moving the hosts</LI>
+ * <LI>connectivity: updating the network interfaces (connections)</LI>
+ * <LI>routing: updating the routers (including the message and connection
+ * listeners they call)</LI>
+ * <LI>listeners: calling the update listeners (e.g., reports)</LI>
+ * </UL>
+ * The text UI prints a sample of the profile as a JSON line every
+ * {@link #INTERVAL_S} seconds and {@link report.ProfilingReport} writes a
+ * summary at the end of the run. When the profiler is disabled, the only
+ * cost is checking a flag.</P>
+ */
+public class SimProfiler {
+	/** Profiler settings namespace ({@value}) */
+	public static final String PROFILER_NS = "Profiler";
+	/** Enable profiling -setting id ({@value}). Boolean. Default = false.
+	 * {@link report.ProfilingReport} enables profiling too. */
+	public static final String ENABLED_S = "enabled";
+	/** Sample interval -setting id ({@value}). How often (real seconds)
+	 * the text UI prints a sample line of the profile. Zero disables the
+	 * sample lines. Default = {@value #DEF_INTERVAL}. */
+	public static final String INTERVAL_S = "interval";
+	/** Default sample interval (seconds) */
+	public static final double DEF_INTERVAL = 60;
+
+	/** Prefix of the sample lines */
+	public static final String SAMPLE_PREFIX = "profile: ";
+
+	/** Phases of the simulation whose time is measured */
+	public enum Phase {
+		EVENTS, MOVEMENT, CONNECTIVITY, ROUTING, LISTENERS;
+
+		/**
+		 * Returns the name of the phase in the output
+		 * @return the name of the phase
+		 */
+		public String getName() {
+			return name().toLowerCase();
+		}
+	}
+
+	/** Smallest return code counted separately */
+	private static final int MIN_CODE = -99;
+	/** Largest return code counted separately */
+	private static final int MAX_CODE = 99;
+
+	private boolean enabled;
+	private final long sampleInterval;
+	private final long[] phaseTimes;
+	private final List<Class<?>> routerClasses;
+	private long[] routerTimes;
+
+	private long transfersStarted;
+	private long transfersAborted;
+	private long messagesEvicted;
+	/** rejected transfers by return code (offset by MIN_CODE) */
+	private final long[] transfersRejected;
+
+	/** bean for the allocated bytes of the thread (or null) */
+	private final com.sun.management.ThreadMXBean threadBean;
+	private final long startTime;
+	private final long startAllocated;
+	private long lastSampleTime;
+	private long lastSampleAllocated;
+	private int eventQueueDepth;
+	private int maxEventQueueDepth;
+
+	static {
+		DTNSim.registerForReset(SimProfiler.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Resets the profiler of the current simulation context
+	 */
+	public static void reset() {
+		SimContext.current().putState(SimProfiler.class, null);
+	}
+
+	/**
+	 * Returns the profiler of the current simulation run. The profiler is
+	 * created (based on the settings) on the first call of a run.
+	 * @return the profiler of the current simulation run
+	 */
+	public static SimProfiler getInstance() {
+		SimContext context = SimContext.current();
+		SimProfiler p = (SimProfiler)context.getState(SimProfiler.class);
+		if (p == null) {
+			p = new SimProfiler(new Settings(PROFILER_NS));
+			context.putState(SimProfiler.class, p);
+		}
+		return p;
+	}
+
+	private SimProfiler(Settings s) {
+		this.enabled = s.getBoolean(ENABLED_S, false);
+		double interval = s.contains(INTERVAL_S) ?
+				s.getDouble(INTERVAL_S) : DEF_INTERVAL;
+		this.sampleInterval = (long)(interval * 1e9);
+		this.phaseTimes = new long[Phase.values().length];
+		this.routerClasses = new ArrayList<Class<?>>();
+		this.routerTimes = new long[0];
+		this.transfersRejected = new long[MAX_CODE - MIN_CODE + 1];
+
+		java.lang.management.ThreadMXBean bean =
+			ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean &&
+				((com.sun.management.ThreadMXBean)bean).
+				isThreadAllocatedMemoryEnabled()) {
+			this.threadBean = (com.sun.management.ThreadMXBean)bean;
+		}
+		else {
+			this.threadBean = null;
+		}
+		this.startTime = System.nanoTime();
+		this.startAllocated = getAllocatedBytes();
+		this.lastSampleTime = startTime;
+		this.lastSampleAllocated = startAllocated;
+	}
+
+	/**
+	 * Returns true if profiling is enabled
+	 * @return true if profiling is enabled
+	 */
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	/**
+	 * Enables or disables profiling
+	 * @param enabled True to enable profiling
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Returns the start time of a measurement
+	 * @return The current time (ns) or 0 if profiling is disabled
+	 */
+	public long start() {
+		return (enabled ? System.nanoTime() : 0);
+	}
+
+	/**
+	 * Ends the measurement of a phase
+	 * @param phase The phase
+	 * @param start The start time of the measurement (from {@link #start()})
+	 */
+	public void end(Phase phase, long start) {
+		if (enabled) {
+			phaseTimes[phase.ordinal()] += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Returns the slot of a router class for {@link #endRouter(int, long)}
+	 * @param routerClass The class of the router
+	 * @return The slot of the class
+	 */
+	public int getRouterSlot(Class<?> routerClass) {
+		int slot = routerClasses.indexOf(routerClass);
+		if (slot < 0) {
+			slot = routerClasses.size();
+			routerClasses.add(routerClass);
+			long[] times = new long[slot + 1];
+			System.arraycopy(routerTimes, 0, times, 0, routerTimes.length);
+			routerTimes = times;
+		}
+		return slot;
+	}
+
+	/**
+	 * Ends the measurement of a router update. The time is added to the
+	 * routing phase too.
+	 * @param slot The slot of the router's class
+	 * @param start The start time of the measurement (from {@link #start()})
+	 */
+	public void endRouter(int slot, long start) {
+		if (enabled) {
+			long time = System.nanoTime() - start;
+			routerTimes[slot] += time;
+			phaseTimes[Phase.ROUTING.ordinal()] += time;
+		}
+	}
+
+	/**
+	 * Counts the result of a transfer start attempt
+	 * @param returnCode The return code of the attempt (see
+	 * {@link routing.MessageRouter#RCV_OK} etc.)
+	 */
+	public void transferStartResult(int returnCode) {
+		if (!enabled) {
+			return;
+		}
+		if (returnCode == routing.MessageRouter.RCV_OK) {
+			transfersStarted++;
+		}
+		else {
+			int code = Math.max(MIN_CODE, Math.min(MAX_CODE, returnCode));
+			transfersRejected[code - MIN_CODE]++;
+		}
+	}
+
+	/**
+	 * Counts an aborted transfer
+	 */
+	public void transferAborted() {
+		if (enabled) {
+			transfersAborted++;
+		}
+	}
+
+	/**
+	 * Counts a message that was dropped from a buffer
+	 */
+	public void messageEvicted() {
+		if (enabled) {
+			messagesEvicted++;
+		}
+	}
+
+	/**
+	 * Records the current depth of the event queues
+	 * @param depth The number of pending events
+	 */
+	public void setEventQueueDepth(int depth) {
+		eventQueueDepth = depth;
+		maxEventQueueDepth = Math.max(maxEventQueueDepth, depth);
+	}
+
+	/**
+	 * Returns the number of bytes the current thread has allocated
+	 * @return The number of bytes or -1 if it is not available
+	 */
+	private long getAllocatedBytes() {
+		if (threadBean == null) {
+			return -1;
+		}
+		return threadBean.getThreadAllocatedBytes(
+				Thread.currentThread().getId());
+	}
+
+	/**
+	 * Returns true if it is time to take a new sample
+	 * @return true if profiling is enabled and the sample interval has
+	 * passed since the previous sample
+	 */
+	public boolean isSampleDue() {
+		return enabled && sampleInterval > 0 &&
+			System.nanoTime() - lastSampleTime >= sampleInterval;
+	}
+
+	/**
+	 * Takes a sample of the profile. The sample contains the totals since
+	 * the start of the run and the allocation rate since the previous
+	 * sample.
+	 * @return The sample as a JSON object (on one line)
+	 */
+	public String sample() {
+		long now = System.nanoTime();
+		long allocated = getAllocatedBytes();
+		double rate = -1;
+		if (allocated >= 0 && now > lastSampleTime) {
+			rate = (allocated - lastSampleAllocated) * 1e9 /
+				(now - lastSampleTime);
+		}
+		lastSampleTime = now;
+		lastSampleAllocated = allocated;
+
+		StringBuilder sb = new StringBuilder("{");
+		sb.append("\"realTime\":").append(fmt((now - startTime) / 1e9));
+		sb.append(",\"simTime\":").append(fmt(SimClock.getTime()));
+		sb.append(",\"phases\":{");
+		for (Phase p : Phase.values()) {
+			if (p.ordinal() > 0) {
+				sb.append(',');
+			}
+			sb.append('"').append(p.getName()).append("\":").append(
+					fmt(getPhaseTime(p)));
+		}
+		sb.append("},\"routers\":{");
+		for (int i=0; i<routerClasses.size(); i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append('"').append(routerClasses.get(i).getSimpleName()).
+				append("\":").append(fmt(routerTimes[i] / 1e9));
+		}
+		sb.append("},\"transfersStarted\":").append(transfersStarted);
+		sb.append(",\"transfersRejected\":{");
+		List<Integer> codes = getRejectionCodes();
+		for (int i=0; i<codes.size(); i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append('"').append(codes.get(i)).append("\":").append(
+					getTransfersRejected(codes.get(i)));
+		}
+		sb.append("},\"transfersAborted\":").append(transfersAborted);
+		sb.append(",\"messagesEvicted\":").append(messagesEvicted);
+		sb.append(",\"allocatedBytes\":").append(allocated < 0 ? -1 :
+			allocated - startAllocated);
+		sb.append(",\"allocationRate\":").append(fmt(rate));
+		sb.append(",\"eventQueueDepth\":").append(eventQueueDepth);
+		sb.append('}');
+		return sb.toString();
+	}
+
+	private static String fmt(double value) {
+		return String.format("%.3f", value);
+	}
+
+	/**
+	 * Returns the accumulated time of a phase
+	 * @param phase The phase
+	 * @return The time (seconds)
+	 */
+	public double getPhaseTime(Phase phase) {
+		return phaseTimes[phase.ordinal()] / 1e9;
+	}
+
+	/**
+	 * Returns the router classes whose update times have been measured
+	 * @return The router classes (in the order of their first updates)
+	 */
+	public List<Class<?>> getRouterClasses() {
+		return new ArrayList<Class<?>>(routerClasses);
+	}
+
+	/**
+	 * Returns the accumulated update time of a router class
+	 * @param routerClass The router class
+	 * @return The time (seconds)
+	 */
+	public double getRouterTime(Class<?> routerClass) {
+		int slot = routerClasses.indexOf(routerClass);
+		return (slot < 0 ? 0 : routerTimes[slot] / 1e9);
+	}
+
+	/**
+	 * Returns the number of started transfers
+	 * @return the number of started transfers
+	 */
+	public long getTransfersStarted() {
+		return transfersStarted;
+	}
+
+	/**
+	 * Returns the number of transfer start attempts that returned the given
+	 * (non-OK) return code
+	 * @param returnCode The return code (codes below {@value #MIN_CODE} and
+	 * above {@value #MAX_CODE} are counted with them)
+	 * @return The number of attempts
+	 */
+	public long getTransfersRejected(int returnCode) {
+		int code = Math.max(MIN_CODE, Math.min(MAX_CODE, returnCode));
+		return transfersRejected[code - MIN_CODE];
+	}
+
+	/**
+	 * Returns the return codes that have rejected transfers
+	 * @return The return codes in ascending order
+	 */
+	public List<Integer> getRejectionCodes() {
+		List<Integer> codes = new ArrayList<Integer>();
+		for (int i=0; i<transfersRejected.length; i++) {
+			if (transfersRejected[i] > 0) {
+				codes.add(i + MIN_CODE);
+			}
+		}
+		return codes;
+	}
+
+	/**
+	 * Returns the number of aborted transfers
+	 * @return the number of aborted transfers
+	 */
+	public long getTransfersAborted() {
+		return transfersAborted;
+	}
+
+	/**
+	 * Returns the number of messages dropped from buffers
+	 * @return the number of dropped messages
+	 */
+	public long getMessagesEvicted() {
+		return messagesEvicted;
+	}
+
+	/**
+	 * Returns the number of bytes the simulation thread has allocated since
+	 * the start of the run
+	 * @return The number of bytes or -1 if it is not available
+	 */
+	public long getTotalAllocatedBytes() {
+		long allocated = getAllocatedBytes();
+		return (allocated < 0 ? -1 : allocated - startAllocated);
+	}
+
+	/**
+	 * Returns the real time since the start of the run
+	 * @return The time (seconds)
+	 */
+	public double getRealTime() {
+		return (System.nanoTime() - startTime) / 1e9;
+	}
+
+	/**
+	 * Returns the largest recorded depth of the event queues
+	 * @return The largest number of pending events
+	 */
+	public int getMaxEventQueueDepth() {
+		return maxEventQueueDepth;
+	}
+}
@@ -23,7 +23,6 @@ import routing.MessageRouter;
 public class SimScenario implements Serializable {
 
 	/** a way to get a hold of this... */
-	private static SimScenario myinstance=null;
 
 	/** namespace of scenario settings ({@value})*/
 	public static final String SCENARIO_NS = "Scenario";
@@ -124,7 +123,8 @@ public class SimScenario implements Serializable {
 	}
 
 	public static void reset() {
-		myinstance = null;
+		SimContext.current().scenario = null;
+		SimContext.current().world = null;
 	}
 
 	/**
@@ -170,10 +170,11 @@ public class SimScenario implements Serializable {
 	 * Returns the SimScenario instance and creates one if it doesn't exist yet
 	 */
 	public static SimScenario getInstance() {
-		if (myinstance == null) {
-			myinstance = new SimScenario();
+		SimContext context = SimContext.current();
+		if (context.scenario == null) {
+			context.scenario = new SimScenario();
 		}
-		return myinstance;
+		return context.scenario;
 	}
 
 
@@ -4,14 +4,18 @@
  */
 package core;
 
+import input.EventCalendar;
 import input.EventQueue;
 import input.ExternalEvent;
+import input.ExternalEventsQueue;
 import input.ScheduledUpdatesQueue;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * World contains all the nodes and is responsible for updating their
@@ -48,13 +52,57 @@ public class World {
 	 */
 	public static final String SIMULATE_CON_ONCE_S = "simulateConnectionsOnce";
 
+	/**
+	 * Event driven time advance -setting id ({@value}). Boolean (true/false)
+	 * variable. If enabled and connections are not simulated, the update
+	 * rounds where nothing would happen are skipped: after an update round
+	 * that didn't change any message buffers, the clock is advanced directly
+	 * to the update interval of the next external event, host's next timed
+	 * action (see {@link DTNHost#getNextUpdateTime()}) or update listener's
+	 * next sampling time (see {@link ScheduledUpdateListener}), whichever
+	 * comes first. Hosts are moved for the whole skipped time at once.
+	 * Default = false.
+	 */
+	public static final String EVENT_DRIVEN_S = "eventDriven";
+
+	/**
+	 * Update only changed hosts after events -setting id ({@value}). Boolean
+	 * (true/false) variable. If enabled, after every external event only the
+	 * hosts whose connections or message buffers (or the buffers of their
+	 * peers) have changed since their last update and the hosts whose next
+	 * update time has come are updated instead of all hosts. The hosts are
+	 * updated in the same order as when all hosts are updated, so the
+	 * results are the same. All hosts are still updated at the end of every
+	 * update interval and on scheduled updates. Default = false.
+	 */
+	public static final String UPDATE_CHANGED_ONLY_S = "updateChangedHostsOnly";
+
+	/**
+	 * Parallel update threads -setting id ({@value}). Integer valued. If
+	 * positive, every host update round is done in two phases. In the first
+	 * phase, this many threads move the hosts (those that only move towards
+	 * their current destination; the rest ask their movement model for a
+	 * new waypoint one by one in address order) and find the network
+	 * interfaces that are near each other after all hosts have moved. In
+	 * the second phase, the hosts create and tear down their connections
+	 * and update their routers one by one in the (possibly randomized)
+	 * update order, so conflicting transfers are resolved in the same order
+	 * as without the setting. The results depend on whether the setting is
+	 * used but not on the number of threads. Default = 0 (single threaded
+	 * updates).
+	 */
+	public static final String PARALLEL_THREADS_S = "parallelThreads";
+	/** Number of indexes a parallel update task handles without splitting */
+	private static final int PARALLEL_GRAIN = 64;
+
 	private int sizeX;
 	private int sizeY;
-	private List<EventQueue> eventQueues;
 	private double updateInterval;
 	private SimClock simClock;
 	private double nextQueueEventTime;
 	private EventQueue nextEventQueue;
+	/** calendar of the scheduled updates and all external event queues */
+	private EventCalendar eventCalendar;
 	/** list of nodes; nodes are indexed by their network address */
 	private List<DTNHost> hosts;
 	private boolean simulateConnections;
@@ -71,6 +119,26 @@ public class World {
 	private boolean realtimeSimulation;
 	private long simStartRealtime;
 
+	/** is event driven time advance enabled */
+	private boolean eventDriven;
+	/** end time of the simulation (used only in event driven mode) */
+	private double endTime;
+	/** did the last update round leave all message buffers untouched */
+	private boolean isQuiescent;
+
+	/** are only the changed hosts updated after events */
+	private boolean updateChangedOnly;
+
+	/** thread pool of the parallel update phase (or null) */
+	private ForkJoinPool parallelPool;
+	/** hosts whose moves are done in parallel (reused between updates) */
+	private List<DTNHost> deferredMoves;
+	/** interfaces whose near interfaces are searched in parallel */
+	private List<NetworkInterface> nearSearches;
+
+	/** profiler of the simulation run */
+	private SimProfiler profiler;
+
 	/**
 	 * Constructor.
 	 */
@@ -83,12 +151,19 @@ public class World {
 		this.updateInterval = updateInterval;
 		this.updateListeners = updateListeners;
 		this.simulateConnections = simulateConnections;
-		this.eventQueues = eventQueues;
 
 		this.simClock = SimClock.getInstance();
 		this.scheduledUpdates = new ScheduledUpdatesQueue();
 		this.isCancelled = false;
 
+		/* scheduled updates first, then external events in the given order */
+		List<EventQueue> calendarQueues = new ArrayList<EventQueue>();
+		calendarQueues.add(this.scheduledUpdates);
+		calendarQueues.addAll(eventQueues);
+		this.eventCalendar = new EventCalendar(calendarQueues);
+		SimContext.current().world = this;
+		this.profiler = SimProfiler.getInstance();
+
 		this.simStartRealtime = -1;
 		
 		setNextEventQueue();
@@ -107,6 +182,25 @@ public class World {
 		
 		this.realtimeSimulation = s.getBoolean(REALTIME_SIM_S ,false);
 
+		this.eventDriven = s.getBoolean(EVENT_DRIVEN_S, false);
+		this.isQuiescent = false;
+		if (eventDriven) {
+			Settings scen = new Settings(SimScenario.SCENARIO_NS);
+			this.endTime = scen.getDouble(SimScenario.END_TIME_S);
+		}
+
+		this.updateChangedOnly = s.getBoolean(UPDATE_CHANGED_ONLY_S, false);
+
+		int nrofThreads = s.getInt(PARALLEL_THREADS_S, 0);
+		if (nrofThreads > 0) {
+			this.parallelPool = new ForkJoinPool(nrofThreads);
+			this.deferredMoves = new ArrayList<DTNHost>();
+			this.nearSearches = new ArrayList<NetworkInterface>();
+		}
+		else {
+			this.parallelPool = null;
+		}
+
 		if(randomizeUpdates) {
 			// creates the update order array that can be shuffled
 			this.updateOrder = new ArrayList<DTNHost>(this.hosts);
@@ -139,23 +233,12 @@ public class World {
 	}
 
 	/**
-	 * Goes through all event Queues and sets the
-	 * event queue that has the next event.
+	 * Sets the event queue that has the next event (and the time of that
+	 * event) based on the event calendar
 	 */
 	public void setNextEventQueue() {
-		EventQueue nextQueue = scheduledUpdates;
-		double earliest = nextQueue.nextEventsTime();
-
-		/* find the queue that has the next event */
-		for (EventQueue eq : eventQueues) {
-			if (eq.nextEventsTime() < earliest){
-				nextQueue = eq;
-				earliest = eq.nextEventsTime();
-			}
-		}
-
-		this.nextEventQueue = nextQueue;
-		this.nextQueueEventTime = earliest;
+		this.nextEventQueue = eventCalendar.nextEventQueue();
+		this.nextQueueEventTime = eventCalendar.nextEventsTime();
 	}
 
 	/**
@@ -164,6 +247,14 @@ public class World {
 	 * this method is called and after one update interval.
 	 */
 	public void update () {
+		/* pick up events that queues got outside the calendar's control
+		 * (e.g., from external connections) */
+		eventCalendar.updateAll();
+
+		if (eventDriven) {
+			skipIdleIntervals();
+		}
+
 		double runUntil = SimClock.getTime() + this.updateInterval;
 		
 		if (realtimeSimulation) {
@@ -188,22 +279,169 @@ public class World {
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
 			simClock.setTime(this.nextQueueEventTime);
-			ExternalEvent ee = this.nextEventQueue.nextEvent();
+			ExternalEvent ee = this.eventCalendar.nextEvent();
+			long start = profiler.start();
 			ee.processEvent(this);
-			updateHosts(); // update all hosts after every event
+			profiler.end(SimProfiler.Phase.EVENTS, start);
+			if (this.updateChangedOnly &&
+					this.nextEventQueue != this.scheduledUpdates) {
+				updateChangedHosts();
+			}
+			else {
+				updateHosts(); // update all hosts after every event
+			}
 			setNextEventQueue();
 		}
 
 		moveHosts(this.updateInterval);
 		simClock.setTime(runUntil);
 
-		updateHosts();
+		if (eventDriven) {
+			long version = getBufferVersion();
+			updateHosts();
+			this.isQuiescent = (version == getBufferVersion());
+		}
+		else {
+			updateHosts();
+		}
 
 		/* inform all update listeners */
+		long start = profiler.start();
 		for (UpdateListener ul : this.updateListeners) {
 			ul.updated(this.hosts);
 		}
-		
+		profiler.end(SimProfiler.Phase.LISTENERS, start);
+
+		if (profiler.isEnabled()) {
+			profiler.setEventQueueDepth(getEventQueueDepth());
+		}
+	}
+
+	/**
+	 * Returns the number of pending events in the event queues. Only the
+	 * events that the queues have buffered are counted (e.g., for external
+	 * events files only the preloaded events); event generators are
+	 * counted as one pending event.
+	 * @return The number of pending events
+	 */
+	private int getEventQueueDepth() {
+		int depth = 0;
+		for (EventQueue q : this.eventCalendar.getQueues()) {
+			if (q instanceof ScheduledUpdatesQueue) {
+				depth += ((ScheduledUpdatesQueue)q).size();
+			}
+			else if (q instanceof ExternalEventsQueue) {
+				depth += ((ExternalEventsQueue)q).eventsLeftInBuffer();
+			}
+			else if (q.nextEventsTime() < Double.MAX_VALUE) {
+				depth++;
+			}
+		}
+		return depth;
+	}
+
+	/**
+	 * Advances the simulation clock over the update intervals where nothing
+	 * would happen. Skipping is done only if the previous update round did
+	 * not change any message buffers (i.e., the hosts would do the same
+	 * again in the next round) and connections are not simulated. The
+	 * update interval that contains the next event or timed action is left
+	 * for the normal update round. The clock is advanced in the same steps
+	 * as without skipping (and the update order is shuffled for every
+	 * skipped round) so that the results are exactly the same.
+	 */
+	private void skipIdleIntervals() {
+		if (!this.isQuiescent || this.simulateConnections) {
+			return;
+		}
+
+		setNextEventQueue();
+		double wakeUp = Math.min(this.nextQueueEventTime, getNextUpdateTime());
+		double now = SimClock.getTime();
+		double skipUntil = now;
+
+		while (skipUntil + updateInterval < wakeUp &&
+				skipUntil + updateInterval < endTime) {
+			skipUntil += updateInterval;
+			if (this.updateOrder != null) {
+				/* keep the update order the same as without skipping */
+				Collections.shuffle(this.updateOrder,
+						getUpdateOrderRng(skipUntil));
+			}
+		}
+
+		if (skipUntil > now) {
+			moveHosts(skipUntil - now);
+			simClock.setTime(skipUntil);
+		}
+	}
+
+	/**
+	 * Returns the earliest time when any of the hosts or update listeners
+	 * needs an update round even if no events happen before that.
+	 * @return The next required update time
+	 */
+	private double getNextUpdateTime() {
+		double now = SimClock.getTime();
+		double next = Double.MAX_VALUE;
+
+		for (UpdateListener ul : this.updateListeners) {
+			if (!(ul instanceof ScheduledUpdateListener)) {
+				return now; // wants to know about every update
+			}
+			next = Math.min(next,
+					((ScheduledUpdateListener)ul).getNextUpdateTime());
+		}
+
+		for (int i=0, n = hosts.size(); i < n && next > now; i++) {
+			next = Math.min(next, hosts.get(i).getNextUpdateTime());
+		}
+
+		return next;
+	}
+
+	/**
+	 * Returns the sum of all hosts' buffer version counters
+	 * @return the sum of all hosts' buffer version counters
+	 * @see routing.MessageRouter#getBufferVersion()
+	 */
+	private long getBufferVersion() {
+		long version = 0;
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			version += hosts.get(i).getRouter().getBufferVersion();
+		}
+		return version;
+	}
+
+	/**
+	 * Updates the hosts that could act differently than in their previous
+	 * update: the hosts whose connections or message buffers (or the
+	 * buffers of the hosts they are connected to) have changed since their
+	 * previous update, including the changes made by the hosts updated
+	 * before them on this round, and the hosts whose next update time has
+	 * come (see {@link DTNHost#getNextUpdateTime()}). The hosts are gone
+	 * through in the same order as on a round that updates all hosts, so
+	 * the results are the same as when all hosts are updated.
+	 */
+	private void updateChangedHosts() {
+		double now = SimClock.getTime();
+		List<DTNHost> order = this.hosts;
+		if (this.updateOrder != null) {
+			Collections.shuffle(this.updateOrder, getUpdateOrderRng(now));
+			order = this.updateOrder;
+		}
+
+		findNearInterfaces(order);
+		for (int i=0, n = order.size(); i < n; i++) {
+			if (this.isCancelled) {
+				break;
+			}
+			DTNHost host = order.get(i);
+			if (host.isStateChanged() || host.getNextUpdateTime() <= now) {
+				host.markStateSeen();
+				host.update(simulateConnections);
+			}
+		}
 	}
 
 	/**
@@ -213,23 +451,25 @@ public class World {
 	 */
 	private void updateHosts() {
 		if (this.updateOrder == null) { // randomizing is off
+			findNearInterfaces(this.hosts);
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
 				}
-				hosts.get(i).update(simulateConnections);
+				updateHost(hosts.get(i));
 			}
 		}
 		else { // update order randomizing is on
 			assert this.updateOrder.size() == this.hosts.size() :
 				"Nrof hosts has changed unexpectedly";
-			Random rng = new Random(SimClock.getIntTime());
-			Collections.shuffle(this.updateOrder, rng);
+			Collections.shuffle(this.updateOrder,
+					getUpdateOrderRng(SimClock.getTime()));
+			findNearInterfaces(this.updateOrder);
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
 				}
-				this.updateOrder.get(i).update(simulateConnections);
+				updateHost(this.updateOrder.get(i));
 			}
 		}
 
@@ -238,14 +478,186 @@ public class World {
 		}
 	}
 
+	/**
+	 * Updates a host on a round that updates all hosts
+	 * @param host The host to update
+	 */
+	private void updateHost(DTNHost host) {
+		if (this.updateChangedOnly) {
+			host.markStateSeen();
+		}
+		host.update(simulateConnections);
+	}
+
+	/**
+	 * Returns the random number generator that shuffles the update order of
+	 * the update round at the given time. All update rounds (also the
+	 * skipped ones) must use this so that the update orders are the same
+	 * in all update modes.
+	 * @param time The simulation time of the update round
+	 * @return The random number generator
+	 */
+	private static Random getUpdateOrderRng(double time) {
+		return new Random((int)Math.round(time));
+	}
+
 	/**
 	 * Moves all hosts in the world for a given amount of time
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
+		long start = profiler.start();
+		if (this.parallelPool != null) {
+			moveHostsInParallel(timeIncrement);
+		}
+		else {
+			for (int i=0,n = hosts.size(); i<n; i++) {
+				DTNHost host = hosts.get(i);
+				host.move(timeIncrement);
+			}
+		}
+		profiler.end(SimProfiler.Phase.MOVEMENT, start);
+	}
+
+	/**
+	 * Moves all hosts in the world for a given amount of time using the
+	 * parallel update threads. Hosts that need a new waypoint are moved
+	 * first one by one in address order (since movement models and movement
+	 * listeners are shared) and the rest are then moved in parallel.
+	 * @param timeIncrement The time how long all nodes should move
+	 */
+	private void moveHostsInParallel(final double timeIncrement) {
+		final List<DTNHost> deferred = this.deferredMoves;
 		for (int i=0,n = hosts.size(); i<n; i++) {
 			DTNHost host = hosts.get(i);
-			host.move(timeIncrement);
+			if (host.moveOrDefer(timeIncrement)) {
+				deferred.add(host);
+			}
+		}
+
+		runInParallel(deferred.size(), new ParallelLoopBody() {
+			public void run(int index) {
+				deferred.get(index).moveTowardsDestination(timeIncrement);
+			}
+		});
+		deferred.clear();
+	}
+
+	/**
+	 * Finds the near interfaces of all the given hosts' network interfaces
+	 * using the parallel update threads (if parallel updates are enabled
+	 * and connections are simulated). The locations of the interfaces in
+	 * the connectivity optimizers are updated first in the given order.
+	 * @param hostList The hosts that are going to be updated
+	 * @see NetworkInterface#findNearInterfaces()
+	 */
+	private void findNearInterfaces(List<DTNHost> hostList) {
+		if (this.parallelPool == null || !simulateConnections) {
+			return;
+		}
+
+		long start = profiler.start();
+		final List<NetworkInterface> interfaces = this.nearSearches;
+		for (int i=0, n = hostList.size(); i < n; i++) {
+			for (NetworkInterface ni : hostList.get(i).getInterfaces()) {
+				ni.updateOptimizerLocation();
+				interfaces.add(ni);
+			}
+		}
+
+		runInParallel(interfaces.size(), new ParallelLoopBody() {
+			public void run(int index) {
+				interfaces.get(index).findNearInterfaces();
+			}
+		});
+		interfaces.clear();
+		profiler.end(SimProfiler.Phase.CONNECTIVITY, start);
+	}
+
+	/**
+	 * Runs a loop body for indexes 0...(count-1) in the parallel update
+	 * thread pool and waits until all of them are done. The bodies must be
+	 * independent of each other, so the order they are run in doesn't
+	 * matter.
+	 * @param count Number of indexes
+	 * @param body The loop body
+	 */
+	private void runInParallel(int count, ParallelLoopBody body) {
+		if (count == 0) {
+			return;
+		}
+		this.parallelPool.invoke(new ParallelLoopTask(SimContext.current(),
+				body, 0, count));
+	}
+
+	/**
+	 * Body of a loop that is run in parallel
+	 */
+	private interface ParallelLoopBody {
+		/**
+		 * Runs the body for one index
+		 * @param index The index
+		 */
+		public void run(int index);
+	}
+
+	/**
+	 * Fork/join task that runs a loop body for a range of indexes. Ranges
+	 * larger than {@link World#PARALLEL_GRAIN} are split in halves. The
+	 * task runs in the simulation context of the thread that created it.
+	 */
+	private static class ParallelLoopTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final SimContext context;
+		private final ParallelLoopBody body;
+		private final int from;
+		private final int to;
+
+		public ParallelLoopTask(SimContext context, ParallelLoopBody body,
+				int from, int to) {
+			this.context = context;
+			this.body = body;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > PARALLEL_GRAIN) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ParallelLoopTask(context, body, from, middle),
+						new ParallelLoopTask(context, body, middle, to));
+				return;
+			}
+
+			/* the task may also be run by the thread that invoked it */
+			SimContext previous = SimContext.current();
+			SimContext.enter(context);
+			try {
+				for (int i = from; i < to; i++) {
+					body.run(i);
+				}
+			} finally {
+				SimContext.enter(previous);
+			}
+		}
+	}
+
+	/**
+	 * Ends the simulation: closes the readers of the external events queues
+	 * so that no more events are read. Must be called also when the
+	 * simulation ends before all the events have been read (e.g., the
+	 * background thread of a prefetching reader stops only when the reader
+	 * is closed). Also shuts down the threads of the parallel updates.
+	 */
+	public void done() {
+		for (EventQueue q : this.eventCalendar.getQueues()) {
+			if (q instanceof ExternalEventsQueue) {
+				((ExternalEventsQueue)q).close();
+			}
+		}
+		if (this.parallelPool != null) {
+			this.parallelPool.shutdown();
 		}
 	}
 
@@ -305,5 +717,22 @@ public class World {
 	 */
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
+		eventCalendar.update(scheduledUpdates);
+	}
+
+	/**
+	 * Schedules an update request to all nodes of the world of the current
+	 * simulation (see {@link #scheduleUpdate(double)}). Routers and
+	 * applications can use this to wake up at a time when they have
+	 * something to do even if no other events happen then.
+	 * @param simTime The time of the update
+	 * @throws SimError if no world has been created in this simulation
+	 */
+	public static void scheduleWakeUp(double simTime) {
+		World world = SimContext.current().world;
+		if (world == null) {
+			throw new SimError("No world to schedule an update to");
+		}
+		world.scheduleUpdate(simTime);
 	}
 }
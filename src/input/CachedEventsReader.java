@@ -0,0 +1,235 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import core.SimError;
+
+/**
+ * <P>
+ * External events reader that reads the events from a trace cache that is
+ * shared by all simulation runs of the process (e.g., the runs of a batch).
+ * The first reader of a file parses the whole file (with the reader that
+ * {@link ExternalEventsQueue} would use for it) and stores its events in
+ * the compact record format of {@link MappedEventsReader} in off-heap
+ * memory. The later readers of the same file only decode the records
+ * using their own position in the cache.
+ * </P><P>
+ * The cache is keyed by the canonical path of the file and the file's
+ * modification time and size are checked every time a reader is created;
+ * if the file has changed, it is parsed again. Every file is parsed by
+ * one reader at a time: concurrent readers of the same file wait for the
+ * first one to finish, while the readers of other files are not blocked.
+ * The cached traces are never modified, so readers of concurrent runs
+ * don't need synchronization. Traces stay in the cache until
+ * {@link #clearCache()} is called.
+ * </P>
+ */
+public class CachedEventsReader implements ExternalEventsReader {
+	/** number of event records in one block of the cache */
+	private static final int BLOCK_SIZE = 1 << 16;
+
+	/** the cached (or currently parsed) traces by the canonical paths of
+	 * their files */
+	private static ConcurrentMap<String, FutureTask<Trace>> cache =
+		new ConcurrentHashMap<String, FutureTask<Trace>>();
+
+	private Trace trace;
+	private long nextEvent;
+	/** the block where the next event is read from */
+	private ByteBuffer records;
+	private int block;
+
+	/**
+	 * Constructor.
+	 * @param eventsFile The file whose events are read
+	 */
+	public CachedEventsReader(File eventsFile) {
+		this.trace = getTrace(eventsFile);
+		this.nextEvent = 0;
+		this.records = null;
+		this.block = -1;
+	}
+
+	/**
+	 * Returns the cached trace of a file. The trace is read to the cache if
+	 * it's not there yet or if the file has changed. If another reader is
+	 * already reading the file, waits for it to finish.
+	 * @param eventsFile The file
+	 * @return The trace
+	 * @throws SimError if the file couldn't be read
+	 */
+	private static Trace getTrace(final File eventsFile) {
+		String key;
+		try {
+			key = eventsFile.getCanonicalPath();
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+
+		while (true) {
+			FutureTask<Trace> task = cache.get(key);
+			if (task == null) {
+				FutureTask<Trace> newTask = new FutureTask<Trace>(
+						new Callable<Trace>() {
+					public Trace call() {
+						return new Trace(eventsFile);
+					}
+				});
+				task = cache.putIfAbsent(key, newTask);
+				if (task == null) { // this reader reads the file
+					task = newTask;
+					task.run();
+				}
+			}
+
+			Trace t;
+			try {
+				t = task.get();
+			} catch (InterruptedException e) {
+				throw new SimError(e);
+			} catch (ExecutionException e) {
+				cache.remove(key, task); // next reader tries again
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException)cause;
+				}
+				else if (cause instanceof Error) {
+					throw (Error)cause;
+				}
+				throw new SimError((Exception)cause);
+			}
+
+			if (t.isUpToDate(eventsFile)) {
+				return t;
+			}
+			cache.remove(key, task); // file has changed -> read it again
+		}
+	}
+
+	/**
+	 * Removes all traces from the cache. Readers that were created before
+	 * can still be used.
+	 */
+	public static void clearCache() {
+		cache.clear();
+	}
+
+	/**
+	 * Returns the number of events in the cached trace
+	 * @return The number of events
+	 */
+	public long getNrofEvents() {
+		return trace.nrofEvents;
+	}
+
+	/**
+	 * Read events from the cache
+	 * @param nrof Maximum number of events to read
+	 * @return Events in an ArrayList (empty list if didn't read any)
+	 */
+	public List<ExternalEvent> readEvents(int nrof) {
+		int count = (int)Math.max(0,
+				Math.min(nrof, trace.nrofEvents - nextEvent));
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(count);
+
+		for (int i=0; i < count; i++) {
+			if (records == null || !records.hasRemaining()) {
+				records = trace.blocks[++block].duplicate();
+			}
+			events.add(MappedEventsReader.decode(records, trace.ids,
+					nextEvent));
+			nextEvent++;
+		}
+
+		return events;
+	}
+
+	public void close() {
+		this.records = null;
+	}
+
+	/**
+	 * Events of one file as compact event records
+	 */
+	private static class Trace {
+		private final long lastModified;
+		private final long length;
+		private final long nrofEvents;
+		/** read-only blocks of event records */
+		private final ByteBuffer[] blocks;
+		private final String[] ids;
+
+		/**
+		 * Reads all the events of a file
+		 * @param eventsFile The file
+		 */
+		public Trace(File eventsFile) {
+			this.lastModified = eventsFile.lastModified();
+			this.length = eventsFile.length();
+
+			ExternalEventsReader reader =
+				ExternalEventsQueue.createReader(eventsFile);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			MappedEventsReader.Encoder enc = new MappedEventsReader.Encoder(out);
+			List<ByteBuffer> blockList = new ArrayList<ByteBuffer>();
+
+			try {
+				List<ExternalEvent> events;
+				do {
+					events = reader.readEvents(BLOCK_SIZE);
+					for (ExternalEvent ee : events) {
+						enc.write(ee);
+					}
+					if (out.size() > 0) {
+						blockList.add(toBlock(out));
+					}
+				} while (events.size() > 0);
+			} catch (IOException e) {
+				throw new SimError(e);
+			} finally {
+				reader.close();
+			}
+
+			this.nrofEvents = enc.getNrofEvents();
+			this.ids = enc.getIds();
+			this.blocks = blockList.toArray(new ByteBuffer[blockList.size()]);
+		}
+
+		/**
+		 * Moves the written records to a new off-heap block
+		 * @param out The stream where the records were written to
+		 * @return The block
+		 */
+		private static ByteBuffer toBlock(ByteArrayOutputStream out) {
+			ByteBuffer b = ByteBuffer.allocateDirect(out.size());
+			b.put(out.toByteArray());
+			b.flip();
+			out.reset();
+			return b.asReadOnlyBuffer();
+		}
+
+		/**
+		 * Returns true if the file hasn't changed since it was read
+		 * @param eventsFile The file
+		 * @return true if the cached events are the file's events
+		 */
+		public boolean isUpToDate(File eventsFile) {
+			return eventsFile.lastModified() == lastModified &&
+				eventsFile.length() == length;
+		}
+	}
+}
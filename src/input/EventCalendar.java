@@ -0,0 +1,192 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Event calendar that merges the events of multiple event queues into one
+ * queue. The queues are kept in a binary heap ordered by their next
+ * event's time, so finding and removing the next event costs O(log k)
+ * for k queues instead of asking every queue for its next event time.
+ * Events with the same time are returned in the order of the queues'
+ * indexes (i.e., the order they were given to the constructor).
+ * <P>The calendar remembers the next event time of every queue. The time
+ * is refreshed when the calendar takes an event from the queue, but if a
+ * queue's next event time changes in some other way (e.g., an update is
+ * added to a {@link ScheduledUpdatesQueue}), the calendar must be told
+ * about it using {@link #update(EventQueue)} or {@link #updateAll()}.</P>
+ */
+public class EventCalendar implements EventQueue {
+	/** the event queues by their indexes */
+	private EventQueue[] queues;
+	/** indexes of the queues by the queues */
+	private IdentityHashMap<EventQueue, Integer> indexes;
+	/** next event times of the queues by their indexes */
+	private double[] times;
+	/** the heap; contains indexes of the queues */
+	private int[] heap;
+	/** positions of the queues in the heap by their indexes */
+	private int[] positions;
+
+	/**
+	 * Creates a new calendar
+	 * @param queues The event queues in the order their simultaneous events
+	 * should be returned
+	 */
+	public EventCalendar(List<? extends EventQueue> queues) {
+		int n = queues.size();
+		this.queues = queues.toArray(new EventQueue[n]);
+		this.indexes = new IdentityHashMap<EventQueue, Integer>(n);
+		this.times = new double[n];
+		this.heap = new int[n];
+		this.positions = new int[n];
+
+		for (int i=0; i<n; i++) {
+			this.indexes.put(this.queues[i], i);
+			this.heap[i] = i;
+			this.positions[i] = i;
+		}
+		updateAll();
+	}
+
+	/**
+	 * Returns the next event of the calendar (i.e., the next event of the
+	 * queue whose next event is the earliest) or an event with time
+	 * Double.MAX_VALUE if there are no events left.
+	 * @return The next event
+	 */
+	public ExternalEvent nextEvent() {
+		if (this.heap.length == 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+
+		int index = this.heap[0];
+		ExternalEvent ee = this.queues[index].nextEvent();
+		this.times[index] = this.queues[index].nextEventsTime();
+		siftDown(0);
+		return ee;
+	}
+
+	/**
+	 * Returns the time of the next event or Double.MAX_VALUE if there are
+	 * no events left.
+	 * @return The next event's time
+	 */
+	public double nextEventsTime() {
+		if (this.heap.length == 0) {
+			return Double.MAX_VALUE;
+		}
+		return this.times[this.heap[0]];
+	}
+
+	/**
+	 * Returns the queue whose event is returned by the next
+	 * {@link #nextEvent()} call
+	 * @return The queue with the earliest next event (or null if the
+	 * calendar has no queues)
+	 */
+	public EventQueue nextEventQueue() {
+		if (this.heap.length == 0) {
+			return null;
+		}
+		return this.queues[this.heap[0]];
+	}
+
+	/**
+	 * Returns the event queues of the calendar
+	 * @return The queues (read-only) in the order of their indexes
+	 */
+	public List<EventQueue> getQueues() {
+		return Collections.unmodifiableList(Arrays.asList(this.queues));
+	}
+
+	/**
+	 * Refreshes the next event time of a queue
+	 * @param queue The queue whose next event time has changed
+	 */
+	public void update(EventQueue queue) {
+		Integer index = this.indexes.get(queue);
+		if (index == null) {
+			throw new IllegalArgumentException("Queue " + queue +
+					" is not in the calendar");
+		}
+
+		double time = queue.nextEventsTime();
+		double old = this.times[index];
+		this.times[index] = time;
+		if (time < old) {
+			siftUp(this.positions[index]);
+		}
+		else if (time > old) {
+			siftDown(this.positions[index]);
+		}
+	}
+
+	/**
+	 * Refreshes the next event times of all queues
+	 */
+	public void updateAll() {
+		for (int i=0; i<this.queues.length; i++) {
+			this.times[i] = this.queues[i].nextEventsTime();
+		}
+		for (int pos = this.heap.length / 2 - 1; pos >= 0; pos--) {
+			siftDown(pos);
+		}
+	}
+
+	/**
+	 * Returns true if the queue with index a should be before the queue
+	 * with index b in the heap
+	 */
+	private boolean isBefore(int a, int b) {
+		if (this.times[a] != this.times[b]) {
+			return this.times[a] < this.times[b];
+		}
+		return a < b;
+	}
+
+	private void siftUp(int pos) {
+		int index = this.heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+			if (!isBefore(index, this.heap[parent])) {
+				break;
+			}
+			place(this.heap[parent], pos);
+			pos = parent;
+		}
+		place(index, pos);
+	}
+
+	private void siftDown(int pos) {
+		int index = this.heap[pos];
+		int n = this.heap.length;
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= n) {
+				break;
+			}
+			if (child + 1 < n && isBefore(this.heap[child + 1],
+					this.heap[child])) {
+				child++;
+			}
+			if (!isBefore(this.heap[child], index)) {
+				break;
+			}
+			place(this.heap[child], pos);
+			pos = child;
+		}
+		place(index, pos);
+	}
+
+	private void place(int index, int pos) {
+		this.heap[pos] = index;
+		this.positions[index] = pos;
+	}
+}
@@ -64,14 +64,7 @@ public class EventQueueHandler  {
 			Settings s = new Settings(SETTINGS_NAMESPACE + i);
 
 			if (s.contains(PATH_SETTING)) { // external events file
-				int preload = 0;
-				String path = "";
-				if (s.contains(PRELOAD_SETTING)) {
-					preload = s.getInt(PRELOAD_SETTING);
-				}
-				path = s.getSetting(PATH_SETTING);
-
-				queues.add(new ExternalEventsQueue(path, preload));
+				queues.add(new ExternalEventsQueue(s));
 			}
 			else if (s.contains(CLASS_SETTING)) { // event generator class
 				String className = CLASS_PACKAGE + "." +
@@ -9,6 +9,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import core.Settings;
+import core.SettingsError;
 
 /**
  * Queue of external events. This class also takes care of buffering
@@ -21,6 +22,28 @@ public class ExternalEventsQueue implements EventQueue {
 	public static final String PRELOAD_SETTING = "nrofPreload";
 	/** path of external events file -setting id ({@value})*/
 	public static final String PATH_SETTING = "filePath";
+	/** number of loops -setting id ({@value}). If more than one, the
+	 * connection events of the {@link #LOOP_PERIOD_SETTING} seconds long
+	 * window that starts at {@link #LOOP_START_SETTING} are replayed this
+	 * many times (see {@link LoopedEventsReader}). Default = 1 (no
+	 * looping). */
+	public static final String LOOPS_SETTING = "loops";
+	/** start time of the looped window -setting id ({@value}).
+	 * Default = 0. */
+	public static final String LOOP_START_SETTING = "loopStart";
+	/** length of the looped window -setting id ({@value}). Required if
+	 * there's more than one loop. */
+	public static final String LOOP_PERIOD_SETTING = "loopPeriod";
+	/** use the shared trace cache -setting id ({@value}). Boolean. If true,
+	 * the file is parsed only once per process and all the runs (e.g., of
+	 * a batch) read its events from the cache (see
+	 * {@link CachedEventsReader}). Default = false. */
+	public static final String CACHE_SETTING = "cache";
+	/** number of prefetched batches -setting id ({@value}). If positive,
+	 * a background thread reads up to this many preload batches ahead while
+	 * the simulation consumes the current batch (see
+	 * {@link PrefetchingEventsReader}). Default = 0 (no prefetching). */
+	public static final String PREFETCH_SETTING = "prefetch";
 
 	/** default number of preloaded events */
 	public static final int DEFAULT_NROF_PRELOAD = 500;
@@ -29,6 +52,11 @@ public class ExternalEventsQueue implements EventQueue {
 	private ExternalEventsReader reader;
 	private int nextEventIndex;
 	private int nrofPreload;
+	private int nrofLoops;
+	private double loopStart;
+	private double loopPeriod;
+	private boolean useCache;
+	private int nrofPrefetch;
 	private List<ExternalEvent> queue;
 	private boolean allEventsRead = false;
 
@@ -36,19 +64,41 @@ public class ExternalEventsQueue implements EventQueue {
 	 * Creates a new Queue from a file
 	 * @param filePath Path to the file where the events are read from. If
 	 * file ends with extension defined in {@link BinaryEventsReader#BINARY_EXT}
-	 * the file is assumed to be a binary file.
+	 * the file is assumed to be a binary file and if it ends with
+	 * {@link MappedEventsReader#ONEEV_EXT} a compact binary file.
 	 * @param nrofPreload How many events to preload
 	 * @see BinaryEventsReader#BINARY_EXT
+	 * @see MappedEventsReader#ONEEV_EXT
 	 * @see BinaryEventsReader#storeToBinaryFile(String, List)
 	 */
 	public ExternalEventsQueue(String filePath, int nrofPreload) {
+		this(filePath, nrofPreload, 1, 0, 0);
+	}
+
+	/**
+	 * Creates a new Queue that loops the connection events of a file
+	 * @param filePath Path to the file where the events are read from
+	 * (see {@link #ExternalEventsQueue(String, int)})
+	 * @param nrofPreload How many events to preload
+	 * @param nrofLoops How many times the events are replayed (1 = the
+	 * events are read as they are)
+	 * @param loopStart Start time of the looped window
+	 * @param loopPeriod Length of the looped window
+	 * @see LoopedEventsReader
+	 */
+	public ExternalEventsQueue(String filePath, int nrofPreload,
+			int nrofLoops, double loopStart, double loopPeriod) {
 		setNrofPreload(nrofPreload);
+		this.nrofLoops = nrofLoops;
+		this.loopStart = loopStart;
+		this.loopPeriod = loopPeriod;
 		init(filePath);
 	}
 
 	/**
-	 * Create a new Queue based on the given settings: {@link #PRELOAD_SETTING}
-	 * and {@link #PATH_SETTING}. The path setting supports value filling.
+	 * Create a new Queue based on the given settings: {@link #PRELOAD_SETTING},
+	 * {@link #PATH_SETTING} and the loop settings. The path setting
+	 * supports value filling.
 	 * @param s The settings
 	 */
 	public ExternalEventsQueue(Settings s) {
@@ -58,6 +108,26 @@ public class ExternalEventsQueue implements EventQueue {
 		else {
 			setNrofPreload(DEFAULT_NROF_PRELOAD);
 		}
+		this.nrofLoops = s.contains(LOOPS_SETTING) ?
+				s.getInt(LOOPS_SETTING) : 1;
+		if (this.nrofLoops < 1) {
+			throw new SettingsError("Invalid number of loops " + nrofLoops);
+		}
+		if (this.nrofLoops > 1) {
+			this.loopStart = s.contains(LOOP_START_SETTING) ?
+					s.getDouble(LOOP_START_SETTING) : 0;
+			this.loopPeriod = s.getDouble(LOOP_PERIOD_SETTING);
+			if (this.loopPeriod <= 0) {
+				throw new SettingsError("Loop period must be positive");
+			}
+		}
+		this.useCache = s.getBoolean(CACHE_SETTING, false);
+		this.nrofPrefetch = s.contains(PREFETCH_SETTING) ?
+				s.getInt(PREFETCH_SETTING) : 0;
+		if (this.nrofPrefetch < 0) {
+			throw new SettingsError("Invalid number of prefetched batches " +
+					nrofPrefetch);
+		}
         String eeFilePath = s.valueFillString(s.getSetting(PATH_SETTING));
         init(eeFilePath);
     }
@@ -74,14 +144,40 @@ public class ExternalEventsQueue implements EventQueue {
 		this.nrofPreload = nrof;
 	}
 
+	/**
+	 * Creates a reader for an external events file. The type of the reader
+	 * depends on the file (see {@link #ExternalEventsQueue(String, int)}).
+	 * @param eventsFile The file
+	 * @return The reader
+	 */
+	static ExternalEventsReader createReader(File eventsFile) {
+		if (MappedEventsReader.isOneevFile(eventsFile)) {
+			return new MappedEventsReader(eventsFile);
+		}
+		else if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
+			return new BinaryEventsReader(eventsFile);
+		}
+		else {
+			return new StandardEventsReader(eventsFile);
+		}
+	}
+
 	private void init(String eeFilePath) {
 		this.eventsFile = new File(eeFilePath);
 
-		if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
-			this.reader = new BinaryEventsReader(eventsFile);
+		if (useCache) {
+			this.reader = new CachedEventsReader(eventsFile);
 		}
 		else {
-			this.reader = new StandardEventsReader(eventsFile);
+			this.reader = createReader(eventsFile);
+		}
+		if (nrofLoops > 1) {
+			this.reader = new LoopedEventsReader(reader, nrofLoops,
+					loopStart, loopPeriod);
+		}
+		if (nrofPrefetch > 0) {
+			this.reader = new PrefetchingEventsReader(reader, nrofPreload,
+					nrofPrefetch);
 		}
 
 		this.queue = readEvents(nrofPreload);
@@ -139,6 +235,19 @@ public class ExternalEventsQueue implements EventQueue {
 	}
 
 
+	/**
+	 * Closes the events reader. No more events are read; the events that
+	 * are left in the buffer are discarded.
+	 */
+	public void close() {
+		if (!allEventsRead) {
+			reader.close();
+			allEventsRead = true;
+		}
+		queue = new ArrayList<ExternalEvent>(0);
+		nextEventIndex = 0;
+	}
+
 	/**
 	 * Read some events from the external events reader
 	 * @param nrof Maximum number of events to read
@@ -355,8 +355,8 @@ public class ExternalPathMovementReader {
 	 * @return instance of the reader that has loaded all the paths from the
 	 * 			given trace file.
 	 */
-	public static ExternalPathMovementReader getInstance(String traceFilePath,
-			String activeFilePath) {
+	public static synchronized ExternalPathMovementReader getInstance(
+			String traceFilePath, String activeFilePath) {
 		if (!ExternalPathMovementReader.singletons.containsKey(traceFilePath)) {
 			try {
 				ExternalPathMovementReader.singletons.put(traceFilePath,
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import core.Settings;
+import core.SettingsError;
+import social.HyccupsScenarioGenerator;
+import social.HyccupsSocialParser;
+import social.SocialGraph;
+
+/**
+ * External events generator for the HYCCUPS social scenarios: creates the
+ * messages and the connections of the hybrid nodes and mailboxes like
+ * social.HyccupsMsgCreator does, but on demand during the simulation (see
+ * {@link HyccupsScenarioGenerator}), so no pre-generated message file is
+ * needed. The same settings give the same events as HyccupsMsgCreator with
+ * the same arguments.
+ * <P>The users of the social network are the hosts 0...(n-1) and the
+ * mailboxes the hosts after them, so the scenario must have a host for
+ * every user and mailbox.</P>
+ */
+public class HyccupsEventGenerator implements EventQueue {
+	/** Number of hybrid nodes -setting id ({@value}). Default = 0. */
+	public static final String NROF_HYBRID_NODES_S = "nrofHybridNodes";
+	/** Number of mailboxes -setting id ({@value}). Default = 0. */
+	public static final String NROF_MAILBOXES_S = "nrofMailboxes";
+	/** Random number generator's seed -setting id ({@value}). Integer. */
+	public static final String SEED_S = "seed";
+	/** Message size range -setting id ({@value}). Two comma separated
+	 * values: the minimum size and the (exclusive) maximum size in bytes. */
+	public static final String MESSAGE_SIZE_S =
+		MessageEventGenerator.MESSAGE_SIZE_S;
+	/** Daily messages -setting id ({@value}). Number of messages every
+	 * user creates per day. */
+	public static final String DAILY_MESSAGES_S = "dailyMessages";
+	/** Only users with contacts send -setting id ({@value}). Boolean.
+	 * Default = false. */
+	public static final String CONTACTS_ONLY_S =
+		SocialMessageEventGenerator.CONTACTS_ONLY_S;
+	/** End time -setting id ({@value}). Time when the connections of the
+	 * hybrid nodes and mailboxes go down; no messages are created after it.
+	 * Default = {@value HyccupsScenarioGenerator#DEF_END_TIME} (the end of
+	 * hyccups-loop-0-4838400-3). */
+	public static final String END_TIME_S = "endTime";
+	/** Social network -setting id ({@value}). Path of the social network
+	 * file (see {@link HyccupsSocialParser}). Default = the social network
+	 * of the HYCCUPS dataset. */
+	public static final String SOCIAL_NETWORK_S = "socialNetwork";
+
+	/** the generator of the events */
+	private HyccupsScenarioGenerator generator;
+
+	/**
+	 * Constructor.
+	 * @param s Settings for this generator.
+	 */
+	public HyccupsEventGenerator(Settings s) {
+		HyccupsSocialParser parser = s.contains(SOCIAL_NETWORK_S) ?
+				HyccupsSocialParser.getInstance(s.getSetting(SOCIAL_NETWORK_S)) :
+				HyccupsSocialParser.getInstance();
+		SocialGraph socialGraph = parser.getSocialGraph();
+
+		int nrofHybridNodes = s.getInt(NROF_HYBRID_NODES_S, 0);
+		int nrofMailboxes = s.getInt(NROF_MAILBOXES_S, 0);
+		int seed = s.getInt(SEED_S);
+		int[] sizeRange = s.getCsvInts(MESSAGE_SIZE_S, 2);
+		int dailyMessages = s.getInt(DAILY_MESSAGES_S);
+		boolean contactsOnly = s.getBoolean(CONTACTS_ONLY_S, false);
+		int endTime = s.getInt(END_TIME_S,
+				HyccupsScenarioGenerator.DEF_END_TIME);
+
+		s.assertValidRange(sizeRange, MESSAGE_SIZE_S);
+		if (sizeRange[0] == sizeRange[1]) {
+			throw new SettingsError("The maximum of " + MESSAGE_SIZE_S +
+					" is exclusive, so it must be larger than the minimum");
+		}
+		if (nrofHybridNodes < 0 || nrofMailboxes < 0) {
+			throw new SettingsError("Negative number of hybrid nodes or " +
+					"mailboxes");
+		}
+		if ((nrofHybridNodes > 0 || nrofMailboxes > 0 || contactsOnly) &&
+				!hasUserWithContacts(socialGraph)) {
+			throw new SettingsError("No user of the social network has " +
+					"contacts");
+		}
+		/* the message interval varies +-20%, so it must be at least 5 s */
+		if (dailyMessages <= 0 || HyccupsScenarioGenerator.DAY_TIME /
+				(socialGraph.size() * dailyMessages) < 5) {
+			throw new SettingsError("Invalid " + DAILY_MESSAGES_S + " " +
+					dailyMessages + " for " + socialGraph.size() + " users");
+		}
+
+		this.generator = new HyccupsScenarioGenerator(socialGraph,
+				nrofHybridNodes, nrofMailboxes, seed, sizeRange[0],
+				sizeRange[1], dailyMessages, contactsOnly, endTime);
+	}
+
+	/**
+	 * Returns true if some user of the social graph has contacts
+	 */
+	private static boolean hasUserWithContacts(SocialGraph socialGraph) {
+		for (int i=0; i<socialGraph.size(); i++) {
+			if (socialGraph.getNrofContacts(i) > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the next event (in time order)
+	 * @see input.EventQueue#nextEvent()
+	 */
+	public ExternalEvent nextEvent() {
+		return generator.nextEvent();
+	}
+
+	/**
+	 * Returns the time of the next event
+	 * @see input.EventQueue#nextEventsTime()
+	 */
+	public double nextEventsTime() {
+		return generator.nextEventsTime();
+	}
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import util.LongHashMap;
+import core.SimError;
+
+/**
+ * <P>
+ * External events reader that replays a window of a connection trace
+ * multiple times. The window's connection events are read once from the
+ * base reader into compact arrays and the loops are replayed from them,
+ * so a trace that is looped N times is parsed only once (instead of
+ * parsing a pre-expanded trace with N copies of every contact).
+ * </P><P>
+ * The window starts at <CODE>loopStart</CODE> and is
+ * <CODE>loopPeriod</CODE> seconds long. Connections that go up in the
+ * window are included with their down events, even if they go down after
+ * the end of the window (and thus overlap the next loop), while
+ * connections that go up before or after the window are not included at
+ * all. Connections that never go down are closed at the end of the window.
+ * </P><P>
+ * The looping is not the same as the <CODE>-loops</CODE> option of
+ * toolkit/hyccupsTraceConverter.pl. The converter works on the contacts of
+ * the original trace: a pair's connection goes down at the end of the
+ * pair's last contact that started in the window (plus the loop's offset)
+ * and all times are shifted by the time of the first emitted event. This
+ * reader only sees the connection events, so a connection goes down at
+ * the pair's next down event in the trace, even if it's caused by a
+ * contact that started after the window. Looping the converter's
+ * single-loop output with <CODE>loopStart</CODE> 0 and
+ * <CODE>loopPeriod</CODE> <CODE>(loopEnd - loopStart) / 1000</CODE> gives
+ * the events of the converter's looped output; only simultaneous events
+ * of different loops can be in a different order (the converter orders
+ * them by the contacts they were created for and puts the downs at the
+ * end of the pairs' last contacts after the other events).
+ * </P><P>
+ * Loop <CODE>i</CODE> (starting from zero) replays the window with times
+ * <CODE>time - loopStart + i * loopPeriod</CODE>, so the first loop
+ * starts at time zero. Simultaneous events of different loops are
+ * returned in the order of the loops.
+ * </P>
+ */
+public class LoopedEventsReader implements ExternalEventsReader {
+	/** number of events read from the base reader at once */
+	private static final int READ_BATCH_SIZE = 10000;
+
+	/** event times relative to the loop start */
+	private double[] times;
+	private int[] fromAddrs;
+	private int[] toAddrs;
+	private boolean[] ups;
+	/** interface ids of the events (or null if no event has one) */
+	private String[] interfaceIds;
+	private int nrofEvents;
+
+	private EventCalendar loops;
+
+	/**
+	 * Creates a new reader that loops the events of another reader.
+	 * @param base The reader of the trace; all events are read from it
+	 * and it is closed
+	 * @param nrofLoops How many times the window is replayed
+	 * @param loopStart Start time of the window in the trace
+	 * @param loopPeriod Length of the window (seconds)
+	 * @throws SimError if the trace has other than connection events
+	 */
+	public LoopedEventsReader(ExternalEventsReader base, int nrofLoops,
+			double loopStart, double loopPeriod) {
+		if (nrofLoops < 1 || loopPeriod <= 0) {
+			throw new SimError("Invalid loops (" + nrofLoops +
+					") or loop period (" + loopPeriod + ")");
+		}
+
+		try {
+			readWindow(base, loopStart, loopStart + loopPeriod);
+		} finally {
+			base.close();
+		}
+
+		List<LoopCursor> cursors = new ArrayList<LoopCursor>(nrofLoops);
+		for (int i=0; i < nrofLoops; i++) {
+			cursors.add(new LoopCursor(i * loopPeriod));
+		}
+		this.loops = new EventCalendar(cursors);
+	}
+
+	/**
+	 * Reads the connection events of the window from the base reader
+	 * @param base The base reader
+	 * @param start Start time of the window
+	 * @param end End time of the window
+	 */
+	private void readWindow(ExternalEventsReader base, double start,
+			double end) {
+		this.times = new double[READ_BATCH_SIZE];
+		this.fromAddrs = new int[READ_BATCH_SIZE];
+		this.toAddrs = new int[READ_BATCH_SIZE];
+		this.ups = new boolean[READ_BATCH_SIZE];
+		this.interfaceIds = null;
+		this.nrofEvents = 0;
+
+		/* connections that went up in the window and haven't gone down */
+		LongHashMap<ConnectionEvent> open =
+			new LongHashMap<ConnectionEvent>();
+		boolean pastEnd = false;
+
+		List<ExternalEvent> events;
+		do {
+			events = base.readEvents(READ_BATCH_SIZE);
+			for (ExternalEvent ee : events) {
+				if (!(ee instanceof ConnectionEvent)) {
+					throw new SimError("Only connection events can be " +
+							"looped; found " + ee);
+				}
+				ConnectionEvent ce = (ConnectionEvent)ee;
+				double time = ce.getTime();
+				long pair = getPairKey(ce.fromAddr, ce.toAddr);
+				pastEnd = time > end;
+
+				if (ce.isUp) {
+					if (time < start || time > end) {
+						continue; // not in the window
+					}
+					open.put(pair, ce);
+				}
+				else if (open.remove(pair) == null) {
+					continue; // went up outside the window (or duplicate)
+				}
+				add(ce, time - start);
+			}
+			if (open.isEmpty() && pastEnd) {
+				break; // rest of the trace can't be in the window
+			}
+		} while (events.size() > 0);
+
+		if (!open.isEmpty()) {
+			closeAtEnd(open.values(), end - start);
+		}
+	}
+
+	/**
+	 * Adds down events for connections that never went down. The events
+	 * are inserted after the events that happen before or at the end of the
+	 * window, so the events stay in time order.
+	 * @param open The up events of the connections
+	 * @param end Time of the window's end relative to the loop start
+	 */
+	private void closeAtEnd(List<ConnectionEvent> open, double end) {
+		int n = open.size();
+		int pos = nrofEvents;
+		while (pos > 0 && times[pos - 1] > end) {
+			pos--;
+		}
+
+		/* append the downs and rotate them in front of the later events */
+		for (ConnectionEvent ce : open) {
+			add(new ConnectionEvent(ce.fromAddr, ce.toAddr, ce.interfaceId,
+					false, end), end);
+		}
+		int tail = nrofEvents - n - pos;
+		rotate(times, pos, tail, n);
+		rotate(fromAddrs, pos, tail, n);
+		rotate(toAddrs, pos, tail, n);
+		rotate(ups, pos, tail, n);
+		if (interfaceIds != null) {
+			rotate(interfaceIds, pos, tail, n);
+		}
+	}
+
+	/**
+	 * Moves the n elements that follow the tail of length tail (starting
+	 * from pos) in front of the tail
+	 */
+	private static void rotate(Object array, int pos, int tail, int n) {
+		Object moved = Array.newInstance(
+				array.getClass().getComponentType(), n);
+		System.arraycopy(array, pos + tail, moved, 0, n);
+		System.arraycopy(array, pos, array, pos + n, tail);
+		System.arraycopy(moved, 0, array, pos, n);
+	}
+
+	/**
+	 * Returns the key of a host pair (the same for both directions)
+	 */
+	private static long getPairKey(int addr1, int addr2) {
+		int min = Math.min(addr1, addr2);
+		int max = Math.max(addr1, addr2);
+		return ((long)min << 32) | (max & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Adds a connection event to the arrays
+	 * @param ce The event
+	 * @param time The event's time relative to the loop start
+	 */
+	private void add(ConnectionEvent ce, double time) {
+		if (nrofEvents == times.length) {
+			int size = 2 * times.length;
+			times = Arrays.copyOf(times, size);
+			fromAddrs = Arrays.copyOf(fromAddrs, size);
+			toAddrs = Arrays.copyOf(toAddrs, size);
+			ups = Arrays.copyOf(ups, size);
+			if (interfaceIds != null) {
+				interfaceIds = Arrays.copyOf(interfaceIds, size);
+			}
+		}
+		if (ce.interfaceId != null && interfaceIds == null) {
+			interfaceIds = new String[times.length];
+		}
+
+		times[nrofEvents] = time;
+		fromAddrs[nrofEvents] = ce.fromAddr;
+		toAddrs[nrofEvents] = ce.toAddr;
+		ups[nrofEvents] = ce.isUp;
+		if (interfaceIds != null) {
+			interfaceIds[nrofEvents] = ce.interfaceId;
+		}
+		nrofEvents++;
+	}
+
+	/**
+	 * Returns the number of events in one loop
+	 * @return the number of events in one loop
+	 */
+	public int getNrofEventsPerLoop() {
+		return this.nrofEvents;
+	}
+
+	/**
+	 * Reads the next events of the loops
+	 * @param nrof Maximum number of events to read
+	 * @return Events in an ArrayList (empty list if didn't read any)
+	 */
+	public List<ExternalEvent> readEvents(int nrof) {
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
+		while (events.size() < nrof &&
+				loops.nextEventsTime() < Double.MAX_VALUE) {
+			events.add(loops.nextEvent());
+		}
+		return events;
+	}
+
+	public void close() {
+		/* the base reader was closed when the events were read */
+	}
+
+	/**
+	 * Position of one loop in the events
+	 */
+	private class LoopCursor implements EventQueue {
+		private final double offset;
+		private int next;
+
+		public LoopCursor(double offset) {
+			this.offset = offset;
+			this.next = 0;
+		}
+
+		public ExternalEvent nextEvent() {
+			if (next >= nrofEvents) {
+				return new ExternalEvent(Double.MAX_VALUE);
+			}
+			int i = next++;
+			return new ConnectionEvent(fromAddrs[i], toAddrs[i],
+					(interfaceIds == null ? null : interfaceIds[i]), ups[i],
+					times[i] + offset);
+		}
+
+		public double nextEventsTime() {
+			return (next < nrofEvents ? times[next] + offset :
+				Double.MAX_VALUE);
+		}
+	}
+}
@@ -0,0 +1,496 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.SimError;
+
+/**
+ * <P>
+ * Reads external events from a compact binary (<CODE>.oneev</CODE>) file
+ * that is memory mapped. The events are decoded only when they are read
+ * and no intermediate objects (strings, scanners etc.) are created while
+ * decoding, so even very large traces load at disk speed. Since the file is
+ * mapped read-only, concurrent runs that read the same trace share its
+ * pages through the operating system's page cache.
+ * </P><P>
+ * The file starts with a header (magic number, format version, number of
+ * events, offset of the id table and number of ids) that is followed by
+ * fixed-width event records and the id table. Each record contains the
+ * event's time (double), action code (byte), two host addresses, index of
+ * the message (or interface) id in the id table and the message and
+ * response sizes (ints). Message and interface ids are interned so that
+ * every distinct id is stored (and decoded) only once.
+ * </P><P>
+ * Files can be created from standard external events files (see
+ * {@link StandardEventsReader}) with the {@link #main(String[])} method:<BR>
+ * <TT>java -cp target input.MappedEventsReader &lt;input file&gt;
+ * &lt;output file&gt;</TT>
+ * </P>
+ */
+public class MappedEventsReader implements ExternalEventsReader {
+	/** Extension of compact binary external events file */
+	public static final String ONEEV_EXT = ".oneev";
+	/** Identifier of the file format ("ONEE") */
+	public static final int MAGIC = 0x4F4E4545;
+	/** Version of the file format */
+	public static final int VERSION = 1;
+
+	/** size of the file header (bytes) */
+	private static final int HEADER_SIZE = 28;
+	/** size of one event record (bytes) */
+	private static final int RECORD_SIZE = 29;
+	/** maximum size of one mapped window of event records (bytes) */
+	private static final long MAX_WINDOW_SIZE =
+		(Integer.MAX_VALUE / RECORD_SIZE) * RECORD_SIZE;
+	/** number of events converted at once */
+	private static final int CONVERT_BATCH_SIZE = 10000;
+
+	private static final byte OP_CREATE = 1;
+	private static final byte OP_SEND = 2;
+	private static final byte OP_DELIVERED = 3;
+	private static final byte OP_ABORT = 4;
+	private static final byte OP_DROP = 5;
+	private static final byte OP_REMOVE = 6;
+	private static final byte OP_CONN_UP = 7;
+	private static final byte OP_CONN_DOWN = 8;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private MappedByteBuffer records;
+	private String[] ids;
+	private long nrofEvents;
+	private long nextEvent;
+	/** index of the first event in the currently mapped window */
+	private long windowStart;
+
+	/**
+	 * Constructor.
+	 * @param eventsFile The file where the events are read
+	 */
+	public MappedEventsReader(File eventsFile) {
+		try {
+			this.file = new RandomAccessFile(eventsFile, "r");
+			this.channel = file.getChannel();
+
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, HEADER_SIZE);
+			if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+				throw new SimError("Invalid compact binary external " +
+						"events file: " + eventsFile.getAbsolutePath());
+			}
+			this.nrofEvents = header.getLong();
+			long tableOffset = header.getLong();
+			this.ids = readIds(tableOffset, header.getInt());
+		} catch (IOException e) {
+			close();
+			throw new SimError(e);
+		} catch (SimError e) {
+			close();
+			throw e;
+		} catch (RuntimeException e) { /* e.g., too short file */
+			close();
+			throw new SimError("Invalid compact binary external events " +
+					"file: " + eventsFile.getAbsolutePath(), e);
+		}
+
+		this.nextEvent = 0;
+		this.windowStart = 0;
+		this.records = null;
+	}
+
+	/**
+	 * Reads the id table of the file
+	 * @param offset Offset of the table in the file
+	 * @param nrof Number of ids in the table
+	 * @return The ids
+	 * @throws IOException if reading failed
+	 */
+	private String[] readIds(long offset, int nrof) throws IOException {
+		String[] table = new String[nrof];
+		int size = (int)(channel.size() - offset);
+		byte[] bytes = new byte[size];
+		channel.map(FileChannel.MapMode.READ_ONLY, offset, size).get(bytes);
+
+		DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(bytes));
+		for (int i=0; i < nrof; i++) {
+			table[i] = in.readUTF();
+		}
+		return table;
+	}
+
+	/**
+	 * Maps the window of event records that starts from the next event
+	 * @throws IOException if mapping failed
+	 */
+	private void mapNextWindow() throws IOException {
+		this.windowStart = nextEvent;
+		long offset = HEADER_SIZE + windowStart * RECORD_SIZE;
+		long size = Math.min((nrofEvents - windowStart) * RECORD_SIZE,
+				MAX_WINDOW_SIZE);
+		this.records = channel.map(FileChannel.MapMode.READ_ONLY,
+				offset, size);
+	}
+
+	/**
+	 * Read events from the mapped file
+	 * @param nrof Maximum number of events to read
+	 * @return Events in an ArrayList (empty list if didn't read any)
+	 */
+	public List<ExternalEvent> readEvents(int nrof) {
+		int count = (int)Math.max(0, Math.min(nrof, nrofEvents - nextEvent));
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(count);
+
+		try {
+			for (int i=0; i < count; i++) {
+				if (records == null || !records.hasRemaining()) {
+					mapNextWindow();
+				}
+				events.add(decode(records, ids, nextEvent));
+				nextEvent++;
+			}
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+
+		return events;
+	}
+
+	/**
+	 * Decodes the next event record from the buffer
+	 * @param buf The buffer to read the record from
+	 * @param ids The id table
+	 * @param index Index of the event (for error messages)
+	 * @return The event
+	 */
+	static ExternalEvent decode(ByteBuffer buf, String[] ids, long index) {
+		double time = buf.getDouble();
+		byte op = buf.get();
+		int host = buf.getInt();
+		int host2 = buf.getInt();
+		int idIndex = buf.getInt();
+		int size = buf.getInt();
+		int respSize = buf.getInt();
+		String id = (idIndex < 0 ? null : ids[idIndex]);
+
+		switch (op) {
+		case OP_CREATE:
+			return new MessageCreateEvent(host, host2, id, size, respSize,
+					time);
+		case OP_SEND:
+			return new MessageRelayEvent(host, host2, id, time,
+					MessageRelayEvent.SENDING);
+		case OP_DELIVERED:
+			return new MessageRelayEvent(host, host2, id, time,
+					MessageRelayEvent.TRANSFERRED);
+		case OP_ABORT:
+			return new MessageRelayEvent(host, host2, id, time,
+					MessageRelayEvent.ABORTED);
+		case OP_DROP:
+			return new MessageDeleteEvent(host, id, time, true);
+		case OP_REMOVE:
+			return new MessageDeleteEvent(host, id, time, false);
+		case OP_CONN_UP:
+			return new ConnectionEvent(host, host2, id, true, time);
+		case OP_CONN_DOWN:
+			return new ConnectionEvent(host, host2, id, false, time);
+		default:
+			throw new SimError("Unknown action code " + op + " in event " +
+					(index + 1) + " of compact binary events file");
+		}
+	}
+
+	/**
+	 * Checks if the given file is a compact binary external events file
+	 * @param file The file to check
+	 * @return True if the file is a compact binary ee file, false if not
+	 */
+	public static boolean isOneevFile(File file) {
+		if (!file.getName().endsWith(ONEEV_EXT)) {
+			return false;
+		}
+
+		try {
+			MappedEventsReader r = new MappedEventsReader(file);
+			r.close();
+		}
+		catch (SimError e) {
+			return false; // read failed -> not a valid file
+		}
+
+		return true;
+	}
+
+	/**
+	 * Stores the events to a compact binary file
+	 * @param fileName Path to the file where the events are stored
+	 * @param events List of events to store
+	 * @throws IOException if something in storing went wrong
+	 */
+	public static void storeToFile(String fileName,
+			List<ExternalEvent> events) throws IOException {
+		Encoder enc = new Encoder(fileName);
+		for (ExternalEvent ee : events) {
+			enc.write(ee);
+		}
+		enc.finish();
+	}
+
+	/**
+	 * Stores all the events of an event queue to a compact binary file. The
+	 * events are encoded as they are taken from the queue, so e.g. event
+	 * generators can be stored without collecting their events first.
+	 * @param fileName Path to the file where the events are stored
+	 * @param events The queue whose events are stored (until it returns an
+	 * event with time Double.MAX_VALUE)
+	 * @return Number of stored events
+	 * @throws IOException if something in storing went wrong
+	 */
+	public static long storeToFile(String fileName, EventQueue events)
+			throws IOException {
+		Encoder enc = new Encoder(fileName);
+		while (events.nextEventsTime() < Double.MAX_VALUE) {
+			enc.write(events.nextEvent());
+		}
+		return enc.finish();
+	}
+
+	/**
+	 * Converts a standard external events file to a compact binary file.
+	 * The input file is read in batches so files of any size can be
+	 * converted.
+	 * @param eventsFile The standard external events file
+	 * @param fileName Path to the file where the events are stored
+	 * @return Number of converted events
+	 * @throws IOException if something in storing went wrong
+	 */
+	public static long convert(File eventsFile, String fileName)
+			throws IOException {
+		StandardEventsReader reader = new StandardEventsReader(eventsFile);
+		Encoder enc = new Encoder(fileName);
+		try {
+			List<ExternalEvent> events;
+			do {
+				events = reader.readEvents(CONVERT_BATCH_SIZE);
+				for (ExternalEvent ee : events) {
+					enc.write(ee);
+				}
+			} while (events.size() > 0);
+		} finally {
+			reader.close();
+		}
+		return enc.finish();
+	}
+
+	public void close() {
+		this.records = null;
+		try {
+			if (this.file != null) {
+				this.file.close();
+			}
+		}
+		catch (IOException ioe) {
+			throw new SimError(ioe);
+		}
+	}
+
+	/**
+	 * Converts a standard external events file to a compact binary file.
+	 * @param args The input and output file names
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.out.println("Usage: input.MappedEventsReader " +
+					"<standard events file> <output file>" + ONEEV_EXT);
+			System.exit(1);
+		}
+
+		String outName = args[1];
+		if (!outName.endsWith(ONEEV_EXT)) {
+			outName += ONEEV_EXT;
+		}
+
+		long nrof = convert(new File(args[0]), outName);
+		System.out.println("Converted " + nrof + " events to " + outName);
+	}
+
+	/**
+	 * Writes events to a compact binary file (or only the event records to
+	 * a stream)
+	 */
+	static class Encoder {
+		private String fileName;
+		private DataOutputStream out;
+		private Map<String, Integer> idIndexes;
+		private List<String> ids;
+		private long nrofEvents;
+
+		/**
+		 * Opens the file and leaves room for the header
+		 * @param fileName Path to the file
+		 * @throws IOException if opening failed
+		 */
+		public Encoder(String fileName) throws IOException {
+			this.fileName = fileName;
+			this.out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(fileName), 1 << 16));
+			this.idIndexes = new HashMap<String, Integer>();
+			this.ids = new ArrayList<String>();
+			this.nrofEvents = 0;
+			out.write(new byte[HEADER_SIZE]);
+		}
+
+		/**
+		 * Creates an encoder that writes only the event records to a
+		 * stream. The id table can be asked with {@link #getIds()}.
+		 * @param out The stream
+		 */
+		public Encoder(OutputStream out) {
+			this.fileName = null;
+			this.out = new DataOutputStream(out);
+			this.idIndexes = new HashMap<String, Integer>();
+			this.ids = new ArrayList<String>();
+			this.nrofEvents = 0;
+		}
+
+		/**
+		 * Returns the id table of the written events
+		 * @return The ids by their indexes
+		 */
+		public String[] getIds() {
+			return ids.toArray(new String[ids.size()]);
+		}
+
+		/**
+		 * Returns the number of written events
+		 * @return the number of written events
+		 */
+		public long getNrofEvents() {
+			return nrofEvents;
+		}
+
+		/**
+		 * Returns the index of the id in the id table (adds the id to the
+		 * table if it's not there yet)
+		 * @param id The id
+		 * @return The id's index or -1 if the id was null
+		 */
+		private int getIdIndex(String id) {
+			if (id == null) {
+				return -1;
+			}
+			Integer index = idIndexes.get(id);
+			if (index == null) {
+				index = ids.size();
+				idIndexes.put(id, index);
+				ids.add(id);
+			}
+			return index;
+		}
+
+		/**
+		 * Writes an event record
+		 * @param ee The event
+		 * @throws IOException if writing failed
+		 */
+		public void write(ExternalEvent ee) throws IOException {
+			byte op;
+			int host, host2, size = 0, respSize = 0;
+			String id;
+
+			if (ee instanceof ConnectionEvent) {
+				ConnectionEvent ce = (ConnectionEvent)ee;
+				op = (ce.isUp ? OP_CONN_UP : OP_CONN_DOWN);
+				host = ce.fromAddr;
+				host2 = ce.toAddr;
+				id = ce.interfaceId;
+			}
+			else if (ee instanceof MessageEvent) {
+				MessageEvent me = (MessageEvent)ee;
+				host = me.fromAddr;
+				host2 = me.toAddr;
+				id = me.id;
+
+				if (ee instanceof MessageCreateEvent) {
+					op = OP_CREATE;
+					size = ((MessageCreateEvent)ee).size;
+					respSize = ((MessageCreateEvent)ee).responseSize;
+				}
+				else if (ee instanceof MessageDeleteEvent) {
+					op = (((MessageDeleteEvent)ee).drop ? OP_DROP : OP_REMOVE);
+				}
+				else if (ee instanceof MessageRelayEvent) {
+					switch (((MessageRelayEvent)ee).stage) {
+					case MessageRelayEvent.SENDING:
+						op = OP_SEND;
+						break;
+					case MessageRelayEvent.TRANSFERRED:
+						op = OP_DELIVERED;
+						break;
+					default:
+						op = OP_ABORT;
+					}
+				}
+				else {
+					throw new SimError("Can't store event " + ee);
+				}
+			}
+			else {
+				throw new SimError("Can't store event " + ee);
+			}
+
+			out.writeDouble(ee.getTime());
+			out.writeByte(op);
+			out.writeInt(host);
+			out.writeInt(host2);
+			out.writeInt(getIdIndex(id));
+			out.writeInt(size);
+			out.writeInt(respSize);
+			nrofEvents++;
+		}
+
+		/**
+		 * Writes the id table and the header and closes the file
+		 * @return Number of events written
+		 * @throws IOException if writing failed
+		 */
+		public long finish() throws IOException {
+			long tableOffset = HEADER_SIZE + nrofEvents * RECORD_SIZE;
+			for (String id : ids) {
+				out.writeUTF(id);
+			}
+			out.close();
+
+			RandomAccessFile raf = new RandomAccessFile(fileName, "rw");
+			try {
+				raf.writeInt(MAGIC);
+				raf.writeInt(VERSION);
+				raf.writeLong(nrofEvents);
+				raf.writeLong(tableOffset);
+				raf.writeInt(ids.size());
+			} finally {
+				raf.close();
+			}
+			return nrofEvents;
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import core.SimError;
+
+/**
+ * <P>
+ * External events reader that reads the events of another reader ahead in
+ * a background thread. The thread reads batches of events from the base
+ * reader to a bounded queue while the simulation consumes the earlier
+ * batches, so parsing the events and simulating can run in parallel.
+ * </P><P>
+ * The queue holds at most the given number of batches; when it's full, the
+ * thread waits until the simulation has taken a batch from it. If reading
+ * fails, the error is thrown (with the message of the base reader's error)
+ * from {@link #readEvents(int)} when the simulation reaches the batch that
+ * couldn't be read. The base reader is used and closed only by the
+ * background thread. If the simulation ends before all the events have
+ * been read, the thread stops when the reader is closed (see
+ * {@link core.World#done()}).
+ * </P>
+ */
+public class PrefetchingEventsReader implements ExternalEventsReader {
+	private BlockingQueue<Batch> batches;
+	private Thread prefetcher;
+	/** the batch where the events are read from */
+	private Batch batch;
+	private int nextIndex;
+	private boolean allEventsRead;
+
+	/**
+	 * Creates a new reader and starts reading the base reader's events
+	 * @param base The reader whose events are read
+	 * @param batchSize Number of events read from the base reader at once
+	 * @param nrofBatches Maximum number of batches that are read ahead
+	 */
+	public PrefetchingEventsReader(final ExternalEventsReader base,
+			final int batchSize, int nrofBatches) {
+		if (batchSize < 1 || nrofBatches < 1) {
+			throw new SimError("Invalid prefetch batch size (" + batchSize +
+					") or number of batches (" + nrofBatches + ")");
+		}
+		this.batches = new ArrayBlockingQueue<Batch>(nrofBatches);
+		this.batch = new Batch(new ArrayList<ExternalEvent>(0), null);
+		this.nextIndex = 0;
+		this.allEventsRead = false;
+
+		this.prefetcher = new Thread("ExternalEvents prefetcher") {
+			@Override
+			public void run() {
+				try {
+					prefetch(base, batchSize);
+				} catch (InterruptedException e) {
+					/* the reader was closed */
+				} finally {
+					base.close();
+				}
+			}
+		};
+		this.prefetcher.setDaemon(true);
+		this.prefetcher.start();
+	}
+
+	/**
+	 * Reads batches from the base reader to the queue until all events
+	 * are read or reading fails
+	 * @param base The base reader
+	 * @param batchSize Number of events to read at once
+	 * @throws InterruptedException if the thread was interrupted while
+	 * waiting for space in the queue
+	 */
+	private void prefetch(ExternalEventsReader base, int batchSize)
+			throws InterruptedException {
+		List<ExternalEvent> events;
+		do {
+			try {
+				events = base.readEvents(batchSize);
+			} catch (Throwable t) {
+				batches.put(new Batch(null, t));
+				return;
+			}
+			batches.put(new Batch(events, null));
+		} while (events.size() > 0);
+	}
+
+	/**
+	 * Reads events that the background thread has read. Waits for the next
+	 * batch if it hasn't been read yet.
+	 * @param nrof Maximum number of events to read
+	 * @return Events in an ArrayList (empty list if didn't read any)
+	 * @throws SimError if reading the events failed
+	 */
+	public List<ExternalEvent> readEvents(int nrof) {
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
+
+		while (events.size() < nrof && !allEventsRead) {
+			if (nextIndex >= batch.events.size()) {
+				batch = takeBatch();
+				nextIndex = 0;
+				if (batch.events.size() == 0) {
+					allEventsRead = true;
+					break;
+				}
+			}
+			int count = Math.min(nrof - events.size(),
+					batch.events.size() - nextIndex);
+			events.addAll(batch.events.subList(nextIndex, nextIndex + count));
+			nextIndex += count;
+		}
+
+		return events;
+	}
+
+	/**
+	 * Takes the next batch from the queue
+	 * @return The batch
+	 * @throws SimError if the batch couldn't be read
+	 */
+	private Batch takeBatch() {
+		Batch b;
+		try {
+			b = batches.take();
+		} catch (InterruptedException e) {
+			throw new SimError(e);
+		}
+
+		if (b.error != null) {
+			allEventsRead = true;
+			if (b.error instanceof SimError) {
+				SimError se = (SimError)b.error;
+				throw new SimError(se.getMessage(), se.getException());
+			}
+			else if (b.error instanceof Exception) {
+				throw new SimError((Exception)b.error);
+			}
+			throw (Error)b.error;
+		}
+		return b;
+	}
+
+	/**
+	 * Stops reading the events. The base reader is closed by the background
+	 * thread.
+	 */
+	public void close() {
+		allEventsRead = true;
+		prefetcher.interrupt();
+		batches.clear();
+	}
+
+	/**
+	 * Events read at once from the base reader (or the error that prevented
+	 * reading them)
+	 */
+	private static class Batch {
+		private final List<ExternalEvent> events;
+		private final Throwable error;
+
+		public Batch(List<ExternalEvent> events, Throwable error) {
+			this.events = events;
+			this.error = error;
+		}
+	}
+}
@@ -4,25 +4,23 @@
  */
 package input;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.TreeSet;
 
 /**
  * Event queue where simulation objects can request an update to happen
  * at the specified simulation time. Multiple updates at the same time
- * are merged to a single update.
+ * are merged to a single update. The update times are kept in a sorted
+ * set, so adding and removing an update takes logarithmic time.
  */
 public class ScheduledUpdatesQueue implements EventQueue {
-	/** Time of the event (simulated seconds) */
-	private ExternalEvent nextEvent;
-	private List<ExternalEvent> updates;
+	/** times of the requested updates (simulated seconds) */
+	private TreeSet<Double> updates;
 
 	/**
 	 * Constructor. Creates an empty update queue.
 	 */
 	public ScheduledUpdatesQueue(){
-		this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		this.updates = new ArrayList<ExternalEvent>();
+		this.updates = new TreeSet<Double>();
 	}
 
 	/**
@@ -31,16 +29,8 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event
 	 */
 	public ExternalEvent nextEvent() {
-		ExternalEvent event = this.nextEvent;
-
-		if (this.updates.size() == 0) {
-			this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		}
-		else {
-			this.nextEvent = this.updates.remove(0);
-		}
-
-		return event;
+		Double time = this.updates.pollFirst();
+		return new ExternalEvent(time == null ? Double.MAX_VALUE : time);
 	}
 
 	/**
@@ -49,7 +39,8 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event's time
 	 */
 	public double nextEventsTime() {
-		return this.nextEvent.getTime();
+		return (this.updates.isEmpty() ? Double.MAX_VALUE :
+			this.updates.first());
 	}
 
 	/**
@@ -57,47 +48,27 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @param simTime The time when the update should happen
 	 */
 	public void addUpdate(double simTime) {
-		ExternalEvent ee = new ExternalEvent(simTime);
-
-		if (ee.compareTo(nextEvent) == 0) { // this event is already next
-			return;
-		}
-		else if (this.nextEvent.getTime() > simTime) { // new nextEvent
-			putToQueue(this.nextEvent); // put the old nextEvent back to q
-			this.nextEvent = ee;
-		}
-		else { // given event happens later..
-			putToQueue(ee);
-		}
+		/* + 0.0 turns -0.0 to 0.0 so that they are merged too */
+		this.updates.add(simTime + 0.0);
 	}
 
 	/**
-	 * Puts a event to the queue in the right place
-	 * @param ee The event to put to the queue
+	 * Returns the number of scheduled updates
+	 * @return the number of scheduled updates
 	 */
-	private void putToQueue(ExternalEvent ee) {
-		double eeTime = ee.getTime();
-
-		for (int i=0, n=this.updates.size(); i<n; i++) {
-			double time = updates.get(i).getTime();
-			if (time == eeTime) {
-				return; // update with the given time exists -> no need for new
-			}
-			else if (eeTime < time) {
-				this.updates.add(i, ee);
-				return;
-			}
-		}
-
-		/* all existing updates are earlier -> add to the end of the list */
-		this.updates.add(ee);
+	public int size() {
+		return this.updates.size();
 	}
 
 	public String toString() {
-		String times = "updates @ " + this.nextEvent.getTime();
+		String times = "updates @ " + nextEventsTime();
+		boolean first = true;
 
-		for (ExternalEvent ee : this.updates) {
-			times += ", " + ee.getTime();
+		for (Double time : this.updates) {
+			if (!first) {
+				times += ", " + time;
+			}
+			first = false;
 		}
 
 		return times;
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.Random;
+
+import core.Settings;
+import core.SettingsError;
+import social.HyccupsSocialParser;
+import social.OfficeSocialParser;
+import social.SocialGraph;
+
+/**
+ * Message creation -external events generator for social scenarios. Like
+ * {@link MessageEventGenerator}, but the receiver of a message is a random
+ * social contact of the sender and no messages are created at night.
+ * The users of the social graph are the hosts of the
+ * {@link MessageEventGenerator#HOST_RANGE_S} range (the first user is the
+ * first host of the range); senders without contacts (e.g., hosts that are
+ * not users of the graph) send to random hosts like
+ * {@link MessageEventGenerator} does.
+ * <P>Every night the message creation sleeps for a random time. The first
+ * night starts at {@link #NIGHT_START_S} and a new night starts every day
+ * after it; a night starts after the first message that is created after
+ * the night's start time. This is the schedule that HyccupsMsgCreator uses.
+ * </P>
+ * <P>The events are created on demand, so unlike pre-generated message
+ * files, the generator doesn't need memory or I/O per message.</P>
+ */
+public class SocialMessageEventGenerator extends MessageEventGenerator {
+	/** Social graph -setting id ({@value}). The social graph whose contacts
+	 * receive the messages: {@value #HYCCUPS_GRAPH} (the social network of
+	 * the HYCCUPS dataset), {@value #HYCCUPS_INTERESTS_GRAPH} (users of the
+	 * HYCCUPS dataset with a common interest) or {@value #OFFICE_GRAPH}
+	 * (users of the sociopatterns office dataset with a common interest).
+	 * Default = {@value #HYCCUPS_GRAPH}. */
+	public static final String SOCIAL_GRAPH_S = "socialGraph";
+	/** Random number generator's seed -setting id ({@value}). Integer.
+	 * If not defined, the seed is derived from the message ID prefix (like
+	 * with {@link MessageEventGenerator}). */
+	public static final String SEED_S = "seed";
+	/** Only hosts with contacts send -setting id ({@value}). Boolean. If
+	 * true, hosts without social contacts never send messages.
+	 * Default = false. */
+	public static final String CONTACTS_ONLY_S = "contactsOnly";
+	/** Night start -setting id ({@value}). Start time of the first night
+	 * (simulated seconds). Negative value disables the nights.
+	 * Default = {@value #DEF_NIGHT_START}. */
+	public static final String NIGHT_START_S = "nightStart";
+	/** Sleep time -setting id ({@value}). Single value or a range (min, max)
+	 * of uniformly distributed random values. Defines for how long
+	 * (seconds) no messages are created at night.
+	 * Default = {@value #DEF_MIN_SLEEP},{@value #DEF_MAX_SLEEP}. */
+	public static final String SLEEP_TIME_S = "sleepTime";
+
+	/** Name of the HYCCUPS social network graph ({@value}) */
+	public static final String HYCCUPS_GRAPH = "hyccups";
+	/** Name of the HYCCUPS interest graph ({@value}) */
+	public static final String HYCCUPS_INTERESTS_GRAPH = "hyccupsInterests";
+	/** Name of the sociopatterns office interest graph ({@value}) */
+	public static final String OFFICE_GRAPH = "office";
+
+	/** Default start time of the first night ({@value}) */
+	public static final int DEF_NIGHT_START = 21600;
+	/** Default minimum sleep time ({@value}) */
+	public static final int DEF_MIN_SLEEP = 21600;
+	/** Default maximum sleep time ({@value}) */
+	public static final int DEF_MAX_SLEEP = 28800;
+	/** Length of a day (seconds) */
+	public static final int DAY_LENGTH = 86400;
+
+	/** contacts of the senders */
+	private SocialGraph socialGraph;
+	private boolean contactsOnly;
+	private int nightStart;
+	private int[] sleepTime;
+	/** time after which the next night starts */
+	private double nextNight;
+	/** number of nights so far */
+	private int nightCount;
+
+	/**
+	 * Constructor.
+	 * @param s Settings for this generator.
+	 */
+	public SocialMessageEventGenerator(Settings s) {
+		super(s);
+		this.socialGraph = getSocialGraph(s.contains(SOCIAL_GRAPH_S) ?
+				s.getSetting(SOCIAL_GRAPH_S) : HYCCUPS_GRAPH);
+		this.contactsOnly = s.getBoolean(CONTACTS_ONLY_S, false);
+		this.nightStart = s.contains(NIGHT_START_S) ?
+				s.getInt(NIGHT_START_S) : DEF_NIGHT_START;
+		if (s.contains(SLEEP_TIME_S)) {
+			this.sleepTime = s.getCsvInts(SLEEP_TIME_S);
+			if (this.sleepTime.length == 1) {
+				this.sleepTime = new int[] {sleepTime[0], sleepTime[0]};
+			}
+			else {
+				s.assertValidRange(this.sleepTime, SLEEP_TIME_S);
+			}
+		}
+		else {
+			this.sleepTime = new int[] {DEF_MIN_SLEEP, DEF_MAX_SLEEP};
+		}
+		this.nextNight = nightStart;
+		this.nightCount = 0;
+
+		if (contactsOnly && !hasSenderWithContacts()) {
+			throw new SettingsError("No host in the range " + hostRange[0] +
+					"-" + hostRange[1] + " has social contacts");
+		}
+
+		if (s.contains(SEED_S)) {
+			/* draw the first event's time again using the new seed */
+			this.rng = new Random(s.getInt(SEED_S));
+			this.nextEventsTime = (this.msgTime != null ? this.msgTime[0] :
+				0) + drawNextEventTimeDiff();
+		}
+	}
+
+	/**
+	 * Returns the social graph of the given name
+	 * @param name Name of the graph
+	 * @return The graph
+	 * @throws SettingsError if there's no graph with the name
+	 */
+	protected SocialGraph getSocialGraph(String name) {
+		if (name.equals(HYCCUPS_GRAPH)) {
+			return HyccupsSocialParser.getInstance().getSocialGraph();
+		}
+		else if (name.equals(HYCCUPS_INTERESTS_GRAPH)) {
+			return HyccupsSocialParser.getInstance().getInterestGraph();
+		}
+		else if (name.equals(OFFICE_GRAPH)) {
+			return OfficeSocialParser.getInstance().getInterestGraph();
+		}
+		throw new SettingsError("Unknown social graph '" + name + "' for " +
+				"setting " + SOCIAL_GRAPH_S);
+	}
+
+	/**
+	 * Returns true if some host of the host range has contacts
+	 */
+	private boolean hasSenderWithContacts() {
+		for (int i = hostRange[0]; i < Math.max(hostRange[1],
+				hostRange[0] + 1); i++) {
+			if (getNrofContacts(i) > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of social contacts of a host
+	 * @param address Address of the host
+	 * @return The number of contacts (0 if the host is not a user of the
+	 * social graph)
+	 */
+	private int getNrofContacts(int address) {
+		int user = address - hostRange[0];
+		if (user < 0 || user >= socialGraph.size()) {
+			return 0;
+		}
+		return socialGraph.getNrofContacts(user);
+	}
+
+	/**
+	 * Returns the next message creation event
+	 * @see input.EventQueue#nextEvent()
+	 */
+	@Override
+	public ExternalEvent nextEvent() {
+		int responseSize = 0; /* zero stands for one way messages */
+		int from;
+		int to;
+		int nrofContacts;
+
+		do {
+			from = drawHostAddress(this.hostRange);
+			nrofContacts = getNrofContacts(from);
+		} while (contactsOnly && nrofContacts == 0);
+
+		if (nrofContacts > 0) {
+			to = hostRange[0] + socialGraph.getContact(from - hostRange[0],
+					rng.nextInt(nrofContacts));
+		}
+		else {
+			to = drawToAddress(hostRange, from);
+		}
+
+		int msgSize = drawMessageSize();
+
+		MessageCreateEvent mce = new MessageCreateEvent(from, to, this.getID(),
+				msgSize, responseSize, this.nextEventsTime);
+
+		/* sleep over the night that has started */
+		if (nightStart >= 0 && this.nextEventsTime > this.nextNight) {
+			this.nextEventsTime += drawSleepTime();
+			this.nightCount++;
+			this.nextNight = nightStart + (double)nightCount * DAY_LENGTH;
+		}
+		this.nextEventsTime += drawNextEventTimeDiff();
+
+		if (this.msgTime != null && this.nextEventsTime > this.msgTime[1]) {
+			/* next event would be later than the end time */
+			this.nextEventsTime = Double.MAX_VALUE;
+		}
+
+		return mce;
+	}
+
+	/**
+	 * Draws a (random) sleep time
+	 * @return the sleep time
+	 */
+	private int drawSleepTime() {
+		return sleepTime[0] + (sleepTime[0] == sleepTime[1] ? 0 :
+			rng.nextInt(sleepTime[1] - sleepTime[0]));
+	}
+}
@@ -66,6 +66,16 @@ public class StandardEventsReader implements ExternalEventsReader {
 	/** Message identifier to use to refer to all messages ({@value}) */
 	public static final String ALL_MESSAGES_ID = "*";
 
+	/** pattern of empty and comment lines */
+	private static final Pattern SKIP_PATTERN =
+		Pattern.compile("(#.*)|(^\\s*$)");
+	/** pattern of host ids that contain only the address */
+	private static final Pattern ADDRESS_ONLY_PATTERN =
+		Pattern.compile("^\\d+$");
+	/** pattern of host ids that have a prefix and the address */
+	private static final Pattern PREFIXED_ADDRESS_PATTERN =
+		Pattern.compile("^\\D+\\d+$");
+
 	//private Scanner scanner;
 	private BufferedReader reader;
 
@@ -82,9 +92,6 @@ public class StandardEventsReader implements ExternalEventsReader {
 	public List<ExternalEvent> readEvents(int nrof) {
 		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
 		int eventsRead = 0;
-		// skip empty and comment lines
-		Pattern skipPattern = Pattern.compile("(#.*)|(^\\s*$)");
-
 		String line;
 		try {
 			line = this.reader.readLine();
@@ -93,7 +100,7 @@ public class StandardEventsReader implements ExternalEventsReader {
 		}
 		while (eventsRead < nrof && line != null) {
 			Scanner lineScan = new Scanner(line);
-			if (skipPattern.matcher(line).matches()) {
+			if (SKIP_PATTERN.matcher(line).matches()) {
 				// skip empty and comment lines
 				try {
 					line = this.reader.readLine();
@@ -232,10 +239,10 @@ public class StandardEventsReader implements ExternalEventsReader {
 	 */
 	private int getHostAddress(String hostId) {
 		String addressPart = "";
-		if (hostId.matches("^\\d+$")) {
+		if (ADDRESS_ONLY_PATTERN.matcher(hostId).matches()) {
 			addressPart = hostId; // host id is only the address
 		}
-		else if (hostId.matches("^\\D+\\d+$")) {
+		else if (PREFIXED_ADDRESS_PATTERN.matcher(hostId).matches()) {
 			String [] parts = hostId.split("\\D");
 			addressPart = parts[parts.length-1]; // last occurence is the addr
 		}
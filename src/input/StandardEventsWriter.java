@@ -0,0 +1,177 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import core.SimError;
+
+/**
+ * Writes external events in the standard format that
+ * {@link StandardEventsReader} reads. The events are written one line at a
+ * time through a buffered writer, so event streams of any length can be
+ * written without collecting them in memory first.
+ */
+public class StandardEventsWriter {
+	/** size of the output buffer (characters) */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private Writer out;
+	private StringBuilder line;
+	private long nrofEvents;
+
+	/**
+	 * Constructor.
+	 * @param out Where the events are written to
+	 */
+	public StandardEventsWriter(Writer out) {
+		this.out = new BufferedWriter(out, BUFFER_SIZE);
+		this.line = new StringBuilder();
+		this.nrofEvents = 0;
+	}
+
+	/**
+	 * Writes an event as one line
+	 * @param ee The event
+	 * @throws IOException if writing failed
+	 */
+	public void write(ExternalEvent ee) throws IOException {
+		line.setLength(0);
+		appendTime(ee.getTime());
+
+		if (ee instanceof ConnectionEvent) {
+			ConnectionEvent ce = (ConnectionEvent)ee;
+			append(StandardEventsReader.CONNECTION);
+			append(ce.fromAddr);
+			append(ce.toAddr);
+			append(ce.isUp ? StandardEventsReader.CONNECTION_UP :
+				StandardEventsReader.CONNECTION_DOWN);
+			if (ce.interfaceId != null) {
+				append(ce.interfaceId);
+			}
+		}
+		else if (ee instanceof MessageCreateEvent) {
+			MessageCreateEvent mce = (MessageCreateEvent)ee;
+			append(StandardEventsReader.CREATE);
+			append(mce.id);
+			append(mce.fromAddr);
+			append(mce.toAddr);
+			append(mce.size);
+			if (mce.responseSize > 0) {
+				append(mce.responseSize);
+			}
+		}
+		else if (ee instanceof MessageDeleteEvent) {
+			MessageDeleteEvent mde = (MessageDeleteEvent)ee;
+			append(mde.drop ? StandardEventsReader.DROP :
+				StandardEventsReader.REMOVE);
+			append(mde.id);
+			append(mde.fromAddr);
+		}
+		else if (ee instanceof MessageRelayEvent) {
+			MessageRelayEvent mre = (MessageRelayEvent)ee;
+			switch (mre.stage) {
+			case MessageRelayEvent.SENDING:
+				append(StandardEventsReader.SEND);
+				break;
+			case MessageRelayEvent.TRANSFERRED:
+				append(StandardEventsReader.DELIVERED);
+				break;
+			default:
+				append(StandardEventsReader.ABORT);
+			}
+			append(mre.id);
+			append(mre.fromAddr);
+			append(mre.toAddr);
+		}
+		else {
+			throw new SimError("Can't write event " + ee);
+		}
+
+		line.append('\n');
+		out.append(line);
+		nrofEvents++;
+	}
+
+	/**
+	 * Appends the time; whole seconds are written without decimals
+	 */
+	private void appendTime(double time) {
+		if (time == Math.rint(time) && Math.abs(time) < Long.MAX_VALUE) {
+			line.append((long)time);
+		}
+		else {
+			line.append(time);
+		}
+	}
+
+	private void append(String field) {
+		line.append('\t').append(field);
+	}
+
+	private void append(int field) {
+		line.append('\t').append(field);
+	}
+
+	/**
+	 * Returns the number of events written so far
+	 * @return the number of written events
+	 */
+	public long getNrofEvents() {
+		return this.nrofEvents;
+	}
+
+	/**
+	 * Flushes the buffered lines to the underlying writer
+	 * @throws IOException if writing failed
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Flushes the buffered lines and closes the underlying writer
+	 * @throws IOException if writing failed
+	 */
+	public void close() throws IOException {
+		out.close();
+	}
+
+	/**
+	 * Writes all the events of an event queue to a standard external events
+	 * file
+	 * @param fileName Path to the file where the events are stored
+	 * @param events The queue whose events are written (until it returns an
+	 * event with time Double.MAX_VALUE)
+	 * @return Number of written events
+	 * @throws IOException if writing failed
+	 */
+	public static long storeToFile(String fileName, EventQueue events)
+			throws IOException {
+		StandardEventsWriter w = new StandardEventsWriter(
+				new FileWriter(fileName));
+		try {
+			w.writeAll(events);
+		} finally {
+			w.close();
+		}
+		return w.getNrofEvents();
+	}
+
+	/**
+	 * Writes all the events of an event queue
+	 * @param events The queue whose events are written (until it returns an
+	 * event with time Double.MAX_VALUE)
+	 * @throws IOException if writing failed
+	 */
+	public void writeAll(EventQueue events) throws IOException {
+		while (events.nextEventsTime() < Double.MAX_VALUE) {
+			write(events.nextEvent());
+		}
+	}
+}
@@ -15,6 +15,7 @@ import core.DTNSim;
 import core.NetworkInterface;
 import core.Settings;
 import core.SettingsError;
+import core.SimContext;
 import core.World;
 
 /**
@@ -59,11 +60,15 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	private int cellSize;
 	private int rows;
 	private int cols;
-	private static int worldSizeX;
-	private static int worldSizeY;
-	private static int cellSizeMultiplier;
 
-	static HashMap<Integer,ConnectivityGrid> gridobjects;
+	/** Per-run state (grid objects and their settings) of the class */
+	private static class GridState {
+		private HashMap<Integer,ConnectivityGrid> gridobjects =
+			new HashMap<Integer, ConnectivityGrid>();
+		private int worldSizeX;
+		private int worldSizeY;
+		private int cellSizeMultiplier;
+	}
 
 	static {
 		DTNSim.registerForReset(ConnectivityGrid.class.getCanonicalName());
@@ -71,33 +76,49 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	}
 
 	public static void reset() {
-		gridobjects = new HashMap<Integer, ConnectivityGrid>();
+		GridState state = new GridState();
 
 		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
 		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
-		worldSizeX = worldSize[0];
-		worldSizeY = worldSize[1];
+		state.worldSizeX = worldSize[0];
+		state.worldSizeY = worldSize[1];
 
 		s.setNameSpace(World.OPTIMIZATION_SETTINGS_NS);
 		if (s.contains(CELL_SIZE_MULT_S)) {
-			cellSizeMultiplier = s.getInt(CELL_SIZE_MULT_S);
+			state.cellSizeMultiplier = s.getInt(CELL_SIZE_MULT_S);
 		}
 		else {
-			cellSizeMultiplier = DEF_CON_CELL_SIZE_MULT;
+			state.cellSizeMultiplier = DEF_CON_CELL_SIZE_MULT;
+		}
+		if (state.cellSizeMultiplier < 1) {
+			throw new SettingsError("Too small value (" +
+					state.cellSizeMultiplier + ") for " +
+					World.OPTIMIZATION_SETTINGS_NS + "." + CELL_SIZE_MULT_S);
 		}
-		if (cellSizeMultiplier < 1) {
-			throw new SettingsError("Too small value (" + cellSizeMultiplier +
-					") for " + World.OPTIMIZATION_SETTINGS_NS +
-					"." + CELL_SIZE_MULT_S);
+
+		SimContext.current().putState(ConnectivityGrid.class, state);
+	}
+
+	/**
+	 * Returns the state of the class in the current simulation context
+	 * @return the state of the class in the current simulation context
+	 */
+	private static GridState getState() {
+		SimContext context = SimContext.current();
+		if (context.getState(ConnectivityGrid.class) == null) {
+			reset(); // first grid in this context
 		}
+		return (GridState)context.getState(ConnectivityGrid.class);
 	}
 
 	/**
 	 * Creates a new overlay connectivity grid
 	 * @param cellSize Cell's edge's length (must be larger than the largest
 	 * 	radio coverage's diameter)
+	 * @param worldSizeX Width of the world
+	 * @param worldSizeY Height of the world
 	 */
-	private ConnectivityGrid(int cellSize) {
+	private ConnectivityGrid(int cellSize, int worldSizeX, int worldSizeY) {
 		this.rows = worldSizeY/cellSize + 1;
 		this.cols = worldSizeX/cellSize + 1;
 		// leave empty cells on both sides to make neighbor search easier
@@ -121,12 +142,15 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 */
 	public static ConnectivityGrid ConnectivityGridFactory(int key,
 			double maxRange) {
+		GridState state = getState();
+		HashMap<Integer,ConnectivityGrid> gridobjects = state.gridobjects;
 		if (gridobjects.containsKey((Integer)key)) {
 			return (ConnectivityGrid)gridobjects.get((Integer)key);
 		} else {
 			ConnectivityGrid newgrid =
 				new ConnectivityGrid((int)Math.ceil(maxRange *
-						cellSizeMultiplier));
+						state.cellSizeMultiplier), state.worldSizeX,
+						state.worldSizeY);
 			gridobjects.put((Integer)key,newgrid);
 			return newgrid;
 		}
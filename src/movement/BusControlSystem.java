@@ -11,6 +11,7 @@ import java.util.List;
 import movement.map.SimMap;
 import core.Coord;
 import core.DTNSim;
+import core.SimContext;
 
 /**
  * This class controls busses and passengers that can use the bus.
@@ -22,8 +23,6 @@ import core.DTNSim;
 public class BusControlSystem {
 	public static final String BUS_CONTROL_SYSTEM_NR = "busControlSystemNr";
 
-	private static HashMap<Integer, BusControlSystem> systems;
-
 	private HashMap<Integer, BusMovement> busses;
 	private HashMap<Integer, BusTravellerMovement> travellers;
 	private List<Coord> busStops;
@@ -46,7 +45,8 @@ public class BusControlSystem {
 	}
 
 	public static void reset() {
-		systems = new HashMap<Integer, BusControlSystem>();
+		SimContext.current().putState(BusControlSystem.class,
+				new HashMap<Integer, BusControlSystem>());
 	}
 
 	/**
@@ -75,6 +75,20 @@ public class BusControlSystem {
 		}
 	}
 
+	/**
+	 * Returns the control systems of the current simulation run
+	 * @return the control systems of the current simulation run
+	 */
+	@SuppressWarnings("unchecked")
+	private static HashMap<Integer, BusControlSystem> getSystems() {
+		SimContext context = SimContext.current();
+		if (context.getState(BusControlSystem.class) == null) {
+			reset();
+		}
+		return (HashMap<Integer, BusControlSystem>)context.getState(
+				BusControlSystem.class);
+	}
+
 	/**
 	 * Returns a reference to a BusControlSystem with ID provided as parameter.
 	 * If a system does not already exist with the requested ID, a new one is
@@ -84,6 +98,7 @@ public class BusControlSystem {
 	 */
 	public static BusControlSystem getBusControlSystem(int systemID) {
 		Integer id = new Integer(systemID);
+		HashMap<Integer, BusControlSystem> systems = getSystems();
 
 		if (systems.containsKey(id)) {
 			return systems.get(id);
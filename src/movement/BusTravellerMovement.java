@@ -12,6 +12,7 @@ import movement.map.MapNode;
 import movement.map.SimMap;
 import core.Coord;
 import core.Settings;
+import core.SimContext;
 
 /**
  *
@@ -52,7 +53,6 @@ public class BusTravellerMovement extends MapBasedMovement implements
 
 	private boolean takeBus;
 
-	private static int nextID = 0;
 
 	/**
 	 * Creates a BusTravellerModel
@@ -62,7 +62,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 		super(settings);
 		int bcs = settings.getInt(BusControlSystem.BUS_CONTROL_SYSTEM_NR);
 		controlSystem = BusControlSystem.getBusControlSystem(bcs);
-		id = nextID++;
+		id = SimContext.current().nextId(BusTravellerMovement.class);
 		controlSystem.registerTraveller(this);
 		nextPath = new Path();
 		state = STATE_WALKING_ELSEWHERE;
@@ -89,7 +89,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 			location = proto.location.clone();
 		}
 		nextPath = proto.nextPath;
-		id = nextID++;
+		id = SimContext.current().nextId(BusTravellerMovement.class);
 		controlSystem.registerTraveller(this);
 		probabilities = proto.probabilities;
 		cbtd = new ContinueBusTripDecider(rng, probabilities);
@@ -351,7 +351,7 @@ public class BusTravellerMovement extends MapBasedMovement implements
 	}
 
 	public static void reset() {
-		nextID = 0;
+		SimContext.current().putState(BusTravellerMovement.class, null);
 	}
 
 }
@@ -10,6 +10,7 @@ import java.util.Random;
 
 import core.Coord;
 import core.DTNSim;
+import core.SimContext;
 
 /**
  * This class controls the group mobility of the people meeting their friends in
@@ -25,9 +26,6 @@ public class EveningActivityControlSystem {
 
 	private Random rng;
 
-	private static HashMap<Integer, EveningActivityControlSystem>
-		controlSystems;
-
 	static {
 		DTNSim.registerForReset(EveningActivityControlSystem.class.
 				getCanonicalName());
@@ -44,7 +42,8 @@ public class EveningActivityControlSystem {
 	}
 
 	public static void reset() {
-		controlSystems = new HashMap<Integer, EveningActivityControlSystem>();
+		SimContext.current().putState(EveningActivityControlSystem.class,
+				new HashMap<Integer, EveningActivityControlSystem>());
 	}
 
 	/**
@@ -118,6 +117,21 @@ public class EveningActivityControlSystem {
 		this.rng = rand;
 	}
 
+	/**
+	 * Returns the control systems of the current simulation run
+	 * @return the control systems of the current simulation run
+	 */
+	@SuppressWarnings("unchecked")
+	private static HashMap<Integer, EveningActivityControlSystem>
+			getControlSystems() {
+		SimContext context = SimContext.current();
+		if (context.getState(EveningActivityControlSystem.class) == null) {
+			reset();
+		}
+		return (HashMap<Integer, EveningActivityControlSystem>)context.
+			getState(EveningActivityControlSystem.class);
+	}
+
 	/**
 	 * Returns a reference to a EveningActivityControlSystem with ID provided as
 	 * parameter. If a system does not already exist with the requested ID, a
@@ -127,6 +141,8 @@ public class EveningActivityControlSystem {
 	 */
 	public static EveningActivityControlSystem getEveningActivityControlSystem(
 			int id) {
+		HashMap<Integer, EveningActivityControlSystem> controlSystems =
+			getControlSystems();
 		if (controlSystems.containsKey(new Integer(id))) {
 			return controlSystems.get(new Integer(id));
 		} else {
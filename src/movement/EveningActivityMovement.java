@@ -15,6 +15,7 @@ import movement.map.MapNode;
 import movement.map.SimMap;
 import core.Coord;
 import core.Settings;
+import core.SimContext;
 
 /**
  * A Class to model movement when people are out shopping or doing other
@@ -44,7 +45,7 @@ public class EveningActivityMovement extends MapBasedMovement
 	public static final String MAX_WAIT_TIME_SETTING =
 		"maxAfterShoppingStopTime";
 
-	private static int nrOfMeetingSpots = 10;
+	private int nrOfMeetingSpots = 10;
 
 	private int mode;
 	private boolean ready;
@@ -60,7 +61,6 @@ public class EveningActivityMovement extends MapBasedMovement
 
 	private int id;
 
-	private static int nextID = 0;
 
 	private int minGroupSize;
 	private int maxGroupSize;
@@ -120,7 +120,7 @@ public class EveningActivityMovement extends MapBasedMovement
 			}
 		}
 
-		this.id = nextID++;
+		this.id = SimContext.current().nextId(EveningActivityMovement.class);
 
 		int scsID = settings.getInt(EVENING_ACTIVITY_CONTROL_SYSTEM_NR_SETTING);
 
@@ -144,7 +144,7 @@ public class EveningActivityMovement extends MapBasedMovement
 		super(proto);
 		this.pathFinder = proto.pathFinder;
 		this.mode = proto.mode;
-		this.id = nextID++;
+		this.id = SimContext.current().nextId(EveningActivityMovement.class);
 		scs = proto.scs;
 		scs.addEveningActivityNode(this);
 		this.setMinGroupSize(proto.getMinGroupSize());
@@ -277,7 +277,7 @@ public class EveningActivityMovement extends MapBasedMovement
 	}
 
 	public static void reset() {
-		nextID = 0;
+		SimContext.current().putState(EveningActivityMovement.class, null);
 	}
 
 	public int getMinGroupSize() {
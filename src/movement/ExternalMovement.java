@@ -17,6 +17,7 @@ import util.Tuple;
 import core.Coord;
 import core.DTNSim;
 import core.Settings;
+import core.SimContext;
 import core.SimClock;
 
 /**
@@ -32,24 +33,31 @@ public class ExternalMovement extends MovementModel {
 
 	/** default initial location for excess nodes */
 	private static final Coord DEF_INIT_LOC = new Coord(0,0);
-	private static ExternalMovementReader reader;
-	private static String inputFileName;
-
-	/** mapping of external id to movement model */
-	private static Map<String, ExternalMovement> idMapping;
-	/** initial locations for nodes */
-	private static List<Tuple<String, Coord>> initLocations;
-	/** time of the very first location data */
-	private static double initTime;
-	/** sampling interval (seconds) of the location data */
-	private static double samplingInterval;
-	/** last read time stamp after preloading */
-	private static double lastPreloadTime;
-	/** how many time intervals to load on every preload run */
-	private static double nrofPreload = 10;
 	/** minimum number intervals that should be preloaded ahead of sim time */
 	private static final double MIN_AHEAD_INTERVALS = 2;
 
+	/** location data shared by all the nodes of a simulation run */
+	private static class Feed {
+		private ExternalMovementReader reader;
+		private String inputFileName;
+
+		/** mapping of external id to movement model */
+		private Map<String, ExternalMovement> idMapping;
+		/** initial locations for nodes */
+		private List<Tuple<String, Coord>> initLocations;
+		/** time of the very first location data */
+		private double initTime;
+		/** sampling interval (seconds) of the location data */
+		private double samplingInterval;
+		/** last read time stamp after preloading */
+		private double lastPreloadTime;
+		/** how many time intervals to load on every preload run */
+		private double nrofPreload = 10;
+	}
+
+	/** the location data feed of this node's simulation run */
+	private Feed feed;
+
 	/** the very first location of the node */
 	private Coord intialLocation;
 	/** queue of path-start-time, path tuples */
@@ -77,25 +85,29 @@ public class ExternalMovement extends MovementModel {
 	public ExternalMovement(Settings settings) {
 		super(settings);
 
-		if (idMapping == null) {
+		SimContext context = SimContext.current();
+		feed = (Feed)context.getState(ExternalMovement.class);
+		if (feed == null) {
 			// run these the first time object is created or after reset call
+			feed = new Feed();
 			Settings s = new Settings(EXTERNAL_MOVEMENT_NS);
-			idMapping = new HashMap<String, ExternalMovement>();
-			inputFileName = s.getSetting(MOVEMENT_FILE_S);
-			reader = new ExternalMovementReader(inputFileName);
+			feed.idMapping = new HashMap<String, ExternalMovement>();
+			feed.inputFileName = s.getSetting(MOVEMENT_FILE_S);
+			feed.reader = new ExternalMovementReader(feed.inputFileName);
 
-			initLocations = reader.readNextMovements();
-			initTime = reader.getLastTimeStamp();
-			samplingInterval = -1;
-			lastPreloadTime = -1;
+			feed.initLocations = feed.reader.readNextMovements();
+			feed.initTime = feed.reader.getLastTimeStamp();
+			feed.samplingInterval = -1;
+			feed.lastPreloadTime = -1;
 
 			s.setNameSpace(EXTERNAL_MOVEMENT_NS);
 			if (s.contains(NROF_PRELOAD_S)) {
-				nrofPreload = s.getInt(NROF_PRELOAD_S);
-				if (nrofPreload <= 0) {
-					nrofPreload = 1;
+				feed.nrofPreload = s.getInt(NROF_PRELOAD_S);
+				if (feed.nrofPreload <= 0) {
+					feed.nrofPreload = 1;
 				}
 			}
+			context.putState(ExternalMovement.class, feed);
 		}
 	}
 
@@ -104,8 +116,10 @@ public class ExternalMovement extends MovementModel {
 	 * location queue.
 	 * @param mm The movement model to copy from
 	 */
-	private ExternalMovement(MovementModel mm) {
+	private ExternalMovement(ExternalMovement mm) {
 		super(mm);
+		this.feed = mm.feed;
+		List<Tuple<String, Coord>> initLocations = feed.initLocations;
 
 		pathQueue = new LinkedList<Tuple<Double, Path>>();
 		latestPath = null;
@@ -114,10 +128,10 @@ public class ExternalMovement extends MovementModel {
 			// gets a new location from the list
 			Tuple<String, Coord> initLoc = initLocations.remove(0);
 			this.intialLocation = this.latestLocation = initLoc.getValue();
-			this.latestPathStartTime = initTime;
+			this.latestPathStartTime = feed.initTime;
 
 			// puts the new model to model map for later updates
-			idMapping.put(initLoc.getKey(), this);
+			feed.idMapping.put(initLoc.getKey(), this);
 			isActive = true;
 		}
 		else {
@@ -131,16 +145,17 @@ public class ExternalMovement extends MovementModel {
 	 * Checks if more paths should be preloaded and preloads them if
 	 * needed.
 	 */
-	private static void checkPathNeed() {
-		if (samplingInterval == -1) { // first preload
-			lastPreloadTime = readMorePaths();
+	private static void checkPathNeed(Feed feed) {
+		if (feed.samplingInterval == -1) { // first preload
+			feed.lastPreloadTime = readMorePaths(feed);
 		}
 
-		if (!Double.isNaN(lastPreloadTime) && SimClock.getTime() >=
-				lastPreloadTime - (samplingInterval * MIN_AHEAD_INTERVALS) ) {
-			for (int i=0; i < nrofPreload &&
-					!Double.isNaN(lastPreloadTime); i++) {
-				lastPreloadTime = readMorePaths();
+		if (!Double.isNaN(feed.lastPreloadTime) && SimClock.getTime() >=
+				feed.lastPreloadTime -
+				(feed.samplingInterval * MIN_AHEAD_INTERVALS) ) {
+			for (int i=0; i < feed.nrofPreload &&
+					!Double.isNaN(feed.lastPreloadTime); i++) {
+				feed.lastPreloadTime = readMorePaths(feed);
 			}
 		}
 	}
@@ -163,7 +178,7 @@ public class ExternalMovement extends MovementModel {
 	 * @param time When should the node be there
 	 */
 	private void addLocation(Coord loc, double time) {
-		assert samplingInterval > 0 : "Non-positive sampling interval!";
+		assert feed.samplingInterval > 0 : "Non-positive sampling interval!";
 
 		if (loc.equals(latestLocation)) { // node didn't move
 			if (latestPath != null) {
@@ -181,7 +196,8 @@ public class ExternalMovement extends MovementModel {
 			latestPath = new Path();
 		}
 
-		double speed = loc.distance(this.latestLocation) / samplingInterval;
+		double speed = loc.distance(this.latestLocation) /
+			feed.samplingInterval;
 		latestPath.addWaypoint(loc, speed);
 
 		this.latestLocation = loc;
@@ -205,7 +221,7 @@ public class ExternalMovement extends MovementModel {
 	public Path getPath() {
 		Path p;
 
-		checkPathNeed(); // check if we should preload more paths
+		checkPathNeed(feed); // check if we should preload more paths
 
 		if (SimClock.getTime() < this.nextPathAvailable()) {
 			return null;
@@ -224,12 +240,12 @@ public class ExternalMovement extends MovementModel {
 
 	@Override
 	public int getMaxX() {
-		return (int)(reader.getMaxX() - reader.getMinX()) + 1;
+		return (int)(feed.reader.getMaxX() - feed.reader.getMinX()) + 1;
 	}
 
 	@Override
 	public int getMaxY() {
-		return (int)(reader.getMaxY() - reader.getMinY()) + 1;
+		return (int)(feed.reader.getMaxY() - feed.reader.getMinY()) + 1;
 	}
 
 
@@ -243,16 +259,16 @@ public class ExternalMovement extends MovementModel {
 	 * @return The time stamp of the reading or Double.NaN if no movements
 	 * were read.
 	 */
-	private static double readMorePaths() {
-		List<Tuple<String, Coord>> list = reader.readNextMovements();
-		double time = reader.getLastTimeStamp();
+	private static double readMorePaths(Feed feed) {
+		List<Tuple<String, Coord>> list = feed.reader.readNextMovements();
+		double time = feed.reader.getLastTimeStamp();
 
-		if (samplingInterval == -1) {
-			samplingInterval = time - initTime;
+		if (feed.samplingInterval == -1) {
+			feed.samplingInterval = time - feed.initTime;
 		}
 
 		for (Tuple<String, Coord> t : list) {
-			ExternalMovement em = idMapping.get(t.getKey());
+			ExternalMovement em = feed.idMapping.get(t.getKey());
 			if (em != null) { // skip unknown IDs, i.e. IDs not mentioned in...
 				// ...init phase or if there are more IDs than nodes
 				em.addLocation(t.getValue(), time);
@@ -271,7 +287,7 @@ public class ExternalMovement extends MovementModel {
 	 * Reset state so that next instance will have a fresh state
 	 */
 	public static void reset() {
-		idMapping = null;
+		SimContext.current().putState(ExternalMovement.class, null);
 	}
 
 }
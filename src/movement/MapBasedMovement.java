@@ -267,46 +267,49 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		Settings settings = new Settings(MAP_BASE_MOVEMENT_NS);
 		WKTMapReader r = new WKTMapReader(true);
 
-		if (cachedMap == null) {
-			cachedMapFiles = new ArrayList<String>(); // no cache present
-		}
-		else { // something in cache
-			// check out if previously asked map was asked again
-			SimMap cached = checkCache(settings);
-			if (cached != null) {
-				nrofMapFilesRead = cachedMapFiles.size();
-				return cached; // we had right map cached -> return it
+		/* the map cache is shared by all (concurrent) simulation runs */
+		synchronized (MapBasedMovement.class) {
+			if (cachedMap == null) {
+				cachedMapFiles = new ArrayList<String>(); // no cache present
 			}
-			else { // no hit -> reset cache
-				cachedMapFiles = new ArrayList<String>();
-				cachedMap = null;
+			else { // something in cache
+				// check out if previously asked map was asked again
+				SimMap cached = checkCache(settings);
+				if (cached != null) {
+					nrofMapFilesRead = cachedMapFiles.size();
+					return cached; // we had right map cached -> return it
+				}
+				else { // no hit -> reset cache
+					cachedMapFiles = new ArrayList<String>();
+					cachedMap = null;
+				}
 			}
-		}
 
-		try {
-			int nrofMapFiles = settings.getInt(NROF_FILES_S);
+			try {
+				int nrofMapFiles = settings.getInt(NROF_FILES_S);
 
-			for (int i = 1; i <= nrofMapFiles; i++ ) {
-				String pathFile = settings.getSetting(FILE_S + i);
-				cachedMapFiles.add(pathFile);
-				r.addPaths(new File(pathFile), i);
-			}
+				for (int i = 1; i <= nrofMapFiles; i++ ) {
+					String pathFile = settings.getSetting(FILE_S + i);
+					cachedMapFiles.add(pathFile);
+					r.addPaths(new File(pathFile), i);
+				}
 
-			nrofMapFilesRead = nrofMapFiles;
-		} catch (IOException e) {
-			throw new SimError(e.toString(),e);
-		}
+				nrofMapFilesRead = nrofMapFiles;
+			} catch (IOException e) {
+				throw new SimError(e.toString(),e);
+			}
 
-		simMap = r.getMap();
-		checkMapConnectedness(simMap.getNodes());
-		// mirrors the map (y' = -y) and moves its upper left corner to origo
-		simMap.mirror();
-		Coord offset = simMap.getMinBound().clone();
-		simMap.translate(-offset.getX(), -offset.getY());
-		checkCoordValidity(simMap.getNodes());
+			simMap = r.getMap();
+			checkMapConnectedness(simMap.getNodes());
+			// mirrors the map (y' = -y), moves its upper left corner to origo
+			simMap.mirror();
+			Coord offset = simMap.getMinBound().clone();
+			simMap.translate(-offset.getX(), -offset.getY());
+			checkCoordValidity(simMap.getNodes());
 
-		cachedMap = simMap;
-		return simMap;
+			cachedMap = simMap;
+			return simMap;
+		}
 	}
 
 	/**
@@ -13,6 +13,7 @@ import core.DTNHost;
 import core.DTNSim;
 import core.ModuleCommunicationBus;
 import core.Settings;
+import core.SimContext;
 import core.SimClock;
 import core.SimError;
 
@@ -45,8 +46,8 @@ public abstract class MovementModel {
 	/** movement models' rng seed -setting id ({@value})*/
 	public static final String RNG_SEED = "rngSeed";
 
-	/** common rng for all movement models in the simulation */
-	protected static Random rng;
+	/** common rng for all movement models in the simulation (run) */
+	protected Random rng;
 
 	/** DTNHost to which this movement model is attached */
 	protected DTNHost host;
@@ -93,6 +94,7 @@ public abstract class MovementModel {
 	 */
 	public MovementModel() {
 		super();
+		this.rng = getSharedRng();
 	}
 
 	/**
@@ -103,6 +105,8 @@ public abstract class MovementModel {
 		double[] speeds;
 		double[] times;
 
+		this.rng = getSharedRng();
+
 		ah = new ActivenessHandler(settings);
 
 		if (settings.contains(SPEED)) {
@@ -149,6 +153,7 @@ public abstract class MovementModel {
 		this.maxY = mm.maxY;
 		this.ah = mm.ah;
 		this.comBus = null;
+		this.rng = getSharedRng();
 	}
 
 	/**
@@ -276,6 +281,7 @@ public abstract class MovementModel {
 	 */
 	public static void reset() {
 		Settings s = new Settings(MOVEMENT_MODEL_NS);
+		Random rng;
 		if (s.contains(RNG_SEED)) {
 			int seed = s.getInt(RNG_SEED);
 			rng = new Random(seed);
@@ -283,6 +289,20 @@ public abstract class MovementModel {
 		else {
 			rng = new Random(0);
 		}
+		SimContext.current().putState(MovementModel.class, rng);
+	}
+
+	/**
+	 * Returns the random number generator shared by all movement models of
+	 * the current simulation run (context)
+	 * @return The shared random number generator
+	 */
+	protected static Random getSharedRng() {
+		SimContext context = SimContext.current();
+		if (context.getState(MovementModel.class) == null) {
+			reset(); // first movement model in this context
+		}
+		return (Random)context.getState(MovementModel.class);
 	}
 
 }
@@ -47,7 +47,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 	public static final String OFFICE_LOCATIONS_FILE_SETTING =
 		"officeLocationsFile";
 
-	private static int nrOfOffices = 50;
+	private int nrOfOffices = 50;
 
 	private int mode;
 	private int workDayLength;
@@ -138,6 +138,7 @@ public class OfficeActivityMovement extends MapBasedMovement implements
 	public OfficeActivityMovement(OfficeActivityMovement proto) {
 		super(proto);
 		this.workDayLength = proto.workDayLength;
+		this.nrOfOffices = proto.nrOfOffices;
 		startedWorkingTime = -1;
 		this.distance = proto.distance;
 		this.pathFinder = proto.pathFinder;
@@ -4,9 +4,11 @@
  */
 package report;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.List;
 
+import util.LongHashMap;
 import core.ConnectionListener;
 import core.DTNHost;
 
@@ -19,7 +21,10 @@ public class AdjacencyGraphvizReport extends Report implements ConnectionListene
 	public static final String GRAPH_NAME = "adjgraph";
 
 	private String HOST_DELIM = "<->"; // used in toString()
-	private HashMap<String, ConnectionInfo> cons;
+	/** connection infos by the host pair keys */
+	private LongHashMap<ConnectionInfo> cons;
+	/** connection infos in the order of the first connections */
+	private List<ConnectionInfo> consList;
 	private Collection<DTNHost> allHosts;
 
 	/**
@@ -32,7 +37,8 @@ public class AdjacencyGraphvizReport extends Report implements ConnectionListene
 
 	protected void init() {
 		super.init();
-		this.cons = new HashMap<String, ConnectionInfo>();
+		this.cons = new LongHashMap<ConnectionInfo>();
+		this.consList = new ArrayList<ConnectionInfo>();
 	}
 
 
@@ -42,10 +48,13 @@ public class AdjacencyGraphvizReport extends Report implements ConnectionListene
 		}
 
 		newEvent();
-		ConnectionInfo ci = cons.get(host1+HOST_DELIM+host2);
+		long key = ContactTracker.pairKey(host1, host2);
+		ConnectionInfo ci = cons.get(key);
 
 		if (ci == null) {
-			cons.put(host1+HOST_DELIM+host2, new ConnectionInfo(host1,host2));
+			ci = new ConnectionInfo(host1, host2);
+			cons.put(key, ci);
+			consList.add(ci);
 		}
 		else {
 			ci.nrofConnections++;
@@ -67,7 +76,7 @@ public class AdjacencyGraphvizReport extends Report implements ConnectionListene
 		write("graph " + GRAPH_NAME + " {");
 		setPrefix("\t"); // indent following lines by one tab
 
-		for (ConnectionInfo ci : cons.values()) {
+		for (ConnectionInfo ci : consList) {
 			int weight = ci.nrofConnections;
 			write(ci.h1 + "--" + ci.h2 + " [weight=" + weight + "];");
 		}
@@ -100,15 +109,6 @@ public class AdjacencyGraphvizReport extends Report implements ConnectionListene
 			this.nrofConnections = 1;
 		}
 
-		public boolean equals(Object o) {
-			if (o == null) return false;
-			return o.toString().equals(this.toString());
-		}
-
-		public int hashCode() {
-			return toString().hashCode();
-		}
-
 		public String toString() {
 			return h1+HOST_DELIM+h2;
 		}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Writer that collects the written text into large chunks and writes them
+ * to another writer in a background thread. Two chunks are used in turns,
+ * so the simulation can fill one while the other one is being written.
+ * Errors of the background writing are thrown from the next call of this
+ * writer.
+ */
+public class AsyncWriter extends Writer {
+	/** Size of a chunk (characters) */
+	public static final int CHUNK_SIZE = 1 << 16;
+
+	/** Chunk of text to write */
+	private static class Chunk {
+		private final char[] data = new char[CHUNK_SIZE];
+		private int length;
+		/** should the writer be flushed after writing this chunk */
+		private boolean flush;
+		/** is this the last chunk (i.e., should the writer be closed) */
+		private boolean last;
+	}
+
+	private final Writer out;
+	/** chunks waiting to be written */
+	private final BlockingQueue<Chunk> filled;
+	/** chunks that can be filled */
+	private final BlockingQueue<Chunk> free;
+	private final Thread writerThread;
+	/** the chunk that is being filled (null after closing) */
+	private Chunk current;
+	/** error of the writer thread (or null) */
+	private volatile IOException error;
+
+	/**
+	 * Creates a new writer and starts its background thread
+	 * @param out The writer where the text is written to
+	 */
+	public AsyncWriter(Writer out) {
+		this.out = out;
+		this.filled = new ArrayBlockingQueue<Chunk>(2);
+		this.free = new ArrayBlockingQueue<Chunk>(2);
+		this.free.add(new Chunk());
+		this.current = new Chunk();
+
+		this.writerThread = new Thread("AsyncWriter") {
+			public void run() {
+				writeChunks();
+			}
+		};
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	/**
+	 * Writes the filled chunks until the last chunk is written. Run by the
+	 * writer thread.
+	 */
+	private void writeChunks() {
+		while (true) {
+			Chunk c;
+			try {
+				c = this.filled.take();
+			} catch (InterruptedException e) {
+				this.error = new IOException("Writer thread interrupted");
+				return;
+			}
+
+			try {
+				if (this.error == null) {
+					this.out.write(c.data, 0, c.length);
+					if (c.flush) {
+						this.out.flush();
+					}
+					if (c.last) {
+						this.out.close();
+					}
+				}
+			} catch (IOException e) {
+				this.error = e;
+			}
+
+			if (c.last) {
+				return;
+			}
+			c.length = 0;
+			c.flush = false;
+			this.free.add(c);
+		}
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		checkState();
+		while (len > 0) {
+			int n = Math.min(len, CHUNK_SIZE - current.length);
+			System.arraycopy(cbuf, off, current.data, current.length, n);
+			current.length += n;
+			off += n;
+			len -= n;
+			if (current.length == CHUNK_SIZE) {
+				handOff(false, false);
+			}
+		}
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		checkState();
+		while (len > 0) {
+			int n = Math.min(len, CHUNK_SIZE - current.length);
+			str.getChars(off, off + n, current.data, current.length);
+			current.length += n;
+			off += n;
+			len -= n;
+			if (current.length == CHUNK_SIZE) {
+				handOff(false, false);
+			}
+		}
+	}
+
+	/**
+	 * Passes the current chunk to the writer thread without waiting for it
+	 * to be written
+	 */
+	@Override
+	public void flush() throws IOException {
+		checkState();
+		handOff(true, false);
+	}
+
+	/**
+	 * Writes all the text and closes the underlying writer. Waits until the
+	 * writer thread is done.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (current == null) {
+			return;
+		}
+		handOff(true, true);
+		try {
+			this.writerThread.join();
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while closing", e);
+		}
+		if (this.error != null) {
+			throw this.error;
+		}
+	}
+
+	private void checkState() throws IOException {
+		if (current == null) {
+			throw new IOException("Writer is closed");
+		}
+		if (this.error != null) {
+			throw this.error;
+		}
+	}
+
+	/**
+	 * Passes the current chunk to the writer thread and takes a free chunk
+	 * to fill next
+	 * @param flush Should the writer be flushed after writing the chunk
+	 * @param last Is this the last chunk
+	 */
+	private void handOff(boolean flush, boolean last) throws IOException {
+		current.flush = flush;
+		current.last = last;
+		try {
+			this.filled.put(current);
+			current = (last ? null : this.free.take());
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while writing", e);
+		}
+	}
+}
@@ -13,7 +13,9 @@ package report;
  * <p>
  * The occupancy is calculated as an instantaneous snapshot every nth second
  * as defined by the <code>occupancyInterval</code> setting, not as an
- * average over time.
+ * average over time. If <code>occupancyTimeAverage</code> setting is true,
+ * the average occupancy over the time since the previous snapshot is
+ * reported instead.
  * </p>
  *
  * @author	teemuk
@@ -23,9 +25,10 @@ import java.util.List;
 import core.DTNHost;
 import core.Settings;
 import core.SimClock;
-import core.UpdateListener;
+import core.ScheduledUpdateListener;
 
-public class BufferOccupancyReport extends Report implements UpdateListener {
+public class BufferOccupancyReport extends Report
+	implements ScheduledUpdateListener {
 
 	/**
 	 * Record occupancy every nth second -setting id ({@value}).
@@ -35,9 +38,21 @@ public class BufferOccupancyReport extends Report implements UpdateListener {
 	public static final String BUFFER_REPORT_INTERVAL = "occupancyInterval";
 	/** Default value for the snapshot interval */
 	public static final int DEFAULT_BUFFER_REPORT_INTERVAL = 5;
+	/**
+	 * Report time averaged occupancy -setting id ({@value}).
+	 * If true, the average occupancy of each host over the time since the
+	 * previous snapshot is used instead of the instantaneous occupancy.
+	 * Default is false.
+	 */
+	public static final String TIME_AVERAGE_S = "occupancyTimeAverage";
 
 	private double lastRecord = Double.MIN_VALUE;
 	private int interval;
+	private boolean timeAverage;
+	/** occupancy integrals of the hosts at the previous snapshot */
+	private double[] lastIntegrals;
+	/** time of the previous snapshot (for time averages) */
+	private double lastIntegralTime;
 
 	/**
 	 * Creates a new BufferOccupancyReport instance.
@@ -55,6 +70,9 @@ public class BufferOccupancyReport extends Report implements UpdateListener {
 		if (interval < 0) { /* not found or invalid value -> use default */
 			interval = DEFAULT_BUFFER_REPORT_INTERVAL;
 		}
+
+		timeAverage = settings.getBoolean(TIME_AVERAGE_S, false);
+		lastIntegralTime = 0;
 	}
 
 	public void updated(List<DTNHost> hosts) {
@@ -64,6 +82,14 @@ public class BufferOccupancyReport extends Report implements UpdateListener {
 		}
 	}
 
+	/**
+	 * Returns the time when the next snapshot should be taken
+	 * @return the time when the next snapshot should be taken
+	 */
+	public double getNextUpdateTime() {
+		return lastRecord + interval;
+	}
+
 	/**
 	 * Prints a snapshot of the average buffer occupancy
 	 * @param hosts The list of hosts in the simulation
@@ -72,13 +98,23 @@ public class BufferOccupancyReport extends Report implements UpdateListener {
 		double bufferOccupancy = 0.0;
 		double bo2 = 0.0;
 
-		for (DTNHost h : hosts) {
-			double tmp = h.getBufferOccupancy();
+		if (timeAverage && lastIntegrals == null) {
+			lastIntegrals = new double[hosts.size()];
+		}
+
+		for (int i=0, n=hosts.size(); i < n; i++) {
+			DTNHost h = hosts.get(i);
+			double tmp = timeAverage ? getAverageOccupancy(h, i) :
+				h.getBufferOccupancy();
 			tmp = (tmp<=100.0)?(tmp):(100.0);
 			bufferOccupancy += tmp;
 			bo2 += (tmp*tmp)/100.0;
 		}
 
+		if (timeAverage) {
+			lastIntegralTime = SimClock.getTime();
+		}
+
 		double E_X = bufferOccupancy / hosts.size();
 		double Var_X = bo2 / hosts.size() - (E_X*E_X)/100.0;
 
@@ -87,4 +123,27 @@ public class BufferOccupancyReport extends Report implements UpdateListener {
 		write(output);
 	}
 
+	/**
+	 * Returns the average buffer occupancy of a host since the previous
+	 * snapshot. The average is calculated from the host's occupancy
+	 * integral so the buffer doesn't need to be rescanned.
+	 * @param h The host
+	 * @param index Index of the host in the hosts list
+	 * @return The average occupancy percentage
+	 */
+	private double getAverageOccupancy(DTNHost h, int index) {
+		double integral = h.getBufferOccupancyIntegral();
+		double elapsed = SimClock.getTime() - lastIntegralTime;
+		double average;
+
+		if (elapsed > 0) {
+			average = (integral - lastIntegrals[index]) / elapsed;
+		} else { /* no time has passed; use the current occupancy */
+			average = h.getBufferOccupancy();
+		}
+		lastIntegrals[index] = integral;
+
+		return average;
+	}
+
 }
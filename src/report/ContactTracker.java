@@ -0,0 +1,275 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import util.LongHashMap;
+import core.DTNHost;
+import core.DTNSim;
+import core.SimClock;
+import core.SimContext;
+
+/**
+ * Keeps track of the contacts between host pairs for the contact reports.
+ * One tracker is shared by all reports of a simulation run, so the contact
+ * bookkeeping is done only once per connection event however many contact
+ * reports are used. Host pairs are stored in a primitive hash map keyed by
+ * {@link #pairKey(DTNHost, DTNHost)}.
+ * <P>The reports pass every connection event they get to the tracker
+ * (before any filtering, e.g., for the warm up period) and then read the
+ * state of the pair. The tracker handles each event only once: when
+ * another report passes the same event, it is ignored. An identical event
+ * from a report that already passed the previous one is a new event
+ * (e.g., a second connection between hosts with multiple interfaces).</P>
+ * <P>The state of a pair follows the connection events like the old per
+ * report bookkeeping did: a pair is up after a connection event and down
+ * after a disconnection event; the latest up and down times are stored.
+ * </P>
+ */
+public class ContactTracker {
+	/** contact state of the host pairs by their pair keys */
+	private LongHashMap<Pair> pairs;
+	/** pairs that are currently up, by their pair keys */
+	private LongHashMap<Pair> upPairs;
+
+	/** the latest handled event's pair (or null) */
+	private Pair lastPair;
+	/** was the latest handled event a connection event */
+	private boolean lastWasUp;
+	/** time of the latest handled event */
+	private double lastTime;
+	/** reports that have passed the latest handled event */
+	private List<Object> lastCallers;
+
+	static {
+		DTNSim.registerForReset(ContactTracker.class.getCanonicalName());
+		reset();
+	}
+
+	/**
+	 * Resets the tracker of the current simulation context
+	 */
+	public static void reset() {
+		SimContext.current().putState(ContactTracker.class, null);
+	}
+
+	/**
+	 * Returns the tracker of the current simulation run
+	 * @return the tracker of the current simulation run
+	 */
+	public static ContactTracker getInstance() {
+		SimContext context = SimContext.current();
+		ContactTracker tracker =
+			(ContactTracker)context.getState(ContactTracker.class);
+		if (tracker == null) {
+			tracker = new ContactTracker();
+			context.putState(ContactTracker.class, tracker);
+		}
+		return tracker;
+	}
+
+	private ContactTracker() {
+		this.pairs = new LongHashMap<Pair>();
+		this.upPairs = new LongHashMap<Pair>();
+		this.lastCallers = new ArrayList<Object>();
+	}
+
+	/**
+	 * Returns a key that is the same for both orders of the two hosts. The
+	 * smaller address is in the upper 32 bits.
+	 * @param h1 The first host
+	 * @param h2 The second host
+	 * @return The key of the host pair
+	 */
+	public static long pairKey(DTNHost h1, DTNHost h2) {
+		int a1 = h1.getAddress();
+		int a2 = h2.getAddress();
+		if (a1 > a2) {
+			int tmp = a1;
+			a1 = a2;
+			a2 = tmp;
+		}
+		return ((long)a1 << 32) | (a2 & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Handles a connection event (unless it was already handled)
+	 * @param caller The report that passes the event
+	 * @param h1 The first host
+	 * @param h2 The second host
+	 * @return The state of the pair after the event
+	 */
+	public Pair hostsConnected(Object caller, DTNHost h1, DTNHost h2) {
+		return handleEvent(caller, h1, h2, true);
+	}
+
+	/**
+	 * Handles a disconnection event (unless it was already handled)
+	 * @param caller The report that passes the event
+	 * @param h1 The first host
+	 * @param h2 The second host
+	 * @return The state of the pair after the event
+	 */
+	public Pair hostsDisconnected(Object caller, DTNHost h1, DTNHost h2) {
+		return handleEvent(caller, h1, h2, false);
+	}
+
+	private Pair handleEvent(Object caller, DTNHost h1, DTNHost h2,
+			boolean up) {
+		double now = SimClock.getTime();
+		Pair pair = getPair(h1, h2);
+
+		if (pair == this.lastPair && up == this.lastWasUp &&
+				now == this.lastTime && !this.lastCallers.contains(caller)) {
+			this.lastCallers.add(caller); // same event from another report
+			return pair;
+		}
+
+		this.lastPair = pair;
+		this.lastWasUp = up;
+		this.lastTime = now;
+		this.lastCallers.clear();
+		this.lastCallers.add(caller);
+
+		pair.changed = (pair.up != up);
+		pair.up = up;
+		if (up) {
+			pair.lastUp = now;
+			this.upPairs.put(pair.key, pair);
+		}
+		else {
+			pair.lastDown = now;
+			this.upPairs.remove(pair.key);
+		}
+		return pair;
+	}
+
+	/**
+	 * Returns the state of a host pair. Pairs are created on demand.
+	 * @param h1 The first host
+	 * @param h2 The second host
+	 * @return The state of the pair
+	 */
+	public Pair getPair(DTNHost h1, DTNHost h2) {
+		long key = pairKey(h1, h2);
+		Pair pair = this.pairs.get(key);
+
+		if (pair == null || !pair.hasHosts(h1, h2)) {
+			/* new pair (or one of hosts of an earlier run with the same
+			 * addresses, e.g., in tests) */
+			pair = new Pair(key, h1, h2);
+			this.pairs.put(key, pair);
+			this.upPairs.remove(key);
+		}
+		return pair;
+	}
+
+	/**
+	 * Returns all pairs that have had contacts (in no particular order)
+	 * @return A new list of the pairs
+	 */
+	public List<Pair> getPairs() {
+		return this.pairs.values();
+	}
+
+	/**
+	 * Returns the pairs that are up (in no particular order)
+	 * @return A new list of the pairs
+	 */
+	public List<Pair> getUpPairs() {
+		return this.upPairs.values();
+	}
+
+	/**
+	 * Contact state of a host pair
+	 */
+	public static class Pair {
+		private final long key;
+		private final DTNHost host1;
+		private final DTNHost host2;
+		private boolean up;
+		private boolean changed;
+		private double lastUp;
+		private double lastDown;
+
+		private Pair(long key, DTNHost h1, DTNHost h2) {
+			this.key = key;
+			this.host1 = h1;
+			this.host2 = h2;
+			this.up = false;
+			this.changed = false;
+			this.lastUp = -1;
+			this.lastDown = -1;
+		}
+
+		private boolean hasHosts(DTNHost h1, DTNHost h2) {
+			return (h1 == host1 && h2 == host2) ||
+				(h1 == host2 && h2 == host1);
+		}
+
+		/**
+		 * Returns the key of the pair
+		 * @return the key of the pair
+		 * @see ContactTracker#pairKey(DTNHost, DTNHost)
+		 */
+		public long getKey() {
+			return this.key;
+		}
+
+		/**
+		 * Returns the first host of the pair (as given in the first event)
+		 * @return the first host
+		 */
+		public DTNHost getHost1() {
+			return this.host1;
+		}
+
+		/**
+		 * Returns the second host of the pair (as given in the first event)
+		 * @return the second host
+		 */
+		public DTNHost getHost2() {
+			return this.host2;
+		}
+
+		/**
+		 * Returns true if the latest event of the pair was a connection
+		 * @return true if the pair is up
+		 */
+		public boolean isUp() {
+			return this.up;
+		}
+
+		/**
+		 * Returns true if the latest event changed the state of the pair
+		 * (i.e., it was a connection of a down pair or a disconnection of
+		 * an up pair)
+		 * @return true if the latest event changed the state
+		 */
+		public boolean isChanged() {
+			return this.changed;
+		}
+
+		/**
+		 * Returns the time of the latest connection event
+		 * @return the time of the latest connection or -1 if there hasn't
+		 * been any
+		 */
+		public double getLastUp() {
+			return this.lastUp;
+		}
+
+		/**
+		 * Returns the time of the latest disconnection event
+		 * @return the time of the latest disconnection or -1 if there
+		 * hasn't been any
+		 */
+		public double getLastDown() {
+			return this.lastDown;
+		}
+	}
+}
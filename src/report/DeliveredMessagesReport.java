@@ -50,7 +50,7 @@ public class DeliveredMessagesReport extends Report implements MessageListener {
 
 	public void messageTransferred(Message m, DTNHost from, DTNHost to,
 			boolean firstDelivery) {
-		if (!isWarmupID(m.getId()) && firstDelivery) {
+		if (!isWarmupMessage(m) && firstDelivery) {
 			int ttl = m.getTtl();
 			write(format(getSimTime()) + " " + m.getId() + " " +
 					m.getSize() + " " + m.getHopCount() + " " +
@@ -63,7 +63,7 @@ public class DeliveredMessagesReport extends Report implements MessageListener {
 
 	public void newMessage(Message m) {
 		if (isWarmup()) {
-			addWarmupID(m.getId());
+			addWarmupMessage(m);
 		}
 	}
 
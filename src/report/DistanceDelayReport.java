@@ -42,7 +42,7 @@ public class DistanceDelayReport extends Report implements MessageListener {
 	 */
 	public void messageTransferred(Message m, DTNHost from, DTNHost to,
 			boolean firstDelivery) {
-		if (isWarmupID(m.getId()) || !firstDelivery) {
+		if (isWarmupMessage(m) || !firstDelivery) {
 			return; // report is only interested of first deliveries
 		}
 
@@ -60,7 +60,7 @@ public class DistanceDelayReport extends Report implements MessageListener {
 	 */
 	public void newMessage(Message m) {
 		if (isWarmup()) {
-			addWarmupID(m.getId());
+			addWarmupMessage(m);
 			return;
 		}
 
@@ -8,7 +8,7 @@ import java.util.List;
 
 import core.ConnectionListener;
 import core.DTNHost;
-import core.UpdateListener;
+import core.ScheduledUpdateListener;
 
 /**
  * The total- vs. the unique encounters for each node
@@ -16,7 +16,7 @@ import core.UpdateListener;
  * @author Frans Ekman
  */
 public class EncountersVSUniqueEncountersReport extends Report
-	implements ConnectionListener, UpdateListener {
+	implements ConnectionListener, ScheduledUpdateListener {
 
 	private TotalEncountersReport totalEncountersReport;
 	private UniqueEncountersReport uniqueEncountersReport;
@@ -41,23 +41,22 @@ public class EncountersVSUniqueEncountersReport extends Report
 		uniqueEncountersReport.updated(hosts);
 	}
 
+	public double getNextUpdateTime() {
+		return Math.min(totalEncountersReport.getNextUpdateTime(),
+				uniqueEncountersReport.getNextUpdateTime());
+	}
+
 	@Override
 	public void done() {
 		int[] totalEncounters = totalEncountersReport.getEncounters();
-		int[][] nodeRelationships = uniqueEncountersReport.getNodeRelationships();
+		int[] uniqueEncounters =
+			uniqueEncountersReport.getNrofUniqueEncounters();
 
 		for (int i=0; i<totalEncounters.length; i++) {
 			String row = "";
 			row += i + "\t";
 			row += totalEncounters[i] + "\t";
-
-			int count = 0;
-			for (int j=0; j<nodeRelationships.length; j++) {
-				if (nodeRelationships[i][j] > 0) {
-					count++;
-				}
-			}
-			row += count;
+			row += uniqueEncounters[i];
 			write(row);
 		}
 
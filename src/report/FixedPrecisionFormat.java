@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+/**
+ * Formats double values with a fixed number of decimals. The output is the
+ * same as with <CODE>String.format("%.[precision]f", value)</CODE>, but
+ * most values are formatted using integer arithmetic without parsing a
+ * format string. Values that are (almost) exactly halfway between two
+ * outputs, very large values and non-finite values are left for
+ * String.format, so its rounding rules are followed exactly.
+ */
+public class FixedPrecisionFormat {
+	/** Largest precision for the fast path */
+	private static final int MAX_FAST_PRECISION = 15;
+	/** Largest scaled value for the fast path */
+	private static final double MAX_FAST_VALUE = 1e15;
+	private static final long[] POWERS_OF_TEN = new long[MAX_FAST_PRECISION+1];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i=1; i<POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i-1] * 10;
+		}
+	}
+
+	private final int precision;
+	private final String formatString;
+	private final StringBuilder sb;
+
+	/**
+	 * Creates a new formatter
+	 * @param precision Number of decimals (non-negative)
+	 */
+	public FixedPrecisionFormat(int precision) {
+		this.precision = precision;
+		this.formatString = "%." + precision + "f";
+		this.sb = new StringBuilder();
+	}
+
+	/**
+	 * Returns the number of decimals of this formatter
+	 * @return the number of decimals
+	 */
+	public int getPrecision() {
+		return this.precision;
+	}
+
+	/**
+	 * Formats a value
+	 * @param value The value to format
+	 * @return The value with {@link #getPrecision()} decimals
+	 */
+	public String format(double value) {
+		if (precision > MAX_FAST_PRECISION || Double.isNaN(value)) {
+			return String.format(formatString, value);
+		}
+
+		boolean negative = (value < 0 ||
+				(value == 0 && 1 / value < 0)); // -0.0 is formatted with "-"
+		double scaled = Math.abs(value) * POWERS_OF_TEN[precision];
+		if (!(scaled < MAX_FAST_VALUE)) {
+			return String.format(formatString, value); // also infinities
+		}
+
+		/* String.format rounds the shortest decimal representation of the
+		 * value half up; near the halfway points that can differ from
+		 * rounding the binary value, so those are left for it */
+		double fraction = scaled - Math.floor(scaled);
+		if (Math.abs(fraction - 0.5) <= 4 * Math.ulp(scaled)) {
+			return String.format(formatString, value);
+		}
+
+		long rounded = (long)Math.floor(scaled + 0.5);
+		long divisor = POWERS_OF_TEN[precision];
+		long integerPart = rounded / divisor;
+		long decimals = rounded % divisor;
+
+		sb.setLength(0);
+		if (negative) {
+			sb.append('-');
+		}
+		sb.append(integerPart);
+		if (precision > 0) {
+			sb.append('.');
+			/* leading zeros of the decimal part */
+			for (long p = divisor / 10; p > decimals && p > 1; p /= 10) {
+				sb.append('0');
+			}
+			sb.append(decimals);
+		}
+		return sb.toString();
+	}
+}
@@ -15,21 +15,19 @@ public class InterContactTimesReport extends ContactTimesReport {
 
 	@Override
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
-		ConnectionInfo ci = this.removeConnection(host1, host2);
+		ContactTracker.Pair pair = tracker.hostsConnected(this, host1, host2);
 
-		if (ci != null) { // connected again
+		/* the first connection after a disconnection outside warm up */
+		if (pair.isChanged() && pair.getLastDown() >= 0 &&
+				!isWarmup(pair.getLastDown())) {
 			newEvent();
-			ci.connectionEnd();
-			increaseTimeCount(ci.getConnectionTime());
+			increaseTimeCount(getSimTime() - pair.getLastDown());
 		}
 	}
 
 	@Override
 	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
-		if (isWarmup()) {
-			return;
-		}
-		// start counting time to next connection
-		this.addConnection(host1, host2);
+		// the tracker starts counting time to the next connection
+		tracker.hostsDisconnected(this, host1, host2);
 	}
 }
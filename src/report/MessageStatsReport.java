@@ -4,14 +4,13 @@
  */
 package report;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
+import core.Settings;
+import core.SimContext;
 
 /**
  * Report for generating different kind of total statistics about message
@@ -20,13 +19,39 @@ import core.MessageListener;
  * <P><strong>Note:</strong> if some statistics could not be created (e.g.
  * overhead ratio if no messages were delivered) "NaN" is reported for
  * double values and zero for integer median(s).
+ * <P>The latency, hop count, buffer time and round trip time statistics are
+ * collected with {@link StreamingStatistics}; by default all values are
+ * stored for exact medians. With {@link #EXACT_STATISTICS_S} disabled the
+ * quantiles are estimated using bounded memory.</P>
  */
 public class MessageStatsReport extends Report implements MessageListener {
-	private Map<String, Double> creationTimes;
-	private List<Double> latencies;
-	private List<Integer> hopCounts;
-	private List<Double> msgBufferTime;
-	private List<Double> rtt; // round trip times
+	/** Exact statistics -setting id ({@value}). Boolean. If true, all
+	 * latencies etc. are stored and the medians are exact. If false, the
+	 * quantiles are estimated (within 1% relative error) using bounded
+	 * memory. Default = true. */
+	public static final String EXACT_STATISTICS_S = "exactStatistics";
+	/** Extended statistics -setting id ({@value}). Boolean. If true, also
+	 * the 90th and 99th percentiles and the standard deviations are
+	 * reported. Default = false. */
+	public static final String EXTENDED_STATISTICS_S = "extendedStatistics";
+	/** Merge runs -setting id ({@value}). Boolean. If true, the statistics
+	 * of the runs of this report that share a simulation context (i.e., the
+	 * runs of a batch, but not parallel runs) are merged and the merged
+	 * statistics of the runs done so far are written after each run's own
+	 * statistics. Merged quantiles are always estimated with bounded memory
+	 * (see {@link QuantileSketch}). Default = false. */
+	public static final String MERGE_RUNS_S = "mergeRuns";
+
+	private boolean exactStatistics;
+	private boolean extendedStatistics;
+	private boolean mergeRuns;
+
+	/** creation times of the messages, indexed by ID number */
+	private double[] creationTimes;
+	private StreamingStatistics latencies;
+	private StreamingStatistics hopCounts;
+	private StreamingStatistics msgBufferTime;
+	private StreamingStatistics rtt; // round trip times
 
 	private int nrofDropped;
 	private int nrofRemoved;
@@ -42,17 +67,22 @@ public class MessageStatsReport extends Report implements MessageListener {
 	 * Constructor.
 	 */
 	public MessageStatsReport() {
+		Settings settings = getSettings();
+		this.exactStatistics = settings.getBoolean(EXACT_STATISTICS_S, true);
+		this.extendedStatistics = settings.getBoolean(EXTENDED_STATISTICS_S,
+				false);
+		this.mergeRuns = settings.getBoolean(MERGE_RUNS_S, false);
 		init();
 	}
 
 	@Override
 	protected void init() {
 		super.init();
-		this.creationTimes = new HashMap<String, Double>();
-		this.latencies = new ArrayList<Double>();
-		this.msgBufferTime = new ArrayList<Double>();
-		this.hopCounts = new ArrayList<Integer>();
-		this.rtt = new ArrayList<Double>();
+		this.creationTimes = new double[64];
+		this.latencies = new StreamingStatistics(exactStatistics);
+		this.msgBufferTime = new StreamingStatistics(exactStatistics);
+		this.hopCounts = new StreamingStatistics(exactStatistics);
+		this.rtt = new StreamingStatistics(exactStatistics);
 
 		this.nrofDropped = 0;
 		this.nrofRemoved = 0;
@@ -67,7 +97,7 @@ public class MessageStatsReport extends Report implements MessageListener {
 
 
 	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
-		if (isWarmupID(m.getId())) {
+		if (isWarmupMessage(m)) {
 			return;
 		}
 
@@ -83,7 +113,7 @@ public class MessageStatsReport extends Report implements MessageListener {
 
 
 	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
-		if (isWarmupID(m.getId())) {
+		if (isWarmupMessage(m)) {
 			return;
 		}
 
@@ -93,14 +123,14 @@ public class MessageStatsReport extends Report implements MessageListener {
 
 	public void messageTransferred(Message m, DTNHost from, DTNHost to,
 			boolean finalTarget) {
-		if (isWarmupID(m.getId())) {
+		if (isWarmupMessage(m)) {
 			return;
 		}
 
 		this.nrofRelayed++;
 		if (finalTarget) {
 			this.latencies.add(getSimTime() -
-				this.creationTimes.get(m.getId()) );
+				this.creationTimes[m.getIdNumber()] );
 			this.nrofDelivered++;
 			this.hopCounts.add(m.getHops().size() - 1);
 
@@ -114,11 +144,16 @@ public class MessageStatsReport extends Report implements MessageListener {
 
 	public void newMessage(Message m) {
 		if (isWarmup()) {
-			addWarmupID(m.getId());
+			addWarmupMessage(m);
 			return;
 		}
 
-		this.creationTimes.put(m.getId(), getSimTime());
+		int idNumber = m.getIdNumber();
+		if (idNumber >= this.creationTimes.length) {
+			this.creationTimes = Arrays.copyOf(this.creationTimes,
+					Math.max(idNumber + 1, 2 * this.creationTimes.length));
+		}
+		this.creationTimes[idNumber] = getSimTime();
 		this.nrofCreated++;
 		if (m.getResponseSize() > 0) {
 			this.nrofResponseReqCreated++;
@@ -127,7 +162,7 @@ public class MessageStatsReport extends Report implements MessageListener {
 
 
 	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
-		if (isWarmupID(m.getId())) {
+		if (isWarmupMessage(m)) {
 			return;
 		}
 
@@ -165,18 +200,99 @@ public class MessageStatsReport extends Report implements MessageListener {
 			"\ndelivery_prob: " + format(deliveryProb) +
 			"\nresponse_prob: " + format(responseProb) +
 			"\noverhead_ratio: " + format(overHead) +
-			"\nlatency_avg: " + getAverage(this.latencies) +
-			"\nlatency_med: " + getMedian(this.latencies) +
-			"\nhopcount_avg: " + getIntAverage(this.hopCounts) +
-			"\nhopcount_med: " + getIntMedian(this.hopCounts) +
-			"\nbuffertime_avg: " + getAverage(this.msgBufferTime) +
-			"\nbuffertime_med: " + getMedian(this.msgBufferTime) +
-			"\nrtt_avg: " + getAverage(this.rtt) +
-			"\nrtt_med: " + getMedian(this.rtt)
-			;
+			getStatisticsText("", this.latencies, this.hopCounts,
+					this.msgBufferTime, this.rtt);
+
+		if (this.mergeRuns) {
+			statsText += mergeRun();
+		}
 
 		write(statsText);
 		super.done();
 	}
 
+	/**
+	 * Merges the statistics of this run to the merged statistics of all runs
+	 * @return Text of the merged statistics
+	 */
+	private String mergeRun() {
+		SimContext context = SimContext.current();
+		MergedRuns m = (MergedRuns)context.getState(MergedRuns.class);
+		if (m == null) {
+			m = new MergedRuns();
+			context.putState(MergedRuns.class, m);
+		}
+		m.nrofRuns++;
+		m.latencies.merge(this.latencies);
+		m.hopCounts.merge(this.hopCounts);
+		m.msgBufferTime.merge(this.msgBufferTime);
+		m.rtt.merge(this.rtt);
+
+		return "\nmerged_runs: " + m.nrofRuns +
+			getStatisticsText("merged_", m.latencies, m.hopCounts,
+					m.msgBufferTime, m.rtt);
+	}
+
+	/**
+	 * Returns the statistics text of latencies, hop counts, buffer times
+	 * and round trip times
+	 * @param prefix Prefix for the names of the values
+	 * @return The text (starting with a newline)
+	 */
+	private String getStatisticsText(String prefix,
+			StreamingStatistics latency, StreamingStatistics hopCount,
+			StreamingStatistics bufferTime, StreamingStatistics roundTrip) {
+		return getStatisticsText(prefix + "latency", latency, false) +
+			getStatisticsText(prefix + "hopcount", hopCount, true) +
+			getStatisticsText(prefix + "buffertime", bufferTime, false) +
+			getStatisticsText(prefix + "rtt", roundTrip, false);
+	}
+
+	/**
+	 * Returns the text of one kind of statistics
+	 * @param name Name of the statistics
+	 * @param stats The statistics
+	 * @param integers Are the values integers (whose quantiles are shown
+	 * as integers and zero if there are no values)
+	 * @return The text (starting with a newline)
+	 */
+	private String getStatisticsText(String name, StreamingStatistics stats,
+			boolean integers) {
+		String text = "\n" + name + "_avg: " + format(stats.getMean()) +
+			"\n" + name + "_med: " + formatQuantile(stats, 0.5, integers);
+		if (this.extendedStatistics) {
+			text += "\n" + name + "_p90: " +
+				formatQuantile(stats, 0.9, integers) +
+				"\n" + name + "_p99: " +
+				formatQuantile(stats, 0.99, integers) +
+				"\n" + name + "_sd: " + format(stats.getStdDev());
+		}
+		return text;
+	}
+
+	private String formatQuantile(StreamingStatistics stats, double q,
+			boolean integers) {
+		if (!integers) {
+			return format(stats.getQuantile(q));
+		}
+		else if (stats.getCount() == 0) {
+			return "0";
+		}
+		return String.valueOf(Math.round(stats.getQuantile(q)));
+	}
+
+	/**
+	 * Merged statistics of multiple runs. Only sketches of the values are
+	 * kept, so the memory use doesn't grow with the number of runs.
+	 */
+	private static class MergedRuns {
+		private int nrofRuns;
+		private StreamingStatistics latencies =
+			new StreamingStatistics(false);
+		private StreamingStatistics hopCounts =
+			new StreamingStatistics(false);
+		private StreamingStatistics msgBufferTime =
+			new StreamingStatistics(false);
+		private StreamingStatistics rtt = new StreamingStatistics(false);
+	}
 }
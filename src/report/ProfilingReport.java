@@ -0,0 +1,64 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import core.SimProfiler;
+
+/**
+ * Report of the simulator's own performance. Enables the
+ * {@link SimProfiler} of the run and, at the end of the run, reports where
+ * the real time was spent (per update phase and per router class), the
+ * transfer and buffer eviction counts, the memory allocation of the
+ * simulation thread and the largest number of pending events.
+ * <P>The reported times are wall clock times and vary from run to run;
+ * they are not part of the simulation results.</P>
+ */
+public class ProfilingReport extends Report {
+
+	/**
+	 * Constructor.
+	 */
+	public ProfilingReport() {
+		SimProfiler.getInstance().setEnabled(true);
+		init();
+	}
+
+	@Override
+	public void done() {
+		SimProfiler p = SimProfiler.getInstance();
+
+		write("Profile for scenario " + getScenarioName() +
+				"\nsim_time: " + format(getSimTime()));
+		String text = "real_time: " + format(p.getRealTime());
+		for (SimProfiler.Phase phase : SimProfiler.Phase.values()) {
+			text += "\n" + phase.getName() + "_time: " +
+				format(p.getPhaseTime(phase));
+		}
+		for (Class<?> c : p.getRouterClasses()) {
+			text += "\nrouter_" + c.getSimpleName() + "_time: " +
+				format(p.getRouterTime(c));
+		}
+
+		text += "\ntransfers_started: " + p.getTransfersStarted();
+		for (int code : p.getRejectionCodes()) {
+			text += "\ntransfers_rejected_" + code + ": " +
+				p.getTransfersRejected(code);
+		}
+		text += "\ntransfers_aborted: " + p.getTransfersAborted() +
+			"\nmessages_evicted: " + p.getMessagesEvicted();
+
+		long allocated = p.getTotalAllocatedBytes();
+		if (allocated >= 0) {
+			double realTime = p.getRealTime();
+			text += "\nallocated_bytes: " + allocated +
+				"\nallocation_rate: " + format(realTime > 0 ?
+						allocated / realTime : 0);
+		}
+		text += "\nmax_event_queue_depth: " + p.getMaxEventQueueDepth();
+
+		write(text);
+		super.done();
+	}
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+/**
+ * Mergeable quantile sketch with bounded relative error. Values are counted
+ * in logarithmic bins whose width grows with the value, so every quantile
+ * estimate is within the relative accuracy of some value of that rank (and
+ * within the smallest and largest added value). The memory use depends
+ * only on the range of the values, not on their number: with 1% accuracy,
+ * values between one millisecond and a year fit in about 1500 bins.
+ * <P>Values whose absolute value is smaller than {@value #MIN_VALUE} are
+ * counted as zeros.</P>
+ * <P>Sketches can be stored as text with {@link #serialize()} and read back
+ * with {@link #deserialize(String)}, e.g., to merge the sketches of runs
+ * that were done in separate processes.</P>
+ */
+public class QuantileSketch {
+	/** Default relative accuracy of the quantile estimates ({@value}) */
+	public static final double DEF_ACCURACY = 0.01;
+	/** Smallest absolute value that is not counted as zero ({@value}) */
+	public static final double MIN_VALUE = 1e-9;
+
+	private final double accuracy;
+	/** ratio of the upper and lower bounds of a bin */
+	private final double gamma;
+	private final double logGamma;
+
+	private final Bins positive;
+	private final Bins negative;
+	private long nrofZeros;
+	private long count;
+	private double min;
+	private double max;
+
+	/**
+	 * Creates a new sketch with the default accuracy
+	 */
+	public QuantileSketch() {
+		this(DEF_ACCURACY);
+	}
+
+	/**
+	 * Creates a new sketch
+	 * @param accuracy The relative accuracy of the quantile estimates
+	 * (between 0 and 1, exclusive)
+	 */
+	public QuantileSketch(double accuracy) {
+		if (!(accuracy > 0 && accuracy < 1)) {
+			throw new IllegalArgumentException("Invalid accuracy " + accuracy);
+		}
+		this.accuracy = accuracy;
+		this.gamma = (1 + accuracy) / (1 - accuracy);
+		this.logGamma = Math.log(gamma);
+		this.positive = new Bins();
+		this.negative = new Bins();
+		this.min = Double.POSITIVE_INFINITY;
+		this.max = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Returns the relative accuracy of the sketch
+	 * @return the relative accuracy
+	 */
+	public double getAccuracy() {
+		return this.accuracy;
+	}
+
+	/**
+	 * Adds a value to the sketch
+	 * @param value The value to add (not NaN)
+	 */
+	public void add(double value) {
+		if (Double.isNaN(value)) {
+			throw new IllegalArgumentException("Can't add NaN");
+		}
+
+		if (value >= MIN_VALUE) {
+			positive.add(binOf(value), 1);
+		}
+		else if (value <= -MIN_VALUE) {
+			negative.add(binOf(-value), 1);
+		}
+		else {
+			nrofZeros++;
+		}
+
+		count++;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * Adds the values of another sketch to this sketch
+	 * @param other The other sketch (must have the same accuracy)
+	 */
+	public void merge(QuantileSketch other) {
+		if (other.accuracy != this.accuracy) {
+			throw new IllegalArgumentException("Can't merge sketches with " +
+					"different accuracies");
+		}
+		positive.merge(other.positive);
+		negative.merge(other.negative);
+		nrofZeros += other.nrofZeros;
+		count += other.count;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Returns the number of values in the sketch
+	 * @return the number of values
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Returns an estimate of a quantile. The returned value is an estimate
+	 * of the value that would be at index <CODE>(int)(q * count)</CODE> of
+	 * the sorted values (i.e., the median is the upper median).
+	 * @param q The quantile (between 0 and 1)
+	 * @return The estimate or NaN if the sketch is empty
+	 */
+	public double getQuantile(double q) {
+		if (count == 0) {
+			return Double.NaN;
+		}
+
+		long rank = Math.min(count - 1, (long)(q * count));
+		double value;
+
+		if (rank < negative.total) {
+			/* negative values are in descending order of their bins */
+			int bin = negative.binOfRank(negative.total - 1 - rank);
+			value = -valueOf(bin);
+		}
+		else if (rank < negative.total + nrofZeros) {
+			value = 0;
+		}
+		else {
+			int bin = positive.binOfRank(rank - negative.total - nrofZeros);
+			value = valueOf(bin);
+		}
+
+		return Math.max(min, Math.min(max, value));
+	}
+
+	/**
+	 * Returns the smallest added value
+	 * @return the smallest value or NaN if the sketch is empty
+	 */
+	public double getMin() {
+		return (count == 0 ? Double.NaN : min);
+	}
+
+	/**
+	 * Returns the largest added value
+	 * @return the largest value or NaN if the sketch is empty
+	 */
+	public double getMax() {
+		return (count == 0 ? Double.NaN : max);
+	}
+
+	/**
+	 * Returns the sketch as one line of text. The text consists of the
+	 * accuracy, smallest and largest value, number of zeros and the
+	 * negative and positive bins, separated by spaces.
+	 * @return The serialized sketch
+	 * @see #deserialize(String)
+	 */
+	public String serialize() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(accuracy).append(' ').append(min).append(' ').append(max);
+		sb.append(' ').append(nrofZeros);
+		negative.serialize(sb);
+		positive.serialize(sb);
+		return sb.toString();
+	}
+
+	/**
+	 * Creates a sketch from the text returned by {@link #serialize()}
+	 * @param text The serialized sketch
+	 * @return A sketch equal to the serialized one
+	 * @throws IllegalArgumentException if the text is not a valid sketch
+	 */
+	public static QuantileSketch deserialize(String text) {
+		String[] tokens = text.trim().split("\\s+");
+		QuantileSketch sketch;
+		try {
+			sketch = new QuantileSketch(Double.parseDouble(tokens[0]));
+			sketch.min = Double.parseDouble(tokens[1]);
+			sketch.max = Double.parseDouble(tokens[2]);
+			sketch.nrofZeros = Long.parseLong(tokens[3]);
+			int next = sketch.negative.deserialize(tokens, 4);
+			next = sketch.positive.deserialize(tokens, next);
+			if (next != tokens.length || sketch.nrofZeros < 0) {
+				throw new IllegalArgumentException("Invalid token count");
+			}
+		} catch (IllegalArgumentException e) { // also bad numbers
+			throw new IllegalArgumentException("Invalid sketch: " + text);
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("Invalid sketch: " + text);
+		}
+
+		sketch.count = sketch.nrofZeros + sketch.negative.total +
+			sketch.positive.total;
+		return sketch;
+	}
+
+	/**
+	 * Returns the bin of a positive value. Bin i contains the values in
+	 * range (gamma^(i-1), gamma^i].
+	 */
+	private int binOf(double value) {
+		return (int)Math.ceil(Math.log(value) / logGamma);
+	}
+
+	/**
+	 * Returns the value that represents the values of a bin, i.e., the value
+	 * whose relative distance to both bounds of the bin is the accuracy
+	 */
+	private double valueOf(int bin) {
+		return 2 * Math.pow(gamma, bin) / (gamma + 1);
+	}
+
+	/**
+	 * Counts of consecutive bins
+	 */
+	private static class Bins {
+		private static final int INITIAL_SIZE = 64;
+
+		/** counts of the bins; the first element is the count of minBin */
+		private long[] counts;
+		private int minBin;
+		private long total;
+
+		private void add(int bin, long n) {
+			if (counts == null) {
+				counts = new long[INITIAL_SIZE];
+				minBin = bin - INITIAL_SIZE / 2;
+			}
+			else if (bin < minBin || bin >= minBin + counts.length) {
+				grow(bin);
+			}
+			counts[bin - minBin] += n;
+			total += n;
+		}
+
+		/**
+		 * Makes room for a bin, at least doubling the size of the array
+		 */
+		private void grow(int bin) {
+			int newMin = Math.min(minBin, bin);
+			int newMax = Math.max(minBin + counts.length - 1, bin);
+			int size = Math.max(newMax - newMin + 1, 2 * counts.length);
+			if (bin < minBin) {
+				newMin = newMax - size + 1; // room for more small values
+			}
+
+			long[] newCounts = new long[size];
+			System.arraycopy(counts, 0, newCounts, minBin - newMin,
+					counts.length);
+			counts = newCounts;
+			minBin = newMin;
+		}
+
+		private void merge(Bins other) {
+			if (other.counts == null) {
+				return;
+			}
+			for (int i = 0; i < other.counts.length; i++) {
+				if (other.counts[i] > 0) {
+					add(other.minBin + i, other.counts[i]);
+				}
+			}
+		}
+
+		/**
+		 * Appends the non-empty range of bins to a string as the first bin,
+		 * number of bins and their counts
+		 */
+		private void serialize(StringBuilder sb) {
+			int first = 0;
+			int last = -1;
+			if (counts != null) {
+				while (first < counts.length && counts[first] == 0) {
+					first++;
+				}
+				last = counts.length - 1;
+				while (last >= first && counts[last] == 0) {
+					last--;
+				}
+			}
+
+			sb.append(' ').append(last < first ? 0 : minBin + first);
+			sb.append(' ').append(last - first + 1);
+			for (int i = first; i <= last; i++) {
+				sb.append(' ').append(counts[i]);
+			}
+		}
+
+		/**
+		 * Adds the bins written by {@link #serialize(StringBuilder)}
+		 * @param tokens The tokens of the serialized sketch
+		 * @param index Index of the first token of the bins
+		 * @return Index of the token after the bins
+		 * @throws IllegalArgumentException if the bins are invalid
+		 */
+		private int deserialize(String[] tokens, int index) {
+			int first = Integer.parseInt(tokens[index]);
+			int nrofBins = Integer.parseInt(tokens[index + 1]);
+			if (nrofBins < 0) {
+				throw new IllegalArgumentException("Invalid number of bins");
+			}
+			for (int i = 0; i < nrofBins; i++) {
+				long n = Long.parseLong(tokens[index + 2 + i]);
+				if (n < 0) {
+					throw new IllegalArgumentException("Negative count");
+				}
+				if (n > 0) {
+					add(first + i, n);
+				}
+			}
+			return index + 2 + nrofBins;
+		}
+
+		/**
+		 * Returns the bin that contains the value of the given rank (the
+		 * smallest value has rank 0)
+		 */
+		private int binOfRank(long rank) {
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen > rank) {
+					return minBin + i;
+				}
+			}
+			throw new IllegalStateException("Rank " + rank + " of " + total);
+		}
+	}
+}
@@ -4,16 +4,23 @@
  */
 package report;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
+import core.Message;
 import core.Settings;
 import core.SimClock;
 import core.SimError;
@@ -55,15 +62,32 @@ public abstract class Report {
 	public static final String OUT_SUFFIX = ".txt";
 	/** Suffix for reports that are created on n second intervals */
 	public static final String INTERVALLED_FORMAT ="%04d" + OUT_SUFFIX;
+	/** Compress output -setting id ({@value}). Boolean. If true, the report
+	 * is written gzip compressed and {@value #COMPRESSED_SUFFIX} is appended
+	 * to the output file name. Default = false. */
+	public static final String COMPRESS_S = "compress";
+	/** Suffix appended to the names of compressed report files */
+	public static final String COMPRESSED_SUFFIX = ".gz";
+	/** Asynchronous output -setting id ({@value}). Boolean. If true, the
+	 * report output is written to the file in a background thread (see
+	 * {@link AsyncWriter}). Default = false. */
+	public static final String ASYNC_OUTPUT_S = "asyncOutput";
+	/** Size of the output buffer (bytes or characters) */
+	private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
 	/** The print writer used to write output. See {@link #write(String)} */
 	protected PrintWriter out;
 	/** String value for values that could not be calculated */
 	public static final String NAN = "NaN";
 	private String prefix = "";
 	private int precision;
+	private FixedPrecisionFormat formatter;
+	private boolean compress;
+	private boolean asyncOutput;
 	protected int warmupTime;
 	protected int cooldownTime;
 	protected Set<String> warmupIDs;
+	/** ID numbers of the messages created during the warm up period */
+	private BitSet warmupMessages;
 
 	private int lastOutputSuffix;
 	private double outputInterval;
@@ -81,6 +105,7 @@ public abstract class Report {
 		this.lastOutputSuffix = 0;
 		this.outputInterval = -1;
 		this.warmupIDs = null;
+		this.warmupMessages = null;
 
 		Settings settings = new Settings();
 		scenarioName = settings.valueFillString(settings.getSetting(
@@ -116,6 +141,10 @@ public abstract class Report {
 		else {
 			precision = DEF_PRECISION;
 		}
+		this.formatter = new FixedPrecisionFormat(precision);
+
+		this.compress = settings.getBoolean(COMPRESS_S, false);
+		this.asyncOutput = settings.getBoolean(ASYNC_OUTPUT_S, false);
 
 		if (settings.contains(OUTPUT_SETTING)) {
 			outFileName = settings.getSetting(OUTPUT_SETTING);
@@ -202,7 +231,21 @@ public abstract class Report {
 	 */
 	private void createOutput(String outFileName) {
 		try {
-			this.out = new PrintWriter(new FileWriter(outFileName));
+			if (this.compress) {
+				outFileName += COMPRESSED_SUFFIX;
+			}
+			OutputStream os = new FileOutputStream(outFileName);
+			if (this.compress) {
+				os = new GZIPOutputStream(os, OUTPUT_BUFFER_SIZE);
+			}
+			Writer w = new OutputStreamWriter(os);
+			if (this.asyncOutput) {
+				w = new AsyncWriter(w);
+			}
+			else {
+				w = new BufferedWriter(w, OUTPUT_BUFFER_SIZE);
+			}
+			this.out = new PrintWriter(w);
 		} catch (IOException e) {
 			throw new SimError("Couldn't open file '" + outFileName +
 					"' for report output\n" + e.getMessage(), e);
@@ -245,7 +288,10 @@ public abstract class Report {
 		if (out == null) {
 			init();
 		}
-		out.println(prefix + txt);
+		if (prefix.length() > 0) {
+			out.print(prefix);
+		}
+		out.println(txt);
 	}
 
 	/**
@@ -255,7 +301,7 @@ public abstract class Report {
 	 * @return Formatted value in a string
 	 */
 	protected String format(double value) {
-		return String.format("%." + precision + "f", value);
+		return formatter.format(value);
 	}
 
 	/**
@@ -287,7 +333,17 @@ public abstract class Report {
 	 * @return true if the warm up or cool down periods are still ongoing, false if not
 	 */
 	protected boolean isWarmup() {
-		return this.warmupTime > SimClock.getTime() || this.cooldownTime < SimClock.getTime();
+		return isWarmup(SimClock.getTime());
+	}
+
+	/**
+	 * Returns true if the given time is in the warm up (or cool down)
+	 * period
+	 * @param time The simulation time
+	 * @return true if the time is in the warm up (or cool down) period
+	 */
+	protected boolean isWarmup(double time) {
+		return this.warmupTime > time || this.cooldownTime < time;
 	}
 
 	/**
@@ -323,6 +379,30 @@ public abstract class Report {
 		return this.warmupIDs.contains(id);
 	}
 
+	/**
+	 * Marks a message as a warm up message. All the messages with the same
+	 * ID are then warm up messages.
+	 * @param m The message
+	 */
+	protected void addWarmupMessage(Message m) {
+		if (this.warmupMessages == null) { // lazy creation of the set
+			this.warmupMessages = new BitSet();
+		}
+
+		this.warmupMessages.set(m.getIdNumber());
+	}
+
+	/**
+	 * Returns true if the message has been marked as a warm up message
+	 * with {@link #addWarmupMessage(Message)}
+	 * @param m The message
+	 * @return true if the message is a warm up message
+	 */
+	protected boolean isWarmupMessage(Message m) {
+		return this.warmupMessages != null &&
+			this.warmupMessages.get(m.getIdNumber());
+	}
+
 	/**
 	 * Returns a Settings object initialized for the report class' name space
 	 * that uses {@value REPORT_NS} as the secondary name space.
@@ -342,6 +422,10 @@ public abstract class Report {
 	public void done() {
 		if (out != null) {
 			out.close();
+			if (out.checkError()) {
+				throw new SimError("Error while writing report " +
+						getClass().getSimpleName());
+			}
 		}
 	}
 
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.Arrays;
+
+/**
+ * Summary statistics of a stream of values. The mean is the sum of the
+ * values divided by their number (like {@link Report#getAverage}) and the
+ * variance is updated with Welford's online algorithm. Quantiles are either
+ * exact, in which case all the values are stored in a primitive array, or
+ * estimated with a {@link QuantileSketch} that uses bounded memory.
+ * Statistics can be merged, e.g., to summarize multiple simulation runs;
+ * if either of the merged statistics is estimated, the result is too.
+ */
+public class StreamingStatistics {
+	private static final int INITIAL_SIZE = 64;
+
+	private long count;
+	private double sum;
+	/** running mean of Welford's algorithm */
+	private double mean;
+	/** sum of squared differences from the mean (Welford's algorithm) */
+	private double m2;
+
+	/** the values (in exact mode) or null */
+	private double[] values;
+	/** are the values sorted */
+	private boolean sorted;
+	/** the sketch (in estimating mode) or null */
+	private QuantileSketch sketch;
+
+	/**
+	 * Creates new, empty statistics
+	 * @param exact If true, all values are stored for exact quantiles. If
+	 * false, the quantiles are estimated with a sketch.
+	 */
+	public StreamingStatistics(boolean exact) {
+		if (exact) {
+			this.values = new double[INITIAL_SIZE];
+			this.sorted = true;
+		}
+		else {
+			this.sketch = new QuantileSketch();
+		}
+	}
+
+	/**
+	 * Adds a value
+	 * @param value The value to add
+	 */
+	public void add(double value) {
+		count++;
+		sum += value;
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+
+		if (values != null) {
+			if (count > values.length) {
+				values = Arrays.copyOf(values, 2 * values.length);
+			}
+			values[(int)count - 1] = value;
+			sorted = false;
+		}
+		else {
+			sketch.add(value);
+		}
+	}
+
+	/**
+	 * Adds the values of other statistics to these statistics
+	 * @param other The other statistics
+	 */
+	public void merge(StreamingStatistics other) {
+		if (other.count == 0) {
+			return;
+		}
+
+		/* Chan et al. parallel variant of Welford's algorithm */
+		long n = count + other.count;
+		double delta = other.mean - mean;
+		m2 += other.m2 + delta * delta * count * other.count / n;
+		mean += delta * other.count / n;
+		sum += other.sum;
+
+		if (values != null && other.values != null) {
+			int size = (int)n;
+			if (size > values.length) {
+				values = Arrays.copyOf(values, Math.max(size,
+						2 * values.length));
+			}
+			System.arraycopy(other.values, 0, values, (int)count,
+					(int)other.count);
+			sorted = false;
+		}
+		else {
+			if (sketch == null) { // this is exact, the other is not
+				sketch = new QuantileSketch();
+				for (int i = 0; i < count; i++) {
+					sketch.add(values[i]);
+				}
+				values = null;
+			}
+			if (other.sketch != null) {
+				sketch.merge(other.sketch);
+			}
+			else {
+				for (int i = 0; i < other.count; i++) {
+					sketch.add(other.values[i]);
+				}
+			}
+		}
+		count = n;
+	}
+
+	/**
+	 * Returns true if the quantiles are exact
+	 * @return true if all the values are stored
+	 */
+	public boolean isExact() {
+		return this.values != null;
+	}
+
+	/**
+	 * Returns the number of values
+	 * @return the number of values
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Returns the sum of the values
+	 * @return the sum of the values
+	 */
+	public double getSum() {
+		return this.sum;
+	}
+
+	/**
+	 * Returns the mean of the values
+	 * @return the mean or NaN if there are no values
+	 */
+	public double getMean() {
+		return (count == 0 ? Double.NaN : sum / count);
+	}
+
+	/**
+	 * Returns the (population) variance of the values
+	 * @return the variance or NaN if there are no values
+	 */
+	public double getVariance() {
+		return (count == 0 ? Double.NaN : m2 / count);
+	}
+
+	/**
+	 * Returns the (population) standard deviation of the values
+	 * @return the standard deviation or NaN if there are no values
+	 */
+	public double getStdDev() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * Returns a quantile of the values, i.e., the value at index
+	 * <CODE>(int)(q * count)</CODE> of the sorted values. The median
+	 * (q = 0.5) is the same as with {@link Report#getMedian}. If the
+	 * statistics are not exact, an estimate is returned.
+	 * @param q The quantile (between 0 and 1)
+	 * @return The quantile or NaN if there are no values
+	 */
+	public double getQuantile(double q) {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		if (sketch != null) {
+			return sketch.getQuantile(q);
+		}
+
+		if (!sorted) {
+			Arrays.sort(values, 0, (int)count);
+			sorted = true;
+		}
+		return values[(int)Math.min(count - 1, (long)(q * count))];
+	}
+}
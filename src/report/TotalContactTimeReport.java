@@ -39,14 +39,15 @@ public class TotalContactTimeReport extends ContactTimesReport implements
 
 	@Override
 	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		ContactTracker.Pair pair = tracker.hostsDisconnected(this, host1,
+				host2);
 		newEvent();
-		ConnectionInfo ci = removeConnection(host1, host2);
 
-		if (ci == null) {
+		if (!isContactEnd(pair)) {
 			return; // connection started during the warm up period
 		}
 
-		oldContactTimes += ci.getConnectionTime();
+		oldContactTimes += getSimTime() - pair.getLastUp();
 	}
 
 	/**
@@ -63,8 +64,10 @@ public class TotalContactTimeReport extends ContactTimesReport implements
 
 		// count also the times for connections that are still up
 		double othersTime = 0;
-		for (ConnectionInfo oth : this.connections.values()) {
-			othersTime += oth.getConnectionTime();
+		for (ContactTracker.Pair pair : tracker.getUpPairs()) {
+			if (!isWarmup(pair.getLastUp())) {
+				othersTime += simTime - pair.getLastUp();
+			}
 		}
 
 		double totalTime = oldContactTimes + othersTime;
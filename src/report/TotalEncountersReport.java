@@ -8,7 +8,8 @@ import java.util.List;
 
 import core.ConnectionListener;
 import core.DTNHost;
-import core.UpdateListener;
+import core.ScheduledUpdateListener;
+import core.SimClock;
 
 /**
  * A report of the distribution of how many encounters (contacts) a node has had
@@ -16,7 +17,7 @@ import core.UpdateListener;
  * @author Frans Ekman
  */
 public class TotalEncountersReport extends Report implements ConnectionListener,
-	UpdateListener {
+	ScheduledUpdateListener {
 
 	private int[] encounters;
 
@@ -40,6 +41,10 @@ public class TotalEncountersReport extends Report implements ConnectionListener,
 		}
 	}
 
+	public double getNextUpdateTime() {
+		return encounters == null ? SimClock.getTime() : Double.MAX_VALUE;
+	}
+
 	@Override
 	public void done() {
 
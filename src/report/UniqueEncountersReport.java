@@ -8,7 +8,8 @@ import java.util.List;
 
 import core.ConnectionListener;
 import core.DTNHost;
-import core.UpdateListener;
+import core.ScheduledUpdateListener;
+import core.SimClock;
 
 /**
  * UniqueEncountersReport class creates a report of the distribution of how
@@ -17,48 +18,49 @@ import core.UpdateListener;
  * @author Frans Ekman
  */
 public class UniqueEncountersReport extends Report implements
-	ConnectionListener, UpdateListener {
+	ConnectionListener, ScheduledUpdateListener {
 
-	private int[][] nodeRelationships;
+	/** the contact tracker of the simulation */
+	private ContactTracker tracker;
+	/** number of hosts (-1 before the first update) */
+	private int nrofHosts;
+	/** time of the first update; earlier contacts are not counted */
+	private double startTime;
 
 	public UniqueEncountersReport() {
-
+		this.tracker = ContactTracker.getInstance();
+		this.nrofHosts = -1;
 	}
 
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
-		if (nodeRelationships == null) {
-			return;
-		}
-		nodeRelationships[host1.getAddress()][host2.getAddress()]++;
-		nodeRelationships[host2.getAddress()][host1.getAddress()]++;
+		tracker.hostsConnected(this, host1, host2);
 	}
 
-	public void hostsDisconnected(DTNHost host1, DTNHost host2) {}
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		tracker.hostsDisconnected(this, host1, host2);
+	}
 
 	public void updated(List<DTNHost> hosts) {
-		if (nodeRelationships == null) {
-			nodeRelationships = new int[hosts.size()][hosts.size()];
+		if (nrofHosts < 0) {
+			nrofHosts = hosts.size();
+			startTime = SimClock.getTime();
 		}
 	}
 
+	public double getNextUpdateTime() {
+		return nrofHosts < 0 ? SimClock.getTime() : Double.MAX_VALUE;
+	}
+
 	@Override
 	public void done() {
 		int[] distribution = new int[1000];
-		
-		if (nodeRelationships == null) {
+		if (nrofHosts < 0) {
 			super.done();
 			return;
 		}
 
-		for (int i=0; i<nodeRelationships.length; i++) {
-			int count = 0;
-			for (int j=0; j<nodeRelationships.length; j++) {
-				if (nodeRelationships[i][j] > 0) {
-					count++;
-				}
-			}
-
-			int promille = (count * 1000)/nodeRelationships.length;
+		for (int count : getNrofUniqueEncounters()) {
+			int promille = (count * 1000)/nrofHosts;
 			distribution[promille]++;
 		}
 
@@ -70,12 +72,24 @@ public class UniqueEncountersReport extends Report implements
 		super.done();
 	}
 
-	public int[][] getNodeRelationships() {
-		return nodeRelationships;
-	}
+	/**
+	 * Returns the number of different hosts each host has encountered
+	 * after the first update
+	 * @return the number of encountered hosts indexed by host address or
+	 * null if there hasn't been any updates yet
+	 */
+	public int[] getNrofUniqueEncounters() {
+		if (nrofHosts < 0) {
+			return null;
+		}
 
-	public void setNodeRelationships(int[][] nodeRelationships) {
-		this.nodeRelationships = nodeRelationships;
+		int[] counts = new int[nrofHosts];
+		for (ContactTracker.Pair pair : tracker.getPairs()) {
+			if (pair.getLastUp() > startTime) {
+				counts[pair.getHost1().getAddress()]++;
+				counts[pair.getHost2().getAddress()]++;
+			}
+		}
+		return counts;
 	}
-
 }
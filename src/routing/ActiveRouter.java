@@ -7,20 +7,29 @@ package routing;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.Set;
 
+import routing.util.DropPolicy;
 import routing.util.EnergyModel;
 import routing.util.MessageTransferAcceptPolicy;
 import routing.util.RoutingInfo;
+import routing.util.SummaryVector;
 import util.Tuple;
 
+import core.CBRConnection;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
 import core.NetworkInterface;
 import core.Settings;
+import core.SettingsError;
 import core.SimClock;
 
 /**
@@ -33,6 +42,31 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * If set to true and final recipient of a message rejects it because it
 	 * already has it, the message is deleted from buffer. Default=false. */
 	public static final String DELETE_DELIVERED_S = "deleteDelivered";
+	/** TTL check interval -setting id ({@value}). Integer valued. Defines
+	 * how often (seconds) expired messages are dropped. Value 0 means
+	 * dropping each message as soon as its TTL runs out.
+	 * Default = {@link #TTL_CHECK_INTERVAL}. */
+	public static final String TTL_CHECK_INTERVAL_S = "ttlCheckInterval";
+	/** Anti-entropy -setting id ({@value}). Boolean valued. If set to true
+	 * (at both ends), the peers of a new connection exchange summary vectors
+	 * of the messages they have seen (see {@link SummaryVector}) when the
+	 * connection comes up and only the messages that are not in the other
+	 * end's summary are offered to it during the connection. No messages are
+	 * sent until both summaries have been transferred over the connection.
+	 * Messages that the peer drops during the connection are not offered
+	 * again. Default=false. */
+	public static final String ANTI_ENTROPY_S = "antiEntropy";
+	/** Summary vector Bloom filter size -setting id ({@value}). Integer
+	 * valued. If greater than zero, the anti-entropy summaries are Bloom
+	 * filters of this many bits; otherwise exact bit vectors indexed by the
+	 * message ID numbers are used. Default=0. */
+	public static final String SUMMARY_BLOOM_BITS_S = "summaryBloomBits";
+	/** Summary vector Bloom filter hash count -setting id ({@value}).
+	 * Integer valued. Number of hash functions of the summary Bloom filters.
+	 * Default = {@link #SUMMARY_BLOOM_HASHES}. */
+	public static final String SUMMARY_BLOOM_HASHES_S = "summaryBloomHashes";
+	/** default number of summary Bloom filter hash functions */
+	public static final int SUMMARY_BLOOM_HASHES = 4;
 	/** should messages that final recipient marks as delivered be deleted
 	 * from message buffer */
 	protected boolean deleteDelivered;
@@ -41,13 +75,43 @@ public abstract class ActiveRouter extends MessageRouter {
 	public static final String RESPONSE_PREFIX = "R_";
 	/** how often TTL check (discarding old messages) is performed */
 	public static int TTL_CHECK_INTERVAL = 60;
+	/** tolerance for rounding errors when comparing expiry times */
+	private static final double EXPIRY_MARGIN = 0.001;
 	/** connection(s) that are currently used for sending */
 	protected ArrayList<Connection> sendingConnections;
+	/** how often TTL check is performed by this router */
+	private int ttlCheckInterval;
 	/** sim time when the last TTL check was done */
 	private double lastTtlCheck;
+	/** buffered messages with a finite TTL, ordered by expiry time. Entries
+	 * of removed messages are discarded lazily. */
+	private PriorityQueue<ExpiryEntry> expiryIndex;
 
 	private MessageTransferAcceptPolicy policy;
 	private EnergyModel energy;
+	/** indexed drop policy or null if linear search is used */
+	private DropPolicy dropPolicy;
+	/** is anti-entropy (summary vector exchange) used */
+	private boolean antiEntropy;
+	/** number of bits in the summary Bloom filters (0 for exact summaries) */
+	private int summaryBloomBits;
+	/** number of hash functions of the summary Bloom filters */
+	private int summaryBloomHashes;
+	/** summary of the messages this router has seen */
+	private SummaryVector summary;
+	/** seen messages version the summary was built for */
+	private long summaryVersion;
+	/** IDs of the messages the other end of each connection is missing
+	 * (null if anti-entropy is not used) */
+	private HashMap<Connection, Set<String>> missingMessages;
+	/** times when the summary exchanges of connections are done */
+	private HashMap<Connection, Double> summaryExchangeEnds;
+	/** result of the last {@link #getMessagesForConnected()} computation */
+	private List<Tuple<Message, Connection>> forConnected;
+	/** buffer version the forConnected list was computed for */
+	private int forConnectedBufferVersion;
+	/** connections version the forConnected list was computed for */
+	private long forConnectedConnectionsVersion;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -60,12 +124,32 @@ public abstract class ActiveRouter extends MessageRouter {
 		this.policy = new MessageTransferAcceptPolicy(s);
 
 		this.deleteDelivered = s.getBoolean(DELETE_DELIVERED_S, false);
+		this.ttlCheckInterval = s.getInt(TTL_CHECK_INTERVAL_S,
+				TTL_CHECK_INTERVAL);
+		if (this.ttlCheckInterval < 0) {
+			throw new SettingsError("Invalid value for " +
+					s.getFullPropertyName(TTL_CHECK_INTERVAL_S));
+		}
+		this.antiEntropy = s.getBoolean(ANTI_ENTROPY_S, false);
+		this.summaryBloomBits = s.getInt(SUMMARY_BLOOM_BITS_S, 0);
+		this.summaryBloomHashes = s.getInt(SUMMARY_BLOOM_HASHES_S,
+				SUMMARY_BLOOM_HASHES);
+		if (this.summaryBloomBits > 0 && this.summaryBloomHashes < 1) {
+			throw new SettingsError("Invalid value for " +
+					s.getFullPropertyName(SUMMARY_BLOOM_HASHES_S));
+		}
 
 		if (s.contains(EnergyModel.INIT_ENERGY_S)) {
 			this.energy = new EnergyModel(s);
 		} else {
 			this.energy = null; /* no energy model */
 		}
+
+		if (s.contains(DropPolicy.DROP_POLICY_S)) {
+			this.dropPolicy = new DropPolicy(s);
+		} else {
+			this.dropPolicy = null; /* use linear search */
+		}
 	}
 
 	/**
@@ -75,8 +159,14 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ActiveRouter(ActiveRouter r) {
 		super(r);
 		this.deleteDelivered = r.deleteDelivered;
+		this.ttlCheckInterval = r.ttlCheckInterval;
+		this.antiEntropy = r.antiEntropy;
+		this.summaryBloomBits = r.summaryBloomBits;
+		this.summaryBloomHashes = r.summaryBloomHashes;
 		this.policy = r.policy;
 		this.energy = (r.energy != null ? r.energy.replicate() : null);
+		this.dropPolicy = (r.dropPolicy != null ?
+				r.dropPolicy.replicate() : null);
 	}
 
 	@Override
@@ -84,12 +174,20 @@ public abstract class ActiveRouter extends MessageRouter {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
 		this.lastTtlCheck = 0;
+		this.expiryIndex = new PriorityQueue<ExpiryEntry>();
+		this.missingMessages = (this.antiEntropy ?
+				new HashMap<Connection, Set<String>>() : null);
+		this.summaryExchangeEnds = new HashMap<Connection, Double>();
+		this.summary = null;
+		this.forConnected = null;
 	}
 
 	/**
 	 * Called when a connection's state changes. If energy modeling is enabled,
 	 * and a new connection is created to this node, reduces the energy for the
-	 * device discovery (scan response) amount
+	 * device discovery (scan response) amount. If anti-entropy is used at
+	 * both ends, exchanges the summary vectors with the other end when a
+	 * connection comes up.
 	 * @param con The connection whose state changed
 	 */
 	@Override
@@ -97,6 +195,106 @@ public abstract class ActiveRouter extends MessageRouter {
 		if (this.energy != null && con.isUp() && !con.isInitiator(getHost())) {
 			this.energy.reduceDiscoveryEnergy();
 		}
+
+		if (this.missingMessages != null) {
+			if (con.isUp()) {
+				exchangeSummaries(con);
+			} else {
+				this.missingMessages.remove(con);
+				this.summaryExchangeEnds.remove(con);
+			}
+		}
+	}
+
+	/**
+	 * Exchanges the summary vectors with the other end of a new connection
+	 * if it uses anti-entropy too. The messages that are not in the other
+	 * end's summary are the ones it is missing. The connection is busy until
+	 * both summaries have been transferred.
+	 * @param con The connection that came up
+	 */
+	private void exchangeSummaries(Connection con) {
+		MessageRouter other = con.getOtherNode(getHost()).getRouter();
+		if (!(other instanceof ActiveRouter) ||
+				!((ActiveRouter)other).antiEntropy) {
+			return; // the other end doesn't send a summary
+		}
+
+		SummaryVector ownSummary = getSummaryVector();
+		SummaryVector otherSummary = ((ActiveRouter)other).getSummaryVector();
+		Set<String> missing = new HashSet<String>();
+		for (Message m : getMessageCollection()) {
+			if (!otherSummary.contains(m.getIdNumber())) {
+				missing.add(m.getId());
+			}
+		}
+		this.missingMessages.put(con, missing);
+
+		if (con.getSpeed() > 0) {
+			this.summaryExchangeEnds.put(con, SimClock.getTime() +
+					(ownSummary.getSize() + otherSummary.getSize()) /
+					con.getSpeed());
+		}
+	}
+
+	/**
+	 * Returns the summary vector of the messages this router has seen (i.e.,
+	 * the messages it would refuse as old ones). The summary is rebuilt only
+	 * when the seen messages have changed.
+	 * @return The summary vector
+	 */
+	protected SummaryVector getSummaryVector() {
+		long version = getSeenVersion();
+		if (this.summary == null || version != this.summaryVersion) {
+			this.summary = new SummaryVector(getSeenIdNumbers(),
+					this.summaryBloomBits, this.summaryBloomHashes);
+			this.summaryVersion = version;
+		}
+		return this.summary;
+	}
+
+	/**
+	 * Returns true if the summary vectors are still being exchanged over
+	 * the connection
+	 * @param con The connection
+	 * @return True if the exchange isn't done yet
+	 */
+	private boolean isExchangingSummaries(Connection con) {
+		Double end = this.summaryExchangeEnds.get(con);
+		return end != null && SimClock.getTime() < end;
+	}
+
+	/**
+	 * Removes a message from the set of messages that the other end of a
+	 * connection is missing
+	 * @param con The connection
+	 * @param id ID of the message
+	 */
+	private void removeFromMissing(Connection con, String id) {
+		Set<String> missing = this.missingMessages.get(con);
+		if (missing != null) {
+			missing.remove(id);
+		}
+	}
+
+	/**
+	 * Returns true if the other end of a connection has the message in its
+	 * buffer and would thus refuse it as an old one. Senders can skip such
+	 * messages without trying to start a transfer. Messages to the other
+	 * end and (with anti-entropy) the messages in the missing sets are never
+	 * skipped, since their refusals change the state of this router.
+	 * @param m The message
+	 * @param con The connection
+	 * @return True if offering the message can be skipped
+	 */
+	protected boolean isBufferedByPeer(Message m, Connection con) {
+		DTNHost other = con.getOtherNode(getHost());
+		if (this.missingMessages != null || m.getTo() == other) {
+			return false;
+		}
+		MessageRouter otherRouter = other.getRouter();
+		return otherRouter instanceof ActiveRouter &&
+			otherRouter.hasMessage(m.getId());
 	}
 
 	@Override
@@ -141,6 +339,15 @@ public abstract class ActiveRouter extends MessageRouter {
 	public Message messageTransferred(String id, DTNHost from) {
 		Message m = super.messageTransferred(id, from);
 
+		if (this.missingMessages != null) {
+			/* the previous hop obviously has the message */
+			for (Connection con : getConnections()) {
+				if (con.getOtherNode(getHost()) == from) {
+					removeFromMissing(con, id);
+				}
+			}
+		}
+
 		/**
 		 *  N.B. With application support the following if-block
 		 *  becomes obsolete, and the response size should be configured
@@ -181,12 +388,28 @@ public abstract class ActiveRouter extends MessageRouter {
 			return TRY_LATER_BUSY;
 		}
 
+		if (this.missingMessages != null && isExchangingSummaries(con)) {
+			return TRY_LATER_BUSY;
+		}
+
 		if (!policy.acceptSending(getHost(),
 				con.getOtherNode(getHost()), con, m)) {
+			getProfiler().transferStartResult(DENIED_POLICY);
 			return MessageRouter.DENIED_POLICY;
 		}
 
-		retVal = con.startTransfer(getHost(), m);
+		Set<String> missing = (this.missingMessages == null ? null :
+			this.missingMessages.get(con));
+		if (missing != null && !missing.contains(m.getId())) {
+			retVal = DENIED_OLD; // other end had the message (anti-entropy)
+		} else {
+			retVal = con.startTransfer(getHost(), m);
+			if (missing != null && retVal == DENIED_OLD) {
+				missing.remove(m.getId());
+			}
+		}
+		getProfiler().transferStartResult(retVal);
+
 		if (retVal == RCV_OK) { // started transfer
 			addToSendingConnections(con);
 		}
@@ -233,7 +456,7 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 
 		if ( hasMessage(m.getId()) || isDeliveredMessage(m) ||
-				super.isBlacklistedMessage(m.getId())) {
+				super.isBlacklistedMessage(m)) {
 			return DENIED_OLD; // already seen this message -> reject it
 		}
 
@@ -288,16 +511,79 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 
 	/**
-	 * Drops messages whose TTL is less than zero.
+	 * Drops messages whose TTL is less than zero. Only the messages whose
+	 * expiry time has passed are checked (see {@link #getNextExpiryTime()}).
+	 * If many messages expire, they are dropped in the order of their
+	 * expiry times, and messages that expire at the same time in the order
+	 * of their ID numbers. (Checking all the buffered messages dropped them
+	 * in the order of the message buffer, so reports that list the drops,
+	 * e.g., the event log, may list them in a different order.)
 	 */
 	protected void dropExpiredMessages() {
-		Message[] messages = getMessageCollection().toArray(new Message[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl();
-			if (ttl <= 0) {
-				deleteMessage(messages[i].getId(), true);
+		double now = SimClock.getTime();
+		List<ExpiryEntry> notExpired = null;
+
+		while (!expiryIndex.isEmpty() &&
+				expiryIndex.peek().dropTime <= now + EXPIRY_MARGIN) {
+			ExpiryEntry e = expiryIndex.poll();
+			if (getMessage(e.message.getId()) != e.message) {
+				continue; // message has been removed already
+			}
+
+			if (e.message.getTtl() <= 0) {
+				deleteMessage(e.message.getId(), true);
+			} else { /* on the edge of expiring (rounding); check later */
+				if (notExpired == null) {
+					notExpired = new ArrayList<ExpiryEntry>(1);
+				}
+				notExpired.add(e);
 			}
 		}
+
+		if (notExpired != null) {
+			expiryIndex.addAll(notExpired);
+		}
+	}
+
+	/**
+	 * Returns the time after which the TTL of the first buffered message
+	 * expires, i.e., the message is dropped at the first TTL check after
+	 * this time.
+	 * @return The next expiry time or Double.MAX_VALUE if no buffered
+	 * message has a finite TTL
+	 */
+	public double getNextExpiryTime() {
+		while (!expiryIndex.isEmpty()) {
+			ExpiryEntry e = expiryIndex.peek();
+			if (getMessage(e.message.getId()) == e.message) {
+				return e.dropTime;
+			}
+			expiryIndex.poll(); // message has been removed already
+		}
+		return Double.MAX_VALUE;
+	}
+
+	/**
+	 * Adds a message to the expiry index (if its TTL is finite). Rebuilds
+	 * the index if it has grown too much because of removed messages.
+	 * @param m The message
+	 */
+	private void addToExpiryIndex(Message m) {
+		if (m.getExpiryTime() == Double.MAX_VALUE) {
+			return; // never expires
+		}
+
+		if (expiryIndex.size() > 2 * getNrofMessages() + 64) {
+			/* most entries are for removed messages; rebuild */
+			expiryIndex.clear();
+			for (Message other : getMessageCollection()) {
+				if (other != m &&
+						other.getExpiryTime() != Double.MAX_VALUE) {
+					expiryIndex.add(new ExpiryEntry(other));
+				}
+			}
+		}
+		expiryIndex.add(new ExpiryEntry(m));
 	}
 
 	/**
@@ -312,9 +598,63 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 
 
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		addToExpiryIndex(m);
+		if (this.missingMessages != null) {
+			/* new message -> possibly missing from all connected peers */
+			for (Set<String> missing : this.missingMessages.values()) {
+				missing.add(m.getId());
+			}
+		}
+		if (this.dropPolicy != null) {
+			if (isDropProtected(m)) {
+				this.dropPolicy.remove(m.getId());
+			} else {
+				this.dropPolicy.add(m);
+			}
+		}
+		super.addToMessages(m, newMessage);
+	}
+
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null && this.dropPolicy != null) {
+			this.dropPolicy.remove(id);
+		}
+		if (m != null && this.missingMessages != null) {
+			for (Set<String> missing : this.missingMessages.values()) {
+				missing.remove(id);
+			}
+		}
+		return m;
+	}
+
+	/**
+	 * Returns true if a drop policy (see {@link DropPolicy#DROP_POLICY_S}) is
+	 * used for selecting the messages to remove
+	 * @return True if a drop policy is used
+	 */
+	protected boolean hasDropPolicy() {
+		return this.dropPolicy != null;
+	}
+
+	/**
+	 * Returns true if the message must never be dropped to make room for
+	 * other messages when a drop policy is used. Default implementation
+	 * returns always false.
+	 * @param m The message
+	 * @return True if the message is not a drop candidate
+	 */
+	protected boolean isDropProtected(Message m) {
+		return false;
+	}
+
 	/**
 	 * Returns the oldest (by receive time) message in the message buffer
-	 * (that is not being sent if excludeMsgBeingSent is true).
+	 * (that is not being sent if excludeMsgBeingSent is true). If a drop
+	 * policy is used, returns the first message of the policy instead.
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
 	 * being sent from the oldest message check (i.e. if oldest message is
 	 * being sent, the second oldest message is returned)
@@ -323,11 +663,16 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * exludeMsgBeingSent is true)
 	 */
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
+		if (this.dropPolicy != null) {
+			return this.dropPolicy.getNextMessageToRemove(
+					excludeMsgBeingSent ? getSendingMessageIds() : null);
+		}
+
 		Collection<Message> messages = this.getMessageCollection();
 		Message oldest = null;
 		for (Message m : messages) {
 
-			if (excludeMsgBeingSent && isSending(m.getId())) {
+			if (excludeMsgBeingSent && isSending(m)) {
 				continue; // skip the message(s) that router is sending
 			}
 
@@ -345,6 +690,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	/**
 	 * Returns a list of message-connections tuples of the messages whose
 	 * recipient is some host that we're connected to at the moment.
+	 * The tuples are recomputed only if the buffer or the connections have
+	 * changed since the previous call.
 	 * @return a list of message-connections tuples
 	 */
 	protected List<Tuple<Message, Connection>> getMessagesForConnected() {
@@ -353,18 +700,28 @@ public abstract class ActiveRouter extends MessageRouter {
 			return new ArrayList<Tuple<Message, Connection>>(0);
 		}
 
-		List<Tuple<Message, Connection>> forTuples =
-			new ArrayList<Tuple<Message, Connection>>();
-		for (Message m : getMessageCollection()) {
-			for (Connection con : getConnections()) {
-				DTNHost to = con.getOtherNode(getHost());
-				if (m.getTo() == to) {
-					forTuples.add(new Tuple<Message, Connection>(m,con));
+		int bufferVersion = getBufferVersion();
+		long connectionsVersion = getHost().getConnectionsVersion();
+		if (this.forConnected == null ||
+				bufferVersion != this.forConnectedBufferVersion ||
+				connectionsVersion != this.forConnectedConnectionsVersion) {
+			List<Tuple<Message, Connection>> forTuples =
+				new ArrayList<Tuple<Message, Connection>>();
+			for (Message m : getMessageCollection()) {
+				for (Connection con : getConnections()) {
+					DTNHost to = con.getOtherNode(getHost());
+					if (m.getTo() == to) {
+						forTuples.add(new Tuple<Message, Connection>(m,con));
+					}
 				}
 			}
+			this.forConnected = forTuples;
+			this.forConnectedBufferVersion = bufferVersion;
+			this.forConnectedConnectionsVersion = connectionsVersion;
 		}
 
-		return forTuples;
+		/* a copy, because the caller may sort the list */
+		return new ArrayList<Tuple<Message, Connection>>(this.forConnected);
 	}
 
 	/**
@@ -544,6 +901,25 @@ public abstract class ActiveRouter extends MessageRouter {
 		return false;
 	}
 
+	/**
+	 * Returns the IDs of the messages this router is currently sending
+	 * @return The IDs or null if no message is being sent
+	 */
+	private Set<String> getSendingMessageIds() {
+		Set<String> ids = null;
+		for (Connection con : this.sendingConnections) {
+			Message m = con.getMessage();
+			if (m == null) {
+				continue; // transmission is finalized
+			}
+			if (ids == null) {
+				ids = new HashSet<String>();
+			}
+			ids.add(m.getId());
+		}
+		return ids;
+	}
+
 	/**
 	 * Returns true if this router is currently sending a message with
 	 * <CODE>msgId</CODE>.
@@ -551,11 +927,30 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return True if the message is being sent false if not
 	 */
 	public boolean isSending(String msgId) {
+		int idNumber = Message.lookupIdNumber(msgId);
+		return idNumber >= 0 && isSending(idNumber);
+	}
+
+	/**
+	 * Returns true if this router is currently sending a message with the
+	 * same ID as the given message
+	 * @param m The message
+	 * @return True if the message is being sent false if not
+	 */
+	public boolean isSending(Message m) {
+		return isSending(m.getIdNumber());
+	}
+
+	/**
+	 * Returns true if this router is currently sending a message with the
+	 * given ID number
+	 */
+	private boolean isSending(int idNumber) {
 		for (Connection con : this.sendingConnections) {
 			if (con.getMessage() == null) {
 				continue; // transmission is finalized
 			}
-			if (con.getMessage().getId().equals(msgId)) {
+			if (con.getMessage().getIdNumber() == idNumber) {
 				return true;
 			}
 		}
@@ -581,6 +976,16 @@ public abstract class ActiveRouter extends MessageRouter {
 	public void update() {
 		super.update();
 
+		if (!this.summaryExchangeEnds.isEmpty()) {
+			/* finished exchanges no longer limit the next update time */
+			for (Iterator<Double> i = this.summaryExchangeEnds.values().
+					iterator(); i.hasNext(); ) {
+				if (i.next() <= SimClock.getTime()) {
+					i.remove();
+				}
+			}
+		}
+
 		/* in theory we can have multiple sending connections even though
 		  currently all routers allow only one concurrent sending connection */
 		for (int i=0; i<this.sendingConnections.size(); ) {
@@ -590,6 +995,9 @@ public abstract class ActiveRouter extends MessageRouter {
 			/* finalize ready transfers */
 			if (con.isMessageTransferred()) {
 				if (con.getMessage() != null) {
+					if (this.missingMessages != null) {
+						removeFromMissing(con, con.getMessage().getId());
+					}
 					transferDone(con);
 					con.finalizeTransfer();
 				} /* else: some other entity aborted transfer */
@@ -605,6 +1013,8 @@ public abstract class ActiveRouter extends MessageRouter {
 			}
 
 			if (removeCurrent) {
+				/* the host (and its peers) can start new transfers */
+				getHost().stateChanged();
 				// if the message being sent was holding excess buffer, free it
 				if (this.getFreeBufferSize() < 0) {
 					this.makeRoomForMessage(0);
@@ -618,8 +1028,10 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 
 		/* time to do a TTL check and drop old messages? Only if not sending */
-		if (SimClock.getTime() - lastTtlCheck >= TTL_CHECK_INTERVAL &&
-				sendingConnections.size() == 0) {
+		if (SimClock.getTime() - lastTtlCheck >= ttlCheckInterval &&
+				sendingConnections.size() == 0 &&
+				(ttlCheckInterval > 0 ||
+				 getNextExpiryTime() < SimClock.getTime())) {
 			dropExpiredMessages();
 			lastTtlCheck = SimClock.getTime();
 		}
@@ -631,6 +1043,54 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 	}
 
+	/**
+	 * Returns the earliest of the next TTL check time and the times when the
+	 * ongoing transfers finish. If TTL check interval is zero, the next
+	 * expiry time is used instead of the TTL check time. If energy modeling
+	 * is enabled, applications are attached to the router, or the finishing
+	 * time of a transfer can't be known in advance, the current time is
+	 * returned. Subclasses whose routing decisions change with time (and
+	 * not only with the state of buffers and connections) must override
+	 * this.
+	 * @return The next update time of the router
+	 */
+	@Override
+	public double getNextUpdateTime() {
+		if (this.energy != null || hasApplications()) {
+			return SimClock.getTime();
+		}
+
+		double next;
+		if (this.ttlCheckInterval > 0) {
+			next = this.lastTtlCheck + this.ttlCheckInterval;
+		} else if (this.sendingConnections.size() > 0) {
+			next = Double.MAX_VALUE; // checked when the transfers are done
+		} else {
+			next = getNextExpiryTime();
+		}
+
+		for (int i=0, n=this.sendingConnections.size(); i<n; i++) {
+			Connection con = this.sendingConnections.get(i);
+			if (!(con instanceof CBRConnection)) {
+				return SimClock.getTime(); // variable bit-rate connection
+			}
+			/* transfer is done when less than one byte is remaining */
+			double doneTime = ((CBRConnection)con).getTransferDoneTime() -
+				1.0 / con.getSpeed();
+			if (doneTime < next) {
+				next = doneTime;
+			}
+		}
+
+		for (Double end : this.summaryExchangeEnds.values()) {
+			if (end < next) {
+				next = end; // messages can be sent after the exchange
+			}
+		}
+
+		return next;
+	}
+
 	/**
 	 * Method is called just before a transfer is aborted at {@link #update()}
 	 * due connection going down. This happens on the sending host.
@@ -657,4 +1117,28 @@ public abstract class ActiveRouter extends MessageRouter {
 		return top;
 	}
 
+
+	/**
+	 * Entry of the expiry index. The drop time is stored in the entry so
+	 * that the ordering can't change while the message is in the index.
+	 */
+	private static class ExpiryEntry implements Comparable<ExpiryEntry> {
+		/** time after which the message's TTL is less than a minute */
+		private final double dropTime;
+		private final Message message;
+
+		public ExpiryEntry(Message m) {
+			this.dropTime = m.getExpiryTime() - 60;
+			this.message = m;
+		}
+
+		public int compareTo(ExpiryEntry other) {
+			int c = Double.compare(this.dropTime, other.dropTime);
+			if (c == 0) {
+				c = Integer.compare(this.message.getIdNumber(),
+						other.message.getIdNumber());
+			}
+			return c;
+		}
+	}
 }
@@ -21,8 +21,8 @@ import static core.Constants.DEBUG;
  */
 public class EpidemicOracleRouter extends ActiveRouter {
 
-	/** List of all routers in this node group */
-	private static List<EpidemicOracleRouter> allRouters;
+	/** List of all routers in this node group (of this simulation run) */
+	private List<EpidemicOracleRouter> allRouters;
 
 	static {
 		DTNSim.registerForReset(EpidemicOracleRouter.class.getCanonicalName());
@@ -44,6 +44,7 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	 */
 	protected EpidemicOracleRouter(EpidemicOracleRouter r) {
 		super(r);
+		this.allRouters = getAllRouters();
 		allRouters.add(this);
 	}
 
@@ -127,7 +128,7 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	}
 
 	protected int checkReceiving(Message m) {
-		if ( isIncomingMessage(m.getId()) || hasMessage(m.getId()) ||
+		if ( isIncomingMessage(m) || hasMessage(m.getId()) ||
 				isDeliveredMessage(m) ){
 			return DENIED_OLD; // already seen this message -> reject it
 		}
@@ -174,10 +175,25 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	}
 
 	/**
-	 * Resets the static router list
+	 * Returns the list of all routers of the current simulation run
+	 * @return the list of all routers of the current simulation run
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<EpidemicOracleRouter> getAllRouters() {
+		SimContext context = SimContext.current();
+		if (context.getState(EpidemicOracleRouter.class) == null) {
+			reset();
+		}
+		return (List<EpidemicOracleRouter>)context.getState(
+				EpidemicOracleRouter.class);
+	}
+
+	/**
+	 * Resets the router list (of the current simulation run)
 	 */
 	public static void reset() {
-		allRouters = new ArrayList<EpidemicOracleRouter>();
+		SimContext.current().putState(EpidemicOracleRouter.class,
+				new ArrayList<EpidemicOracleRouter>());
 	}
 
 }
@@ -44,7 +44,7 @@ public class MaxPropRouter extends ActiveRouter {
 	public static final String PROB_SET_MAX_SIZE_S = "probSetMaxSize";
     /** Default value for the meeting probability set maximum size ({@value}).*/
     public static final int DEFAULT_PROB_SET_MAX_SIZE = 50;
-    private static int probSetMaxSize;
+    private int probSetMaxSize;
 
 	/** probabilities of meeting hosts */
 	private MeetingProbabilitySet probs;
@@ -112,6 +112,7 @@ public class MaxPropRouter extends ActiveRouter {
 	protected MaxPropRouter(MaxPropRouter r) {
 		super(r);
 		this.alpha = r.alpha;
+		this.probSetMaxSize = r.probSetMaxSize;
 		this.probs = new MeetingProbabilitySet(probSetMaxSize, this.alpha);
 		this.allProbs = new HashMap<Integer, MeetingProbabilitySet>();
 		this.dijkstra = new MaxPropDijkstra(this.allProbs);
@@ -273,7 +274,7 @@ public class MaxPropRouter extends ActiveRouter {
 		List<Message> validMessages = new ArrayList<Message>();
 
 		for (Message m : messages) {
-			if (excludeMsgBeingSent && isSending(m.getId())) {
+			if (excludeMsgBeingSent && isSending(m)) {
 				continue; // skip the message(s) that router is sending
 			}
 			validMessages.add(m);
@@ -4,6 +4,7 @@
  */
 package routing;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -20,7 +21,9 @@ import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 import core.SimError;
+import core.SimProfiler;
 import routing.util.RoutingInfo;
+import util.LongHashMap;
 import util.Tuple;
 
 /**
@@ -85,14 +88,20 @@ public abstract class MessageRouter {
 	public static final int MAX_TTL_VALUE = 35791394;
 
 	private List<MessageListener> mListeners;
-	/** The messages being transferred with msgID_hostName keys */
-	private HashMap<String, Message> incomingMessages;
+	/** profiler of the simulation run */
+	private SimProfiler profiler;
+	/** The messages being transferred; see {@link #incomingKey} */
+	private LongHashMap<Message> incomingMessages;
+	/** Numbers of the incoming messages by their ID numbers */
+	private LongHashMap<Integer> incomingIdCounts;
 	/** The messages this router is carrying */
 	private HashMap<String, Message> messages;
-	/** The messages this router has received as the final recipient */
-	private HashMap<String, Message> deliveredMessages;
-	/** The messages that Applications on this router have blacklisted */
-	private HashMap<String, Object> blacklistedMessages;
+	/** The messages this router has received as the final recipient, by
+	 * ID number */
+	private LongHashMap<Message> deliveredMessages;
+	/** The messages that Applications on this router have blacklisted, by
+	 * ID number */
+	private LongHashMap<Boolean> blacklistedMessages;
 	/** Host where this router belongs to */
 	private DTNHost host;
 	/** size of the buffer */
@@ -101,6 +110,15 @@ public abstract class MessageRouter {
 	protected int msgTtl;
 	/** Queue mode for sending messages */
 	private int sendQueueMode;
+	/** Number of changes done to the message and incoming buffers */
+	private int bufferVersion;
+	/** Total size of the messages in the message buffer */
+	private long occupiedSize;
+	/** Occupied buffer size integrated over simulation time (byte-seconds)
+	 * until {@link #occupancyChangeTime} */
+	private double occupancyIntegral;
+	/** Time when the occupied size last changed */
+	private double occupancyChangeTime;
 
 	/** applications attached to the host */
 	private HashMap<String, Collection<Application>> applications = null;
@@ -159,12 +177,18 @@ public abstract class MessageRouter {
 	 * @param mListeners The message listeners
 	 */
 	public void init(DTNHost host, List<MessageListener> mListeners) {
-		this.incomingMessages = new HashMap<String, Message>();
+		this.incomingMessages = new LongHashMap<Message>();
+		this.incomingIdCounts = new LongHashMap<Integer>();
 		this.messages = new HashMap<String, Message>();
-		this.deliveredMessages = new HashMap<String, Message>();
-		this.blacklistedMessages = new HashMap<String, Object>();
+		this.deliveredMessages = new LongHashMap<Message>();
+		this.blacklistedMessages = new LongHashMap<Boolean>();
 		this.mListeners = mListeners;
 		this.host = host;
+		this.profiler = SimProfiler.getInstance();
+		this.bufferVersion = 0;
+		this.occupiedSize = 0;
+		this.occupancyIntegral = 0;
+		this.occupancyChangeTime = SimClock.getTime();
 	}
 
 	/**
@@ -197,6 +221,41 @@ public abstract class MessageRouter {
 		}
 	}
 
+	/**
+	 * Returns the earliest simulation time when this router needs to be
+	 * updated even if no external events (e.g., connection changes or
+	 * message creations) happen before that. Routers whose behavior depends
+	 * only on the state of their buffers and connections can return the time
+	 * of their next timed action (e.g., a finishing transfer); the default
+	 * implementation returns the current time, i.e., the router is updated
+	 * on every update interval.
+	 * @return The next update time of the router
+	 */
+	public double getNextUpdateTime() {
+		return SimClock.getTime();
+	}
+
+	/**
+	 * Increases the buffer version and informs the host about the change
+	 */
+	private void bufferChanged() {
+		this.bufferVersion++;
+		if (this.host != null) {
+			this.host.stateChanged();
+		}
+	}
+
+	/**
+	 * Returns a counter value that is increased every time a message is
+	 * added to or removed from the message buffer or the incoming messages
+	 * buffer of this router. If the value hasn't changed between two calls,
+	 * the buffers are in the same state.
+	 * @return The buffer version counter
+	 */
+	public int getBufferVersion() {
+		return this.bufferVersion;
+	}
+
 	/**
 	 * Informs the router about change in connections state.
 	 * @param con The connection that changed
@@ -230,7 +289,7 @@ public abstract class MessageRouter {
 	 * this host as the final recipient.
 	 */
 	protected boolean isDeliveredMessage(Message m) {
-		return (this.deliveredMessages.containsKey(m.getId()));
+		return this.deliveredMessages.containsKey(m.getIdNumber());
 	}
 
 	/**
@@ -243,7 +302,57 @@ public abstract class MessageRouter {
 	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
 	 */
 	protected boolean isBlacklistedMessage(String id) {
-		return this.blacklistedMessages.containsKey(id);
+		if (this.blacklistedMessages.isEmpty()) {
+			return false;
+		}
+		return this.blacklistedMessages.containsKey(
+				Message.lookupIdNumber(id));
+	}
+
+	/**
+	 * Returns <code>true</code> if the message has been blacklisted (see
+	 * {@link #isBlacklistedMessage(String)}). Doesn't need to look up the
+	 * number of the message's ID.
+	 * @param m The message
+	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
+	 */
+	protected boolean isBlacklistedMessage(Message m) {
+		return this.blacklistedMessages.containsKey(m.getIdNumber());
+	}
+
+	/**
+	 * Returns the ID numbers of the messages this router has seen, i.e., the
+	 * buffered messages and the messages that have been delivered to or
+	 * blacklisted by this host.
+	 * @return The ID numbers (a number may appear more than once)
+	 */
+	protected int[] getSeenIdNumbers() {
+		long[] delivered = this.deliveredMessages.keys();
+		long[] blacklisted = this.blacklistedMessages.keys();
+		int[] idNumbers = new int[this.messages.size() + delivered.length +
+		                          blacklisted.length];
+		int n = 0;
+		for (Message m : this.messages.values()) {
+			idNumbers[n++] = m.getIdNumber();
+		}
+		for (long idNumber : delivered) {
+			idNumbers[n++] = (int)idNumber;
+		}
+		for (long idNumber : blacklisted) {
+			idNumbers[n++] = (int)idNumber;
+		}
+		return idNumbers;
+	}
+
+	/**
+	 * Returns a counter value that changes every time the set of messages
+	 * returned by {@link #getSeenIdNumbers()} may have changed
+	 * @return The seen messages version counter
+	 */
+	protected long getSeenVersion() {
+		/* delivered and blacklisted messages are never removed */
+		return (long)this.bufferVersion + this.deliveredMessages.size() +
+			this.blacklistedMessages.size();
 	}
 
 	/**
@@ -282,17 +391,62 @@ public abstract class MessageRouter {
 	 * size isn't defined)
 	 */
 	public long getFreeBufferSize() {
-		long occupancy = 0;
-
 		if (this.getBufferSize() == Integer.MAX_VALUE) {
 			return Integer.MAX_VALUE;
 		}
 
+		assert this.occupiedSize == countOccupiedSize() : "Occupied size " +
+			this.occupiedSize + " of " + this.host + " doesn't match the " +
+			"buffered messages (" + countOccupiedSize() + ")";
+
+		return this.getBufferSize() - this.occupiedSize;
+	}
+
+	/**
+	 * Returns the total size of the messages in the message buffer. The size
+	 * is updated when messages are added or removed, so this doesn't
+	 * iterate over the buffer.
+	 * @return The occupied buffer size (bytes)
+	 */
+	public long getOccupiedBufferSize() {
+		return this.occupiedSize;
+	}
+
+	/**
+	 * Returns the occupied buffer size integrated over simulation time
+	 * since the router was initialized. The average occupancy over any time
+	 * period can be calculated from the difference of two values of this
+	 * integral without rescanning the buffer.
+	 * @return The occupancy integral (byte-seconds)
+	 */
+	public double getOccupancyIntegral() {
+		return this.occupancyIntegral + this.occupiedSize *
+			(SimClock.getTime() - this.occupancyChangeTime);
+	}
+
+	/**
+	 * Changes the occupied buffer size and updates the occupancy integral
+	 * @param delta The change of the occupied size
+	 */
+	private void changeOccupiedSize(long delta) {
+		double now = SimClock.getTime();
+		this.occupancyIntegral += this.occupiedSize *
+			(now - this.occupancyChangeTime);
+		this.occupancyChangeTime = now;
+		this.occupiedSize += delta;
+	}
+
+	/**
+	 * Counts the occupied buffer size by iterating over all the buffered
+	 * messages. Used for checking the incrementally updated size.
+	 * @return The total size of the buffered messages
+	 */
+	private long countOccupiedSize() {
+		long occupancy = 0;
 		for (Message m : getMessageCollection()) {
 			occupancy += m.getSize();
 		}
-
-		return this.getBufferSize() - occupancy;
+		return occupancy;
 	}
 
 	/**
@@ -391,11 +545,12 @@ public abstract class MessageRouter {
 			// -> put to buffer
 			addToMessages(aMessage, false);
 		} else if (isFirstDelivery) {
-			this.deliveredMessages.put(id, aMessage);
+			this.deliveredMessages.put(incoming.getIdNumber(), aMessage);
 		} else if (outgoing == null) {
 			// Blacklist messages that an app wants to drop.
 			// Otherwise the peer will just try to send it back again.
-			this.blacklistedMessages.put(id, null);
+			this.blacklistedMessages.put(incoming.getIdNumber(),
+					Boolean.TRUE);
 		}
 
 		for (MessageListener ml : this.mListeners) {
@@ -413,7 +568,23 @@ public abstract class MessageRouter {
 	 * @param from Who the message was from (previous hop).
 	 */
 	protected void putToIncomingBuffer(Message m, DTNHost from) {
-		this.incomingMessages.put(m.getId() + "_" + from.toString(), m);
+		if (this.incomingMessages.put(incomingKey(m.getIdNumber(), from),
+				m) == null) {
+			Integer count = this.incomingIdCounts.get(m.getIdNumber());
+			this.incomingIdCounts.put(m.getIdNumber(),
+					(count == null ? 1 : count + 1));
+		}
+		bufferChanged();
+	}
+
+	/**
+	 * Returns the incoming buffer key of a message
+	 * @param idNumber The ID number of the message
+	 * @param from The host that sent the message (previous hop)
+	 * @return The key
+	 */
+	private static long incomingKey(int idNumber, DTNHost from) {
+		return ((long)idNumber << 32) | (from.getAddress() & 0xFFFFFFFFL);
 	}
 
 	/**
@@ -424,7 +595,34 @@ public abstract class MessageRouter {
 	 * @return The found message or null if such message wasn't found
 	 */
 	protected Message removeFromIncomingBuffer(String id, DTNHost from) {
-		return this.incomingMessages.remove(id + "_" + from.toString());
+		int idNumber = Message.lookupIdNumber(id);
+		if (idNumber < 0) {
+			return null;
+		}
+		return removeFromIncomingBuffer(idNumber, from);
+	}
+
+	/**
+	 * Removes and returns a message with a certain ID number from the
+	 * incoming messages buffer or null if such message wasn't found.
+	 * @param idNumber ID number of the message (see
+	 * {@link Message#getIdNumber()})
+	 * @param from The host that sent this message (previous hop)
+	 * @return The found message or null if such message wasn't found
+	 */
+	protected Message removeFromIncomingBuffer(int idNumber, DTNHost from) {
+		Message m = this.incomingMessages.remove(incomingKey(idNumber, from));
+		if (m != null) {
+			int count = this.incomingIdCounts.get(idNumber);
+			if (count == 1) {
+				this.incomingIdCounts.remove(idNumber);
+			}
+			else {
+				this.incomingIdCounts.put(idNumber, count - 1);
+			}
+			bufferChanged();
+		}
+		return m;
 	}
 
 	/**
@@ -434,7 +632,22 @@ public abstract class MessageRouter {
 	 * @return True if such message is incoming right now
 	 */
 	protected boolean isIncomingMessage(String id) {
-		return this.incomingMessages.containsKey(id);
+		if (this.incomingIdCounts.isEmpty()) {
+			return false;
+		}
+		int idNumber = Message.lookupIdNumber(id);
+		return idNumber >= 0 && this.incomingIdCounts.containsKey(idNumber);
+	}
+
+	/**
+	 * Returns true if a message with the same ID as the given message is
+	 * one of the currently incoming messages, false if not. Doesn't need to
+	 * look up the number of the message's ID.
+	 * @param m The message
+	 * @return True if such message is incoming right now
+	 */
+	protected boolean isIncomingMessage(Message m) {
+		return this.incomingIdCounts.containsKey(m.getIdNumber());
 	}
 
 	/**
@@ -445,7 +658,9 @@ public abstract class MessageRouter {
 	 * message, if false, nothing is informed.
 	 */
 	protected void addToMessages(Message m, boolean newMessage) {
-		this.messages.put(m.getId(), m);
+		Message old = this.messages.put(m.getId(), m);
+		changeOccupiedSize(m.getSize() - (old == null ? 0 : old.getSize()));
+		bufferChanged();
 
 		if (newMessage) {
 			for (MessageListener ml : this.mListeners) {
@@ -461,9 +676,21 @@ public abstract class MessageRouter {
 	 */
 	protected Message removeFromMessages(String id) {
 		Message m = this.messages.remove(id);
+		if (m != null) {
+			changeOccupiedSize(-m.getSize());
+			bufferChanged();
+		}
 		return m;
 	}
 
+	/**
+	 * Returns the profiler of the simulation run
+	 * @return the profiler
+	 */
+	protected SimProfiler getProfiler() {
+		return this.profiler;
+	}
+
 	/**
 	 * This method should be called (on the receiving host) when a message
 	 * transfer was aborted.
@@ -478,6 +705,7 @@ public abstract class MessageRouter {
 			throw new SimError("No incoming message for id " + id +
 					" to abort in " + this.host);
 		}
+		profiler.transferAborted();
 
 		for (MessageListener ml : this.mListeners) {
 			ml.messageTransferAborted(incoming, from, this.host);
@@ -508,6 +736,9 @@ public abstract class MessageRouter {
 		Message removed = removeFromMessages(id);
 		if (removed == null) throw new SimError("no message for id " +
 				id + " to remove at " + this.host);
+		if (drop) {
+			profiler.messageEvicted();
+		}
 
 		for (MessageListener ml : this.mListeners) {
 			ml.messageDeleted(removed, this.host, drop);
@@ -564,6 +795,68 @@ public abstract class MessageRouter {
 		return list;
 	}
 
+	/**
+	 * Returns the order in which {@link #sortByQueueMode(List)} would put
+	 * a list of message-connection tuples that has, for each message in
+	 * turn, a tuple for every connection. Only the positions are shuffled
+	 * or sorted, so the tuples don't need to be created.
+	 * @param messages The messages in the order of the tuple list
+	 * @param nrofConnections Number of connections (tuples per message)
+	 * @return The tuple list positions in the queue mode order. Position
+	 * p is the tuple of message <CODE>p / nrofConnections</CODE> and
+	 * connection <CODE>p % nrofConnections</CODE>.
+	 */
+	protected int[] getQueueModeOrder(final List<Message> messages,
+			int nrofConnections) {
+		int n = messages.size() * nrofConnections;
+		int[] order = new int[n];
+
+		switch (sendQueueMode) {
+		case Q_MODE_RANDOM:
+			for (int i=0; i<n; i++) {
+				order[i] = i;
+			}
+			/* same swaps as Collections.shuffle with the same seed */
+			Random rng = new Random(SimClock.getIntTime());
+			for (int i=n; i>1; i--) {
+				int j = rng.nextInt(i);
+				int tmp = order[i-1];
+				order[i-1] = order[j];
+				order[j] = tmp;
+			}
+			break;
+		case Q_MODE_FIFO:
+			/* stable sort by receive time; a message's tuples stay in
+			 * the order of the connections */
+			Integer[] sorted = new Integer[messages.size()];
+			for (int i=0; i<sorted.length; i++) {
+				sorted[i] = i;
+			}
+			Arrays.sort(sorted, new Comparator<Integer>() {
+				public int compare(Integer i1, Integer i2) {
+					double diff = messages.get(i1).getReceiveTime() -
+						messages.get(i2).getReceiveTime();
+					if (diff == 0) {
+						return 0;
+					}
+					return (diff < 0 ? -1 : 1);
+				}
+			});
+			int pos = 0;
+			for (int i : sorted) {
+				for (int j=0; j<nrofConnections; j++) {
+					order[pos++] = i * nrofConnections + j;
+				}
+			}
+			break;
+		/* add more queue modes here */
+		default:
+			throw new SimError("Unknown queue mode " + sendQueueMode);
+		}
+
+		return order;
+	}
+
 	/**
 	 * Gives the order of the two given messages as defined by the current
 	 * queue mode
@@ -639,6 +932,14 @@ public abstract class MessageRouter {
 		this.applications.get(app.getAppID()).add(app);
 	}
 
+	/**
+	 * Returns true if any applications are attached to this router
+	 * @return true if any applications are attached to this router
+	 */
+	protected boolean hasApplications() {
+		return !this.applications.isEmpty();
+	}
+
 	/**
 	 * Returns all the applications that want to receive messages for the given
 	 * application ID.
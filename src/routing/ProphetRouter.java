@@ -315,6 +315,16 @@ public class ProphetRouter extends ActiveRouter {
 		return top;
 	}
 
+	/**
+	 * Returns always the current time; delivery predictabilities are aged
+	 * on every update so updates can't be skipped.
+	 * @return The current simulation time
+	 */
+	@Override
+	public double getNextUpdateTime() {
+		return SimClock.getTime();
+	}
+
 	@Override
 	public MessageRouter replicate() {
 		ProphetRouter r = new ProphetRouter(this);
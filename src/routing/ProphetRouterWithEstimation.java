@@ -513,6 +513,15 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 		return top;
 	}
 
+	/**
+	 * Returns always the current time (predictabilities age with time).
+	 * @return The current simulation time
+	 */
+	@Override
+	public double getNextUpdateTime() {
+		return SimClock.getTime();
+	}
+
 	@Override
 	public MessageRouter replicate() {
 		ProphetRouterWithEstimation r = new ProphetRouterWithEstimation(this);
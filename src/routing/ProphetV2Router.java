@@ -368,6 +368,16 @@ public class ProphetV2Router extends ActiveRouter {
 		return top;
 	}
 
+	/**
+	 * Returns always the current time since the aging of delivery
+	 * predictabilities depends on the simulation time.
+	 * @return The current simulation time
+	 */
+	@Override
+	public double getNextUpdateTime() {
+		return SimClock.getTime();
+	}
+
 	@Override
 	public MessageRouter replicate() {
 		ProphetV2Router r = new ProphetV2Router(this);
@@ -5,7 +5,11 @@ package routing;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import routing.ActiveRouter;
 
@@ -15,14 +19,41 @@ import util.Tuple;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.MessageListener;
 import core.Settings;
 
 /**
  * Message router that prioritizes messages of the node's contacts.
+ * The priority classes of the buffered messages (sent by a contact,
+ * relayed by a contact) are resolved once when the messages are added to
+ * the buffer, so the update loop doesn't need to classify every message
+ * for every connection. The messages of a class are tried in the same
+ * order as when message-connection tuples of the class are sorted
+ * by the queue mode, so the routing decisions are the same as when the
+ * messages are classified on every update, but only the tried messages
+ * are looked at and the messages a peer already has are not offered.
  */
 public class SocialRouterHyccups extends ActiveRouter {
+	/** SocialRouterHyccups router's settings name space
+	 * ({@value}) */
+	public static final String SOCIAL_HYCCUPS_NS = "SocialRouterHyccups";
+	/**
+	 * Path of the social network file -setting id ({@value}). The file has
+	 * a line per user with the user's id (host address + 1) and the ids of
+	 * the user's contacts, separated by commas. Default is the social
+	 * network of the Hyccups dataset.
+	 */
+	public static final String SOCIAL_NETWORK_S = "socialNetwork";
+
+	/** social network of the hosts */
+	protected HyccupsSocialParser socialParser;
 
-	protected static HyccupsSocialParser socialParser = new HyccupsSocialParser();
+	/** numbers of buffered messages by their final recipient */
+	private Map<DTNHost, Integer> deliverableCounts;
+	/** buffered messages whose sender is a contact */
+	private PriorityClass fromContacts;
+	/** buffered messages whose last hop is a contact */
+	private PriorityClass relayedByContacts;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -31,6 +62,14 @@ public class SocialRouterHyccups extends ActiveRouter {
 	 */
 	public SocialRouterHyccups(Settings s) {
 		super(s);
+		Settings socialSettings = new Settings(SOCIAL_HYCCUPS_NS);
+		if (socialSettings.contains(SOCIAL_NETWORK_S)) {
+			this.socialParser = HyccupsSocialParser.getInstance(
+					socialSettings.getSetting(SOCIAL_NETWORK_S));
+		}
+		else {
+			this.socialParser = HyccupsSocialParser.getInstance();
+		}
 	}
 
 	/**
@@ -39,6 +78,7 @@ public class SocialRouterHyccups extends ActiveRouter {
 	 */
 	protected SocialRouterHyccups(SocialRouterHyccups r) {
 		super(r);
+		this.socialParser = r.socialParser;
 	}
 
 	@Override
@@ -72,131 +112,187 @@ public class SocialRouterHyccups extends ActiveRouter {
 		this.tryAllMessagesToAllConnections();
 	}
 
-	protected Connection exchangeMessagesFromContacts() {
-		List<Connection> connections = getConnections();
+	@Override
+	public void init(DTNHost host, List<MessageListener> mListeners) {
+		super.init(host, mListeners);
+		this.deliverableCounts = new HashMap<DTNHost, Integer>();
+		this.fromContacts = new PriorityClass();
+		this.relayedByContacts = new PriorityClass();
+	}
 
-		if (connections.size() == 0) {
-			return null;
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		Message old = getMessage(m.getId());
+		if (old != null) {
+			removeFromIndexes(old);
 		}
+		addToIndexes(m);
+		super.addToMessages(m, newMessage);
+	}
 
-		@SuppressWarnings(value = "unchecked")
-		Tuple<Message, Connection> t =
-			tryMessagesForConnected(sortByQueueMode(this.getMessagesFromContacts()));
-		
-		if (t != null) {
-			return t.getValue(); // started transfer
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null) {
+			removeFromIndexes(m);
 		}
-	
-		// didn't start transfer to any node -> ask messages from the other node
-		// originating with host's contacts
-		for (Connection con : connections) {
-			if (isTransferring()) {
-				continue;
-			}
-	
-			DTNHost other = con.getOtherNode(getHost());
-			/* do a copy to avoid concurrent modification exceptions
-			 * (startTransfer may remove messages) */
-			ArrayList<Message> temp =
-				new ArrayList<Message>(other.getMessageCollection());
-			for (Message m : temp) {
-				if (socialParser.isContact(this.getHost().getAddress(), m.getFrom().getAddress())) {
-					if (startTransfer(m, con) == RCV_OK) {
-						return con;
-					}
-				}
-			}
+		return m;
+	}
+
+	/**
+	 * Adds a buffered message to the indexes of the priority classes it
+	 * belongs to. The classes don't depend on the connections, and the
+	 * path of a buffered message doesn't change, so they are resolved only
+	 * once per message.
+	 * @param m The message
+	 */
+	private void addToIndexes(Message m) {
+		int address = getHost().getAddress();
+
+		if (m.getTo() != null) {
+			Integer count = deliverableCounts.get(m.getTo());
+			deliverableCounts.put(m.getTo(), (count == null ? 1 : count + 1));
 		}
 
-		return null;
+		if (socialParser.isContact(address, m.getFrom().getAddress())) {
+			fromContacts.add(m.getId());
+		}
+
+		List<DTNHost> messagePath = m.getHops();
+		DTNHost lastHop = messagePath.get(messagePath.size() - 1);
+		if (lastHop != null &&
+				socialParser.isContact(address, lastHop.getAddress())) {
+			relayedByContacts.add(m.getId());
+		}
 	}
 
-	protected List<Tuple<Message, Connection>> getMessagesFromContacts() {
-		if (this.getNrofMessages() == 0 || this.getConnections().size() == 0) {
-			/* no messages -> empty list */
-			return new ArrayList<Tuple<Message, Connection>>(0);
-		}
-
-		List<Tuple<Message, Connection>> fromContactsTuples =
-			new ArrayList<Tuple<Message, Connection>>();
-		for (Message m : getMessageCollection()) {
-			for (Connection con : getConnections()) {
-				// Add messages where the previous hop is a contact
-				if (socialParser.isContact(this.getHost().getAddress(), m.getFrom().getAddress())) {
-					fromContactsTuples.add(new Tuple<Message, Connection>(m,con));
-				}
+	/**
+	 * Removes a message from all the priority class indexes
+	 * @param m The message
+	 */
+	private void removeFromIndexes(Message m) {
+		Integer count = deliverableCounts.get(m.getTo());
+		if (count != null) {
+			if (count == 1) {
+				deliverableCounts.remove(m.getTo());
+			}
+			else {
+				deliverableCounts.put(m.getTo(), count - 1);
 			}
 		}
-
-		return fromContactsTuples;
+		fromContacts.remove(m.getId());
+		relayedByContacts.remove(m.getId());
 	}
 
-
-	protected Connection exchangeMessagesRelayedFromContacts() {
+	/**
+	 * Returns message-connection tuples for all connections and the
+	 * buffered messages of a priority class, in the order of the message
+	 * buffer.
+	 * @param index The priority class
+	 * @return The tuples
+	 */
+	private List<Tuple<Message, Connection>> getCandidates(
+			PriorityClass index) {
 		List<Connection> connections = getConnections();
+		List<Message> messages = index.getMessages();
+		List<Tuple<Message, Connection>> tuples =
+			new ArrayList<Tuple<Message, Connection>>(
+					messages.size() * connections.size());
 
-		if (connections.size() == 0) {
-			return null;
+		for (Message m : messages) {
+			for (int i=0, n=connections.size(); i<n; i++) {
+				tuples.add(new Tuple<Message, Connection>(m,
+						connections.get(i)));
+			}
 		}
+		return tuples;
+	}
 
-		@SuppressWarnings(value = "unchecked")
-		Tuple<Message, Connection> t =
-			tryMessagesForConnected(sortByQueueMode(this.getMessagesRelayedFromContacts()));
-		
-		if (t != null) {
-			return t.getValue(); // started transfer
+	/**
+	 * Tries to start a transfer of a message of a priority class. The
+	 * messages and connections are tried in the same order as the tuples
+	 * of {@link #getCandidates(PriorityClass)} sorted by the queue mode,
+	 * but no tuples are created and the messages the peer already has are
+	 * skipped (the peer would refuse them anyway).
+	 * @param index The priority class
+	 * @return The connection that started a transfer or null if no transfer
+	 * was started
+	 */
+	private Connection tryCandidates(PriorityClass index) {
+		List<Connection> connections = getConnections();
+		if (index.isEmpty() || connections.size() == 0) {
+			return null;
 		}
-	
-		// didn't start transfer to any node -> ask messages from the other node
-		// originating with host's contacts
-		for (Connection con : connections) {
-			if (isTransferring()) {
+
+		List<Message> messages = index.getMessages();
+		int nrofConnections = connections.size();
+		for (int pos : getQueueModeOrder(messages, nrofConnections)) {
+			Message m = messages.get(pos / nrofConnections);
+			Connection con = connections.get(pos % nrofConnections);
+			if (isBufferedByPeer(m, con)) {
 				continue;
 			}
-	
-			DTNHost other = con.getOtherNode(getHost());
-			/* do a copy to avoid concurrent modification exceptions
-			 * (startTransfer may remove messages) */
-			ArrayList<Message> temp =
-				new ArrayList<Message>(other.getMessageCollection());
-			for (Message m : temp) {
-				if (socialParser.isContact(this.getHost().getAddress(), m.getFrom().getAddress())) {
-					if (startTransfer(m, con) == RCV_OK) {
-						return con;
-					}
-				}
+			if (startTransfer(m, con) == RCV_OK) {
+				return con;
 			}
 		}
-
 		return null;
 	}
 
-	protected List<Tuple<Message, Connection>> getMessagesRelayedFromContacts() {
-		if (this.getNrofMessages() == 0 || this.getConnections().size() == 0) {
-			/* no messages -> empty list */
-			return new ArrayList<Tuple<Message, Connection>>(0);
-		}
-
-		List<Tuple<Message, Connection>> relayedFromContactsTuples =
-			new ArrayList<Tuple<Message, Connection>>();
-		for (Message m : getMessageCollection()) {
-			for (Connection con : getConnections()) {
-				// Add messages where the previous hop is a contact
-				List<DTNHost> messagePath = m.getHops();
-				DTNHost lastHop = messagePath.get(messagePath.size() - 1);
-				if (lastHop != null && socialParser.isContact(this.getHost().getAddress(), lastHop.getAddress())) {
-					relayedFromContactsTuples.add(new Tuple<Message, Connection>(m,con));
-				}
-			}
+	@Override
+	public boolean requestDeliverableMessages(Connection con) {
+		if (!deliverableCounts.containsKey(con.getOtherNode(getHost()))) {
+			return false; // nothing for the peer, no need to go through all
 		}
+		return super.requestDeliverableMessages(con);
+	}
+
+	/**
+	 * Tries to forward the messages whose sender is a contact of this host.
+	 * The peers' own messages are not offered back to them since they
+	 * would refuse them as already seen.
+	 * @return The connection that started a transfer or null if no transfer
+	 * was started
+	 */
+	protected Connection exchangeMessagesFromContacts() {
+		return tryCandidates(fromContacts);
+	}
+
+	/**
+	 * Returns message-connection tuples for the messages whose sender is a
+	 * contact of this host
+	 * @return The tuples
+	 */
+	protected List<Tuple<Message, Connection>> getMessagesFromContacts() {
+		return getCandidates(fromContacts);
+	}
+
+	/**
+	 * Tries to forward the messages whose last hop is a contact of this
+	 * host. The peers' own messages are not offered back to them since they
+	 * would refuse them as already seen.
+	 * @return The connection that started a transfer or null if no transfer
+	 * was started
+	 */
+	protected Connection exchangeMessagesRelayedFromContacts() {
+		return tryCandidates(relayedByContacts);
+	}
 
-		return relayedFromContactsTuples;
+	/**
+	 * Returns message-connection tuples for the messages whose last hop
+	 * is a contact of this host
+	 * @return The tuples
+	 */
+	protected List<Tuple<Message, Connection>> getMessagesRelayedFromContacts() {
+		return getCandidates(relayedByContacts);
 	}
 
 	/**
 	 * Returns the oldest (by receive time) message in the message buffer
 	 * (that is not being sent if excludeMsgBeingSent is true).
 	 * Messages from contacts are not removed unless their TTL expires.
+	 * If a drop policy is used, returns the first message of the policy
+	 * (that also never selects messages from contacts).
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
 	 * being sent from the oldest message check (i.e. if oldest message is
 	 * being sent, the second oldest message is returned)
@@ -206,6 +302,10 @@ public class SocialRouterHyccups extends ActiveRouter {
 	 */
 	@Override
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
+		if (hasDropPolicy()) {
+			return super.getNextMessageToRemove(excludeMsgBeingSent);
+		}
+
 		Collection<Message> messages = this.getMessageCollection();
 		Message oldest = null;
 		for (Message m : messages) {
@@ -213,7 +313,7 @@ public class SocialRouterHyccups extends ActiveRouter {
 				continue; // skip messages from contacts
 			}
 
-			if (excludeMsgBeingSent && isSending(m.getId())) {
+			if (excludeMsgBeingSent && isSending(m)) {
 				continue; // skip the message(s) that router is sending
 			}
 
@@ -227,4 +327,75 @@ public class SocialRouterHyccups extends ActiveRouter {
 
 		return oldest;
 	}
+
+	/**
+	 * Messages from contacts are never dropped to make room for others
+	 */
+	@Override
+	protected boolean isDropProtected(Message m) {
+		return socialParser.isContact(this.getHost().getAddress(),
+				m.getFrom().getAddress());
+	}
+
+	/**
+	 * Buffered messages of a priority class. The messages are listed in
+	 * the order of the message buffer when they are needed; the list is
+	 * reused until the buffer changes.
+	 */
+	private class PriorityClass {
+		/** IDs of the messages of the class */
+		private final Set<String> ids = new HashSet<String>();
+		/** the messages in the buffer order or null if not listed */
+		private List<Message> messages;
+		/** buffer version of the message list */
+		private int bufferVersion;
+
+		/**
+		 * Adds a message to the class
+		 * @param id ID of the message
+		 */
+		public void add(String id) {
+			ids.add(id);
+		}
+
+		/**
+		 * Removes a message from the class
+		 * @param id ID of the message
+		 */
+		public void remove(String id) {
+			ids.remove(id);
+		}
+
+		/**
+		 * Returns true if there are no messages in the class
+		 * @return true if the class is empty
+		 */
+		public boolean isEmpty() {
+			return ids.isEmpty();
+		}
+
+		/**
+		 * Returns the messages of the class in the order of the message
+		 * buffer. The list must not be modified.
+		 * @return The messages
+		 */
+		public List<Message> getMessages() {
+			int version = getBufferVersion();
+			if (messages != null && bufferVersion == version) {
+				return messages;
+			}
+
+			/* a new list, since the old one may still be iterated */
+			messages = new ArrayList<Message>(ids.size());
+			if (!ids.isEmpty()) {
+				for (Message m : getMessageCollection()) {
+					if (ids.contains(m.getId())) {
+						messages.add(m);
+					}
+				}
+			}
+			bufferVersion = version;
+			return messages;
+		}
+	}
 }
@@ -99,7 +99,7 @@ public class WaveRouter extends ActiveRouter {
 			}
 
 
-			if (excludeMsgBeingSent && isSending(m.getId())) {
+			if (excludeMsgBeingSent && isSending(m)) {
 				continue; /* skip the message(s) that router is sending */
 			}
 
@@ -161,6 +161,16 @@ public class WaveRouter extends ActiveRouter {
 		return ri;
 	}
 
+	/**
+	 * Returns always the current time; custody and immunity periods are
+	 * checked on every update.
+	 * @return The current simulation time
+	 */
+	@Override
+	public double getNextUpdateTime() {
+		return SimClock.getTime();
+	}
+
 	@Override
 	public WaveRouter replicate() {
 		return new WaveRouter(this);
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.HashMap;
+import java.util.Set;
+import java.util.TreeSet;
+
+import core.Message;
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * <P>Message drop policy module. Decides which message is removed first
+ * when a router needs to make room in its buffer. The buffered messages are
+ * kept in an index that is ordered by the policy's key, so the next message
+ * to drop is found in logarithmic time instead of scanning the whole
+ * buffer.</P>
+ * <P>Supported policies ({@link #DROP_POLICY_S} setting values) are
+ * {@value #OLDEST_POLICY} (oldest received message first) and
+ * {@value #TTL_POLICY} (message whose TTL expires first; messages with the
+ * same expiry time in receiving order). Messages with equal keys are
+ * ordered by their IDs. Routers can leave messages out of the index to
+ * never drop them (e.g., SocialRouterHyccups doesn't drop messages from its
+ * contacts).</P>
+ * <P>Every router needs its own instance of the policy; use
+ * {@link #replicate()} to create one from a prototype.</P>
+ */
+public class DropPolicy {
+	/** Drop policy -setting id ({@value}). String valued; one of
+	 * {@value #OLDEST_POLICY} and {@value #TTL_POLICY}. If the setting is not
+	 * defined, routers use their own (linear search based) selection. */
+	public static final String DROP_POLICY_S = "dropPolicy";
+	/** Value for the oldest (by receive time) first policy ({@value}) */
+	public static final String OLDEST_POLICY = "oldest";
+	/** Value for the nearest TTL expiry first policy ({@value}) */
+	public static final String TTL_POLICY = "ttl";
+
+	private static final int MODE_OLDEST = 0;
+	private static final int MODE_TTL = 1;
+
+	private final int mode;
+	/** drop candidates in drop order */
+	private TreeSet<Entry> index;
+	/** drop candidates by message ID */
+	private HashMap<String, Entry> entries;
+
+	/**
+	 * Creates a new drop policy based on the settings
+	 * @param s The settings object where the {@link #DROP_POLICY_S} setting
+	 * is read from
+	 */
+	public DropPolicy(Settings s) {
+		String policy = s.getSetting(DROP_POLICY_S).trim();
+
+		if (policy.equalsIgnoreCase(OLDEST_POLICY)) {
+			this.mode = MODE_OLDEST;
+		} else if (policy.equalsIgnoreCase(TTL_POLICY)) {
+			this.mode = MODE_TTL;
+		} else {
+			throw new SettingsError("Invalid value '" + policy + "' for " +
+					s.getFullPropertyName(DROP_POLICY_S));
+		}
+		init();
+	}
+
+	/**
+	 * Copy constructor. Creates a policy with the same mode but an empty
+	 * index.
+	 * @param proto The policy prototype
+	 */
+	protected DropPolicy(DropPolicy proto) {
+		this.mode = proto.mode;
+		init();
+	}
+
+	private void init() {
+		this.index = new TreeSet<Entry>();
+		this.entries = new HashMap<String, Entry>();
+	}
+
+	/**
+	 * Returns a replicate of this policy (with an empty index)
+	 * @return A replicate
+	 */
+	public DropPolicy replicate() {
+		return new DropPolicy(this);
+	}
+
+	/**
+	 * Adds a message to the drop candidates. If a message with the same ID
+	 * was already a candidate, it is replaced.
+	 * @param m The message
+	 */
+	public void add(Message m) {
+		remove(m.getId());
+
+		double key = (mode == MODE_TTL ? m.getExpiryTime() :
+			m.getReceiveTime());
+		Entry e = new Entry(key, m.getReceiveTime(), m);
+		this.entries.put(m.getId(), e);
+		this.index.add(e);
+	}
+
+	/**
+	 * Removes a message from the drop candidates (if it was one)
+	 * @param id ID of the message
+	 */
+	public void remove(String id) {
+		Entry e = this.entries.remove(id);
+		if (e != null) {
+			this.index.remove(e);
+		}
+	}
+
+	/**
+	 * Returns the message that should be dropped next
+	 * @param excludedIds IDs of the messages that must not be dropped (e.g.,
+	 * the ones being sent) or null if none is excluded
+	 * @return The message or null if there are no (non-excluded) candidates
+	 */
+	public Message getNextMessageToRemove(Set<String> excludedIds) {
+		for (Entry e : this.index) {
+			if (excludedIds == null || !excludedIds.contains(e.id)) {
+				return e.message;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the number of drop candidates
+	 * @return The number of drop candidates
+	 */
+	public int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Drop candidate. The keys are stored in the entry so that the ordering
+	 * can't change while the message is in the index.
+	 */
+	private static class Entry implements Comparable<Entry> {
+		private final double key;
+		private final double receiveTime;
+		private final String id;
+		private final Message message;
+
+		public Entry(double key, double receiveTime, Message message) {
+			this.key = key;
+			this.receiveTime = receiveTime;
+			this.id = message.getId();
+			this.message = message;
+		}
+
+		public int compareTo(Entry other) {
+			int c = Double.compare(this.key, other.key);
+			if (c == 0) {
+				c = Double.compare(this.receiveTime, other.receiveTime);
+			}
+			if (c == 0) {
+				c = this.id.compareTo(other.id);
+			}
+			return c;
+		}
+	}
+}
@@ -57,7 +57,6 @@ public class EnergyModel implements ModuleCommunicationListener {
 	/** sim time of the last energy updated */
 	private double lastUpdate;
 	private ModuleCommunicationBus comBus;
-	private static Random rng = null;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -118,8 +117,12 @@ public class EnergyModel implements ModuleCommunicationListener {
 			this.currentEnergy = range[0];
 		}
 		else {
+			/* the rng is shared by all energy models of the run */
+			SimContext context = SimContext.current();
+			Random rng = (Random)context.getState(EnergyModel.class);
 			if (rng == null) {
 				rng = new Random((int)(range[0] + range[1]));
+				context.putState(EnergyModel.class, rng);
 			}
 			this.currentEnergy = range[0] +
 				rng.nextDouble() * (range[1] - range[0]);
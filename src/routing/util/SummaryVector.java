@@ -0,0 +1,113 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.BitSet;
+
+import core.SettingsError;
+
+/**
+ * <P>Summary vector of the messages a router has seen. The peers of a new
+ * connection exchange their summaries in anti-entropy (see
+ * {@link routing.ActiveRouter#ANTI_ENTROPY_S}) and only offer the messages
+ * that are not in the other end's summary.</P>
+ * <P>The summary is either an exact bit vector indexed by the message ID
+ * numbers (see {@link core.Message#getIdNumber()}) or a Bloom filter with a
+ * fixed number of bits. A Bloom filter can claim that it contains a message
+ * that was never added to it (false positive), so the message isn't offered
+ * to a peer that doesn't have it. The summary is a snapshot: messages
+ * added to the router later are not in it.</P>
+ */
+public class SummaryVector {
+	private final BitSet bits;
+	/** size of the Bloom filter in bits (0 for an exact bit vector) */
+	private final int bloomBits;
+	/** number of hash functions of the Bloom filter */
+	private final int nrofHashes;
+
+	/**
+	 * Creates a new summary of messages
+	 * @param idNumbers ID numbers of the messages in the summary
+	 * @param bloomBits Number of bits in the Bloom filter or 0 for an exact
+	 * summary
+	 * @param nrofHashes Number of hash functions of the Bloom filter
+	 * (ignored for exact summaries)
+	 * @throws SettingsError if the Bloom filter size or number of hashes is
+	 * invalid
+	 */
+	public SummaryVector(int[] idNumbers, int bloomBits, int nrofHashes) {
+		if (bloomBits < 0 || (bloomBits > 0 && nrofHashes < 1)) {
+			throw new SettingsError("Invalid summary vector Bloom filter " +
+					"size (" + bloomBits + ") or number of hashes (" +
+					nrofHashes + ")");
+		}
+		this.bloomBits = bloomBits;
+		this.nrofHashes = nrofHashes;
+		this.bits = new BitSet(bloomBits);
+
+		for (int idNumber : idNumbers) {
+			if (bloomBits == 0) {
+				this.bits.set(idNumber);
+				continue;
+			}
+			int h1 = hash(idNumber);
+			int h2 = hash(h1) | 1;
+			for (int i = 0; i < nrofHashes; i++) {
+				this.bits.set(index(h1, h2, i));
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the message is in the summary. Bloom filter summaries
+	 * may return true also for messages that are not in the summary.
+	 * @param idNumber ID number of the message
+	 * @return True if the message is (possibly) in the summary
+	 */
+	public boolean contains(int idNumber) {
+		if (this.bloomBits == 0) {
+			return this.bits.get(idNumber);
+		}
+		int h1 = hash(idNumber);
+		int h2 = hash(h1) | 1;
+		for (int i = 0; i < this.nrofHashes; i++) {
+			if (!this.bits.get(index(h1, h2, i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the size of the summary when it's sent over a connection
+	 * @return The size in bytes
+	 */
+	public int getSize() {
+		int nrofBits = (this.bloomBits > 0 ? this.bloomBits :
+			this.bits.length());
+		return (nrofBits + 7) / 8;
+	}
+
+	/**
+	 * Returns the bit of the i:th hash function (double hashing)
+	 */
+	private int index(int h1, int h2, int i) {
+		int h = (h1 + i * h2) % this.bloomBits;
+		return (h < 0 ? h + this.bloomBits : h);
+	}
+
+	/**
+	 * Mixes the bits of a value (MurmurHash3 finalizer)
+	 */
+	private static int hash(int value) {
+		int h = value;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
@@ -0,0 +1,279 @@
+package social;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import input.ConnectionEvent;
+import input.EventCalendar;
+import input.EventQueue;
+import input.ExternalEvent;
+import input.MessageCreateEvent;
+
+/**
+ * Generates the "create message" events and the hybrid node and mailbox
+ * connection events of a HYCCUPS social scenario (see
+ * {@link HyccupsMsgCreator} for the scenario description).
+ *
+ * The events are generated lazily and returned in time order: the message
+ * stream is generated one message at a time and the connection events of
+ * the hybrid nodes and mailboxes form their own time ordered streams. The
+ * streams are merged with an {@link EventCalendar}, so the events can be
+ * written to a file (or given to the simulator as an {@link EventQueue})
+ * without sorting. Events with the same time are returned in the order
+ * hybrid node connections, mailbox connections, messages (and within a
+ * stream in the order they were generated).
+ *
+ * The random numbers are drawn in the same order as the original
+ * HyccupsMsgCreator did, so the same seed gives the same scenario. All
+ * state is in the instance, so generators can be used concurrently.
+ */
+public class HyccupsScenarioGenerator implements EventQueue {
+    /** End of the connections of hyccups-loop-0-4838400-3 (seconds) */
+    public static final int DEF_END_TIME = 14106341;
+    /** Length of the day time window when messages are created (s) */
+    public static final int DAY_TIME = 17 * 60 * 60;
+
+    /** based on the CONN patterns of the traceset, night starts ~6 hours
+     * after timestamp 0 */
+    private static final int FIRST_NIGHT = 21600;
+    private static final int SECONDS_IN_DAY = 86400;
+    private static final int MIN_SLEEP = 21600;
+    private static final int SLEEP_RANGE = 7200;
+
+    private final SocialGraph socialGraph;
+    private final int nrofUsers;
+    private final Random rng;
+    private final int endTime;
+
+    private final int stepMin, stepMax;
+    private final int msgSizeMin, msgSizeMax;
+    private final boolean onlyNodesWithContactsSendMsgs;
+
+    private final int[] hybridNodes;
+    private final int[] ownerOfMailbox;
+
+    private final EventCalendar events;
+
+    /**
+     * Creates a new generator.
+     * @param socialGraph Social graph of the users
+     * @param numOfHybridNodes Number of hybrid nodes
+     * @param numOfMailboxes Number of mailboxes (their addresses follow the
+     * users' addresses)
+     * @param rngSeed Seed of the random number generator
+     * @param msgSizeMin Minimum message size (bytes)
+     * @param msgSizeMax Maximum message size (bytes, exclusive)
+     * @param numOfDailyMsgsPerHost Number of messages per user per day
+     * @param onlyNodesWithContactsSendMsgs If true, only users who have
+     * contacts send messages
+     * @param endTime Time of the last connection event; no messages are
+     * created after it
+     */
+    public HyccupsScenarioGenerator(SocialGraph socialGraph,
+            int numOfHybridNodes, int numOfMailboxes, long rngSeed,
+            int msgSizeMin, int msgSizeMax, int numOfDailyMsgsPerHost,
+            boolean onlyNodesWithContactsSendMsgs, int endTime) {
+        this.socialGraph = socialGraph;
+        this.nrofUsers = socialGraph.size();
+        this.rng = new Random(rngSeed);
+        this.endTime = endTime;
+        this.msgSizeMin = msgSizeMin;
+        this.msgSizeMax = msgSizeMax;
+        this.onlyNodesWithContactsSendMsgs = onlyNodesWithContactsSendMsgs;
+
+        int totalDailyMessages = nrofUsers * numOfDailyMsgsPerHost;
+        int msgInterval = DAY_TIME / totalDailyMessages;
+        int threshold = msgInterval / 5;
+        this.stepMin = msgInterval - threshold;
+        this.stepMax = msgInterval + threshold;
+
+        this.hybridNodes = new int[numOfHybridNodes];
+        for (int i = 0; i < numOfHybridNodes; i++) {
+            hybridNodes[i] = getRndNodeWithContacts();
+        }
+        this.ownerOfMailbox = new int[numOfMailboxes];
+        for (int i = 0; i < numOfMailboxes; i++) {
+            ownerOfMailbox[i] = getRndNodeWithContacts();
+        }
+
+        // Hybrid nodes who are contacts are connected throughout the whole
+        // duration of the simulation, and so are the mailboxes of contacts
+        List<int[]> hybridPairs = getContactPairs(hybridNodes, 0);
+        List<int[]> mailboxPairs = getContactPairs(ownerOfMailbox, nrofUsers);
+
+        List<EventQueue> streams = new ArrayList<EventQueue>();
+        streams.add(new PairConnections(hybridPairs, 0, true));
+        streams.add(new PairConnections(hybridPairs, endTime, false));
+        streams.add(new PairConnections(mailboxPairs, 0, true));
+        streams.add(new PairConnections(mailboxPairs, endTime, false));
+        streams.add(new MessageStream());
+        this.events = new EventCalendar(streams);
+    }
+
+    /**
+     * Returns the id of a random node out of those who have contacts
+     */
+    private int getRndNodeWithContacts() {
+        int rndNodeId;
+        do {
+            rndNodeId = rng.nextInt(nrofUsers);
+        } while (socialGraph.getNrofContacts(rndNodeId) == 0);
+        return rndNodeId;
+    }
+
+    /**
+     * Returns the address pairs of the nodes whose users are contacts
+     * @param users The users of the nodes by the nodes' indexes
+     * @param firstAddress Address of the first node
+     * @return The address pairs
+     */
+    private List<int[]> getContactPairs(int[] users, int firstAddress) {
+        List<int[]> pairs = new ArrayList<int[]>();
+        for (int i = 0; i < users.length; i++) {
+            for (int j = i + 1; j < users.length; j++) {
+                if (socialGraph.isContact(users[i], users[j])) {
+                    pairs.add(new int[] {firstAddress + i, firstAddress + j});
+                }
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * Returns the next event (in time order) or an event with time
+     * Double.MAX_VALUE if there are no events left
+     * @return The next event
+     */
+    public ExternalEvent nextEvent() {
+        return events.nextEvent();
+    }
+
+    /**
+     * Returns the time of the next event or Double.MAX_VALUE if there are no
+     * events left
+     * @return The next event's time
+     */
+    public double nextEventsTime() {
+        return events.nextEventsTime();
+    }
+
+    /**
+     * Connection events of node pairs that all happen at the same time
+     */
+    private static class PairConnections implements EventQueue {
+        private final List<int[]> pairs;
+        private final int time;
+        private final boolean up;
+        private int next;
+
+        public PairConnections(List<int[]> pairs, int time, boolean up) {
+            this.pairs = pairs;
+            this.time = time;
+            this.up = up;
+            this.next = 0;
+        }
+
+        public ExternalEvent nextEvent() {
+            if (next >= pairs.size()) {
+                return new ExternalEvent(Double.MAX_VALUE);
+            }
+            int[] pair = pairs.get(next++);
+            return new ConnectionEvent(pair[0], pair[1], null, up, time);
+        }
+
+        public double nextEventsTime() {
+            return (next < pairs.size() ? time : Double.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Message creation events and the nightly connections between the
+     * users and their mailboxes. The events of one message step are
+     * generated at a time.
+     */
+    private class MessageStream implements EventQueue {
+        /** generated events that have not been returned yet */
+        private final ArrayDeque<ExternalEvent> pending;
+        private int time;
+        private int nextSleep;
+        private int sleepCount;
+        private int msgCount;
+
+        public MessageStream() {
+            this.pending = new ArrayDeque<ExternalEvent>();
+            this.time = 0;
+            this.nextSleep = FIRST_NIGHT;
+            this.sleepCount = 0;
+            this.msgCount = 0;
+        }
+
+        /**
+         * Generates the events of the next message step (if there are no
+         * pending events and steps left)
+         */
+        private void generate() {
+            if (!pending.isEmpty() || time >= endTime) {
+                return;
+            }
+
+            // Select random sender. Enforces the check about whether
+            // senders without contacts can send messages
+            int sender;
+            int nrofSendersContacts;
+            do {
+                sender = rng.nextInt(nrofUsers);
+                nrofSendersContacts = socialGraph.getNrofContacts(sender);
+            } while (onlyNodesWithContactsSendMsgs && nrofSendersContacts == 0);
+
+            int receiver;
+            if (nrofSendersContacts > 0) {
+                // Randomly select a receiver from sender's contacts
+                receiver = socialGraph.getContact(sender,
+                    rng.nextInt(nrofSendersContacts));
+            } else {
+                // Sender does not have any contacts, choose random receiver
+                receiver = rng.nextInt(nrofUsers);
+            }
+
+            int msgSize = rng.nextInt(msgSizeMax - msgSizeMin) + msgSizeMin;
+            pending.add(new MessageCreateEvent(sender, receiver,
+                "M" + (++msgCount), msgSize, 0, time));
+
+            if (time > nextSleep) {
+                int sleepTime = rng.nextInt(SLEEP_RANGE) + MIN_SLEEP;
+
+                // Connect users to their mailboxes during night-time
+                for (int i = 0; i < ownerOfMailbox.length; i++) {
+                    pending.add(new ConnectionEvent(ownerOfMailbox[i],
+                        nrofUsers + i, null, true, time));
+                }
+                for (int i = 0; i < ownerOfMailbox.length; i++) {
+                    pending.add(new ConnectionEvent(ownerOfMailbox[i],
+                        nrofUsers + i, null, false, time + sleepTime));
+                }
+
+                time += sleepTime;
+                sleepCount++;
+                nextSleep = FIRST_NIGHT + sleepCount * SECONDS_IN_DAY;
+            }
+
+            time += rng.nextInt(stepMax - stepMin) + stepMin;
+        }
+
+        public ExternalEvent nextEvent() {
+            generate();
+            if (pending.isEmpty()) {
+                return new ExternalEvent(Double.MAX_VALUE);
+            }
+            return pending.poll();
+        }
+
+        public double nextEventsTime() {
+            generate();
+            return (pending.isEmpty() ? Double.MAX_VALUE :
+                pending.peek().getTime());
+        }
+    }
+}
@@ -5,6 +5,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.io.BufferedReader;
 
 /**
@@ -19,43 +22,84 @@ public class HyccupsSocialParser {
     protected static final String SOCIAL_NETWORK_PATH = "./datasets/hyccups/social_network.txt";
     protected static final String INTERESTS_PATH = "./datasets/hyccups/users_and_interests.txt";
 
-    protected final int usersLength = 73;
+    /** number of users in the dataset; grows if the social network
+     * file has users with larger ids */
+    protected int usersLength = 73;
     protected final int interestsLength = 5;
 
-    protected boolean[][] socialNetwork;
-    protected ArrayList<Integer>[] contacts;
+    /** the parser instances shared by all users, by social network file */
+    private static Map<String, HyccupsSocialParser> instances =
+        new HashMap<String, HyccupsSocialParser>();
+
+    /** path of the social network file */
+    protected final String socialNetworkPath;
+
+    protected SocialGraph socialGraph;
 
     protected ArrayList<Integer>[] userInterests;
     protected ArrayList<Integer>[] interests;
 
     public HyccupsSocialParser() {
-        socialNetwork = new boolean[usersLength][usersLength];
-        contacts = new ArrayList[usersLength];
-        userInterests = new ArrayList[usersLength];
-        interests = new ArrayList[interestsLength];
+        this(SOCIAL_NETWORK_PATH);
+    }
 
+    /**
+     * Creates a parser for another social network file in the format of
+     * the dataset: a line per user with the user's id and the ids of the
+     * user's contacts, separated by commas (ids start from 1). Users whose
+     * ids are larger than the dataset's are included in the social graph.
+     * @param socialNetworkPath Path of the social network file
+     */
+    public HyccupsSocialParser(String socialNetworkPath) {
+        this.socialNetworkPath = socialNetworkPath;
         parseSocialNetwork();
+
+        userInterests = new ArrayList[usersLength];
+        interests = new ArrayList[interestsLength];
         parseInterests();
     }
 
+    /**
+     * Returns a parser instance that is shared by all routers and tools.
+     * The dataset files are parsed only once; the parsed data is not
+     * modified afterwards, so the instance can be used from concurrently
+     * running simulations too.
+     * @return The shared parser instance
+     */
+    public static HyccupsSocialParser getInstance() {
+        return getInstance(SOCIAL_NETWORK_PATH);
+    }
+
+    /**
+     * Returns the shared parser instance of a social network file
+     * (see {@link #getInstance()})
+     * @param socialNetworkPath Path of the social network file
+     * @return The shared parser instance
+     */
+    public static synchronized HyccupsSocialParser getInstance(
+            String socialNetworkPath) {
+        HyccupsSocialParser instance = instances.get(socialNetworkPath);
+        if (instance == null) {
+            instance = new HyccupsSocialParser(socialNetworkPath);
+            instances.put(socialNetworkPath, instance);
+        }
+        return instance;
+    }
+
 
     /**
      * Parse hyccups social network file
-     * Sets contacts[userId] that maps userId -> their contacts' userIds
-     * Sets socialNetwork[userId][userId] boolean table
+     * Sets socialGraph that maps userId -> their contacts' userIds
+     * (an empty graph if the file can't be parsed)
      */
     protected void parseSocialNetwork() {
         String line;
+        int[][] contacts = new int[usersLength][0];
         try {
-            FileInputStream fstream = new FileInputStream(SOCIAL_NETWORK_PATH);
+            FileInputStream fstream = new FileInputStream(socialNetworkPath);
             try (DataInputStream in = new DataInputStream(fstream)) {
                 BufferedReader br = new BufferedReader(new InputStreamReader(in));
 
-                // Initialize contacts
-                for (int i = 0; i < usersLength; i++) {
-                    contacts[i] = new ArrayList<Integer>();
-                }
-
                 while ((line = br.readLine()) != null) {
 
                     String[] tokens;
@@ -64,19 +108,39 @@ public class HyccupsSocialParser {
                     tokens = line.split(delimiter);
 
                     int userId = Integer.parseInt(tokens[0]) - 1;
+                    if (userId >= contacts.length) {
+                        contacts = grow(contacts, userId + 1);
+                    }
 
+                    int[] previous = contacts[userId];
+                    int[] userContacts = Arrays.copyOf(previous,
+                        previous.length + tokens.length - 1);
                     for (int i = 1; i < tokens.length; i++) {
-                        Integer contactId = Integer.parseInt(tokens[i]) - 1;
-                        if (contactId != null) {
-                            socialNetwork[userId][contactId] = true;
-                            contacts[userId].add(contactId);
-                        }
+                        userContacts[previous.length + i - 1] =
+                            Integer.parseInt(tokens[i]) - 1;
                     }
+                    contacts[userId] = userContacts;
                 }
             }
         } catch (IOException | NumberFormatException e) {
 			System.err.println("Social Network Parser exception: " + e.getMessage());
 		}
+        usersLength = contacts.length;
+        socialGraph = new SocialGraph(contacts);
+    }
+
+    /**
+     * Grows the contact lists array to hold more users
+     * @param contacts The contact lists
+     * @param length New number of users
+     * @return The grown array (new users have no contacts)
+     */
+    private static int[][] grow(int[][] contacts, int length) {
+        int[][] grown = Arrays.copyOf(contacts, length);
+        for (int u = contacts.length; u < length; u++) {
+            grown[u] = new int[0];
+        }
+        return grown;
     }
 
     /**
@@ -137,6 +201,38 @@ public class HyccupsSocialParser {
         if (hostId >= usersLength || contactId >= usersLength) {
             return true;
         }
-        return contacts[hostId].contains(contactId);
+        return socialGraph.isContact(hostId, contactId);
+    }
+
+    /**
+     * Returns the social network of the users
+     * @return The social graph
+     */
+    public SocialGraph getSocialGraph() {
+        return socialGraph;
+    }
+
+    /**
+     * Returns a graph where users that share an interest are contacts
+     * @return The interest graph
+     */
+    public SocialGraph getInterestGraph() {
+        return SocialGraph.fromGroups(usersLength, toArrays(interests));
+    }
+
+    /**
+     * Converts lists of user ids to arrays
+     * @param lists The lists
+     * @return The arrays
+     */
+    static int[][] toArrays(ArrayList<Integer>[] lists) {
+        int[][] arrays = new int[lists.length][];
+        for (int i = 0; i < lists.length; i++) {
+            arrays[i] = new int[lists[i] == null ? 0 : lists[i].size()];
+            for (int j = 0; j < arrays[i].length; j++) {
+                arrays[i][j] = lists[i].get(j);
+            }
+        }
+        return arrays;
     }
 }
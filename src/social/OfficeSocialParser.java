@@ -16,6 +16,9 @@ public class OfficeSocialParser {
     protected ArrayList<Integer>[] userInterests;
     protected ArrayList<Integer>[] interests;
 
+    /** the parser instance shared by all users of the dataset */
+    private static OfficeSocialParser instance;
+
     public OfficeSocialParser() {
         userInterests = new ArrayList[usersLength];
         interests = new ArrayList[interestsLength];
@@ -23,6 +26,18 @@ public class OfficeSocialParser {
         parseInterests();
     }
 
+    /**
+     * Returns a parser instance that is shared by all routers and tools.
+     * The dataset file is parsed only once.
+     * @return The shared parser instance
+     */
+    public static synchronized OfficeSocialParser getInstance() {
+        if (instance == null) {
+            instance = new OfficeSocialParser();
+        }
+        return instance;
+    }
+
    /**
      * Parse sociopatterns/office interests file.
      * Sets userInterests that maps userId -> interestIds
@@ -75,4 +90,15 @@ public class OfficeSocialParser {
 			System.err.println("Interests Parser exception: " + e.getMessage());
 		}
     }
+
+    /**
+     * Returns a graph where users that share an interest are contacts.
+     * The dataset has no explicit social network, so this is used as the
+     * social graph of its users.
+     * @return The interest graph
+     */
+    public SocialGraph getInterestGraph() {
+        return SocialGraph.fromGroups(usersLength,
+            HyccupsSocialParser.toArrays(interests));
+    }
 }
@@ -0,0 +1,241 @@
+package social;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Immutable social graph of the users of a dataset. Contacts of every user
+ * are stored both as a bit matrix, for constant time {@link #isContact}
+ * checks, and in compressed sparse row form, for iterating over the
+ * contacts without boxing. Users are identified by zero-based indexes.
+ *
+ * Graphs are read-only after creation, so one instance can be shared by
+ * all routers of a simulation (and by concurrently running simulations).
+ */
+public class SocialGraph {
+    /** number of users */
+    private final int size;
+    /** number of 64 bit words per row of the bit matrix */
+    private final int rowWords;
+    /** bit matrix: bit v of row u is set if v is a contact of u */
+    private final long[] matrix;
+    /** start index of each user's contacts in {@link #neighbors} */
+    private final int[] offsets;
+    /** contacts of all users, in the order they were given */
+    private final int[] neighbors;
+
+    /**
+     * Creates a new social graph.
+     * @param contacts Contacts of each user: contacts[u] lists the users
+     * that are contacts of user u. Duplicate and out of range contacts are
+     * ignored.
+     */
+    public SocialGraph(int[][] contacts) {
+        this.size = contacts.length;
+        this.rowWords = (size + 63) >>> 6;
+        this.matrix = new long[size * rowWords];
+        this.offsets = new int[size + 1];
+
+        int nrofEdges = 0;
+        for (int[] c : contacts) {
+            nrofEdges += (c == null ? 0 : c.length);
+        }
+
+        int[] edges = new int[nrofEdges];
+        int next = 0;
+        for (int u = 0; u < size; u++) {
+            offsets[u] = next;
+            if (contacts[u] == null) {
+                continue;
+            }
+            for (int v : contacts[u]) {
+                if (v < 0 || v >= size || isContact(u, v)) {
+                    continue;
+                }
+                matrix[u * rowWords + (v >>> 6)] |= 1L << v;
+                edges[next++] = v;
+            }
+        }
+        offsets[size] = next;
+        this.neighbors = (next == edges.length ? edges :
+            Arrays.copyOf(edges, next));
+    }
+
+    /**
+     * Creates a graph where users that belong to the same group (e.g.,
+     * share an interest) are each other's contacts.
+     * @param size Number of users
+     * @param groups Members of each group
+     * @return The graph
+     */
+    public static SocialGraph fromGroups(int size, int[][] groups) {
+        BitSet[] rows = new BitSet[size];
+        for (int u = 0; u < size; u++) {
+            rows[u] = new BitSet(size);
+        }
+        for (int[] group : groups) {
+            for (int u : group) {
+                for (int v : group) {
+                    if (u != v && u >= 0 && u < size) {
+                        rows[u].set(v);
+                    }
+                }
+            }
+        }
+
+        int[][] contacts = new int[size][];
+        for (int u = 0; u < size; u++) {
+            contacts[u] = rows[u].stream().toArray();
+        }
+        return new SocialGraph(contacts);
+    }
+
+    /**
+     * Returns the number of users in the graph
+     * @return The number of users
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns true if contact is one of the contacts of user
+     * @param user Index of the user
+     * @param contact Index of the other user
+     * @return True if contact is a contact of user, false if not (or either
+     * index is out of range)
+     */
+    public boolean isContact(int user, int contact) {
+        if (user < 0 || user >= size || contact < 0 || contact >= size) {
+            return false;
+        }
+        return (matrix[user * rowWords + (contact >>> 6)] &
+            (1L << contact)) != 0;
+    }
+
+    /**
+     * Returns the number of contacts of a user
+     * @param user Index of the user
+     * @return The number of contacts
+     */
+    public int getNrofContacts(int user) {
+        return offsets[user + 1] - offsets[user];
+    }
+
+    /**
+     * Returns the i:th contact of a user (in the order the contacts were
+     * given when the graph was created)
+     * @param user Index of the user
+     * @param i Index of the contact; 0 &lt;= i &lt; getNrofContacts(user)
+     * @return Index of the contact
+     */
+    public int getContact(int user, int i) {
+        if (i < 0 || i >= getNrofContacts(user)) {
+            throw new IndexOutOfBoundsException("User " + user + " has no " +
+                "contact with index " + i);
+        }
+        return neighbors[offsets[user] + i];
+    }
+
+    /**
+     * Returns a copy of the contacts of a user
+     * @param user Index of the user
+     * @return The contacts
+     */
+    public int[] getContacts(int user) {
+        return Arrays.copyOfRange(neighbors, offsets[user],
+            offsets[user + 1]);
+    }
+
+    /**
+     * Returns the number of contacts the two users have in common
+     * @param user1 Index of the first user
+     * @param user2 Index of the second user
+     * @return The number of common contacts
+     */
+    public int getNrofCommonContacts(int user1, int user2) {
+        int count = 0;
+        int r1 = user1 * rowWords;
+        int r2 = user2 * rowWords;
+        for (int i = 0; i < rowWords; i++) {
+            count += Long.bitCount(matrix[r1 + i] & matrix[r2 + i]);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the users that can be reached from a user by following at
+     * most k contact links. The user itself is not included.
+     * @param user Index of the user
+     * @param k Maximum number of hops
+     * @return The reachable users
+     */
+    public BitSet getKHopContacts(int user, int k) {
+        BitSet visited = new BitSet(size);
+        int[] frontier = new int[size];
+        int[] nextFrontier = new int[size];
+        int frontierSize = 1;
+        frontier[0] = user;
+        visited.set(user);
+
+        for (int hop = 0; hop < k && frontierSize > 0; hop++) {
+            int nextSize = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                int u = frontier[i];
+                for (int j = offsets[u], end = offsets[u + 1]; j < end; j++) {
+                    int v = neighbors[j];
+                    if (!visited.get(v)) {
+                        visited.set(v);
+                        nextFrontier[nextSize++] = v;
+                    }
+                }
+            }
+            int[] tmp = frontier;
+            frontier = nextFrontier;
+            nextFrontier = tmp;
+            frontierSize = nextSize;
+        }
+
+        visited.clear(user);
+        return visited;
+    }
+
+    /**
+     * Returns the community (connected component, ignoring the direction
+     * of the contact links) of every user. Users of the same community have
+     * the same label; labels are numbered from zero in the order of the
+     * smallest user index of each community.
+     * @return Community labels indexed by user
+     */
+    public int[] getCommunities() {
+        int[] parent = new int[size];
+        for (int u = 0; u < size; u++) {
+            parent[u] = u;
+        }
+        for (int u = 0; u < size; u++) {
+            for (int j = offsets[u], end = offsets[u + 1]; j < end; j++) {
+                int a = findRoot(parent, u);
+                int b = findRoot(parent, neighbors[j]);
+                if (a != b) {
+                    parent[Math.max(a, b)] = Math.min(a, b);
+                }
+            }
+        }
+
+        int[] labels = new int[size];
+        int nextLabel = 0;
+        for (int u = 0; u < size; u++) {
+            int root = findRoot(parent, u);
+            labels[u] = (root == u ? nextLabel++ : labels[root]);
+        }
+        return labels;
+    }
+
+    private static int findRoot(int[] parent, int u) {
+        while (parent[u] != u) {
+            parent[u] = parent[parent[u]];
+            u = parent[u];
+        }
+        return u;
+    }
+}
@@ -47,9 +47,19 @@ public class AllTests {
 		suite.addTestSuite(MaxPropDijkstraTest.class);
 		suite.addTestSuite(MaxPropRouterTest.class);
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
+		suite.addTestSuite(EventCalendarTest.class);
 		suite.addTestSuite(MessageTest.class);
+		suite.addTestSuite(DropPolicyTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
 		suite.addTestSuite(DTNHostTest.class);
+		suite.addTestSuite(SimContextTest.class);
+		suite.addTestSuite(SocialGraphTest.class);
+		suite.addTestSuite(LongHashMapTest.class);
+		suite.addTestSuite(FixedPrecisionFormatTest.class);
+		suite.addTestSuite(StreamingStatisticsTest.class);
+		suite.addTestSuite(HyccupsScenarioGeneratorTest.class);
+		suite.addTestSuite(SocialMessageEventGeneratorTest.class);
+		suite.addTestSuite(SocialRouterHyccupsTest.class);
 		//$JUnit-END$
 		return suite;
 	}
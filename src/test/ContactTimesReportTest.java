@@ -12,6 +12,7 @@ import java.util.Vector;
 
 import junit.framework.TestCase;
 import report.ContactTimesReport;
+import report.ContactTracker;
 import report.InterContactTimesReport;
 import report.Report;
 import core.ConnectionListener;
@@ -34,6 +35,7 @@ public class ContactTimesReportTest extends TestCase {
 		ContactTimesReport ctr;
 		InterContactTimesReport ictr;
 		TestSettings ts = new TestSettings();
+		ContactTracker.reset();
 
 		File outFile = File.createTempFile("cttest", ".tmp");
 		File iOutFile = File.createTempFile("icttest", ".tmp");
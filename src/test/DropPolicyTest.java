@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import routing.util.DropPolicy;
+import core.Message;
+import core.SettingsError;
+import core.SimClock;
+
+/**
+ * Tests for the DropPolicy class
+ */
+public class DropPolicyTest extends TestCase {
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		clock = SimClock.getInstance();
+		clock.setTime(0);
+	}
+
+	private DropPolicy createPolicy(String policy) {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(DropPolicy.DROP_POLICY_S, policy);
+		return new DropPolicy(ts).replicate();
+	}
+
+	private Message createMessage(String id, int ttl) {
+		Message m = new Message(null, null, id, 1);
+		m.setTtl(ttl);
+		return m;
+	}
+
+	public void testOldestPolicy() {
+		DropPolicy dp = createPolicy(DropPolicy.OLDEST_POLICY);
+		assertNull(dp.getNextMessageToRemove(null));
+
+		Message m1 = createMessage("M1", 10);
+		dp.add(m1);
+		clock.setTime(5);
+		Message m3 = createMessage("M3", 10);
+		Message m2 = createMessage("M2", 10);
+		dp.add(m3);
+		dp.add(m2);
+		assertEquals(3, dp.size());
+
+		assertSame(m1, dp.getNextMessageToRemove(null));
+
+		Set<String> excluded = new HashSet<String>();
+		excluded.add("M1");
+		/* same receive time -> ordered by ID */
+		assertSame(m2, dp.getNextMessageToRemove(excluded));
+
+		dp.remove("M1");
+		assertSame(m2, dp.getNextMessageToRemove(null));
+
+		/* re-adding with a new receive time moves the message back */
+		m2.setReceiveTime(10);
+		dp.add(m2);
+		assertEquals(2, dp.size());
+		assertSame(m3, dp.getNextMessageToRemove(null));
+
+		excluded.add("M2");
+		excluded.add("M3");
+		assertNull(dp.getNextMessageToRemove(excluded));
+	}
+
+	public void testTtlPolicy() {
+		DropPolicy dp = createPolicy(DropPolicy.TTL_POLICY);
+
+		Message m1 = createMessage("M1", 10);
+		Message m3 = createMessage("M3", Message.INFINITE_TTL);
+		clock.setTime(10);
+		Message m2 = createMessage("M2", 1);
+		dp.add(m1);
+		dp.add(m2);
+		dp.add(m3);
+
+		assertSame(m2, dp.getNextMessageToRemove(null));
+		dp.remove("M2");
+		assertSame(m1, dp.getNextMessageToRemove(null));
+		dp.remove("M1");
+		assertSame(m3, dp.getNextMessageToRemove(null));
+	}
+
+	public void testInvalidPolicy() {
+		try {
+			createPolicy("newest");
+			fail("Invalid policy accepted");
+		} catch (SettingsError e) {
+			// expected
+		}
+	}
+}
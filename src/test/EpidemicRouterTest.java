@@ -4,10 +4,15 @@
  */
 package test;
 
+import java.util.List;
+
+import routing.ActiveRouter;
 import routing.EpidemicRouter;
 import routing.MessageRouter;
+import core.Connection;
 import core.DTNHost;
 import core.Message;
+import core.SimClock;
 
 /**
  * Tests for EpidemicRouter and, due the simple nature of Epidemic router,
@@ -619,4 +624,208 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertNotSame(orderedIds, runMessageExchange(true));
 		assertNotSame(orderedIds, runMessageExchange(false));
 	}
+
+	/**
+	 * Tests that the incrementally updated occupied buffer size and its
+	 * time integral follow message additions and removals
+	 */
+	public void testBufferOccupancyAccounting() {
+		MessageRouter r = h1.getRouter();
+		assertEquals(0, r.getOccupiedBufferSize());
+		assertEquals(BUFFER_SIZE, r.getFreeBufferSize());
+
+		h1.createNewMessage(new Message(h1, h2, msgId1, 20));
+		h1.createNewMessage(new Message(h1, h2, msgId2, 30));
+		assertEquals(50, r.getOccupiedBufferSize());
+		assertEquals(BUFFER_SIZE - 50, r.getFreeBufferSize());
+		assertEquals(50.0, h1.getBufferOccupancy(), 0.0001);
+
+		clock.advance(10);
+		assertEquals(500, r.getOccupancyIntegral(), 0.0001);
+		assertEquals(10 * 50.0, h1.getBufferOccupancyIntegral(), 0.0001);
+
+		h1.deleteMessage(msgId1, false);
+		assertEquals(30, r.getOccupiedBufferSize());
+		clock.advance(10);
+		assertEquals(800, r.getOccupancyIntegral(), 0.0001);
+
+		h1.deleteMessage(msgId2, true);
+		assertEquals(0, r.getOccupiedBufferSize());
+		assertEquals(BUFFER_SIZE, r.getFreeBufferSize());
+		clock.advance(10);
+		assertEquals(800, r.getOccupancyIntegral(), 0.0001);
+	}
+
+	/**
+	 * Tests dropping messages as soon as their TTL runs out (TTL check
+	 * interval zero) and the next expiry time
+	 */
+	public void testPreciseTtlExpiry() {
+		ts.setNameSpace(null);
+		ts.putSetting(ActiveRouter.TTL_CHECK_INTERVAL_S, "0");
+		utils.setMessageRouterProto(new EpidemicRouter(ts));
+		ts.putSetting(ActiveRouter.TTL_CHECK_INTERVAL_S,
+				"" + ActiveRouter.TTL_CHECK_INTERVAL);
+		ts.restoreNameSpace();
+
+		DTNHost h = utils.createHost(c0, "hp");
+		ActiveRouter r = (ActiveRouter)h.getRouter();
+		assertEquals(Double.MAX_VALUE, r.getNextExpiryTime());
+
+		clock.setTime(10);
+		h.createNewMessage(new Message(h, h3, msgId1, 1));
+		checkCreates(1);
+
+		double dropTime = 10 + (TTL - 1) * 60;
+		assertEquals(dropTime, r.getNextExpiryTime(), 0.0001);
+		assertEquals(dropTime, r.getNextUpdateTime(), 0.0001);
+
+		clock.setTime(dropTime);
+		h.update(true);
+		assertFalse(mc.next()); // TTL is still one minute
+
+		clock.setTime(dropTime + 0.1);
+		h.update(true);
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+		assertEquals(msgId1, mc.getLastMsg().getId());
+		assertFalse(mc.next());
+		assertEquals(Double.MAX_VALUE, r.getNextExpiryTime());
+	}
+
+	/**
+	 * Tests that the messages that expire by the same TTL check are dropped
+	 * in the order of their expiry times and (with equal expiry times) ID
+	 * numbers
+	 */
+	public void testExpiredMessagesDropOrder() {
+		DTNHost h = utils.createHost(c0, "hd");
+		h.createNewMessage(new Message(h, h3, msgId3, 1));
+		clock.setTime(5);
+		Message mb = new Message(h, h3, "expiresB", 1);
+		Message ma = new Message(h, h3, "expiresA", 1);
+		h.createNewMessage(mb);
+		h.createNewMessage(ma);
+		checkCreates(3);
+		assertTrue(mb.getIdNumber() < ma.getIdNumber());
+
+		clock.setTime(TTL * 60 + 10);
+		h.update(true);
+		for (String id : new String[] {msgId3, "expiresB", "expiresA"}) {
+			assertTrue(mc.next());
+			assertEquals(mc.TYPE_DELETE, mc.getLastType());
+			assertEquals(id, mc.getLastMsg().getId());
+		}
+		assertFalse(mc.next());
+	}
+
+	/**
+	 * Tests that with anti-entropy only the messages the peer was missing
+	 * when the connection came up (or that were created later) are offered
+	 */
+	public void testAntiEntropy() {
+		ts.setNameSpace(null);
+		ts.putSetting(ActiveRouter.ANTI_ENTROPY_S, "true");
+		utils.setMessageRouterProto(new EpidemicRouter(ts));
+		ts.putSetting(ActiveRouter.ANTI_ENTROPY_S, "false");
+		ts.restoreNameSpace();
+
+		DTNHost ha = utils.createHost(c0, "ha");
+		DTNHost hb = utils.createHost(c0, "hb");
+		ha.createNewMessage(new Message(ha, h3, msgId1, 1));
+		ha.createNewMessage(new Message(ha, h3, msgId2, 1));
+		hb.createNewMessage(new Message(hb, h3, msgId1, 1));
+		checkCreates(3);
+
+		ha.connect(hb);
+		/* hb drops the message it had when the connection came up */
+		hb.deleteMessage(msgId1, true);
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_DELETE, mc.getLastType());
+
+		/* nothing is sent before the summaries have been exchanged */
+		double exchanged = ha.getRouter().getNextUpdateTime();
+		assertTrue(exchanged > SimClock.getTime());
+		assertEquals(exchanged, hb.getRouter().getNextUpdateTime());
+		ha.update(true);
+		hb.update(true);
+		assertFalse(mc.next());
+		clock.setTime(exchanged);
+
+		deliverMessage(ha, hb, msgId2, 1, false);
+
+		/* msgId1 is not offered again during this connection */
+		clock.advance(1);
+		ha.update(true);
+		hb.update(true);
+		assertFalse(mc.next());
+
+		/* messages created during the connection are offered */
+		ha.createNewMessage(new Message(ha, h3, msgId3, 1));
+		checkCreates(1);
+		deliverMessage(ha, hb, msgId3, 1, false);
+
+		/* new connection -> new summaries */
+		disconnect(ha);
+		ha.connect(hb);
+		clock.setTime(ha.getRouter().getNextUpdateTime());
+		deliverMessage(ha, hb, msgId1, 1, false);
+	}
+
+	/**
+	 * Tests that a message whose ID number is a false positive in the
+	 * peer's Bloom filter summary is not offered to the peer
+	 */
+	public void testAntiEntropyBloomFilter() {
+		ts.setNameSpace(null);
+		ts.putSetting(ActiveRouter.ANTI_ENTROPY_S, "true");
+		/* single bit -> every non-empty summary contains all messages */
+		ts.putSetting(ActiveRouter.SUMMARY_BLOOM_BITS_S, "1");
+		ts.putSetting(ActiveRouter.SUMMARY_BLOOM_HASHES_S, "1");
+		utils.setMessageRouterProto(new EpidemicRouter(ts));
+		ts.putSetting(ActiveRouter.ANTI_ENTROPY_S, "false");
+		ts.putSetting(ActiveRouter.SUMMARY_BLOOM_BITS_S, "0");
+		ts.restoreNameSpace();
+
+		DTNHost ha = utils.createHost(c0, "ha");
+		DTNHost hb = utils.createHost(c0, "hb");
+		ha.createNewMessage(new Message(ha, h3, msgId1, 1));
+		hb.createNewMessage(new Message(hb, h3, msgId2, 1));
+		checkCreates(2);
+
+		ha.connect(hb);
+		clock.setTime(ha.getRouter().getNextUpdateTime());
+		ha.update(true);
+		hb.update(true);
+		assertFalse(mc.next()); // both ends think the other has its message
+	}
+
+	/**
+	 * Tests that the connection list of a host is reused until the
+	 * connections change
+	 */
+	public void testConnectionsVersion() {
+		List<Connection> cons = h1.getConnections();
+		long version = h1.getConnectionsVersion();
+		assertEquals(0, cons.size());
+		assertSame(cons, h1.getConnections());
+
+		h1.connect(h2);
+		assertTrue(version != h1.getConnectionsVersion());
+		List<Connection> cons2 = h1.getConnections();
+		assertEquals(1, cons2.size());
+		assertEquals(0, cons.size()); // old list is not changed
+		assertSame(cons2, h1.getConnections());
+		try {
+			cons2.clear();
+			fail("Connection list was modifiable");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+
+		version = h1.getConnectionsVersion();
+		disconnect(h2);
+		assertTrue(version != h1.getConnectionsVersion());
+		assertEquals(0, h1.getConnections().size());
+	}
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventCalendar;
+import input.EventQueue;
+import input.ExternalEvent;
+import input.ScheduledUpdatesQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the EventCalendar
+ */
+public class EventCalendarTest extends TestCase {
+	private static double MAX = Double.MAX_VALUE;
+
+	/** Queue that returns events at the given times */
+	private static class TimesQueue implements EventQueue {
+		private double[] times;
+		private int next;
+
+		public TimesQueue(double... times) {
+			this.times = times;
+			this.next = 0;
+		}
+
+		public ExternalEvent nextEvent() {
+			return new ExternalEvent(next < times.length ? times[next++] : MAX);
+		}
+
+		public double nextEventsTime() {
+			return next < times.length ? times[next] : MAX;
+		}
+	}
+
+	private EventCalendar createCalendar(EventQueue... queues) {
+		List<EventQueue> list = new ArrayList<EventQueue>();
+		for (EventQueue q : queues) {
+			list.add(q);
+		}
+		return new EventCalendar(list);
+	}
+
+	public void testOrdering() {
+		TimesQueue q1 = new TimesQueue(1, 5, 9);
+		TimesQueue q2 = new TimesQueue(2, 3, 5, 10);
+		TimesQueue q3 = new TimesQueue();
+		EventCalendar ec = createCalendar(q1, q2, q3);
+
+		double[] expected = {1, 2, 3, 5, 5, 9, 10};
+		/* simultaneous events in the order of the queues */
+		EventQueue[] expectedQueues = {q1, q2, q2, q1, q2, q1, q2};
+		for (int i=0; i<expected.length; i++) {
+			assertEquals(expected[i], ec.nextEventsTime());
+			assertSame(expectedQueues[i], ec.nextEventQueue());
+			assertEquals(expected[i], ec.nextEvent().getTime());
+		}
+
+		assertEquals(MAX, ec.nextEventsTime());
+		assertEquals(MAX, ec.nextEvent().getTime());
+	}
+
+	public void testUpdate() {
+		ScheduledUpdatesQueue suq = new ScheduledUpdatesQueue();
+		TimesQueue q = new TimesQueue(2, 4);
+		EventCalendar ec = createCalendar(suq, q);
+		assertSame(q, ec.nextEventQueue());
+
+		suq.addUpdate(4);
+		ec.update(suq);
+		suq.addUpdate(1);
+		assertEquals(2.0, ec.nextEventsTime()); // not told about the change
+		ec.update(suq);
+		assertEquals(1.0, ec.nextEventsTime());
+		assertSame(suq, ec.nextEventQueue());
+
+		assertEquals(1.0, ec.nextEvent().getTime());
+		assertEquals(2.0, ec.nextEvent().getTime());
+		/* scheduled update before the other queue's simultaneous event */
+		assertSame(suq, ec.nextEventQueue());
+		assertEquals(4.0, ec.nextEvent().getTime());
+		assertSame(q, ec.nextEventQueue());
+		assertEquals(4.0, ec.nextEvent().getTime());
+
+		suq.addUpdate(7);
+		ec.updateAll();
+		assertEquals(7.0, ec.nextEvent().getTime());
+		assertEquals(MAX, ec.nextEventsTime());
+	}
+
+	public void testEmptyCalendar() {
+		EventCalendar ec = createCalendar();
+		assertEquals(MAX, ec.nextEventsTime());
+		assertNull(ec.nextEventQueue());
+		assertEquals(MAX, ec.nextEvent().getTime());
+	}
+}
@@ -5,17 +5,26 @@
 package test;
 
 import input.BinaryEventsReader;
+import input.CachedEventsReader;
 import input.ExternalEvent;
 import input.ExternalEventsQueue;
 import input.ExternalEventsReader;
+import input.LoopedEventsReader;
+import input.MappedEventsReader;
 import input.MessageCreateEvent;
 import input.StandardEventsReader;
+import input.StandardEventsWriter;
 
 import java.io.File;
+import java.io.FileWriter;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import junit.framework.TestCase;
+import core.SimError;
 
 public class ExternalEventsQueueTest extends TestCase {
 	private final String[] stdinput = {
@@ -81,6 +90,317 @@ public class ExternalEventsQueueTest extends TestCase {
 		assertTrue(tmpBinFile.delete()); // make sure all locks are gone
 	}
 
+	public void testMappedEEQ() throws Exception{
+		int preload = 4;
+		File tmpFile = File.createTempFile("TempMappedTest",
+				MappedEventsReader.ONEEV_EXT);
+		String fileName = tmpFile.getAbsolutePath();
+		assertEquals(msgTimes.length,
+				MappedEventsReader.convert(tempFile, fileName));
+		assertTrue(MappedEventsReader.isOneevFile(tmpFile));
+
+		eeq = new ExternalEventsQueue(fileName, preload);
+		checkEeq(eeq, preload);
+
+		/* decoded events must equal the ones read from the text file */
+		List<ExternalEvent> events =
+			new StandardEventsReader(tempFile).readEvents(100);
+		ExternalEventsReader r = new MappedEventsReader(tmpFile);
+		List<ExternalEvent> mapped = r.readEvents(100);
+		assertEquals(events.size(), mapped.size());
+		for (int i=0; i < events.size(); i++) {
+			assertEquals(events.get(i).getClass(), mapped.get(i).getClass());
+			assertEquals(events.get(i).toString(), mapped.get(i).toString());
+		}
+		assertEquals(0, r.readEvents(100).size());
+		r.close();
+
+		assertTrue(tmpFile.delete());
+	}
+
+	public void testStandardEventsWriter() throws Exception {
+		File tmpFile = File.createTempFile("TempWriterTest", ".txt");
+		List<ExternalEvent> events =
+			new StandardEventsReader(tempFile).readEvents(100);
+		StandardEventsWriter w = new StandardEventsWriter(
+				new FileWriter(tmpFile));
+		for (ExternalEvent ee : events) {
+			w.write(ee);
+		}
+		w.close();
+		assertEquals(msgTimes.length, w.getNrofEvents());
+
+		/* written events must read back as the same events */
+		ExternalEventsReader r = new StandardEventsReader(tmpFile);
+		List<ExternalEvent> written = r.readEvents(100);
+		r.close();
+		assertEquals(events.size(), written.size());
+		for (int i=0; i < events.size(); i++) {
+			assertEquals(events.get(i).getClass(), written.get(i).getClass());
+			assertEquals(events.get(i).toString(), written.get(i).toString());
+		}
+
+		eeq = new ExternalEventsQueue(tmpFile.getAbsolutePath(), 3);
+		checkEeq(eeq, 3);
+		assertTrue(tmpFile.delete());
+	}
+
+	public void testLoopedEEQ() throws Exception {
+		File tmpFile = File.createTempFile("TempLoopTest", ".txt");
+		PrintWriter out = new PrintWriter(tmpFile);
+		out.println("5	CONN	1	2	up"); // before the window
+		out.println("10	CONN	3	4	up");
+		out.println("12	CONN	1	2	down");
+		out.println("15	CONN	4	3	down");
+		out.println("20	CONN	5	6	up"); // goes down after the window
+		out.println("25	CONN	7	8	up"); // never goes down (closed at 30)
+		out.println("40	CONN	5	6	down");
+		out.println("50	CONN	1	3	up"); // after the window
+		out.println("55	CONN	1	3	down");
+		out.close();
+
+		/* window 10-30, replayed at 0-20, 20-40 and 40-60 */
+		eeq = new ExternalEventsQueue(tmpFile.getAbsolutePath(), 2, 3, 10,
+				20);
+		String[] expected = {
+				"CONN up @0.0 3<->4", "CONN down @5.0 4<->3",
+				"CONN up @10.0 5<->6", "CONN up @15.0 7<->8",
+				"CONN down @20.0 7<->8", "CONN up @20.0 3<->4",
+				"CONN down @25.0 4<->3", "CONN down @30.0 5<->6",
+				"CONN up @30.0 5<->6", "CONN up @35.0 7<->8",
+				"CONN down @40.0 7<->8", "CONN up @40.0 3<->4",
+				"CONN down @45.0 4<->3", "CONN down @50.0 5<->6",
+				"CONN up @50.0 5<->6", "CONN up @55.0 7<->8",
+				"CONN down @60.0 7<->8", "CONN down @70.0 5<->6"};
+		for (String s : expected) {
+			assertEquals(s, eeq.nextEvent().toString());
+		}
+		assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+		assertTrue(tmpFile.delete());
+	}
+
+	/**
+	 * Tests looping the single-loop output of
+	 * toolkit/hyccupsTraceConverter.pl against the converter's looped
+	 * output. The traces were converted with -loopStart 1000000 and
+	 * -loopEnd 1100000 from the contacts "1,2,1000000,5000",
+	 * "2,1,1003000,4000", "1,3,1010000,200", "1,2,1020000,2000",
+	 * "2,3,1050000,1000", "2,4,1090000,30000" and "3,4,1095000,5000" (the
+	 * shifted traces without the first contact).
+	 */
+	public void testLoopedConverterOutput() throws Exception {
+		String[] oneLoop = {
+			"0\tCONN\t0\t1\tup", "3\tCONN\t1\t0\tup", "7\tCONN\t0\t1\tdown",
+			"10\tCONN\t0\t2\tup", "11\tCONN\t0\t2\tdown",
+			"20\tCONN\t0\t1\tup", "22\tCONN\t0\t1\tdown",
+			"50\tCONN\t1\t2\tup", "51\tCONN\t1\t2\tdown",
+			"90\tCONN\t1\t3\tup", "95\tCONN\t2\t3\tup",
+			"100\tCONN\t2\t3\tdown", "120\tCONN\t1\t3\tdown"};
+		String[] threeLoops = {
+			"0\tCONN\t0\t1\tup", "3\tCONN\t1\t0\tup", "7\tCONN\t0\t1\tdown",
+			"10\tCONN\t0\t2\tup", "11\tCONN\t0\t2\tdown",
+			"20\tCONN\t0\t1\tup", "22\tCONN\t0\t1\tdown",
+			"50\tCONN\t1\t2\tup", "51\tCONN\t1\t2\tdown",
+			"90\tCONN\t1\t3\tup", "95\tCONN\t2\t3\tup",
+			"100\tCONN\t0\t1\tup", "100\tCONN\t2\t3\tdown",
+			"103\tCONN\t1\t0\tup", "107\tCONN\t0\t1\tdown",
+			"110\tCONN\t0\t2\tup", "111\tCONN\t0\t2\tdown",
+			"120\tCONN\t0\t1\tup", "120\tCONN\t1\t3\tdown",
+			"122\tCONN\t0\t1\tdown", "150\tCONN\t1\t2\tup",
+			"151\tCONN\t1\t2\tdown", "190\tCONN\t1\t3\tup",
+			"195\tCONN\t2\t3\tup", "200\tCONN\t0\t1\tup",
+			"200\tCONN\t2\t3\tdown", "203\tCONN\t1\t0\tup",
+			"207\tCONN\t0\t1\tdown", "210\tCONN\t0\t2\tup",
+			"211\tCONN\t0\t2\tdown", "220\tCONN\t0\t1\tup",
+			"220\tCONN\t1\t3\tdown", "222\tCONN\t0\t1\tdown",
+			"250\tCONN\t1\t2\tup", "251\tCONN\t1\t2\tdown",
+			"290\tCONN\t1\t3\tup", "295\tCONN\t2\t3\tup",
+			"300\tCONN\t2\t3\tdown", "320\tCONN\t1\t3\tdown"};
+		List<ExternalEvent> looped = checkLoopedConverterOutput(oneLoop,
+				threeLoops, 3);
+		/* simultaneous events are in the order of the loops */
+		assertEquals("CONN down @100.0 2<->3", looped.get(11).toString());
+		assertEquals("CONN up @100.0 0<->1", looped.get(12).toString());
+
+		/* converter shifts the times by the first event (at 1003000) */
+		String[] shiftedOneLoop = {
+			"0\tCONN\t1\t0\tup", "4\tCONN\t0\t1\tdown", "7\tCONN\t0\t2\tup",
+			"8\tCONN\t0\t2\tdown", "17\tCONN\t0\t1\tup",
+			"19\tCONN\t0\t1\tdown", "47\tCONN\t1\t2\tup",
+			"48\tCONN\t1\t2\tdown", "87\tCONN\t1\t3\tup",
+			"92\tCONN\t2\t3\tup", "97\tCONN\t2\t3\tdown",
+			"117\tCONN\t1\t3\tdown"};
+		String[] shiftedTwoLoops = {
+			"0\tCONN\t1\t0\tup", "4\tCONN\t0\t1\tdown", "7\tCONN\t0\t2\tup",
+			"8\tCONN\t0\t2\tdown", "17\tCONN\t0\t1\tup",
+			"19\tCONN\t0\t1\tdown", "47\tCONN\t1\t2\tup",
+			"48\tCONN\t1\t2\tdown", "87\tCONN\t1\t3\tup",
+			"92\tCONN\t2\t3\tup", "97\tCONN\t2\t3\tdown",
+			"100\tCONN\t1\t0\tup", "104\tCONN\t0\t1\tdown",
+			"107\tCONN\t0\t2\tup", "108\tCONN\t0\t2\tdown",
+			"117\tCONN\t0\t1\tup", "117\tCONN\t1\t3\tdown",
+			"119\tCONN\t0\t1\tdown", "147\tCONN\t1\t2\tup",
+			"148\tCONN\t1\t2\tdown", "187\tCONN\t1\t3\tup",
+			"192\tCONN\t2\t3\tup", "197\tCONN\t2\t3\tdown",
+			"217\tCONN\t1\t3\tdown"};
+		checkLoopedConverterOutput(shiftedOneLoop, shiftedTwoLoops, 2);
+	}
+
+	/**
+	 * Loops converter's single-loop output with a 100 second loop period
+	 * and checks that the events are the same as in its looped output
+	 * (simultaneous events may be in different order)
+	 * @return The looped events
+	 */
+	private List<ExternalEvent> checkLoopedConverterOutput(String[] oneLoop,
+			String[] converterLoops, int nrofLoops) throws Exception {
+		File oneLoopFile = File.createTempFile("TempConverterTest", ".txt");
+		File loopsFile = File.createTempFile("TempConverterTest", ".txt");
+		for (File f : new File[] {oneLoopFile, loopsFile}) {
+			PrintWriter out = new PrintWriter(f);
+			for (String s : (f == oneLoopFile ? oneLoop : converterLoops)) {
+				out.println(s);
+			}
+			out.close();
+		}
+
+		List<ExternalEvent> looped = new LoopedEventsReader(
+				new StandardEventsReader(oneLoopFile), nrofLoops, 0, 100).
+				readEvents(1000);
+		List<ExternalEvent> expected =
+			new StandardEventsReader(loopsFile).readEvents(1000);
+		assertEquals(expected.size(), looped.size());
+		for (int i=1; i < looped.size(); i++) {
+			assertTrue(looped.get(i - 1).getTime() <= looped.get(i).getTime());
+		}
+
+		Comparator<ExternalEvent> byTimeAndText =
+			new Comparator<ExternalEvent>() {
+			public int compare(ExternalEvent e1, ExternalEvent e2) {
+				int c = Double.compare(e1.getTime(), e2.getTime());
+				return (c != 0 ? c :
+					e1.toString().compareTo(e2.toString()));
+			}
+		};
+		List<ExternalEvent> sorted = new ArrayList<ExternalEvent>(looped);
+		Collections.sort(sorted, byTimeAndText);
+		Collections.sort(expected, byTimeAndText);
+		for (int i=0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).toString(), sorted.get(i).toString());
+		}
+
+		assertTrue(oneLoopFile.delete());
+		assertTrue(loopsFile.delete());
+		return looped;
+	}
+
+	public void testCachedEEQ() throws Exception {
+		new TestSettings();
+		TestSettings ts = new TestSettings("Events1");
+		ts.putSetting(ExternalEventsQueue.PATH_SETTING,
+				tempFile.getAbsolutePath());
+		ts.putSetting(ExternalEventsQueue.PRELOAD_SETTING, "3");
+		ts.putSetting(ExternalEventsQueue.CACHE_SETTING, "true");
+
+		/* every queue of the file has its own position in the cache */
+		ExternalEventsQueue eeq2 = new ExternalEventsQueue(ts);
+		eeq = new ExternalEventsQueue(ts);
+		checkEeq(eeq, 3);
+		checkEeq(eeq2, 3);
+
+		List<ExternalEvent> events =
+			new StandardEventsReader(tempFile).readEvents(100);
+		CachedEventsReader r = new CachedEventsReader(tempFile);
+		assertEquals(events.size(), r.getNrofEvents());
+		List<ExternalEvent> cached = r.readEvents(100);
+		for (int i=0; i < events.size(); i++) {
+			assertEquals(events.get(i).toString(), cached.get(i).toString());
+		}
+
+		/* changed file is read again */
+		PrintWriter out = new PrintWriter(tempFile);
+		out.println(stdinput[0]);
+		out.close();
+		assertTrue(tempFile.setLastModified(tempFile.lastModified() - 10000));
+		assertEquals(1, new CachedEventsReader(tempFile).getNrofEvents());
+
+		/* a file that couldn't be parsed is not left in the cache */
+		out = new PrintWriter(new FileWriter(tempFile, true));
+		out.println("106300.000	CONN	p1	p2	sideways");
+		out.close();
+		assertTrue(tempFile.setLastModified(tempFile.lastModified() - 10000));
+		try {
+			new CachedEventsReader(tempFile);
+			fail("Parse error was not thrown");
+		} catch (SimError e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("sideways"));
+		}
+		out = new PrintWriter(tempFile);
+		out.println(stdinput[0]);
+		out.println(stdinput[1]);
+		out.close();
+		assertEquals(2, new CachedEventsReader(tempFile).getNrofEvents());
+		CachedEventsReader.clearCache();
+	}
+
+	/**
+	 * Tests that concurrent readers of the same file all get its events
+	 */
+	public void testConcurrentCachedReaders() throws Exception {
+		final long[] nrofEvents = new long[4];
+		Thread[] threads = new Thread[nrofEvents.length];
+		for (int i=0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				public void run() {
+					nrofEvents[index] =
+						new CachedEventsReader(tempFile).getNrofEvents();
+				}
+			};
+			threads[i].start();
+		}
+		for (int i=0; i < threads.length; i++) {
+			threads[i].join();
+			assertEquals(msgTimes.length, nrofEvents[i]);
+		}
+		CachedEventsReader.clearCache();
+	}
+
+	public void testPrefetchingEEQ() throws Exception {
+		File tmpBinFile = File.createTempFile("TempBinTest",
+				BinaryEventsReader.BINARY_EXT);
+		BinaryEventsReader.storeToBinaryFile(tmpBinFile.getAbsolutePath(),
+				new StandardEventsReader(tempFile).readEvents(100));
+
+		new TestSettings();
+		TestSettings ts = new TestSettings("Events1");
+		ts.putSetting(ExternalEventsQueue.PRELOAD_SETTING, "3");
+		ts.putSetting(ExternalEventsQueue.PREFETCH_SETTING, "1");
+		for (File f : new File[] {tempFile, tmpBinFile}) {
+			ts.putSetting(ExternalEventsQueue.PATH_SETTING,
+					f.getAbsolutePath());
+			eeq = new ExternalEventsQueue(ts);
+			checkEeq(eeq, 3);
+		}
+		assertTrue(tmpBinFile.delete());
+
+		/* parse error is thrown when the simulation reaches it */
+		PrintWriter out = new PrintWriter(new FileWriter(tempFile, true));
+		out.println("106300.000	CONN	p1	p2	sideways");
+		out.close();
+		ts.putSetting(ExternalEventsQueue.PATH_SETTING,
+				tempFile.getAbsolutePath());
+		eeq = new ExternalEventsQueue(ts);
+		try {
+			while (eeq.nextEventsTime() < Double.MAX_VALUE) {
+				eeq.nextEvent();
+			}
+			fail("Parse error was not thrown");
+		} catch (SimError e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("sideways"));
+		}
+	}
+
 
 	private void checkEeq(ExternalEventsQueue eeq, int preloadVal) {
 		ExternalEvent ee;
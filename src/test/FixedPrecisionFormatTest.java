@@ -0,0 +1,51 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import report.FixedPrecisionFormat;
+
+/**
+ * Tests that FixedPrecisionFormat gives the same output as String.format
+ */
+public class FixedPrecisionFormatTest extends TestCase {
+	private static final double[] SPECIAL_VALUES = {0, -0.0, 1, -1, 0.5,
+		1.5, 2.5, -2.5, 0.15, 0.25, 0.35, 1.005, 2.675, 0.00005, -0.00005,
+		0.000049999, 123456.78125, 99.99995, 9.9999999, 1e14, 1e15, 1e20,
+		-1e300, Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN,
+		Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+
+	private void assertSameAsFormat(FixedPrecisionFormat f, double value) {
+		String expected = String.format("%." + f.getPrecision() + "f",
+				value);
+		assertEquals("Value " + value, expected, f.format(value));
+	}
+
+	public void testSpecialValues() {
+		for (int precision = 0; precision <= 17; precision++) {
+			FixedPrecisionFormat f = new FixedPrecisionFormat(precision);
+			for (double value : SPECIAL_VALUES) {
+				assertSameAsFormat(f, value);
+			}
+		}
+	}
+
+	public void testRandomValues() {
+		Random rng = new Random(1);
+		for (int precision = 0; precision <= 8; precision++) {
+			FixedPrecisionFormat f = new FixedPrecisionFormat(precision);
+			for (int i=0; i<5000; i++) {
+				double value = (rng.nextDouble() - 0.5) *
+					Math.pow(10, rng.nextInt(12) - 4);
+				assertSameAsFormat(f, value);
+				/* values with few decimals hit the halfway points */
+				assertSameAsFormat(f, Math.round(value * 1000) / 1000.0);
+				assertSameAsFormat(f, rng.nextInt(100000) / 8.0);
+			}
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ConnectionEvent;
+import input.EventQueue;
+import input.ExternalEvent;
+import input.HyccupsEventGenerator;
+import input.MessageCreateEvent;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import social.HyccupsScenarioGenerator;
+import social.HyccupsSocialParser;
+import social.SocialGraph;
+
+/**
+ * Tests for the HyccupsScenarioGenerator class
+ */
+public class HyccupsScenarioGeneratorTest extends TestCase {
+	private static final int END_TIME = 4 * 86400;
+	private static final int NROF_USERS = 6;
+
+	private SocialGraph graph;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		/* 0 <-> 1 <-> 2, 3 <-> 4; 5 has no contacts */
+		graph = new SocialGraph(new int[][] {
+				{1}, {0, 2}, {1}, {4}, {3}, {}});
+	}
+
+	private List<ExternalEvent> generate(long seed, int hybrids,
+			int mailboxes) {
+		return getAll(new HyccupsScenarioGenerator(graph, hybrids,
+				mailboxes, seed, 100, 200, 10, true, END_TIME));
+	}
+
+	private List<ExternalEvent> getAll(EventQueue g) {
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>();
+		while (g.nextEventsTime() < Double.MAX_VALUE) {
+			double time = g.nextEventsTime();
+			ExternalEvent ee = g.nextEvent();
+			assertEquals(time, ee.getTime());
+			events.add(ee);
+		}
+		assertEquals(Double.MAX_VALUE, g.nextEvent().getTime());
+		return events;
+	}
+
+	public void testTimeOrder() {
+		List<ExternalEvent> events = generate(1, 3, 2);
+		assertTrue(events.size() > 0);
+		double last = 0;
+		for (ExternalEvent ee : events) {
+			assertTrue(ee.getTime() >= last);
+			assertTrue(ee.getTime() <= END_TIME);
+			last = ee.getTime();
+		}
+	}
+
+	public void testMessages() {
+		int nrofMessages = 0;
+		int nrofConnections = 0;
+		for (ExternalEvent ee : generate(2, 0, 0)) {
+			if (ee instanceof MessageCreateEvent) {
+				nrofMessages++;
+				/* only users with contacts send (to their contacts) */
+				assertFalse(ee.toString().contains("[5->"));
+			}
+			else {
+				nrofConnections++;
+			}
+		}
+		assertEquals(0, nrofConnections);
+		/* about 10 messages per user per day during the day time */
+		assertTrue(nrofMessages > 3 * 10 * NROF_USERS);
+		assertTrue(nrofMessages < 5 * 10 * NROF_USERS);
+	}
+
+	public void testMailboxConnections() {
+		int nrofUps = 0;
+		int nrofDowns = 0;
+		for (ExternalEvent ee : generate(3, 0, 2)) {
+			if (ee instanceof ConnectionEvent) {
+				if (ee.toString().startsWith("CONN up")) {
+					nrofUps++;
+				}
+				else {
+					nrofDowns++;
+				}
+			}
+		}
+		/* every up is followed by a down (nightly and mailbox pairs) */
+		assertTrue(nrofUps > 0);
+		assertEquals(nrofUps, nrofDowns);
+	}
+
+	public void testSameSeedSameEvents() {
+		List<ExternalEvent> a = generate(4, 2, 2);
+		List<ExternalEvent> b = generate(4, 2, 2);
+		assertEquals(a.size(), b.size());
+		for (int i=0; i < a.size(); i++) {
+			assertEquals(a.get(i).toString(), b.get(i).toString());
+		}
+	}
+
+	/**
+	 * Tests that the Settings based generator gives the same events as
+	 * the generator with the same parameters
+	 */
+	public void testEventGeneratorSettings() throws Exception {
+		File socialNetwork = File.createTempFile("social", ".txt");
+		PrintWriter out = new PrintWriter(socialNetwork);
+		out.println("1,2");
+		out.println("2,1,3");
+		out.println("3,2");
+		out.println("4,5");
+		out.println("5,4");
+		out.close();
+
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace("Events1");
+		ts.putSetting(HyccupsEventGenerator.SOCIAL_NETWORK_S,
+				socialNetwork.getPath());
+		ts.putSetting(HyccupsEventGenerator.NROF_HYBRID_NODES_S, "3");
+		ts.putSetting(HyccupsEventGenerator.NROF_MAILBOXES_S, "2");
+		ts.putSetting(HyccupsEventGenerator.SEED_S, "5");
+		ts.putSetting(HyccupsEventGenerator.MESSAGE_SIZE_S, "1k,2k");
+		ts.putSetting(HyccupsEventGenerator.DAILY_MESSAGES_S, "10");
+		ts.putSetting(HyccupsEventGenerator.CONTACTS_ONLY_S, "true");
+		ts.putSetting(HyccupsEventGenerator.END_TIME_S, "" + END_TIME);
+		ts.setNameSpace(null);
+
+		List<ExternalEvent> a = getAll(new HyccupsEventGenerator(
+				new TestSettings("Events1")));
+		SocialGraph g = HyccupsSocialParser.getInstance(
+				socialNetwork.getPath()).getSocialGraph();
+		List<ExternalEvent> b = getAll(new HyccupsScenarioGenerator(g, 3, 2,
+				5, 1000, 2000, 10, true, END_TIME));
+		assertTrue(socialNetwork.delete());
+
+		assertTrue(a.size() > 0);
+		assertEquals(b.size(), a.size());
+		for (int i=0; i < a.size(); i++) {
+			assertEquals(b.get(i).toString(), a.get(i).toString());
+		}
+	}
+}
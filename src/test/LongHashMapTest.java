@@ -0,0 +1,73 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.LongHashMap;
+
+/**
+ * Tests for the LongHashMap class
+ */
+public class LongHashMapTest extends TestCase {
+
+	public void testPutGetRemove() {
+		LongHashMap<String> map = new LongHashMap<String>();
+		assertTrue(map.isEmpty());
+		assertNull(map.put(1, "a"));
+		assertNull(map.put(-5L << 32, "b"));
+		assertEquals("a", map.put(1, "c"));
+		assertEquals(2, map.size());
+
+		assertEquals("c", map.get(1));
+		assertEquals("b", map.get(-5L << 32));
+		assertNull(map.get(2));
+		assertFalse(map.containsKey(2));
+
+		assertEquals("c", map.remove(1));
+		assertNull(map.remove(1));
+		assertEquals(1, map.size());
+		assertEquals(1, map.values().size());
+		assertEquals(1, map.keys().length);
+		assertEquals(-5L << 32, map.keys()[0]);
+
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertNull(map.get(-5L << 32));
+	}
+
+	/**
+	 * Compares the map against a java.util.HashMap with random operations
+	 * on a small key range (causes lots of collisions and removals)
+	 */
+	public void testRandomOperations() {
+		LongHashMap<Integer> map = new LongHashMap<Integer>();
+		Map<Long, Integer> ref = new HashMap<Long, Integer>();
+		Random rng = new Random(42);
+
+		for (int i = 0; i < 20000; i++) {
+			long key = rng.nextInt(200) * 64L;
+			if (rng.nextInt(3) == 0) {
+				assertEquals(ref.remove(key), map.remove(key));
+			} else {
+				assertEquals(ref.put(key, i), map.put(key, i));
+			}
+			assertEquals(ref.size(), map.size());
+		}
+
+		for (long key = 0; key < 200 * 64L; key += 64) {
+			assertEquals(ref.get(key), map.get(key));
+		}
+
+		long[] keys = map.keys();
+		assertEquals(ref.size(), keys.length);
+		for (long key : keys) {
+			assertTrue(ref.containsKey(key));
+		}
+	}
+}
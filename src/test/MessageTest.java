@@ -60,5 +60,39 @@ public class MessageTest extends TestCase {
 		assertEquals(value2, msg.getProperty("bar"));
 	}
 
+	@Test
+	public void testReplicate() {
+		msg.addProperty("foo", "value1");
+		msg.addNodeOnPath(to);
+		sc.advance(5);
+		Message rep = msg.replicate();
+
+		assertEquals("M", rep.getId());
+		assertEquals(100, rep.getSize());
+		assertEquals(9, rep.getTtl());
+		assertEquals(10.0, rep.getCreationTime());
+		assertEquals(15.0, rep.getReceiveTime());
+		assertEquals(1, rep.getHopCount());
+		assertEquals("value1", rep.getProperty("foo"));
+		assertTrue(rep.getUniqueId() != msg.getUniqueId());
+
+		/* modifying the replicate must not change the original... */
+		rep.setTtl(5);
+		rep.updateProperty("foo", "value2");
+		rep.addNodeOnPath(from);
+		assertEquals(9, msg.getTtl());
+		assertEquals("value1", msg.getProperty("foo"));
+		assertEquals(1, msg.getHopCount());
+		assertEquals(2, rep.getHopCount());
+
+		/* ...and vice versa */
+		msg.setResponseSize(20);
+		msg.addProperty("bar", "value3");
+		assertEquals(0, rep.getResponseSize());
+		assertNull(rep.getProperty("bar"));
+		assertEquals(4, rep.getTtl());
+		assertEquals("value2", rep.getProperty("foo"));
+	}
+
 
 }
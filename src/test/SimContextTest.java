@@ -0,0 +1,84 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.DTNHost;
+import core.Message;
+import core.SimClock;
+import core.SimContext;
+
+/**
+ * Tests for the SimContext class
+ */
+public class SimContextTest extends TestCase {
+	private static final double DELTA = 0.00001;
+
+	private TestUtils utils;
+	private double otherTime;
+	private int otherAddress;
+	private int otherMsgId;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		DTNHost.reset();
+		Message.reset();
+		utils = new TestUtils(null, null, new TestSettings());
+	}
+
+	public void testContextsAreSeparate() throws Exception {
+		SimClock.getInstance().setTime(10);
+		utils.createHost();
+		utils.createHost();
+		new Message(null, null, "M1", 1);
+
+		Thread t = new Thread() {
+			public void run() {
+				SimContext.enter(new SimContext());
+				SimClock.getInstance().setTime(5);
+				otherTime = SimClock.getTime();
+				otherAddress = utils.createHost().getAddress();
+				otherMsgId = new Message(null, null, "M1", 1).getUniqueId();
+				SimContext.enter(null);
+			}
+		};
+		t.start();
+		t.join();
+
+		/* the other context started from the initial state... */
+		assertEquals(5, otherTime, DELTA);
+		assertEquals(0, otherAddress);
+		assertEquals(0, otherMsgId);
+
+		/* ...and didn't change this one */
+		assertEquals(10, SimClock.getTime(), DELTA);
+		assertEquals(2, utils.createHost().getAddress());
+		assertEquals(1, new Message(null, null, "M2", 1).getUniqueId());
+	}
+
+	public void testEnterAndExit() {
+		SimContext defaultContext = SimContext.current();
+		SimContext context = new SimContext();
+
+		SimContext.enter(context);
+		assertSame(context, SimContext.current());
+		SimClock.getInstance().setTime(3);
+
+		SimContext.enter(null);
+		assertSame(defaultContext, SimContext.current());
+		assertEquals(0, SimClock.getTime(), DELTA);
+	}
+
+	public void testIdCounters() {
+		SimContext context = new SimContext();
+		assertEquals(0, context.nextId(SimContextTest.class));
+		assertEquals(1, context.nextId(SimContextTest.class));
+		assertEquals(0, context.nextId(TestUtils.class));
+
+		context.putState(SimContextTest.class, null);
+		assertEquals(0, context.nextId(SimContextTest.class));
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.BitSet;
+
+import junit.framework.TestCase;
+import social.SocialGraph;
+
+/**
+ * Tests for the SocialGraph class
+ */
+public class SocialGraphTest extends TestCase {
+	private SocialGraph graph;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		/* 0 -> 2, 1; 1 -> 0, 2; 2 -> 3; 3 -> none; 4 <-> 5; 70 is a
+		 * contact that is out of range; 2 is given twice for 0 */
+		graph = new SocialGraph(new int[][] {
+				{2, 1, 2, 70}, {0, 2}, {3}, {}, {5}, {4}});
+	}
+
+	public void testContacts() {
+		assertEquals(6, graph.size());
+		assertTrue(graph.isContact(0, 1));
+		assertTrue(graph.isContact(2, 3));
+		assertFalse(graph.isContact(3, 2));
+		assertFalse(graph.isContact(0, 70));
+		assertFalse(graph.isContact(-1, 0));
+
+		assertEquals(2, graph.getNrofContacts(0));
+		assertEquals(0, graph.getNrofContacts(3));
+		/* contacts are kept in the given order */
+		assertEquals(2, graph.getContact(0, 0));
+		assertEquals(1, graph.getContact(0, 1));
+		int[] c = graph.getContacts(1);
+		assertEquals(2, c.length);
+		assertEquals(0, c[0]);
+		assertEquals(2, c[1]);
+
+		try {
+			graph.getContact(0, 2);
+			fail("Contact index out of range accepted");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+
+	public void testCommonContacts() {
+		assertEquals(1, graph.getNrofCommonContacts(0, 1));
+		assertEquals(0, graph.getNrofCommonContacts(0, 4));
+	}
+
+	public void testKHopContacts() {
+		BitSet oneHop = graph.getKHopContacts(0, 1);
+		assertEquals(2, oneHop.cardinality());
+		assertTrue(oneHop.get(1) && oneHop.get(2));
+
+		BitSet twoHops = graph.getKHopContacts(0, 2);
+		assertEquals(3, twoHops.cardinality());
+		assertTrue(twoHops.get(3));
+		assertFalse(twoHops.get(0));
+
+		assertEquals(0, graph.getKHopContacts(3, 5).cardinality());
+	}
+
+	public void testCommunities() {
+		int[] communities = graph.getCommunities();
+		assertEquals(0, communities[0]);
+		assertEquals(0, communities[1]);
+		assertEquals(0, communities[2]);
+		assertEquals(0, communities[3]);
+		assertEquals(1, communities[4]);
+		assertEquals(1, communities[5]);
+	}
+
+	public void testFromGroups() {
+		SocialGraph g = SocialGraph.fromGroups(4,
+				new int[][] {{0, 1, 2}, {2, 3}});
+		assertTrue(g.isContact(0, 2));
+		assertTrue(g.isContact(2, 0));
+		assertTrue(g.isContact(3, 2));
+		assertFalse(g.isContact(0, 3));
+		assertFalse(g.isContact(1, 1));
+		assertEquals(3, g.getNrofContacts(2));
+	}
+}
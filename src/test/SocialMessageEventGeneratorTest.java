@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ExternalEvent;
+import input.MessageCreateEvent;
+import input.SocialMessageEventGenerator;
+import junit.framework.TestCase;
+import social.SocialGraph;
+import core.Settings;
+
+/**
+ * Tests for the SocialMessageEventGenerator class
+ */
+public class SocialMessageEventGeneratorTest extends TestCase {
+	/** 10 <-> 11, 12 -> 11; 13 has no contacts (hosts 10-13 are users) */
+	private static final SocialGraph GRAPH = new SocialGraph(new int[][] {
+			{1}, {0}, {1}, {}});
+	private static final int END_TIME = 5 * 86400;
+
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		new TestSettings();
+		ts = new TestSettings("Events1");
+		ts.putSetting(SocialMessageEventGenerator.MESSAGE_SIZE_S, "100,200");
+		ts.putSetting(SocialMessageEventGenerator.MESSAGE_INTERVAL_S,
+				"100,200");
+		ts.putSetting(SocialMessageEventGenerator.HOST_RANGE_S, "10,14");
+		ts.putSetting(SocialMessageEventGenerator.MESSAGE_ID_PREFIX_S, "S");
+		ts.putSetting(SocialMessageEventGenerator.MESSAGE_TIME_S,
+				"0," + END_TIME);
+		ts.putSetting(SocialMessageEventGenerator.CONTACTS_ONLY_S, "true");
+	}
+
+	private SocialMessageEventGenerator create(Settings s) {
+		return new SocialMessageEventGenerator(s) {
+			@Override
+			protected SocialGraph getSocialGraph(String name) {
+				return GRAPH;
+			}
+		};
+	}
+
+	public void testReceiversAreContacts() {
+		SocialMessageEventGenerator g = create(ts);
+		int nrof = 0;
+		while (g.nextEventsTime() < Double.MAX_VALUE) {
+			String s = g.nextEvent().toString();
+			assertTrue(s, s.contains("[10->11]") || s.contains("[11->10]") ||
+					s.contains("[12->11]"));
+			nrof++;
+		}
+		assertTrue(nrof > 0);
+	}
+
+	public void testNights() {
+		ts.putSetting(SocialMessageEventGenerator.NIGHT_START_S, "3600");
+		ts.putSetting(SocialMessageEventGenerator.SLEEP_TIME_S, "36000");
+		SocialMessageEventGenerator g = create(ts);
+
+		double last = 0;
+		int nrofNights = 0;
+		while (g.nextEventsTime() < Double.MAX_VALUE) {
+			ExternalEvent ee = g.nextEvent();
+			assertTrue(ee instanceof MessageCreateEvent);
+			double gap = ee.getTime() - last;
+			if (gap > 200) {
+				/* the night starts after the night's start time */
+				double night = 3600 + nrofNights * 86400;
+				assertTrue(last > night && last < night + 200);
+				assertTrue(gap >= 36100 && gap < 36200);
+				nrofNights++;
+			}
+			last = ee.getTime();
+		}
+		assertEquals(5, nrofNights);
+	}
+
+	public void testSeed() {
+		ts.putSetting(SocialMessageEventGenerator.SEED_S, "5");
+		SocialMessageEventGenerator g1 = create(ts);
+		SocialMessageEventGenerator g2 = create(ts);
+		ts.putSetting(SocialMessageEventGenerator.SEED_S, "6");
+		SocialMessageEventGenerator g3 = create(ts);
+
+		boolean differs = false;
+		for (int i=0; i < 100; i++) {
+			String s1 = g1.nextEvent().toString();
+			assertEquals(s1, g2.nextEvent().toString());
+			differs |= !s1.equals(g3.nextEvent().toString());
+		}
+		assertTrue(differs);
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import routing.ActiveRouter;
+import routing.MessageRouter;
+import routing.SocialRouterHyccups;
+import util.Tuple;
+import core.Connection;
+import core.Message;
+import core.MessageListener;
+import core.Settings;
+
+/**
+ * Tests for the priority class indexes of SocialRouterHyccups. In the
+ * test's social network h0 and h1 are each other's contacts.
+ */
+public class SocialRouterHyccupsTest extends AbstractRouterTest {
+	private static final int MSG_SIZE = 1;
+	private File socialNetwork;
+
+	@Override
+	public void setUp() throws Exception {
+		socialNetwork = File.createTempFile("social", ".txt");
+		PrintWriter out = new PrintWriter(socialNetwork);
+		out.println("1,2");
+		out.println("2,1");
+		out.close();
+
+		ts.setNameSpace(null);
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		ts.putSetting(ActiveRouter.DELETE_DELIVERED_S, "true");
+		ts.putSetting(SocialRouterHyccups.SOCIAL_HYCCUPS_NS + "." +
+				SocialRouterHyccups.SOCIAL_NETWORK_S,
+				socialNetwork.getPath());
+		setRouterProto(new IndexRouter(ts));
+		super.setUp();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		socialNetwork.delete();
+		/* the settings are shared with the other router tests */
+		ts.setNameSpace(null);
+		ts.putSetting(ActiveRouter.DELETE_DELIVERED_S, "false");
+		ts.putSetting(MessageRouter.SEND_QUEUE_MODE_S,
+				"" + MessageRouter.Q_MODE_RANDOM);
+	}
+
+	/**
+	 * Tests that the indexes follow the buffer when messages are added,
+	 * removed, delivered and dropped
+	 */
+	public void testIndexes() {
+		IndexRouter r1 = (IndexRouter)h1.getRouter();
+		h1.connect(h3);
+
+		Message m1 = new Message(h0, h6, msgId1, MSG_SIZE);
+		Message m2 = new Message(h4, h6, msgId2, MSG_SIZE);
+		m2.addNodeOnPath(h0);
+		Message m3 = new Message(h0, h3, msgId3, MSG_SIZE);
+		m3.addNodeOnPath(h5);
+		Message m4 = new Message(h5, h6, msgId4, MSG_SIZE);
+		h1.createNewMessage(m1);
+		h1.createNewMessage(m2);
+		h1.createNewMessage(m3);
+		h1.createNewMessage(m4);
+
+		checkIndexes(r1, new String[] {msgId1, msgId3},
+				new String[] {msgId1, msgId2});
+
+		/* removing */
+		h1.deleteMessage(msgId1, false);
+		checkIndexes(r1, new String[] {msgId3}, new String[] {msgId2});
+
+		/* adding again */
+		Message m5 = new Message(h0, h6, msgId5, MSG_SIZE);
+		h1.createNewMessage(m5);
+		checkIndexes(r1, new String[] {msgId3, msgId5},
+				new String[] {msgId2, msgId5});
+
+		/* delivery: m3 is sent to h3 and then deleted as delivered */
+		mc.reset();
+		h1.update(true);
+		h3.update(true);
+		checkTransferStart(h1, h3, msgId3);
+		clock.advance((1.0 * MSG_SIZE) / TRANSMIT_SPEED);
+		h1.update(true);
+		h3.update(true);
+		assertFalse(h1.getRouter().hasMessage(msgId3));
+		checkIndexes(r1, new String[] {msgId5}, new String[] {msgId2,
+				msgId5});
+
+		/* dropping: m2 and m4 are dropped to make room for a big message
+		 * (messages from contacts are not dropped) */
+		disconnect(h3);
+		h1.createNewMessage(new Message(h5, h6, "big",
+				BUFFER_SIZE - MSG_SIZE));
+		assertFalse(h1.getRouter().hasMessage(msgId2));
+		assertFalse(h1.getRouter().hasMessage(msgId4));
+		h1.connect(h3);
+		checkIndexes(r1, new String[] {msgId5}, new String[] {msgId5});
+	}
+
+	/**
+	 * Tests that the messages of a class are tried in the order of the
+	 * sorted message-connection tuples in both queue modes
+	 */
+	public void testQueueModeOrder() {
+		h1.connect(h2);
+		h1.connect(h3);
+		h1.connect(h4);
+		for (int i=0; i<20; i++) {
+			clock.setTime(i % 7);
+			h1.createNewMessage(new Message(h0, h6, "M" + i, MSG_SIZE));
+		}
+
+		for (int mode : new int[] {MessageRouter.Q_MODE_RANDOM,
+				MessageRouter.Q_MODE_FIFO}) {
+			ts.putSetting(MessageRouter.SEND_QUEUE_MODE_S, "" + mode);
+			IndexRouter r = new IndexRouter(ts);
+			r.init(h1, new ArrayList<MessageListener>());
+			for (Message m : h1.getMessageCollection()) {
+				r.addMessage(m);
+			}
+			for (int time=0; time<5; time++) {
+				clock.setTime(time);
+				r.checkOrder();
+			}
+		}
+	}
+
+	/**
+	 * Checks the message IDs of the priority classes of a router
+	 */
+	private void checkIndexes(IndexRouter r, String[] fromContacts,
+			String[] relayedByContacts) {
+		assertEquals(new HashSet<String>(Arrays.asList(fromContacts)),
+				getIds(r.getFromContacts()));
+		assertEquals(new HashSet<String>(Arrays.asList(relayedByContacts)),
+				getIds(r.getRelayedFromContacts()));
+	}
+
+	private Set<String> getIds(List<Tuple<Message, Connection>> tuples) {
+		Set<String> ids = new HashSet<String>();
+		for (Tuple<Message, Connection> t : tuples) {
+			ids.add(t.getKey().getId());
+		}
+		return ids;
+	}
+
+	/**
+	 * Router that gives the tests access to the priority classes
+	 */
+	private static class IndexRouter extends SocialRouterHyccups {
+		public IndexRouter(Settings s) {
+			super(s);
+		}
+
+		protected IndexRouter(IndexRouter r) {
+			super(r);
+		}
+
+		@Override
+		public IndexRouter replicate() {
+			return new IndexRouter(this);
+		}
+
+		public List<Tuple<Message, Connection>> getFromContacts() {
+			return getMessagesFromContacts();
+		}
+
+		public List<Tuple<Message, Connection>> getRelayedFromContacts() {
+			return getMessagesRelayedFromContacts();
+		}
+
+		public void addMessage(Message m) {
+			addToMessages(m.replicate(), false);
+		}
+
+		/**
+		 * Checks that the queue mode order of the messages from contacts
+		 * is the order of the sorted message-connection tuples
+		 */
+		@SuppressWarnings(value = "unchecked")
+		public void checkOrder() {
+			List<Tuple<Message, Connection>> tuples =
+				getMessagesFromContacts();
+			List<Message> messages = new ArrayList<Message>();
+			for (int i=0; i<tuples.size(); i+=getConnections().size()) {
+				messages.add(tuples.get(i).getKey());
+			}
+
+			int n = getConnections().size();
+			int[] order = getQueueModeOrder(messages, n);
+			List<Tuple<Message, Connection>> sorted = sortByQueueMode(
+					new ArrayList<Tuple<Message, Connection>>(tuples));
+			assertEquals(sorted.size(), order.length);
+			for (int i=0; i<order.length; i++) {
+				assertSame(sorted.get(i), tuples.get(order[i]));
+			}
+		}
+	}
+}
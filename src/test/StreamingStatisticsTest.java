@@ -0,0 +1,155 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import report.QuantileSketch;
+import report.StreamingStatistics;
+
+/**
+ * Tests for the StreamingStatistics and QuantileSketch classes
+ */
+public class StreamingStatisticsTest extends TestCase {
+	private static final double DELTA = 0.000001;
+
+	public void testExactStatistics() {
+		StreamingStatistics s = new StreamingStatistics(true);
+		assertTrue(Double.isNaN(s.getMean()));
+		assertTrue(Double.isNaN(s.getQuantile(0.5)));
+
+		double[] values = {5, 1, 4, 2, 3, 100};
+		for (double v : values) {
+			s.add(v);
+		}
+		assertEquals(6, s.getCount());
+		assertEquals(115 / 6.0, s.getMean(), DELTA);
+		assertEquals(4.0, s.getQuantile(0.5), DELTA); // upper median
+		assertEquals(1.0, s.getQuantile(0), DELTA);
+		assertEquals(100.0, s.getQuantile(0.99), DELTA);
+		assertEquals(100.0, s.getQuantile(1), DELTA);
+
+		double var = 0;
+		for (double v : values) {
+			var += (v - s.getMean()) * (v - s.getMean());
+		}
+		assertEquals(var / values.length, s.getVariance(), DELTA);
+
+		s.add(0);
+		assertEquals(3.0, s.getQuantile(0.5), DELTA);
+	}
+
+	public void testSketchAccuracy() {
+		Random rng = new Random(42);
+		QuantileSketch sketch = new QuantileSketch(0.01);
+		double[] values = new double[10000];
+		for (int i=0; i<values.length; i++) {
+			values[i] = Math.exp(rng.nextGaussian() * 3);
+			sketch.add(values[i]);
+		}
+		Arrays.sort(values);
+
+		for (double q : new double[] {0, 0.1, 0.5, 0.9, 0.99, 1}) {
+			double exact = values[Math.min(values.length - 1,
+					(int)(q * values.length))];
+			assertEquals("q=" + q, exact, sketch.getQuantile(q),
+					exact * 0.01 + DELTA);
+		}
+		assertEquals(values[0], sketch.getMin(), 0);
+		assertEquals(values[values.length - 1], sketch.getMax(), 0);
+	}
+
+	public void testSketchNegativesAndZeros() {
+		QuantileSketch sketch = new QuantileSketch();
+		double[] values = {-100, -10, -1, 0, 0, 1, 10, 100};
+		for (double v : values) {
+			sketch.add(v);
+		}
+		for (int i=0; i<values.length; i++) {
+			double q = (i + 0.5) / values.length;
+			assertEquals(values[i], sketch.getQuantile(q),
+					Math.abs(values[i]) * 0.01 + DELTA);
+		}
+	}
+
+	public void testSketchSerialization() {
+		Random rng = new Random(2);
+		QuantileSketch sketch = new QuantileSketch(0.02);
+		for (int i=0; i<1000; i++) {
+			sketch.add(i % 10 == 0 ? 0 : rng.nextGaussian() * 100);
+		}
+
+		String text = sketch.serialize();
+		QuantileSketch copy = QuantileSketch.deserialize(text);
+		assertEquals(text, copy.serialize());
+		assertEquals(sketch.getAccuracy(), copy.getAccuracy(), 0);
+		assertEquals(sketch.getCount(), copy.getCount());
+		assertEquals(sketch.getMin(), copy.getMin(), 0);
+		assertEquals(sketch.getMax(), copy.getMax(), 0);
+		for (double q : new double[] {0, 0.05, 0.1, 0.5, 0.9, 0.99, 1}) {
+			assertEquals(sketch.getQuantile(q), copy.getQuantile(q), 0);
+		}
+
+		/* deserialized sketches can be merged */
+		copy.merge(QuantileSketch.deserialize(text));
+		assertEquals(2 * sketch.getCount(), copy.getCount());
+		assertEquals(sketch.getQuantile(0.5), copy.getQuantile(0.5), 0);
+
+		QuantileSketch empty = QuantileSketch.deserialize(
+				new QuantileSketch().serialize());
+		assertEquals(0, empty.getCount());
+		assertTrue(Double.isNaN(empty.getMin()));
+
+		for (String bad : new String[] {"", "0.01 1 2", "0.01 1 2 0 0 1",
+				"0.01 1 2 0 0 0 5 1 x", "0.01 1 2 0 0 0 5 1 3 4"}) {
+			try {
+				QuantileSketch.deserialize(bad);
+				fail("Invalid sketch '" + bad + "' was accepted");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	public void testMerge() {
+		Random rng = new Random(1);
+		StreamingStatistics all = new StreamingStatistics(true);
+		StreamingStatistics exact1 = new StreamingStatistics(true);
+		StreamingStatistics exact2 = new StreamingStatistics(true);
+		StreamingStatistics sketch = new StreamingStatistics(false);
+
+		for (int i=0; i<3000; i++) {
+			double v = rng.nextDouble() * 1000;
+			all.add(v);
+			if (i < 1000) {
+				exact1.add(v);
+			}
+			else if (i < 2000) {
+				exact2.add(v);
+			}
+			else {
+				sketch.add(v);
+			}
+		}
+
+		StreamingStatistics merged = new StreamingStatistics(true);
+		merged.merge(exact1);
+		merged.merge(exact2);
+		assertTrue(merged.isExact());
+		assertEquals(2000, merged.getCount());
+
+		merged.merge(sketch);
+		assertFalse(merged.isExact());
+		assertEquals(all.getCount(), merged.getCount());
+		assertEquals(all.getMean(), merged.getMean(), DELTA);
+		assertEquals(all.getVariance(), merged.getVariance(), DELTA);
+		for (double q : new double[] {0.1, 0.5, 0.9, 0.99}) {
+			double exact = all.getQuantile(q);
+			assertEquals(exact, merged.getQuantile(q), exact * 0.01 + DELTA);
+		}
+	}
+}
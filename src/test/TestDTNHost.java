@@ -31,6 +31,10 @@ public class TestDTNHost extends DTNHost {
 
 	public String transferredId;
 	public DTNHost transferredFrom;
+	/** value returned by {@link #getNextUpdateTime()} */
+	public double nextUpdateTime = Double.MAX_VALUE;
+	/** if not null, the host adds itself to this list when updated */
+	public List<DTNHost> updateLog = null;
 
 
 	public TestDTNHost(List<NetworkInterface> li,
@@ -51,6 +55,14 @@ public class TestDTNHost extends DTNHost {
 	public void update(boolean up) {
 		this.nrofUpdate++;
 		this.lastUpdate = SimClock.getTime();
+		if (this.updateLog != null) {
+			this.updateLog.add(this);
+		}
+	}
+
+	@Override
+	public double getNextUpdateTime() {
+		return this.nextUpdateTime;
 	}
 
 	@Override
@@ -10,6 +10,7 @@ import java.io.FileReader;
 import java.util.Vector;
 
 import junit.framework.TestCase;
+import report.ContactTracker;
 import report.Report;
 import report.TotalContactTimeReport;
 import core.ConnectionListener;
@@ -34,6 +35,7 @@ public class TotalContactTimeReportTest extends TestCase {
 	protected void setUp() throws Exception {
 		super.setUp();
 		SimClock.reset();
+		ContactTracker.reset();
 		outFile = File.createTempFile("cttest", ".tmp");
 		outFile.deleteOnExit();
 
@@ -5,15 +5,31 @@
 package test;
 
 import input.EventQueue;
+import input.ExternalEvent;
+import input.ExternalEventsQueue;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Properties;
+import java.util.Set;
 
 import junit.framework.TestCase;
+import core.Connection;
+import core.Coord;
 import core.DTNHost;
+import core.DTNSim;
 import core.ModuleCommunicationBus;
 import core.NetworkInterface;
+import core.Settings;
 import core.SimClock;
+import core.SimContext;
+import core.SimScenario;
 import core.UpdateListener;
 import core.World;
 
@@ -101,6 +117,270 @@ public class WorldTest extends TestCase {
 
 	}
 
+	public void testEventDrivenUpdate() {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				World.EVENT_DRIVEN_S, "true");
+		simulateConnections = false;
+		SimClock.reset();
+		/* interval without rounding errors */
+		World w = new World(new TestScenario().getHosts(), worldSizeX,
+				worldSizeY, 0.5, new ArrayList<UpdateListener>(),
+				simulateConnections, eQueues);
+
+		for (TestDTNHost h : testHosts) {
+			h.nextUpdateTime = 50.05;
+		}
+
+		/* first round is always a normal one */
+		w.update();
+		assertEquals(0.5, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(1);
+
+		/* rounds until the one including host's update time are skipped */
+		w.update();
+		assertEquals(50.5, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(2);
+
+		/* a scheduled update is not skipped */
+		for (TestDTNHost h : testHosts) {
+			h.nextUpdateTime = Double.MAX_VALUE;
+		}
+		w.scheduleUpdate(60.25);
+		w.update();
+		assertEquals(60.5, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(4); // the extra scheduled update happened
+
+		/* nothing to do -> rounds until the end time (100) are skipped */
+		w.update();
+		assertEquals(100, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(5);
+	}
+
+	public void testEventDrivenUpdateOrder() {
+		List<DTNHost> fixedOrder = new ArrayList<DTNHost>();
+		List<DTNHost> skippedOrder = new ArrayList<DTNHost>();
+		for (TestDTNHost h : testHosts) {
+			h.nextUpdateTime = 5.05;
+		}
+
+		/* fixed stepping with (randomized) update order */
+		simulateConnections = false;
+		SimClock.reset();
+		World w = new World(new TestScenario().getHosts(), worldSizeX,
+				worldSizeY, upInterval, new ArrayList<UpdateListener>(),
+				simulateConnections, eQueues);
+		while (SimClock.getTime() < 5.1 - TIME_DELTA) {
+			w.update();
+		}
+		setUpdateLog(fixedOrder);
+		w.update();
+
+		/* the same with skipping the rounds before the hosts' update time */
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				World.EVENT_DRIVEN_S, "true");
+		setUpdateLog(null);
+		SimClock.reset();
+		w = new World(new TestScenario().getHosts(), worldSizeX,
+				worldSizeY, upInterval, new ArrayList<UpdateListener>(),
+				simulateConnections, eQueues);
+		w.update();
+		w.update();
+		assertEquals(5.1, SimClock.getTime(), TIME_DELTA);
+		setUpdateLog(skippedOrder);
+		w.update();
+
+		/* the shuffles of the skipped rounds must give the same order */
+		assertEquals(testHosts.size(), fixedOrder.size());
+		assertEquals(fixedOrder, skippedOrder);
+	}
+
+	private void setUpdateLog(List<DTNHost> log) {
+		for (TestDTNHost h : testHosts) {
+			h.updateLog = log;
+		}
+	}
+
+	public void testUpdateChangedHostsOnly() {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				World.UPDATE_CHANGED_ONLY_S, "true");
+		final TestDTNHost changed = testHosts.get(3);
+		final TestDTNHost due = testHosts.get(5);
+		due.nextUpdateTime = 0.05;
+		eQueues.add(new EventQueue() {
+			private double time = 0.05;
+			public ExternalEvent nextEvent() {
+				time = Double.MAX_VALUE;
+				return new ExternalEvent(0.05) {
+					public void processEvent(World world) {
+						changed.stateChanged();
+					}
+				};
+			}
+			public double nextEventsTime() {
+				return time;
+			}
+		});
+		SimClock.reset();
+		World w = new World(new TestScenario().getHosts(), worldSizeX,
+				worldSizeY, upInterval, new ArrayList<UpdateListener>(),
+				simulateConnections, eQueues);
+
+		w.update();
+		/* only the changed host and the host whose update time came were
+		 * updated after the event */
+		for (TestDTNHost h : testHosts) {
+			assertEquals(h == changed || h == due ? 2 : 1, h.nrofUpdate);
+		}
+
+		/* scheduled updates update all hosts */
+		w.scheduleUpdate(0.15);
+		w.update();
+		for (TestDTNHost h : testHosts) {
+			assertEquals(h == changed || h == due ? 4 : 3, h.nrofUpdate);
+		}
+	}
+
+	/**
+	 * Tests that ending the simulation before the end of an external events
+	 * file stops the prefetching reader's background thread
+	 */
+	public void testDoneStopsPrefetching() throws Exception {
+		File eventsFile = File.createTempFile("worldTest", ".txt");
+		PrintWriter out = new PrintWriter(eventsFile);
+		for (int i=0; i<100; i++) {
+			out.println((1000 + i) + "\tC\tM" + i + "\tp1\tp2\t100");
+		}
+		out.close();
+
+		TestSettings ts = new TestSettings("Events1");
+		ts.putSetting(ExternalEventsQueue.PATH_SETTING,
+				eventsFile.getAbsolutePath());
+		ts.putSetting(ExternalEventsQueue.PRELOAD_SETTING, "3");
+		ts.putSetting(ExternalEventsQueue.PREFETCH_SETTING, "1");
+		Set<Thread> oldThreads = getPrefetchThreads();
+		eQueues.add(new ExternalEventsQueue(ts));
+		Set<Thread> threads = getPrefetchThreads();
+		threads.removeAll(oldThreads);
+		assertEquals(1, threads.size());
+		Thread prefetcher = threads.iterator().next();
+
+		SimClock.reset();
+		World w = new World(new TestScenario().getHosts(), worldSizeX,
+				worldSizeY, upInterval, new ArrayList<UpdateListener>(),
+				simulateConnections, eQueues);
+		w.update();
+		assertTrue(prefetcher.isAlive()); // waiting for space in the queue
+
+		/* simulation ends before the events */
+		w.done();
+		prefetcher.join(10000);
+		assertFalse(prefetcher.isAlive());
+		assertTrue(eventsFile.delete());
+	}
+
+	/**
+	 * Tests that the parallel updates move the hosts and create the
+	 * connections exactly like the sequential updates, with one and with
+	 * several update threads
+	 */
+	public void testParallelUpdatesAreDeterministic() throws Exception {
+		List<String> sequential = runScenario(0, 300);
+		for (int nrofThreads : new int[] {1, 4}) {
+			List<String> parallel = runScenario(nrofThreads, 300);
+			assertEquals(sequential.size(), parallel.size());
+			for (int i=0; i<sequential.size(); i++) {
+				assertEquals(nrofThreads + " threads", sequential.get(i),
+						parallel.get(i));
+			}
+		}
+
+		int nrofConnected = 0;
+		for (String host : sequential) {
+			if (host.indexOf('[') + 1 < host.indexOf(']')) {
+				nrofConnected++;
+			}
+		}
+		assertTrue(nrofConnected > 0);
+	}
+
+	/**
+	 * Runs a scenario of moving hosts in a new simulation context and
+	 * returns the state of the hosts at the end
+	 * @param nrofThreads Number of parallel update threads (0 for
+	 * sequential updates)
+	 * @param rounds Number of update rounds to run
+	 * @return The address, location and connected hosts' addresses of each
+	 * host, one string per host
+	 */
+	private List<String> runScenario(int nrofThreads, int rounds)
+			throws Exception {
+		Properties p = new Properties();
+		p.setProperty("Scenario.name", "parallelTest");
+		p.setProperty("Scenario.nrofHostGroups", "1");
+		p.setProperty("Scenario.updateInterval", "1");
+		p.setProperty("Scenario.simulateConnections", "true");
+		p.setProperty("Group.movementModel", "RandomWaypoint");
+		p.setProperty("Group.router", "EpidemicRouter");
+		p.setProperty("Group.nrofHosts", "200");
+		p.setProperty("MovementModel.worldSize", "200, 200");
+		p.setProperty("MovementModel.warmup", "0");
+		p.setProperty("Events1.interval", "1,5");
+		p.setProperty("Events1.hosts", "0,200");
+		p.setProperty("Report.nrofReports", "0");
+		p.setProperty("Optimization.parallelThreads", "" + nrofThreads);
+
+		File settingsFile = File.createTempFile("worldTest", ".txt");
+		OutputStream out = new FileOutputStream(settingsFile);
+		try {
+			p.store(out, null);
+		} finally {
+			out.close();
+		}
+
+		List<String> state = new ArrayList<String>();
+		SimContext.enter(new SimContext());
+		try {
+			Settings.init(settingsFile.getPath());
+			Settings.setRunIndex(0);
+			DTNSim.resetForNextRun();
+
+			SimScenario scenario = SimScenario.getInstance();
+			World w = scenario.getWorld();
+			for (int i=0; i<rounds; i++) {
+				w.update();
+			}
+			w.done();
+
+			for (DTNHost h : scenario.getHosts()) {
+				List<Integer> others = new ArrayList<Integer>();
+				for (Connection c : h.getConnections()) {
+					others.add(c.getOtherNode(h).getAddress());
+				}
+				Collections.sort(others);
+				Coord loc = h.getLocation();
+				state.add(h.getAddress() + " " + loc.getX() + "," +
+						loc.getY() + " " + others);
+			}
+		} finally {
+			SimContext.enter(null);
+			assertTrue(settingsFile.delete());
+		}
+		return state;
+	}
+
+	private static Set<Thread> getPrefetchThreads() {
+		Set<Thread> threads = new HashSet<Thread>();
+		for (Thread t : Thread.getAllStackTraces().keySet()) {
+			if (t.getName().equals("ExternalEvents prefetcher") &&
+					t.isAlive()) {
+				threads.add(t);
+			}
+		}
+		return threads;
+	}
 
 	/** Dummy scenario for providing test values for the World */
 	@SuppressWarnings("serial")
@@ -5,6 +5,7 @@
 package ui;
 
 import core.SimClock;
+import core.SimProfiler;
 
 /**
  * Simple text-based user interface.
@@ -18,6 +19,7 @@ public class DTNSimTextUI extends DTNSimUI {
 	protected void runSim() {
 		double simTime = SimClock.getTime();
 		double endTime = scen.getEndTime();
+		SimProfiler profiler = SimProfiler.getInstance();
 
 		print("Running simulation '" + scen.getName()+"'");
 
@@ -34,6 +36,9 @@ public class DTNSimTextUI extends DTNSimUI {
 			}
 			simTime = SimClock.getTime();
 			this.update(false);
+			if (profiler.isSampleDue()) {
+				print(SimProfiler.SAMPLE_PREFIX + profiler.sample());
+			}
 		}
 
 		double duration = (System.currentTimeMillis() - startTime)/1000.0;
@@ -41,6 +46,9 @@ public class DTNSimTextUI extends DTNSimUI {
 		simDone = true;
 		done();
 		this.update(true); // force final UI update
+		if (profiler.isEnabled()) {
+			print(SimProfiler.SAMPLE_PREFIX + profiler.sample());
+		}
 
 		print("Simulation done in " + String.format("%.2f", duration) + "s");
 
@@ -101,6 +101,15 @@ public class ActivenessHandler {
 		return timesList;
 	}
 
+	/**
+	 * Returns true if there are no active times nor active periods defined,
+	 * i.e., the node is active regardless of the simulation time
+	 * @return true if the node is always active
+	 */
+	public boolean isAlwaysActive() {
+		return this.activeTimes == null && this.activePeriods == null;
+	}
+
 	/**
 	 * Returns true if node should be active at the moment
 	 * @return true if node should be active at the moment
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hash map with primitive long (or int) keys. Uses open addressing with
+ * linear probing, so no entry objects are created and keys are not boxed.
+ * Null values are not supported.
+ */
+public class LongHashMap<V> {
+	private static final int INITIAL_CAPACITY = 8;
+
+	private long[] keys;
+	/** values of the slots; null for empty slots */
+	private Object[] values;
+	private int size;
+
+	/**
+	 * Creates a new, empty map
+	 */
+	public LongHashMap() {
+		this.keys = new long[INITIAL_CAPACITY];
+		this.values = new Object[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the slot where the key should be searched from first
+	 */
+	private int slotOf(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & (this.keys.length - 1);
+	}
+
+	/**
+	 * Returns the slot of the key or -1 if the key is not in the map
+	 */
+	private int find(long key) {
+		int mask = this.keys.length - 1;
+		for (int i = slotOf(key); this.values[i] != null; i = (i + 1) & mask) {
+			if (this.keys[i] == key) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the value of a key
+	 * @param key The key
+	 * @return The value or null if the key is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int i = find(key);
+		return (i < 0 ? null : (V)this.values[i]);
+	}
+
+	/**
+	 * Returns true if the map contains the key
+	 * @param key The key
+	 * @return True if the key is in the map
+	 */
+	public boolean containsKey(long key) {
+		return find(key) >= 0;
+	}
+
+	/**
+	 * Puts a value for a key
+	 * @param key The key
+	 * @param value The value (not null)
+	 * @return The previous value of the key or null if it had none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null values not supported");
+		}
+
+		int mask = this.keys.length - 1;
+		int i = slotOf(key);
+		for (; this.values[i] != null; i = (i + 1) & mask) {
+			if (this.keys[i] == key) {
+				V old = (V)this.values[i];
+				this.values[i] = value;
+				return old;
+			}
+		}
+
+		this.keys[i] = key;
+		this.values[i] = value;
+		if (++this.size * 2 > this.keys.length) {
+			resize(this.keys.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes a key from the map
+	 * @param key The key
+	 * @return The value of the removed key or null if the key wasn't in
+	 * the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int i = find(key);
+		if (i < 0) {
+			return null;
+		}
+		V old = (V)this.values[i];
+		this.size--;
+
+		/* shift the following entries of the probe sequence backwards */
+		int mask = this.keys.length - 1;
+		int hole = i;
+		for (int j = (i + 1) & mask; this.values[j] != null;
+				j = (j + 1) & mask) {
+			int home = slotOf(this.keys[j]);
+			/* can the entry at j be moved to the hole? */
+			if (((j - home) & mask) >= ((j - hole) & mask)) {
+				this.keys[hole] = this.keys[j];
+				this.values[hole] = this.values[j];
+				hole = j;
+			}
+		}
+		this.values[hole] = null;
+
+		return old;
+	}
+
+	/**
+	 * Returns the number of keys in the map
+	 * @return The number of keys
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns true if the map is empty
+	 * @return True if the map is empty
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Removes all the keys from the map
+	 */
+	public void clear() {
+		this.keys = new long[INITIAL_CAPACITY];
+		this.values = new Object[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the keys of the map (in no particular order)
+	 * @return A new array containing the keys
+	 */
+	public long[] keys() {
+		long[] array = new long[this.size];
+		int n = 0;
+		for (int i = 0; i < this.values.length; i++) {
+			if (this.values[i] != null) {
+				array[n++] = this.keys[i];
+			}
+		}
+		return array;
+	}
+
+	/**
+	 * Returns the values of the map (in no particular order)
+	 * @return A new list containing the values
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> values() {
+		List<V> list = new ArrayList<V>(this.size);
+		for (Object v : this.values) {
+			if (v != null) {
+				list.add((V)v);
+			}
+		}
+		return list;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		this.keys = new long[capacity];
+		this.values = new Object[capacity];
+
+		int mask = capacity - 1;
+		for (int k = 0; k < oldKeys.length; k++) {
+			if (oldValues[k] == null) {
+				continue;
+			}
+			int i = slotOf(oldKeys[k]);
+			while (this.values[i] != null) {
+				i = (i + 1) & mask;
+			}
+			this.keys[i] = oldKeys[k];
+			this.values[i] = oldValues[k];
+		}
+	}
+}